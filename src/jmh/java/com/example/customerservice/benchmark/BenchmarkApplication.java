@@ -0,0 +1,67 @@
+package com.example.customerservice.benchmark;
+
+import com.example.customerservice.CustomerServiceApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Starts the application without a web server against the database the benchmarks run on: the one named by
+ * the {@code benchmark.jdbc.url} system property, or otherwise a throwaway Testcontainers PostgreSQL.
+ * <p>
+ * The decorators are switched off so that the benchmarks measure the {@code CustomerDao} implementations themselves.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> container;
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkApplication(PostgreSQLContainer<?> container, String url, String username, String password) {
+        this.container = container;
+        //Passed as arguments, since default properties would lose to application.yml and point at its database
+        this.context = new SpringApplicationBuilder(CustomerServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.datasource.url=" + url,
+                        "--spring.datasource.username=" + username,
+                        "--spring.datasource.password=" + password,
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--customer.dao.cache.enabled=false",
+                        "--customer.dao.email-filter.enabled=false",
+                        "--customer.dao.concurrency.enabled=false",
+                        "--customer.dao.metrics.enabled=false");
+    }
+
+    static BenchmarkApplication start() {
+        String url = System.getProperty("benchmark.jdbc.url", "");
+        if (!url.isBlank()) {
+            return new BenchmarkApplication(null, url,
+                    System.getProperty("benchmark.jdbc.username", "amigoscode"),
+                    System.getProperty("benchmark.jdbc.password", ""));
+        }
+        PostgreSQLContainer<?> container = new PostgreSQLContainer<>("postgres:16")
+                .withDatabaseName("customer-benchmark")
+                .withUsername("amigoscode")
+                .withPassword("password");
+        container.start();
+        return new BenchmarkApplication(container, container.getJdbcUrl(), container.getUsername(), container.getPassword());
+    }
+
+    <T> T getBean(String name, Class<T> type) {
+        return context.getBean(name, type);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        if (container != null) {
+            container.stop();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.customerservice.benchmark;
+
+import com.example.customerservice.dao.CustomerDao;
+import com.example.customerservice.model.Customer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the {@code CustomerDao} implementations against each other on a table of {@code tableSize} customers.
+ * <p>
+ * Every operation is reported as throughput and as sampled latency with percentiles; run with
+ * {@code -prof gc} (the default of the {@code benchmarks} profile) for the bytes allocated per operation.
+ * {@link #addCustomer} grows the table while it is measured, by at most a few percent of the smaller sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerDaoBenchmark {
+
+    private static final int SEED_CHUNK_SIZE = 1000;
+
+    @Param({"list", "columnar", "jdbc", "jpa"})
+    public String implementation;
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private BenchmarkApplication application;
+    private CustomerDao customerDao;
+    private int[] ids;
+    private String[] emails;
+    private final AtomicLong added = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        application = BenchmarkApplication.start();
+        application.getBean(JdbcTemplate.class).execute("TRUNCATE customer");
+        customerDao = application.getBean(implementation, CustomerDao.class);
+
+        //The in-memory stores start with sample customers of their own; keep them, they are part of the table
+        for (int from = 0; from < tableSize; from += SEED_CHUNK_SIZE) {
+            List<Customer> chunk = new ArrayList<>(SEED_CHUNK_SIZE);
+            for (int i = from; i < Math.min(from + SEED_CHUNK_SIZE, tableSize); i++) {
+                chunk.add(new Customer("Customer " + i, "customer-" + i + "@example.com", 18 + i % 80));
+            }
+            customerDao.addCustomers(chunk);
+        }
+        List<Customer> customers = customerDao.selectAllCustomers();
+        ids = customers.stream().mapToInt(Customer::getId).toArray();
+        emails = customers.stream().map(Customer::getEmail).toArray(String[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+    }
+
+    /**
+     * Walks the table with a stride coprime to every table size, so consecutive lookups do not hit
+     * neighbouring rows.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private static final int STRIDE = 7919;
+        private int position;
+
+        int next(int size) {
+            position = (position + STRIDE) % size;
+            return position;
+        }
+    }
+
+    @Benchmark
+    public Optional<Customer> selectCustomerById(Cursor cursor) {
+        return customerDao.selectCustomerById(ids[cursor.next(ids.length)]);
+    }
+
+    @Benchmark
+    public List<Customer> selectAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    /**
+     * Checks a taken and an unknown email in turn.
+     */
+    @Benchmark
+    public boolean personWithEmailExists(Cursor cursor) {
+        int index = cursor.next(emails.length);
+        String email = (index & 1) == 0 ? emails[index] : "unknown-" + index + "@example.com";
+        return customerDao.personWithEmailExists(email);
+    }
+
+    @Benchmark
+    public Optional<Integer> addCustomer() {
+        long n = added.incrementAndGet();
+        return customerDao.addCustomer(new Customer("Added " + n, "added-" + n + "@example.com", 30));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.customerservice.benchmark;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.util.CustomerRowMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CustomerRowMapper} on its own, mapping rows held in memory so that no driver or network
+ * time is included. {@link #readColumns} reads the same columns without building a customer, as a baseline
+ * for the cost of the result set itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerRowMapperBenchmark {
+
+    private static final int ROWS = 1000;
+
+    private final CustomerRowMapper customerRowMapper = new CustomerRowMapper();
+    private CachedRowSet resultSet;
+
+    @Setup
+    public void setUp() throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(5);
+        String[] names = {"id", "name", "email", "age", "version"};
+        int[] types = {Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.INTEGER};
+        for (int column = 1; column <= names.length; column++) {
+            metaData.setColumnName(column, names[column - 1]);
+            metaData.setColumnLabel(column, names[column - 1]);
+            metaData.setColumnType(column, types[column - 1]);
+        }
+        resultSet = RowSetProvider.newFactory().createCachedRowSet();
+        resultSet.setMetaData(metaData);
+        for (int i = 1; i <= ROWS; i++) {
+            resultSet.moveToInsertRow();
+            resultSet.updateInt(1, i);
+            resultSet.updateString(2, "Customer " + i);
+            resultSet.updateString(3, "customer-" + i + "@example.com");
+            resultSet.updateInt(4, 18 + i % 80);
+            resultSet.updateInt(5, i % 3);
+            resultSet.insertRow();
+        }
+        resultSet.moveToCurrentRow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapRow(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        int rowNum = 0;
+        while (resultSet.next()) {
+            Customer customer = customerRowMapper.mapRow(resultSet, rowNum++);
+            blackhole.consume(customer);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void readColumns(Blackhole blackhole) throws SQLException {
+        resultSet.beforeFirst();
+        while (resultSet.next()) {
+            blackhole.consume(resultSet.getInt("id"));
+            blackhole.consume(resultSet.getString("name"));
+            blackhole.consume(resultSet.getString("email"));
+            blackhole.consume(resultSet.getInt("age"));
+            blackhole.consume(resultSet.getInt("version"));
+        }
+    }
+}
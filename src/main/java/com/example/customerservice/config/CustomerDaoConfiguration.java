@@ -0,0 +1,274 @@
+package com.example.customerservice.config;
+
+import com.example.customerservice.dao.BloomFilterCustomerDao;
+import com.example.customerservice.dao.CachingCustomerDao;
+import com.example.customerservice.dao.CoalescingCustomerDao;
+import com.example.customerservice.dao.ConcurrencyLimitingCustomerDao;
+import com.example.customerservice.dao.CustomerDao;
+import com.example.customerservice.dao.CustomerOutbox;
+import com.example.customerservice.dao.CustomerWriteBehindQueue;
+import com.example.customerservice.dao.MeteredCustomerDao;
+import com.example.customerservice.dao.OutboxCustomerDao;
+import com.example.customerservice.dao.ReplicaReadCustomerDao;
+import com.example.customerservice.dao.ReplicaRoutingDataSource;
+import com.example.customerservice.dao.StatisticsCustomerDao;
+import com.example.customerservice.util.CustomerStatisticsCounters;
+import com.example.customerservice.util.EmailBloomFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.reactive.context.ReactiveWebApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.function.IntConsumer;
+
+/**
+ * Builds the {@code CustomerDao} the services use: the implementation named by
+ * {@code customer.dao.implementation}, wrapped in the decorators that are switched on.
+ */
+@Configuration
+@EnableConfigurationProperties(CustomerDaoProperties.class)
+public class CustomerDaoConfiguration {
+
+    //Hikari's default pool size, used when the pool size cannot be read
+    private static final int DEFAULT_MAX_CONCURRENT = 10;
+    //Implementations storing customers in the database, through its connection pools; the outbox lives there too,
+    //so a write and its event commit together
+    private static final Set<String> TRANSACTIONAL_IMPLEMENTATIONS = Set.of("jdbc", "jpa");
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.dao.email-filter.enabled", havingValue = "true")
+    public EmailBloomFilter emailBloomFilter(CustomerDaoProperties properties) {
+        CustomerDaoProperties.EmailFilter emailFilter = properties.emailFilter();
+        return new EmailBloomFilter(emailFilter.expectedInsertions(), emailFilter.falsePositiveProbability());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "customer.dao.statistics.enabled", havingValue = "true")
+    public CustomerStatisticsCounters customerStatisticsCounters() {
+        return new CustomerStatisticsCounters();
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "customer.dao.events.enabled", havingValue = "true")
+    public CustomerOutbox customerOutbox(CustomerDaoProperties properties,
+                                         JdbcTemplate jdbcTemplate,
+                                         PlatformTransactionManager transactionManager) {
+        CustomerDaoProperties.Events events = properties.events();
+        CustomerOutbox outbox = new CustomerOutbox(jdbcTemplate, new TransactionTemplate(transactionManager), events.retention());
+        outbox.startRelay(events.relayInterval());
+        return outbox;
+    }
+
+    /**
+     * Queues registrations for the {@code customerDao} below, so a batch still passes every decorator.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "customer.dao.write-behind.enabled", havingValue = "true")
+    public CustomerWriteBehindQueue customerWriteBehindQueue(CustomerDaoProperties properties,
+                                                             CustomerDao customerDao,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        CustomerDaoProperties.WriteBehind writeBehind = properties.writeBehind();
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        IntConsumer batchSizes = size -> {
+        };
+        if (registry != null) {
+            batchSizes = DistributionSummary.builder("customer.write.behind.batch.size")
+                    .description("Registrations added per batch")
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry)::record;
+        }
+        CustomerWriteBehindQueue queue = new CustomerWriteBehindQueue(customerDao, writeBehind.queueCapacity(),
+                writeBehind.maxBatchSize(), writeBehind.maxLatency(), batchSizes);
+        if (registry != null) {
+            bindWriteBehindMetrics(registry, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Tags the request metrics with the DAO implementation serving them too, so endpoints can be compared
+     * across implementations. A reactive application serves them from the R2DBC DAO.
+     */
+    @Bean
+    public MeterFilter customerDaoImplementationTag(CustomerDaoProperties properties, ApplicationContext context) {
+        Tag dao = Tag.of("dao", context instanceof ReactiveWebApplicationContext ? "r2dbc" : properties.implementation());
+        return new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                return id.getName().startsWith("http.server.requests") ? id.withTag(dao) : id;
+            }
+        };
+    }
+
+    @Bean
+    @Primary
+    public CustomerDao customerDao(BeanFactory beanFactory,
+                                   CustomerDaoProperties properties,
+                                   ObjectProvider<DataSource> dataSource,
+                                   ObjectProvider<EmailBloomFilter> emailBloomFilter,
+                                   ObjectProvider<CustomerStatisticsCounters> statisticsCounters,
+                                   ObjectProvider<CustomerOutbox> customerOutbox,
+                                   ObjectProvider<PlatformTransactionManager> transactionManager,
+                                   ObjectProvider<MeterRegistry> meterRegistry,
+                                   ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource,
+                                   ObjectProvider<CustomerDataSourceProperties> dataSourceProperties,
+                                   Environment environment) {
+        CustomerDao customerDao = beanFactory.getBean(properties.implementation(), CustomerDao.class);
+
+        //Timed innermost, so the metrics describe the implementation rather than outbox inserts, cache hits or
+        //waits for a slot
+        MeterRegistry metricsRegistry = meterRegistry.getIfAvailable();
+        if (properties.metrics().enabled() && metricsRegistry != null) {
+            customerDao = new MeteredCustomerDao(customerDao, metricsRegistry, properties.implementation());
+        }
+
+        //Inside the replica router, so an event shares its write's transaction and always goes to the primary.
+        //An in-memory store takes no part in that transaction, so its writes record no events
+        CustomerOutbox outbox = customerOutbox.getIfAvailable();
+        if (outbox != null && TRANSACTIONAL_IMPLEMENTATIONS.contains(properties.implementation())) {
+            customerDao = new OutboxCustomerDao(customerDao, outbox, new TransactionTemplate(transactionManager.getObject()));
+        }
+
+        if (replicaRoutingDataSource.getIfAvailable() != null) {
+            customerDao = new ReplicaReadCustomerDao(customerDao, dataSourceProperties.getObject().readYourWritesWindow());
+        }
+
+        //Only needed on virtual threads, which no request thread pool caps, and only in front of connection pools
+        CustomerDaoProperties.Concurrency concurrency = properties.concurrency();
+        if (concurrency.enabled() && Threading.VIRTUAL.isActive(environment)
+                && TRANSACTIONAL_IMPLEMENTATIONS.contains(properties.implementation())) {
+            int maxConcurrent = concurrency.maxConcurrent() > 0
+                    ? concurrency.maxConcurrent()
+                    : poolSize(dataSource.getIfAvailable());
+            ConcurrencyLimitingCustomerDao limitingDao =
+                    new ConcurrencyLimitingCustomerDao(customerDao, maxConcurrent, concurrency.acquireTimeout());
+            meterRegistry.ifAvailable(registry -> bindConcurrencyMetrics(registry, limitingDao));
+            customerDao = limitingDao;
+        }
+
+        //Outside the limit, so callers sharing a call wait on it rather than for a slot of their own
+        if (properties.coalescing().enabled()) {
+            CoalescingCustomerDao coalescingDao = new CoalescingCustomerDao(customerDao);
+            meterRegistry.ifAvailable(registry -> bindCoalescingMetrics(registry, coalescingDao));
+            customerDao = coalescingDao;
+        }
+
+        EmailBloomFilter emailFilter = emailBloomFilter.getIfAvailable();
+        if (emailFilter != null) {
+            BloomFilterCustomerDao bloomFilterDao = new BloomFilterCustomerDao(customerDao, emailFilter);
+            meterRegistry.ifAvailable(registry -> bindEmailFilterMetrics(registry, bloomFilterDao));
+            Thread.ofVirtual().name("email-filter-loader").start(bloomFilterDao::populate);
+            customerDao = bloomFilterDao;
+        }
+
+        CustomerDaoProperties.Cache cache = properties.cache();
+        if (cache.enabled()) {
+            CachingCustomerDao cachingDao = new CachingCustomerDao(customerDao, cache.maximumSize(), cache.timeToLive());
+            meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cachingDao.cache(), "customers"));
+            customerDao = cachingDao;
+        }
+
+        //Outermost, so only writes that every other decorator let through are counted
+        CustomerStatisticsCounters counters = statisticsCounters.getIfAvailable();
+        if (counters != null) {
+            StatisticsCustomerDao statisticsDao = new StatisticsCustomerDao(customerDao, counters);
+            statisticsDao.startReconciling(properties.statistics().reconcileInterval());
+            customerDao = statisticsDao;
+        }
+        return customerDao;
+    }
+
+    //Reads spread over the replicas too, so their pools add to the primary's
+    private static int poolSize(DataSource dataSource) {
+        if (dataSource instanceof ReplicaRoutingDataSource routing) {
+            int size = poolSize(routing.primary());
+            for (ReplicaRoutingDataSource.Replica replica : routing.replicas()) {
+                size += poolSize(replica.dataSource());
+            }
+            return size;
+        }
+        try {
+            if (dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            //fall through to the default
+        }
+        return DEFAULT_MAX_CONCURRENT;
+    }
+
+    private static void bindConcurrencyMetrics(MeterRegistry registry, ConcurrencyLimitingCustomerDao dao) {
+        Gauge.builder("customer.dao.concurrency.in.use", dao, ConcurrencyLimitingCustomerDao::inUse)
+                .description("Calls currently let through to the customer DAO")
+                .register(registry);
+        Gauge.builder("customer.dao.concurrency.waiting", dao, ConcurrencyLimitingCustomerDao::waiting)
+                .description("Calls waiting for a free slot")
+                .register(registry);
+    }
+
+    private static void bindWriteBehindMetrics(MeterRegistry registry, CustomerWriteBehindQueue queue) {
+        Gauge.builder("customer.write.behind.queue.depth", queue, CustomerWriteBehindQueue::depth)
+                .description("Registrations waiting for a batch")
+                .register(registry);
+        Gauge.builder("customer.write.behind.queue.capacity", queue, CustomerWriteBehindQueue::capacity)
+                .description("Registrations that can wait before further ones are refused")
+                .register(registry);
+        FunctionCounter.builder("customer.write.behind.batches", queue, CustomerWriteBehindQueue::batchesWritten)
+                .description("Batches of registrations written")
+                .register(registry);
+        FunctionCounter.builder("customer.write.behind.customers", queue, CustomerWriteBehindQueue::customersWritten)
+                .description("Registrations written in batches")
+                .register(registry);
+    }
+
+    private static void bindCoalescingMetrics(MeterRegistry registry, CoalescingCustomerDao dao) {
+        FunctionCounter.builder("customer.dao.coalesced.calls", dao, CoalescingCustomerDao::coalescedLookups)
+                .description("Calls answered by an identical call already in flight instead of the database")
+                .tag("method", "selectCustomerById")
+                .register(registry);
+    }
+
+    private static void bindEmailFilterMetrics(MeterRegistry registry, BloomFilterCustomerDao dao) {
+        EmailBloomFilter filter = dao.emailFilter();
+        Gauge.builder("customer.email.filter.false.positive.rate", filter, EmailBloomFilter::falsePositiveRate)
+                .description("Expected share of unknown emails the filter still sends to the database")
+                .register(registry);
+        Gauge.builder("customer.email.filter.memory", filter, EmailBloomFilter::memoryBytes)
+                .description("Size of the filter's bit array")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("customer.email.filter.size", filter, EmailBloomFilter::approximateElementCount)
+                .description("Estimated number of distinct emails in the filter")
+                .register(registry);
+        FunctionCounter.builder("customer.email.filter.checks", dao, BloomFilterCustomerDao::negativeChecks)
+                .description("Email checks answered by the filter or passed to the database")
+                .tag("result", "negative")
+                .register(registry);
+        FunctionCounter.builder("customer.email.filter.checks", dao, BloomFilterCustomerDao::positiveChecks)
+                .description("Email checks answered by the filter or passed to the database")
+                .tag("result", "positive")
+                .register(registry);
+    }
+}
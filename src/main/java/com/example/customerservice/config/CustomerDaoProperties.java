@@ -0,0 +1,114 @@
+package com.example.customerservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Selects the {@code CustomerDao} implementation the services use and the decorators put in front of it.
+ *
+ * @param implementation bean name of the implementation: {@code list}, {@code columnar}, {@code jdbc} or {@code jpa}.
+ * @param cache          settings of the per-id customer cache.
+ * @param emailFilter    settings of the Bloom filter in front of email existence checks.
+ * @param concurrency    settings of the limit on concurrent calls reaching the implementation.
+ * @param coalescing     settings of the sharing of one call between concurrent identical lookups.
+ * @param metrics        settings of the timing of calls reaching the implementation.
+ * @param statistics     settings of the customer statistics kept up to date with every write.
+ * @param events         settings of the change events recorded with every write.
+ * @param writeBehind    settings of the queue registrations are added from in batches.
+ */
+@ConfigurationProperties(prefix = "customer.dao")
+public record CustomerDaoProperties(@DefaultValue("jdbc") String implementation,
+                                    @DefaultValue Cache cache,
+                                    @DefaultValue EmailFilter emailFilter,
+                                    @DefaultValue Concurrency concurrency,
+                                    @DefaultValue Coalescing coalescing,
+                                    @DefaultValue Metrics metrics,
+                                    @DefaultValue Statistics statistics,
+                                    @DefaultValue Events events,
+                                    @DefaultValue WriteBehind writeBehind) {
+
+    /**
+     * @param enabled     whether lookups by id are cached.
+     * @param maximumSize number of customers kept before the least valuable ones are evicted.
+     * @param timeToLive  how long a customer is served from the cache after it was loaded.
+     */
+    public record Cache(@DefaultValue("false") boolean enabled,
+                        @DefaultValue("10000") long maximumSize,
+                        @DefaultValue("5m") Duration timeToLive) {
+    }
+
+    /**
+     * @param enabled                  whether email existence checks go through the filter first.
+     * @param expectedInsertions       number of emails the filter is sized for.
+     * @param falsePositiveProbability share of unknown emails still checked against the database once
+     *                                 {@code expectedInsertions} emails are stored.
+     */
+    public record EmailFilter(@DefaultValue("false") boolean enabled,
+                              @DefaultValue("1000000") long expectedInsertions,
+                              @DefaultValue("0.01") double falsePositiveProbability) {
+    }
+
+    /**
+     * @param enabled        whether calls beyond {@code maxConcurrent} wait for a free slot. Only applies to the
+     *                       {@code jdbc} and {@code jpa} implementations on virtual threads; platform threads are
+     *                       already capped by the request thread pool.
+     * @param maxConcurrent  number of calls let through at once; {@code 0} uses the size of the connection pool,
+     *                       plus those of the replica pools when replicas are configured.
+     * @param acquireTimeout how long a call waits for a slot before it is refused with a 503.
+     */
+    public record Concurrency(@DefaultValue("true") boolean enabled,
+                              @DefaultValue("0") int maxConcurrent,
+                              @DefaultValue("5s") Duration acquireTimeout) {
+    }
+
+    /**
+     * @param enabled whether concurrent lookups of the same id share one call.
+     */
+    public record Coalescing(@DefaultValue("true") boolean enabled) {
+    }
+
+    /**
+     * @param enabled whether calls to the implementation are timed and their rows counted.
+     */
+    public record Metrics(@DefaultValue("true") boolean enabled) {
+    }
+
+    /**
+     * @param enabled            whether counts, ages and email domains are tallied as customers are written.
+     * @param reconcileInterval  how often the tallies are recounted from the table, which corrects writes made
+     *                           by other processes.
+     */
+    public record Statistics(@DefaultValue("false") boolean enabled,
+                             @DefaultValue("10m") Duration reconcileInterval) {
+    }
+
+    /**
+     * @param enabled       whether every write records a change event, served on the event stream. The
+     *                      {@code jdbc} and {@code jpa} implementations record events in the write's transaction,
+     *                      the reactive stack in the write's statement.
+     * @param relayInterval how often events are looked for even when no local write announced one, which
+     *                      publishes events written by other instances.
+     * @param retention     how long events are kept; consumers further behind have to resynchronise.
+     * @param streamTimeout how long a Server-Sent Events connection stays open before the client has to
+     *                      reconnect with its last event id.
+     */
+    public record Events(@DefaultValue("false") boolean enabled,
+                         @DefaultValue("1s") Duration relayInterval,
+                         @DefaultValue("7d") Duration retention,
+                         @DefaultValue("30m") Duration streamTimeout) {
+    }
+
+    /**
+     * @param enabled       whether registrations are queued and added in batches instead of one transaction each.
+     * @param queueCapacity number of registrations waiting for a batch before further ones are refused with a 503.
+     * @param maxBatchSize  number of registrations added in one batch at most.
+     * @param maxLatency    how long a registration waits for its batch to fill before the batch is written anyway.
+     */
+    public record WriteBehind(@DefaultValue("false") boolean enabled,
+                              @DefaultValue("10000") int queueCapacity,
+                              @DefaultValue("500") int maxBatchSize,
+                              @DefaultValue("10ms") Duration maxLatency) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.customerservice.config;
+
+import com.example.customerservice.dao.ReplicaRoutingDataSource;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read replicas that the read-only {@code CustomerDao} calls are spread over. The primary stays the one
+ * configured under {@code spring.datasource}.
+ *
+ * @param replicas             replicas to read from; none sends every call to the primary.
+ * @param selection            how a replica is picked for a read: {@code round-robin} or {@code least-loaded}.
+ * @param healthCheckInterval  how often every replica's reachability and replication lag is checked.
+ * @param maxReplicationLag    lag beyond which a replica is ejected until it catches up.
+ * @param readYourWritesWindow how long a customer is read from the primary after it was written, and how
+ *                             long a client that wrote is served by the primary.
+ */
+@ConfigurationProperties(prefix = "customer.datasource")
+public record CustomerDataSourceProperties(@DefaultValue List<Replica> replicas,
+                                           @DefaultValue("round-robin") ReplicaRoutingDataSource.Selection selection,
+                                           @DefaultValue("5s") Duration healthCheckInterval,
+                                           @DefaultValue("10s") Duration maxReplicationLag,
+                                           @DefaultValue("10s") Duration readYourWritesWindow) {
+
+    /**
+     * @param url      JDBC URL of the replica.
+     * @param username user to connect as; the primary's when empty.
+     * @param password password of that user; the primary's when empty.
+     */
+    public record Replica(String url, String username, String password) {
+    }
+}
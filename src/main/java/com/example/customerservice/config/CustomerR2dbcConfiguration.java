@@ -0,0 +1,65 @@
+package com.example.customerservice.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.util.StringUtils;
+
+/**
+ * Builds the {@code DatabaseClient} of the reactive stack, backed by its own R2DBC connection pool.
+ * <p>
+ * The pool is deliberately not a bean: Spring Boot stops configuring the JDBC {@code DataSource} as soon as a
+ * {@code ConnectionFactory} bean exists, and Flyway, the ingest and the servlet DAOs still need it.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties(CustomerR2dbcProperties.class)
+public class CustomerR2dbcConfiguration implements DisposableBean {
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient databaseClient(CustomerR2dbcProperties properties,
+                                         DataSourceProperties dataSourceProperties,
+                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        String url = StringUtils.hasText(properties.url())
+                ? properties.url()
+                : dataSourceProperties.determineUrl().replaceFirst("^jdbc:", "r2dbc:");
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (StringUtils.hasText(dataSourceProperties.determineUsername())) {
+            options.option(ConnectionFactoryOptions.USER, dataSourceProperties.determineUsername());
+        }
+        if (StringUtils.hasText(dataSourceProperties.determinePassword())) {
+            options.option(ConnectionFactoryOptions.PASSWORD, dataSourceProperties.determinePassword());
+        }
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("customer-r2dbc")
+                .initialSize(properties.initialSize())
+                .maxSize(properties.maxSize())
+                .maxIdleTime(properties.maxIdleTime())
+                .build());
+        //Boot only binds pools it created itself; the same r2dbc.pool.* meters as it would register
+        meterRegistry.ifAvailable(registry ->
+                new ConnectionPoolMetrics(connectionPool, "customer-r2dbc", Tags.empty()).bindTo(registry));
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @Override
+    public void destroy() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.customerservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Connection settings of the reactive stack, used when the application runs as a reactive web application.
+ *
+ * @param url         R2DBC URL of the database; when empty it is derived from {@code spring.datasource.url},
+ *                    so both stacks talk to the same database with the same credentials.
+ * @param initialSize number of connections opened when the pool starts.
+ * @param maxSize     number of connections the pool opens at most.
+ * @param maxIdleTime how long an unused connection stays open.
+ */
+@ConfigurationProperties(prefix = "customer.r2dbc")
+public record CustomerR2dbcProperties(String url,
+                                      @DefaultValue("1") int initialSize,
+                                      @DefaultValue("10") int maxSize,
+                                      @DefaultValue("30m") Duration maxIdleTime) {
+}
@@ -0,0 +1,65 @@
+package com.example.customerservice.config;
+
+import com.example.customerservice.dao.DataSourceRoute;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Serves a client's reads from the primary for a while after it changed something, so that it sees its own
+ * writes even on customers this instance did not write. A write hands the client a cookie that lives for the
+ * read-your-writes window; requests carrying it keep every connection on the primary, skip the per-id
+ * cache, which may hold a customer loaded before the write, and do not share a lookup another request already
+ * has in flight, which may be reading a replica.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "customer-read-primary";
+
+    private static final Set<String> WRITE_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+
+    private final int windowSeconds;
+
+    public ReadYourWritesFilter(Duration readYourWritesWindow) {
+        this.windowSeconds = (int) Math.max(1, readYourWritesWindow.toSeconds());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (WRITE_METHODS.contains(request.getMethod())) {
+            //Set before the response is committed; the write itself goes to the primary anyway
+            Cookie cookie = new Cookie(COOKIE_NAME, "1");
+            cookie.setMaxAge(windowSeconds);
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        }
+        if (hasCookie(request)) {
+            try (DataSourceRoute.Scope scope = DataSourceRoute.requirePrimary()) {
+                chain.doFilter(request, response);
+            }
+        } else {
+            chain.doFilter(request, response);
+        }
+    }
+
+    private static boolean hasCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE_NAME.equals(cookie.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
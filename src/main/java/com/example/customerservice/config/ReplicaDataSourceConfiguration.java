@@ -0,0 +1,102 @@
+package com.example.customerservice.config;
+
+import com.example.customerservice.dao.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single {@code DataSource} with a {@link ReplicaRoutingDataSource} when replicas are configured
+ * under {@code customer.datasource.replicas}.
+ * <p>
+ * The primary is built from {@code spring.datasource} as Boot would build it, and every replica pool takes the
+ * same {@code spring.datasource.hikari} settings. Connections obtained without a read-only scope, including
+ * Flyway's, ingest's and every write's, come from the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "customer.datasource.replicas[0].url")
+@EnableConfigurationProperties(CustomerDataSourceProperties.class)
+public class ReplicaDataSourceConfiguration {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    @Bean
+    @Primary
+    public ReplicaRoutingDataSource dataSource(DataSourceProperties dataSourceProperties,
+                                               CustomerDataSourceProperties properties,
+                                               Environment environment,
+                                               ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind(HIKARI_PREFIX, Bindable.ofInstance(primary));
+
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (int i = 0; i < properties.replicas().size(); i++) {
+            CustomerDataSourceProperties.Replica replica = properties.replicas().get(i);
+            HikariDataSource pool = new HikariDataSource();
+            binder.bind(HIKARI_PREFIX, Bindable.ofInstance(pool));
+            pool.setPoolName("replica-" + (i + 1));
+            pool.setJdbcUrl(replica.url());
+            pool.setUsername(StringUtils.hasText(replica.username()) ? replica.username() : primary.getUsername());
+            pool.setPassword(StringUtils.hasText(replica.password()) ? replica.password() : primary.getPassword());
+            //Boot binds pool metrics for DataSource beans only, and the replicas are not beans
+            meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+            replicas.add(new ReplicaRoutingDataSource.Replica(pool.getPoolName(), pool));
+        }
+
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(
+                primary, replicas, properties.selection(), properties.maxReplicationLag());
+        meterRegistry.ifAvailable(registry -> bindReplicaMetrics(registry, dataSource));
+        dataSource.startHealthChecks(properties.healthCheckInterval());
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(CustomerDataSourceProperties properties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(properties.readYourWritesWindow()));
+        registration.addUrlPatterns("/api/v1/customers/*");
+        return registration;
+    }
+
+    private static void bindReplicaMetrics(MeterRegistry registry, ReplicaRoutingDataSource dataSource) {
+        for (ReplicaRoutingDataSource.Replica replica : dataSource.replicas()) {
+            Gauge.builder("customer.datasource.replica.healthy", replica, r -> r.healthy() ? 1 : 0)
+                    .description("Whether the replica is taking reads")
+                    .tag("replica", replica.name())
+                    .register(registry);
+            Gauge.builder("customer.datasource.replica.lag", replica, ReplicaRoutingDataSource.Replica::lagSeconds)
+                    .description("Replication lag seen by the last health check")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name())
+                    .register(registry);
+            FunctionCounter.builder("customer.datasource.reads", replica, ReplicaRoutingDataSource.Replica::connections)
+                    .description("Read-only connections handed out")
+                    .tag("target", replica.name())
+                    .register(registry);
+        }
+        FunctionCounter.builder("customer.datasource.reads", dataSource, ReplicaRoutingDataSource::primaryReads)
+                .description("Read-only connections handed out")
+                .tag("target", "primary")
+                .register(registry);
+    }
+}
@@ -1,41 +1,212 @@
 package com.example.customerservice.controller;
 
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerBatch;
+import com.example.customerservice.model.CustomerBulkCreateResponse;
+import com.example.customerservice.model.CustomerChangesPage;
+import com.example.customerservice.model.CustomerEventPage;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.example.customerservice.model.CustomerIngestReport;
+import com.example.customerservice.model.CustomerPage;
+import com.example.customerservice.model.CustomerPatchRequest;
 import com.example.customerservice.model.CustomerRegistrationRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerStatistics;
+import com.example.customerservice.service.CustomerEventService;
+import com.example.customerservice.service.CustomerExportService;
+import com.example.customerservice.service.CustomerIngestService;
 import com.example.customerservice.service.CustomerService;
+import com.example.customerservice.service.CustomerStatisticsService;
+import com.example.customerservice.util.CustomerETags;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping(path = "api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class CustomerController {
 
     @Autowired
     private CustomerService customerService;
 
-    public CustomerController(CustomerService customerService) {
+    private final CustomerExportService customerExportService;
+
+    private final CustomerIngestService customerIngestService;
+
+    private final CustomerStatisticsService customerStatisticsService;
+
+    private final CustomerEventService customerEventService;
+
+    public CustomerController(CustomerService customerService,
+                              CustomerExportService customerExportService,
+                              CustomerIngestService customerIngestService,
+                              CustomerStatisticsService customerStatisticsService,
+                              CustomerEventService customerEventService) {
         this.customerService = customerService;
+        this.customerExportService = customerExportService;
+        this.customerIngestService = customerIngestService;
+        this.customerStatisticsService = customerStatisticsService;
+        this.customerEventService = customerEventService;
+    }
+
+    /**
+     * Streams every customer as a JSON array, written from the rows a page at a time instead of through a
+     * {@code List<Customer>} and Jackson; the body is the same bytes Jackson would write.
+     */
+    @GetMapping(path = "/all", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void getAllCustomers(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        customerExportService.writeAllCustomers(response.getOutputStream());
+    }
+
+    @GetMapping("/page")
+    public CustomerPage getCustomersPage(@RequestParam(name = "after_id", required = false) Integer afterId,
+                                         @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        return customerService.getCustomersPage(afterId, limit);
+    }
+
+    /**
+     * Searches by any combination of name ({@code name_match} {@code prefix} or {@code contains}), email domain
+     * and age range, e.g. {@code /search?name=ali&email_domain=gmail.com&min_age=18}, paged like {@code /page}.
+     */
+    @GetMapping("/search")
+    public CustomerPage searchCustomers(@RequestParam(name = "name", required = false) String name,
+                                         @RequestParam(name = "name_match", defaultValue = "contains") String nameMatch,
+                                         @RequestParam(name = "email_domain", required = false) String emailDomain,
+                                         @RequestParam(name = "min_age", required = false) Integer minAge,
+                                         @RequestParam(name = "max_age", required = false) Integer maxAge,
+                                         @RequestParam(name = "after_id", required = false) Integer afterId,
+                                         @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                name, CustomerSearchCriteria.NameMatch.fromParameter(nameMatch), emailDomain, minAge, maxAge);
+        return customerService.searchCustomers(criteria, afterId, limit);
+    }
+
+    /**
+     * Lists the customers changed since a sync cursor, e.g. {@code /changes?since=2024-05-01T10:15:30.123456Z&after_id=42},
+     * with tombstones for deleted ones. Without a cursor every customer is listed, page by page.
+     */
+    @GetMapping("/changes")
+    public CustomerChangesPage getCustomerChanges(@RequestParam(name = "since", required = false) Instant since,
+                                                  @RequestParam(name = "after_id", required = false) Integer afterId,
+                                                  @RequestParam(name = "limit", defaultValue = "500") int limit) {
+        return customerService.getCustomerChanges(since, afterId, limit);
+    }
+
+    /**
+     * Serves the customer count, age histogram and most common email domains from counters kept in memory,
+     * so dashboards no longer need to download {@code /all}.
+     */
+    @GetMapping("/stats")
+    public CustomerStatistics getStatistics(@RequestParam(name = "top_domains", defaultValue = "10") int topDomains) {
+        return customerStatisticsService.getStatistics(topDomains);
+    }
+
+    /**
+     * Long polls the change events after {@code after}, e.g. {@code /events?after=1200&wait_seconds=30}; the
+     * response's {@code next_after} is the cursor for the next call. Without {@code after} only that cursor is
+     * returned, pointing at the latest event.
+     */
+    @GetMapping("/events")
+    public CompletableFuture<CustomerEventPage> getEvents(@RequestParam(name = "after", required = false) Long after,
+                                                          @RequestParam(name = "limit", defaultValue = "100") int limit,
+                                                          @RequestParam(name = "wait_seconds", defaultValue = "30") int waitSeconds) {
+        return customerEventService.pollEvents(after, limit, waitSeconds);
+    }
+
+    /**
+     * Streams the change events as Server-Sent Events from {@code after}, or from {@code Last-Event-ID} when
+     * an {@code EventSource} reconnects.
+     */
+    @GetMapping(path = "/events/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestParam(name = "after", required = false) Long after,
+                                   @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        return customerEventService.streamEvents(after, lastEventId);
+    }
+
+    @GetMapping("/export")
+    public void exportCustomers(@RequestParam(name = "format", defaultValue = "ndjson") String format,
+                                HttpServletResponse response) throws IOException {
+        CustomerFileFormat fileFormat = CustomerFileFormat.fromParameter(format);
+        response.setContentType(fileFormat.mediaType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"customers.%s\"".formatted(fileFormat.fileExtension()));
+        customerExportService.exportCustomers(fileFormat, response.getOutputStream());
+    }
+
+    /**
+     * Looks up many customers at once, e.g. {@code /batch?ids=1,2,3}, with one query however many ids are asked for.
+     */
+    @GetMapping("/batch")
+    public CustomerBatch getCustomersByIds(@RequestParam("ids") List<Integer> ids) {
+        return customerService.getCustomersByIds(ids);
     }
 
-    @GetMapping("/all")
-    public List<Customer> getAllCustomers() {
-        return customerService.getAllCustomers();
+    /**
+     * Same as {@link #getCustomersByIds(List)}, for id lists too long for a query string.
+     */
+    @PostMapping("/batch")
+    public CustomerBatch getCustomersByIdsInBody(@RequestBody List<Integer> ids) {
+        return customerService.getCustomersByIds(ids);
     }
 
+    /**
+     * Serves the customer with its version as ETag, so a request whose {@code If-None-Match} still matches
+     * is answered with 304 and no body.
+     */
     @GetMapping("/{id}")
-    public Customer getCustomerById(@PathVariable("id") Integer id) {
-        return getById(id);
+    public ResponseEntity<Customer> getCustomerById(@PathVariable("id") Integer id) {
+        Customer customer = getById(id);
+        return ResponseEntity.ok().eTag(CustomerETags.eTagOf(customer)).body(customer);
     }
 
     public Customer getById(Integer id) {
         return customerService.getCustomerById(id);
     }
 
+    /**
+     * Registers a customer and responds with its id once it is committed. With write-behind switched on, a client
+     * sending {@code Prefer: respond-async} is answered with a 202 as soon as the registration is queued instead,
+     * and finds the new customer in the change feed.
+     *
+     * @return the response itself when the customer is already committed, or a future of it while the registration
+     * is queued, so only a queued registration goes through an asynchronous dispatch.
+     */
     @PostMapping("/add")
-    public void addCustomer(@RequestBody CustomerRegistrationRequest request) {
-        customerService.addCustomer(request);
+    public Object addCustomer(@RequestBody CustomerRegistrationRequest request,
+                              @RequestHeader(name = "Prefer", required = false) String prefer) {
+        CompletableFuture<Integer> id = customerService.registerCustomer(request);
+        if (id.isDone() && !id.isCompletedExceptionally()) {
+            return ResponseEntity.ok(id.join());
+        }
+        if (!id.isDone() && prefer != null && prefer.contains("respond-async")) {
+            return ResponseEntity.accepted().header("Preference-Applied", "respond-async").build();
+        }
+        return id.thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/bulk")
+    public CustomerBulkCreateResponse addCustomers(@RequestBody List<CustomerRegistrationRequest> requests) {
+        return customerService.addCustomers(requests);
+    }
+
+    @PostMapping(value = "/ingest", consumes = {"application/x-ndjson", "text/csv"})
+    public CustomerIngestReport ingestCustomers(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                InputStream body) throws IOException {
+        return customerIngestService.ingestCustomers(CustomerFileFormat.fromContentType(contentType), body);
     }
 
     @DeleteMapping("/delete/{id}")
@@ -43,12 +214,31 @@ public class CustomerController {
         return customerService.deleteCustomerById(id);
     }
 
+    /**
+     * Updates the customer. With an {@code If-Match} ETag the update is a single conditional update that
+     * fails with 412 if the customer has changed since; without one, or with {@code *}, it applies to
+     * whatever version is current.
+     */
     @PutMapping("/update/{id}")
-    public Customer updateCustomer(@PathVariable("id") Integer id, @RequestBody CustomerRegistrationRequest request) {
-        Customer customer = getById(id);
-        customer.setName(request.name());
-        customer.setEmail(request.email());
-        customer.setAge(request.age());
-        return customerService.updateCustomerDetails(customer);
+    public ResponseEntity<Customer> updateCustomer(@PathVariable("id") Integer id,
+                                                   @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                   @RequestBody CustomerRegistrationRequest request) {
+        Customer customer = CustomerETags.isUnconditional(ifMatch)
+                ? customerService.updateCustomerDetails(id, request)
+                : customerService.updateCustomerDetails(id, request, CustomerETags.versionOf(ifMatch));
+        return ResponseEntity.ok().eTag(CustomerETags.eTagOf(customer)).body(customer);
+    }
+
+    /**
+     * Changes only the fields present in the body, with one statement that also returns the updated customer.
+     * An {@code If-Match} ETag makes the patch conditional, as for {@link #updateCustomer}.
+     */
+    @PatchMapping("/update/{id}")
+    public ResponseEntity<Customer> patchCustomer(@PathVariable("id") Integer id,
+                                                  @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                  @RequestBody CustomerPatchRequest patch) {
+        Integer expectedVersion = CustomerETags.isUnconditional(ifMatch) ? null : CustomerETags.versionOf(ifMatch);
+        Customer customer = customerService.patchCustomer(id, patch, expectedVersion);
+        return ResponseEntity.ok().eTag(CustomerETags.eTagOf(customer)).body(customer);
     }
 }
@@ -0,0 +1,132 @@
+package com.example.customerservice.controller;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerBatch;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.example.customerservice.model.CustomerPage;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerRegistrationRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.service.ReactiveCustomerService;
+import com.example.customerservice.util.CustomerETags;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Serves {@code api/v1/customers} when the application runs as a reactive web application.
+ * Bulk registration and ingest are only served by {@link CustomerController}.
+ */
+@RestController
+@RequestMapping(path = "api/v1/customers")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerController {
+
+    private final ReactiveCustomerService customerService;
+
+    public ReactiveCustomerController(ReactiveCustomerService customerService) {
+        this.customerService = customerService;
+    }
+
+    /**
+     * Streams all customers, as a JSON array or, when asked for {@code application/x-ndjson}, one per line.
+     */
+    @GetMapping(path = "/all", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Customer> getAllCustomers() {
+        return customerService.getAllCustomers();
+    }
+
+    @GetMapping("/page")
+    public Mono<CustomerPage> getCustomersPage(@RequestParam(name = "after_id", required = false) Integer afterId,
+                                               @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        return customerService.getCustomersPage(afterId, limit);
+    }
+
+    @GetMapping("/search")
+    public Mono<CustomerPage> searchCustomers(@RequestParam(name = "name", required = false) String name,
+                                               @RequestParam(name = "name_match", defaultValue = "contains") String nameMatch,
+                                               @RequestParam(name = "email_domain", required = false) String emailDomain,
+                                               @RequestParam(name = "min_age", required = false) Integer minAge,
+                                               @RequestParam(name = "max_age", required = false) Integer maxAge,
+                                               @RequestParam(name = "after_id", required = false) Integer afterId,
+                                               @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                name, CustomerSearchCriteria.NameMatch.fromParameter(nameMatch), emailDomain, minAge, maxAge);
+        return customerService.searchCustomers(criteria, afterId, limit);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<Flux<String>> exportCustomers(@RequestParam(name = "format", defaultValue = "ndjson") String format) {
+        CustomerFileFormat fileFormat = CustomerFileFormat.fromParameter(format);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(fileFormat.mediaType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"customers.%s\"".formatted(fileFormat.fileExtension()))
+                .body(customerService.exportCustomers(fileFormat));
+    }
+
+    @GetMapping("/batch")
+    public Mono<CustomerBatch> getCustomersByIds(@RequestParam("ids") List<Integer> ids) {
+        return customerService.getCustomersByIds(ids);
+    }
+
+    @PostMapping("/batch")
+    public Mono<CustomerBatch> getCustomersByIdsInBody(@RequestBody List<Integer> ids) {
+        return customerService.getCustomersByIds(ids);
+    }
+
+    /**
+     * Serves the customer with its version as ETag, so a request whose {@code If-None-Match} still matches
+     * is answered with 304 and no body.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Customer>> getCustomerById(@PathVariable("id") Integer id) {
+        return customerService.getCustomerById(id)
+                .map(customer -> ResponseEntity.ok().eTag(CustomerETags.eTagOf(customer)).body(customer));
+    }
+
+    @PostMapping("/add")
+    public Mono<Integer> addCustomer(@RequestBody CustomerRegistrationRequest request) {
+        return customerService.addCustomer(request);
+    }
+
+    @DeleteMapping("/delete/{id}")
+    public Mono<Boolean> deleteCustomerWithId(@PathVariable("id") Integer id) {
+        return customerService.deleteCustomerById(id);
+    }
+
+    /**
+     * Updates the customer, conditionally on its {@code If-Match} ETag when one is given,
+     * like {@link CustomerController#updateCustomer}.
+     */
+    @PutMapping("/update/{id}")
+    public Mono<ResponseEntity<Customer>> updateCustomer(@PathVariable("id") Integer id,
+                                                         @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                         @RequestBody CustomerRegistrationRequest request) {
+        Mono<Customer> updated = CustomerETags.isUnconditional(ifMatch)
+                ? customerService.updateCustomerDetails(id, request)
+                : Mono.fromSupplier(() -> CustomerETags.versionOf(ifMatch))
+                        .flatMap(version -> customerService.updateCustomerDetails(id, request, version));
+        return updated.map(customer -> ResponseEntity.ok().eTag(CustomerETags.eTagOf(customer)).body(customer));
+    }
+
+    /**
+     * Changes only the fields present in the body, like {@link CustomerController#patchCustomer}.
+     */
+    @PatchMapping("/update/{id}")
+    public Mono<ResponseEntity<Customer>> patchCustomer(@PathVariable("id") Integer id,
+                                                        @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                        @RequestBody CustomerPatchRequest patch) {
+        Mono<Customer> patched = CustomerETags.isUnconditional(ifMatch)
+                ? customerService.patchCustomer(id, patch, null)
+                : Mono.fromSupplier(() -> CustomerETags.versionOf(ifMatch))
+                        .flatMap(version -> customerService.patchCustomer(id, patch, version));
+        return patched.map(customer -> ResponseEntity.ok().eTag(CustomerETags.eTagOf(customer)).body(customer));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerUpdate;
+import com.example.customerservice.util.EmailBloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers email existence checks from an {@link EmailBloomFilter} where it can. An email the filter has
+ * never seen cannot be stored, so the query is skipped; any other answer is confirmed by the wrapped DAO.
+ * <p>
+ * Until {@link #populate()} has loaded every stored email, all checks go to the wrapped DAO. Emails written
+ * through this DAO are added to the filter before the write, so a check running alongside the insert never
+ * misses them. The filter only knows about writes made by this process; the {@code unique_email}
+ * constraint remains the final guard.
+ */
+public class BloomFilterCustomerDao extends ForwardingCustomerDao {
+
+    private static final Logger log = LoggerFactory.getLogger(BloomFilterCustomerDao.class);
+
+    private final EmailBloomFilter emailFilter;
+    private final LongAdder negativeChecks = new LongAdder();
+    private final LongAdder positiveChecks = new LongAdder();
+    private volatile boolean populated;
+
+    public BloomFilterCustomerDao(CustomerDao delegate, EmailBloomFilter emailFilter) {
+        super(delegate);
+        this.emailFilter = emailFilter;
+    }
+
+    /**
+     * Streams every stored email into the filter and then starts answering checks from it.
+     * Runs once at startup, typically on a background thread.
+     */
+    public void populate() {
+        long start = System.nanoTime();
+        try {
+            delegate.streamAllEmails(emailFilter::put);
+            populated = true;
+            log.info("Loaded ~{} emails into the email filter in {} ms ({} bytes, false-positive rate {})",
+                    emailFilter.approximateElementCount(), (System.nanoTime() - start) / 1_000_000,
+                    emailFilter.memoryBytes(), emailFilter.falsePositiveRate());
+        } catch (RuntimeException e) {
+            log.warn("Could not load the email filter; email checks will keep querying the database", e);
+        }
+    }
+
+    public boolean isPopulated() {
+        return populated;
+    }
+
+    @Override
+    public boolean personWithEmailExists(String email) {
+        if (populated && !emailFilter.mightContain(email)) {
+            negativeChecks.increment();
+            return false;
+        }
+        positiveChecks.increment();
+        return delegate.personWithEmailExists(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (!populated) {
+            return delegate.selectExistingEmails(emails);
+        }
+        List<String> candidates = emails.stream()
+                .filter(emailFilter::mightContain)
+                .toList();
+        negativeChecks.add(emails.size() - candidates.size());
+        positiveChecks.add(candidates.size());
+        return candidates.isEmpty() ? Set.of() : delegate.selectExistingEmails(candidates);
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        emailFilter.put(customer.getEmail());
+        return delegate.addCustomer(customer);
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        customers.forEach(customer -> emailFilter.put(customer.getEmail()));
+        return delegate.addCustomers(customers);
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        emailFilter.put(customer.getEmail());
+        return delegate.updateCustomer(customer);
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        if (patch.email() != null) {
+            emailFilter.put(patch.email());
+        }
+        return delegate.patchCustomer(id, patch, expectedVersion);
+    }
+
+    /**
+     * Number of checks answered by the filter alone, each one a query saved.
+     */
+    public long negativeChecks() {
+        return negativeChecks.sum();
+    }
+
+    /**
+     * Number of checks passed on to the wrapped DAO.
+     */
+    public long positiveChecks() {
+        return positiveChecks.sum();
+    }
+
+    public EmailBloomFilter emailFilter() {
+        return emailFilter;
+    }
+}
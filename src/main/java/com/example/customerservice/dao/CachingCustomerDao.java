@@ -0,0 +1,139 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerUpdate;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Read-through cache for customers looked up by id, in front of any {@link CustomerDao}.
+ * Entries are bounded in number, evicted by Caffeine's W-TinyLFU policy, expire after a fixed time
+ * and are invalidated whenever the customer is updated or deleted through this DAO. Inside a
+ * {@link DataSourceRoute#requirePrimary()} scope lookups skip the cache, which may hold a customer loaded before
+ * the caller's write on another instance.
+ * <p>
+ * A miss is loaded on the calling thread with no lock held: the caller publishes a future for the id and
+ * completes it, and concurrent callers for the same id wait on that future. Loading inside
+ * {@code Cache.get} would run the database call under a map bin lock, which pins a virtual thread's carrier.
+ * <p>
+ * Callers get their own copy of a cached customer, because the update flow changes the customer it
+ * was given before writing it back.
+ */
+public class CachingCustomerDao extends ForwardingCustomerDao {
+
+    private final AsyncCache<Integer, Customer> cache;
+
+    public CachingCustomerDao(CustomerDao delegate, long maximumSize, Duration timeToLive) {
+        super(delegate);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .buildAsync();
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        if (DataSourceRoute.primaryRequired()) {
+            return delegate.selectCustomerById(id);
+        }
+        CompletableFuture<Customer> cached = cache.getIfPresent(id);
+        if (cached == null) {
+            CompletableFuture<Customer> loading = new CompletableFuture<>();
+            cached = cache.asMap().putIfAbsent(id, loading);
+            if (cached == null) {
+                //Unknown ids complete with null, which Caffeine drops, so a customer added later is found straight away
+                cached = loading;
+                try {
+                    loading.complete(delegate.selectCustomerById(id).map(CachingCustomerDao::copyOf).orElse(null));
+                } catch (RuntimeException e) {
+                    loading.completeExceptionally(e);
+                }
+            }
+        }
+        try {
+            return Optional.ofNullable(cached.join()).map(CachingCustomerDao::copyOf);
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    /**
+     * Serves the cached customers from the cache and loads all the others with one call to the wrapped DAO.
+     * As for a single miss, Caffeine publishes a future for each missing id before the load, which runs on
+     * the calling thread with no lock held.
+     */
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        if (DataSourceRoute.primaryRequired()) {
+            return delegate.selectCustomersByIds(ids);
+        }
+        CompletableFuture<Map<Integer, Customer>> customers = cache.getAll(ids, (missing, executor) -> {
+            try {
+                Map<Integer, Customer> loaded = new HashMap<>();
+                for (Customer customer : delegate.selectCustomersByIds(List.copyOf(missing))) {
+                    loaded.put(customer.getId(), copyOf(customer));
+                }
+                return CompletableFuture.completedFuture(loaded);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        try {
+            return customers.join().values().stream().map(CachingCustomerDao::copyOf).toList();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        try {
+            return delegate.deleteCustomerById(id);
+        } finally {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        try {
+            return delegate.updateCustomer(customer);
+        } finally {
+            cache.synchronous().invalidate(customer.getId());
+        }
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        try {
+            return delegate.patchCustomer(id, patch, expectedVersion);
+        } finally {
+            cache.synchronous().invalidate(id);
+        }
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public Cache<Integer, Customer> cache() {
+        return cache.synchronous();
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge(), customer.getVersion());
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerUpdate;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lets concurrent lookups of the same customer id share one call to the wrapped DAO. The first caller publishes
+ * a future for the id and makes the call on its own thread with no lock held; callers arriving while it is in
+ * flight wait on that future instead of sending an identical query, so a burst of requests for a popular
+ * customer costs one query and one connection.
+ * <p>
+ * A caller never joins a call that may have started before its own write: every write through this DAO
+ * drops the in-flight calls it could make stale once it is done, so later lookups start a call of their own.
+ * Nor does a caller that must read the primary ({@link DataSourceRoute#primaryRequired()}): the call in flight
+ * may be reading a replica that has not caught up with that caller's writes, so it makes a call of its own.
+ * Like {@link CachingCustomerDao}, callers get their own copy of a shared customer.
+ */
+public class CoalescingCustomerDao extends ForwardingCustomerDao {
+
+    private final ConcurrentMap<Integer, CompletableFuture<Optional<Customer>>> lookupsById = new ConcurrentHashMap<>();
+    private final LongAdder coalescedLookups = new LongAdder();
+
+    public CoalescingCustomerDao(CustomerDao delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        if (DataSourceRoute.primaryRequired()) {
+            return delegate.selectCustomerById(id);
+        }
+        return coalesce(id).map(CoalescingCustomerDao::copyOf);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        try {
+            return delegate.deleteCustomerById(id);
+        } finally {
+            lookupsById.remove(id);
+        }
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        try {
+            return delegate.updateCustomer(customer);
+        } finally {
+            lookupsById.remove(customer.getId());
+        }
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        try {
+            return delegate.patchCustomer(id, patch, expectedVersion);
+        } finally {
+            lookupsById.remove(id);
+        }
+    }
+
+    /**
+     * Number of lookups by id answered by a call another caller already had in flight.
+     */
+    public long coalescedLookups() {
+        return coalescedLookups.sum();
+    }
+
+    //Joins the lookup in flight for the id, or makes it and shares its outcome with those arriving meanwhile
+    private Optional<Customer> coalesce(Integer id) {
+        CompletableFuture<Optional<Customer>> own = new CompletableFuture<>();
+        CompletableFuture<Optional<Customer>> shared = lookupsById.putIfAbsent(id, own);
+        if (shared != null) {
+            coalescedLookups.increment();
+            return await(shared);
+        }
+        try {
+            Optional<Customer> result = delegate.selectCustomerById(id);
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            lookupsById.remove(id, own);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> shared) {
+        try {
+            return shared.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge(), customer.getVersion());
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.exception.ServiceOverloadedException;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Lets at most as many calls reach the wrapped DAO as the connection pool has connections.
+ * <p>
+ * With virtual threads there is no request thread pool to cap concurrency, so thousands of requests can
+ * reach the DAO at once. Without this limit they would all queue inside the connection pool and fail with
+ * a pool timeout. Here they wait in FIFO order on a semaphore, which parks virtual threads without pinning
+ * their carrier. A call that cannot get a permit within the acquire timeout fails with
+ * {@link ServiceOverloadedException} (503).
+ */
+public class ConcurrencyLimitingCustomerDao extends ForwardingCustomerDao {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+    private final long acquireTimeoutNanos;
+
+    public ConcurrencyLimitingCustomerDao(CustomerDao delegate, int maxConcurrency, Duration acquireTimeout) {
+        super(delegate);
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return limit(delegate::selectAllCustomers);
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(Integer afterId, int limit) {
+        return limit(() -> delegate.selectCustomersPage(afterId, limit));
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        return limit(() -> delegate.searchCustomers(criteria, afterId, limit));
+    }
+
+    @Override
+    public List<CustomerChange> selectCustomerChanges(Instant since, Integer afterId, int limit) {
+        return limit(() -> delegate.selectCustomerChanges(since, afterId, limit));
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        limit(() -> {
+            delegate.streamAllCustomers(consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer) {
+        limit(() -> {
+            delegate.streamCustomerRowsPage(afterId, limit, consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        limit(() -> {
+            delegate.streamAllEmails(consumer);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return limit(() -> delegate.selectCustomerById(id));
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        return limit(() -> delegate.addCustomer(customer));
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        return limit(() -> delegate.addCustomers(customers));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return limit(() -> delegate.selectCustomersByIds(ids));
+    }
+
+    @Override
+    public boolean personWithEmailExists(String email) {
+        return limit(() -> delegate.personWithEmailExists(email));
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return limit(() -> delegate.selectExistingEmails(emails));
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return limit(() -> delegate.deleteCustomerById(id));
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        return limit(() -> delegate.updateCustomer(customer));
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        return limit(() -> delegate.patchCustomer(id, patch, expectedVersion));
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    public int inUse() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public int waiting() {
+        return permits.getQueueLength();
+    }
+
+    private <T> T limit(Supplier<T> call) {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new ServiceOverloadedException("Too many concurrent requests, please retry.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceOverloadedException("Interrupted while waiting for a database slot.");
+        }
+        try {
+            return call.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
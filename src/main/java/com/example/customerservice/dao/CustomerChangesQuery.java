@@ -0,0 +1,81 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * SQL of a delta sync, shared by the JDBC and JPA DAOs: the customers updated and the tombstones left after a
+ * {@code (changed_at, id)} cursor, merged in that order. Each side is a keyset scan of its own index that stops
+ * after {@code limit} rows, so a sync reads about as many rows as changed, however large the table.
+ * <p>
+ * A write is stamped with the start of its transaction but only becomes visible when it commits, possibly after
+ * a sync already moved the cursor past its stamp. Changes are therefore only returned up to the
+ * {@link #SELECT_HORIZON horizon}, before which every stamped change is committed or rolled back.
+ *
+ * @param sql  the statement, with one bind marker per argument.
+ * @param args the arguments, in bind marker order.
+ */
+record CustomerChangesQuery(String sql, List<Object> args) {
+
+    /**
+     * Selects the start of the oldest transaction still open on the database, this statement's own included.
+     * Has to run as a statement of its own before the changes are read, so that a transaction it does not see
+     * any more has committed before their snapshot is taken.
+     */
+    static final String SELECT_HORIZON = """
+            SELECT coalesce(min(xact_start), now()) AS horizon FROM pg_stat_activity
+            WHERE datname = current_database() AND backend_type = 'client backend'""";
+
+    /**
+     * @param since   the change time of the cursor, or {@code null} to start from the first change.
+     * @param afterId the customer id of the cursor, breaking ties between changes made at the same time.
+     * @param horizon the time up to which changes are returned, as selected by {@link #SELECT_HORIZON}.
+     * @param marker  renders the bind marker for the n-th argument, counting from 1, e.g. {@code n -> "?"} for JDBC.
+     */
+    static CustomerChangesQuery of(Instant since, Integer afterId, Instant horizon, int limit, IntFunction<String> marker) {
+        Timestamp sinceTime = Timestamp.from(since == null ? Instant.EPOCH : since);
+        int sinceId = afterId == null ? 0 : afterId;
+        Timestamp horizonTime = Timestamp.from(horizon);
+        List<Object> args = new ArrayList<>(9);
+        String sql = """
+                (SELECT id, name, email, age, version, updated_at AS changed_at, false AS deleted
+                 FROM customer
+                 WHERE (updated_at, id) > (%s, %s) AND updated_at < %s
+                 ORDER BY updated_at, id
+                 LIMIT %s)
+                UNION ALL
+                (SELECT customer_id, NULL, NULL, NULL, NULL, deleted_at, true
+                 FROM customer_tombstone
+                 WHERE (deleted_at, customer_id) > (%s, %s) AND deleted_at < %s
+                 ORDER BY deleted_at, customer_id
+                 LIMIT %s)
+                ORDER BY changed_at, id
+                LIMIT %s""".formatted(
+                bind(args, sinceTime, marker), bind(args, sinceId, marker), bind(args, horizonTime, marker), bind(args, limit, marker),
+                bind(args, sinceTime, marker), bind(args, sinceId, marker), bind(args, horizonTime, marker), bind(args, limit, marker),
+                bind(args, limit, marker));
+        return new CustomerChangesQuery(sql, args);
+    }
+
+    /**
+     * Builds the change from one row of the statement; the customer columns are {@code null} for a tombstone.
+     */
+    static CustomerChange toChange(int id, String name, String email, Integer age, Integer version,
+                                   Instant changedAt, boolean deleted) {
+        if (deleted) {
+            return new CustomerChange(id, true, null, null, changedAt);
+        }
+        return new CustomerChange(id, false, new Customer(id, name, email, age, version), version, changedAt);
+    }
+
+    private static String bind(List<Object> args, Object value, IntFunction<String> marker) {
+        args.add(value);
+        return marker.apply(args.size());
+    }
+}
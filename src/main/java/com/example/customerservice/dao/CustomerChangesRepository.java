@@ -0,0 +1,20 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.CustomerChange;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Repository fragment for delta syncs, which merge the updated customers with the tombstones of deleted ones
+ * and so need a statement no entity query can express.
+ */
+public interface CustomerChangesRepository {
+
+    /**
+     * @param since   the change time of the last change already seen, or {@code null} to start from the first.
+     * @param afterId the customer id of the last change already seen.
+     * @return at most {@code limit} changes after the cursor, ordered by change time and then id.
+     */
+    List<CustomerChange> findChanges(Instant since, Integer afterId, int limit);
+}
@@ -0,0 +1,48 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.CustomerChange;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Reads the changes with the native statements of {@link CustomerChangesQuery}. Every column is given its Java
+ * type, since rows of deleted customers leave the customer columns {@code null}.
+ */
+class CustomerChangesRepositoryImpl implements CustomerChangesRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CustomerChange> findChanges(Instant since, Integer afterId, int limit) {
+        Instant horizon = (Instant) entityManager.createNativeQuery(CustomerChangesQuery.SELECT_HORIZON)
+                .unwrap(NativeQuery.class)
+                .addScalar("horizon", StandardBasicTypes.INSTANT)
+                .getSingleResult();
+        CustomerChangesQuery changesQuery = CustomerChangesQuery.of(since, afterId, horizon, limit, n -> "?" + n);
+
+        @SuppressWarnings("unchecked")
+        NativeQuery<Object[]> query = entityManager.createNativeQuery(changesQuery.sql())
+                .unwrap(NativeQuery.class)
+                .addScalar("id", StandardBasicTypes.INTEGER)
+                .addScalar("name", StandardBasicTypes.STRING)
+                .addScalar("email", StandardBasicTypes.STRING)
+                .addScalar("age", StandardBasicTypes.INTEGER)
+                .addScalar("version", StandardBasicTypes.INTEGER)
+                .addScalar("changed_at", StandardBasicTypes.INSTANT)
+                .addScalar("deleted", StandardBasicTypes.BOOLEAN);
+        List<Object> args = changesQuery.args();
+        for (int i = 0; i < args.size(); i++) {
+            query.setParameter(i + 1, args.get(i));
+        }
+        return query.getResultList().stream()
+                .map(row -> CustomerChangesQuery.toChange((Integer) row[0], (String) row[1], (String) row[2],
+                        (Integer) row[3], (Integer) row[4], (Instant) row[5], (Boolean) row[6]))
+                .toList();
+    }
+}
@@ -0,0 +1,618 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-memory customer store that keeps customers in columns instead of objects, for holding tens of
+ * millions of customers on one node. {@code Customer} objects are only created when a customer is read.
+ * <p>
+ * Layout, per slot:
+ * <ul>
+ *     <li>{@code ids}, {@code ages} and {@code versions}: {@code int} columns. Slots are appended in id order and never
+ *     reused until compaction, so {@code ids} stays sorted and finding a slot by id is a binary search,
+ *     with no index to store at all.</li>
+ *     <li>{@code records}: a {@code long} reference into off-heap chunks holding the name and email as
+ *     length-prefixed UTF-8.</li>
+ *     <li>{@code emailTable}: an open-addressing table of slot numbers, hashed by email and compared
+ *     against the off-heap bytes, which enforces email uniqueness.</li>
+ * </ul>
+ * Deleted customers leave their slot marked in the {@code deleted} bit set, rather than in a column a caller
+ * can write, and updates append a new record. The space both leave behind
+ * is reclaimed by compaction once it outweighs the live data. Reads share a read-write lock and writes
+ * take it exclusively.
+ */
+@Repository("columnar")
+public class CustomerColumnarDataAccessService implements CustomerDao, MeterBinder {
+
+    static final int CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY = -1;
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] ages = new int[INITIAL_CAPACITY];
+    private int[] versions = new int[INITIAL_CAPACITY];
+    private long[] records = new long[INITIAL_CAPACITY];
+    private BitSet deleted = new BitSet(INITIAL_CAPACITY);
+    private int slotCount;
+    private int liveCount;
+    private int lastId;
+
+    private int[] emailTable = newEmailTable(INITIAL_CAPACITY * 2);
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int chunkOffset = CHUNK_SIZE;
+    private long liveRecordBytes;
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return read(() -> {
+            List<Customer> customers = new ArrayList<>(liveCount);
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (!deleted.get(slot)) {
+                    customers.add(materialize(slot));
+                }
+            }
+            return customers;
+        });
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(Integer afterId, int limit) {
+        return read(() -> {
+            List<Customer> page = new ArrayList<>(Math.min(limit, 1024));
+            for (int slot = firstSlotAfter(afterId == null ? 0 : afterId); slot < slotCount && page.size() < limit; slot++) {
+                if (!deleted.get(slot)) {
+                    page.add(materialize(slot));
+                }
+            }
+            return page;
+        });
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        //Read in keyset batches so the lock is never held while the consumer writes
+        List<Customer> batch;
+        Integer afterId = null;
+        do {
+            batch = selectCustomersPage(afterId, STREAM_BATCH_SIZE);
+            batch.forEach(consumer);
+            if (!batch.isEmpty()) {
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+        } while (batch.size() == STREAM_BATCH_SIZE);
+    }
+
+    /**
+     * Copies the name and email bytes straight out of the off-heap records, in batches like
+     * {@link #streamAllCustomers}, so no {@code Customer} or string is created and the lock is never held
+     * while the consumer writes.
+     */
+    @Override
+    public void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer) {
+        int batchSize = Math.min(limit, STREAM_BATCH_SIZE);
+        int[] batchIds = new int[batchSize];
+        int[] batchAges = new int[batchSize];
+        byte[][] batchNames = new byte[batchSize][];
+        byte[][] batchEmails = new byte[batchSize][];
+        int remaining = limit;
+        int count;
+        int lastId = afterId == null ? 0 : afterId;
+        do {
+            int from = lastId;
+            int max = Math.min(remaining, batchSize);
+            count = read(() -> {
+                int rows = 0;
+                for (int slot = firstSlotAfter(from); slot < slotCount && rows < max; slot++) {
+                    if (!deleted.get(slot)) {
+                        long record = records[slot];
+                        ByteBuffer chunk = chunks.get((int) (record >>> 32));
+                        int offset = (int) record;
+                        int nameLength = chunk.getInt(offset);
+                        int emailLength = chunk.getInt(offset + Integer.BYTES + nameLength);
+                        batchNames[rows] = new byte[nameLength];
+                        batchEmails[rows] = new byte[emailLength];
+                        chunk.get(offset + Integer.BYTES, batchNames[rows]);
+                        chunk.get(offset + 2 * Integer.BYTES + nameLength, batchEmails[rows]);
+                        batchIds[rows] = ids[slot];
+                        batchAges[rows] = ages[slot];
+                        rows++;
+                    }
+                }
+                return rows;
+            });
+            for (int i = 0; i < count; i++) {
+                consumer.accept(batchIds[i], batchNames[i], batchEmails[i], batchAges[i]);
+            }
+            if (count > 0) {
+                lastId = batchIds[count - 1];
+            }
+            remaining -= count;
+        } while (count == batchSize && remaining > 0);
+    }
+
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        streamAllCustomers(customer -> consumer.accept(customer.getEmail()));
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return read(() -> {
+            int slot = slotOf(id);
+            return slot == EMPTY ? Optional.empty() : Optional.of(materialize(slot));
+        });
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return read(() -> {
+            List<Customer> customers = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                int slot = slotOf(id);
+                if (slot != EMPTY) {
+                    customers.add(materialize(slot));
+                }
+            }
+            return customers;
+        });
+    }
+
+    /**
+     * Not supported: customers held in memory carry no modification times, and deletions leave no tombstones.
+     */
+    @Override
+    public List<CustomerChange> selectCustomerChanges(Instant since, Integer afterId, int limit) {
+        throw new UnsupportedOperationException("The columnar implementation does not track changes.");
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        int minAge = criteria.minAge() == null ? Integer.MIN_VALUE : criteria.minAge();
+        int maxAge = criteria.maxAge() == null ? Integer.MAX_VALUE : criteria.maxAge();
+        return read(() -> {
+            List<Customer> page = new ArrayList<>(Math.min(limit, 1024));
+            for (int slot = firstSlotAfter(afterId == null ? 0 : afterId); slot < slotCount && page.size() < limit; slot++) {
+                //The age column rules out most slots before their record is decoded
+                int age = ages[slot];
+                if (!deleted.get(slot) && age >= minAge && age <= maxAge) {
+                    Customer customer = materialize(slot);
+                    if (criteria.matches(customer)) {
+                        page.add(customer);
+                    }
+                }
+            }
+            return page;
+        });
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        int age = customer.getAge();
+        return write(() -> {
+            if (findEmail(email) != EMPTY) {
+                return Optional.empty();
+            }
+            ensureSlotCapacity();
+            int slot = slotCount++;
+            int id = ++lastId;
+            ids[slot] = id;
+            ages[slot] = age;
+            versions[slot] = 0;
+            records[slot] = appendRecord(name, email);
+            liveCount++;
+            insertEmail(slot, email);
+            customer.setId(id);
+            return Optional.of(id);
+        });
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        List<Integer> ids = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            ids.add(addCustomer(customer).orElse(null));
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean personWithEmailExists(String email) {
+        byte[] bytes = email.getBytes(StandardCharsets.UTF_8);
+        return read(() -> findEmail(bytes) != EMPTY);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return read(() -> {
+            Set<String> existing = new HashSet<>();
+            for (String email : emails) {
+                if (findEmail(email.getBytes(StandardCharsets.UTF_8)) != EMPTY) {
+                    existing.add(email);
+                }
+            }
+            return existing;
+        });
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return write(() -> {
+            int slot = slotOf(id);
+            if (slot == EMPTY) {
+                return Optional.<Customer>empty();
+            }
+            Customer removed = materialize(slot);
+            removeEmail(slot);
+            liveRecordBytes -= recordLength(records[slot]);
+            deleted.set(slot);
+            liveCount--;
+            compactIfWasteful();
+            return Optional.of(removed);
+        });
+    }
+
+    /**
+     * Replaces the stored customer with the same id, provided it is still at the customer's version.
+     *
+     * @return the customer as it was stored, and the customer carrying its new version.
+     * @throws OptimisticLockingFailureException if no customer has its id and version.
+     * @throws DuplicateKeyException if the new email belongs to another customer.
+     */
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        byte[] email = customer.getEmail().getBytes(StandardCharsets.UTF_8);
+        byte[] name = customer.getName().getBytes(StandardCharsets.UTF_8);
+        int age = customer.getAge();
+        int version = customer.getVersion();
+        return write(() -> {
+            int slot = slotOf(customer.getId());
+            if (slot == EMPTY || versions[slot] != version) {
+                throw new OptimisticLockingFailureException(
+                        "Customer with id [%s] and version [%s] not found".formatted(customer.getId(), version));
+            }
+            Customer before = materialize(slot);
+            rewrite(slot, name, email, age);
+            customer.setVersion(version + 1);
+            return new CustomerUpdate(before, customer);
+        });
+    }
+
+    /**
+     * Applies the patch to the stored customer with the id, provided it is at the expected version.
+     *
+     * @throws DuplicateKeyException if the new email belongs to another customer.
+     */
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        return write(() -> {
+            int slot = slotOf(id);
+            if (slot == EMPTY || expectedVersion != null && versions[slot] != expectedVersion) {
+                return Optional.<CustomerUpdate>empty();
+            }
+            Customer before = materialize(slot);
+            Customer patched = CustomerPatches.apply(before, patch);
+            rewrite(slot, patched.getName().getBytes(StandardCharsets.UTF_8),
+                    patched.getEmail().getBytes(StandardCharsets.UTF_8), patched.getAge());
+            return Optional.of(new CustomerUpdate(before, patched));
+        });
+    }
+
+    /**
+     * Stores new details in a live slot and moves it to the next version. Must hold the write lock.
+     */
+    private void rewrite(int slot, byte[] name, byte[] email, int age) {
+        int owner = findEmail(email);
+        if (owner != EMPTY && owner != slot) {
+            throw new DuplicateKeyException("Email already taken.");
+        }
+        removeEmail(slot);
+        liveRecordBytes -= recordLength(records[slot]);
+        records[slot] = appendRecord(name, email);
+        ages[slot] = age;
+        versions[slot]++;
+        insertEmail(slot, email);
+        compactIfWasteful();
+    }
+
+    /**
+     * Memory held by the columns, the email table and the off-heap chunks.
+     */
+    public long memoryBytes() {
+        return read(() -> (long) ids.length * Integer.BYTES
+                + (long) ages.length * Integer.BYTES
+                + (long) versions.length * Integer.BYTES
+                + (long) records.length * Long.BYTES
+                + deleted.size() / Byte.SIZE
+                + (long) emailTable.length * Integer.BYTES
+                + (long) chunks.size() * CHUNK_SIZE);
+    }
+
+    /**
+     * Memory the store would need per customer if its arrays and chunks were exactly full:
+     * three {@code int} columns, one record reference, the email table at its current load and the record bytes.
+     */
+    public double bytesPerCustomer() {
+        return read(() -> {
+            if (liveCount == 0) {
+                return 0.0;
+            }
+            double tableBytesPerSlot = (double) emailTable.length * Integer.BYTES / Math.max(1, slotCount);
+            return Integer.BYTES * 3 + Long.BYTES + tableBytesPerSlot + (double) liveRecordBytes / liveCount;
+        });
+    }
+
+    public int size() {
+        return read(() -> liveCount);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("customer.store.bytes.per.customer", this, CustomerColumnarDataAccessService::bytesPerCustomer)
+                .description("Memory needed per stored customer")
+                .tag("implementation", "columnar")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("customer.store.memory", this, CustomerColumnarDataAccessService::memoryBytes)
+                .description("Memory allocated by the store")
+                .tag("implementation", "columnar")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("customer.store.size", this, CustomerColumnarDataAccessService::size)
+                .description("Number of stored customers")
+                .tag("implementation", "columnar")
+                .register(registry);
+    }
+
+    private Customer materialize(int slot) {
+        long record = records[slot];
+        ByteBuffer chunk = chunks.get((int) (record >>> 32));
+        int offset = (int) record;
+        int nameLength = chunk.getInt(offset);
+        int emailLength = chunk.getInt(offset + Integer.BYTES + nameLength);
+        byte[] bytes = new byte[nameLength + emailLength];
+        chunk.get(offset + Integer.BYTES, bytes, 0, nameLength);
+        chunk.get(offset + 2 * Integer.BYTES + nameLength, bytes, nameLength, emailLength);
+        return new Customer(
+                ids[slot],
+                new String(bytes, 0, nameLength, StandardCharsets.UTF_8),
+                new String(bytes, nameLength, emailLength, StandardCharsets.UTF_8),
+                ages[slot],
+                versions[slot]);
+    }
+
+    private int slotOf(Integer id) {
+        if (id == null) {
+            return EMPTY;
+        }
+        int slot = Arrays.binarySearch(ids, 0, slotCount, id);
+        return slot >= 0 && !deleted.get(slot) ? slot : EMPTY;
+    }
+
+    private int firstSlotAfter(int id) {
+        int slot = Arrays.binarySearch(ids, 0, slotCount, id);
+        return slot >= 0 ? slot + 1 : -slot - 1;
+    }
+
+    private void ensureSlotCapacity() {
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            records = Arrays.copyOf(records, capacity);
+        }
+        //Keep the email table at most 3/4 full
+        if ((liveCount + 1) * 4L > emailTable.length * 3L) {
+            rehashEmails(emailTable.length * 2);
+        }
+    }
+
+    private long appendRecord(byte[] name, byte[] email) {
+        int length = 2 * Integer.BYTES + name.length + email.length;
+        if (length > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Customer name and email are too long to store.");
+        }
+        if (chunkOffset + length > CHUNK_SIZE) {
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE));
+            chunkOffset = 0;
+        }
+        ByteBuffer chunk = chunks.get(chunks.size() - 1);
+        int offset = chunkOffset;
+        chunk.putInt(offset, name.length);
+        chunk.put(offset + Integer.BYTES, name);
+        chunk.putInt(offset + Integer.BYTES + name.length, email.length);
+        chunk.put(offset + 2 * Integer.BYTES + name.length, email);
+        chunkOffset += length;
+        liveRecordBytes += length;
+        return ((long) (chunks.size() - 1) << 32) | offset;
+    }
+
+    private int recordLength(long record) {
+        ByteBuffer chunk = chunks.get((int) (record >>> 32));
+        int offset = (int) record;
+        int nameLength = chunk.getInt(offset);
+        return 2 * Integer.BYTES + nameLength + chunk.getInt(offset + Integer.BYTES + nameLength);
+    }
+
+    private boolean emailEquals(int slot, byte[] email) {
+        long record = records[slot];
+        ByteBuffer chunk = chunks.get((int) (record >>> 32));
+        int offset = (int) record;
+        int emailOffset = offset + Integer.BYTES + chunk.getInt(offset);
+        if (chunk.getInt(emailOffset) != email.length) {
+            return false;
+        }
+        return chunk.slice(emailOffset + Integer.BYTES, email.length).equals(ByteBuffer.wrap(email));
+    }
+
+    private int findEmail(byte[] email) {
+        int mask = emailTable.length - 1;
+        for (int i = hash(email) & mask; ; i = (i + 1) & mask) {
+            int slot = emailTable[i];
+            if (slot == EMPTY) {
+                return EMPTY;
+            }
+            if (emailEquals(slot, email)) {
+                return slot;
+            }
+        }
+    }
+
+    private void insertEmail(int slot, byte[] email) {
+        int mask = emailTable.length - 1;
+        int i = hash(email) & mask;
+        while (emailTable[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        emailTable[i] = slot;
+    }
+
+    private void removeEmail(int slot) {
+        int mask = emailTable.length - 1;
+        int i = hash(emailOf(slot)) & mask;
+        while (emailTable[i] != slot) {
+            i = (i + 1) & mask;
+        }
+        //Backward-shift deletion keeps every remaining entry reachable from its home bucket without tombstones
+        for (int next = (i + 1) & mask; emailTable[next] != EMPTY; next = (next + 1) & mask) {
+            int home = hash(emailOf(emailTable[next])) & mask;
+            if (((next - home) & mask) >= ((next - i) & mask)) {
+                emailTable[i] = emailTable[next];
+                i = next;
+            }
+        }
+        emailTable[i] = EMPTY;
+    }
+
+    private byte[] emailOf(int slot) {
+        long record = records[slot];
+        ByteBuffer chunk = chunks.get((int) (record >>> 32));
+        int offset = (int) record;
+        int emailOffset = offset + Integer.BYTES + chunk.getInt(offset);
+        byte[] email = new byte[chunk.getInt(emailOffset)];
+        chunk.get(emailOffset + Integer.BYTES, email);
+        return email;
+    }
+
+    private void rehashEmails(int capacity) {
+        emailTable = newEmailTable(capacity);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!deleted.get(slot)) {
+                insertEmail(slot, emailOf(slot));
+            }
+        }
+    }
+
+    /**
+     * Rewrites the live customers into fresh slots and chunks once deleted slots or stale records
+     * take up more room than the live data.
+     */
+    private void compactIfWasteful() {
+        long allocatedRecordBytes = (long) (chunks.size() - 1) * CHUNK_SIZE + chunkOffset;
+        boolean wastedSlots = slotCount > INITIAL_CAPACITY && liveCount < slotCount / 2;
+        boolean wastedBytes = chunks.size() > 1 && liveRecordBytes < allocatedRecordBytes / 2;
+        if (!wastedSlots && !wastedBytes) {
+            return;
+        }
+        int[] oldIds = ids;
+        int[] oldAges = ages;
+        int[] oldVersions = versions;
+        long[] oldRecords = records;
+        BitSet oldDeleted = deleted;
+        List<ByteBuffer> oldChunks = new ArrayList<>(chunks);
+        int oldSlotCount = slotCount;
+
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, liveCount)) * 2);
+        ids = new int[capacity];
+        ages = new int[capacity];
+        versions = new int[capacity];
+        records = new long[capacity];
+        deleted = new BitSet(capacity);
+        chunks.clear();
+        chunkOffset = CHUNK_SIZE;
+        liveRecordBytes = 0;
+        slotCount = 0;
+        for (int slot = 0; slot < oldSlotCount; slot++) {
+            if (oldDeleted.get(slot)) {
+                continue;
+            }
+            long record = oldRecords[slot];
+            ByteBuffer chunk = oldChunks.get((int) (record >>> 32));
+            int offset = (int) record;
+            byte[] name = new byte[chunk.getInt(offset)];
+            chunk.get(offset + Integer.BYTES, name);
+            byte[] email = new byte[chunk.getInt(offset + Integer.BYTES + name.length)];
+            chunk.get(offset + 2 * Integer.BYTES + name.length, email);
+            ids[slotCount] = oldIds[slot];
+            ages[slotCount] = oldAges[slot];
+            versions[slotCount] = oldVersions[slot];
+            records[slotCount] = appendRecord(name, email);
+            slotCount++;
+        }
+        rehashEmails(Math.max(INITIAL_CAPACITY * 2, Integer.highestOneBit(Math.max(1, liveCount)) * 4));
+    }
+
+    private static int[] newEmailTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static int hash(byte[] email) {
+        int hash = Arrays.hashCode(email);
+        return hash ^ (hash >>> 16);
+    }
+
+    private <T> T read(Supplier<T> action) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return action.get();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private <T> T write(Supplier<T> action) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return action.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
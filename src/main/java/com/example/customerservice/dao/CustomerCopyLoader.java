@@ -0,0 +1,236 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerIngestRejection;
+import com.example.customerservice.util.CustomerCsvWriter;
+import com.example.customerservice.util.CustomerStatisticsCounters;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * The {@code CustomerCopyLoader} class bulk loads customers with PostgreSQL's {@code COPY FROM STDIN}.
+ * Rows are copied into a temporary staging table as they are pulled from the source, then merged into
+ * {@code customer} with one statement that skips emails already taken or repeated in the load. When change
+ * events are recorded, the same statement appends a {@code CREATED} event to the outbox for every insert.
+ * The load bypasses {@link StatisticsCustomerDao}, so the inserted customers are added to the statistics here.
+ */
+@Repository
+public class CustomerCopyLoader {
+
+    /**
+     * Number of characters buffered before they are sent to the server.
+     */
+    static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of inserted rows fetched per round trip while they are counted in the statistics.
+     */
+    static final int COUNT_FETCH_SIZE = 1000;
+
+    private static final String CREATE_STAGING_TABLE =
+            "CREATE TEMP TABLE customer_ingest (" +
+            "line_no bigint NOT NULL, name text NOT NULL, email text NOT NULL, age int NOT NULL, " +
+            "inserted boolean NOT NULL DEFAULT false) ON COMMIT DROP";
+
+    private static final String COPY_INTO_STAGING_TABLE =
+            "COPY customer_ingest (line_no, name, email, age) FROM STDIN WITH (FORMAT csv)";
+
+    //The first row for every email is inserted unless the email is already taken; rows that made it are flagged.
+    //Ids come from blocks of ID_BLOCK_SIZE reserved with one nextval each, as CustomerIdAllocator does.
+    private static final String MERGE_STAGING_TABLE_TEMPLATE = """
+            WITH firsts AS (
+                SELECT line_no, name, email, age, row_number() OVER (ORDER BY line_no) - 1 AS n
+                FROM (SELECT DISTINCT ON (email) line_no, name, email, age
+                      FROM customer_ingest
+                      ORDER BY email, line_no) d
+            ), blocks AS (
+                SELECT row_number() OVER () - 1 AS block_no, nextval('customer_id_seq') AS first_id
+                FROM generate_series(1, (SELECT (count(*) + %1$d - 1) / %1$d FROM firsts))
+            ), inserted AS (
+                INSERT INTO customer (id, name, email, age)
+                SELECT b.first_id + f.n %% %1$d, f.name, f.email, f.age
+                FROM firsts f JOIN blocks b ON b.block_no = f.n / %1$d
+                ORDER BY f.line_no
+                ON CONFLICT ON CONSTRAINT unique_email DO NOTHING
+                RETURNING id, name, email, age, version
+            )%2$s
+            UPDATE customer_ingest s SET inserted = true
+            FROM firsts f JOIN inserted i ON i.email = f.email
+            WHERE s.line_no = f.line_no""";
+
+    private static final String MERGE_STAGING_TABLE =
+            MERGE_STAGING_TABLE_TEMPLATE.formatted(Customer.ID_BLOCK_SIZE, "");
+
+    //Postgres runs every data-modifying CTE, so the outbox insert needs no reference from the main statement
+    private static final String MERGE_STAGING_TABLE_RECORDING_EVENTS = MERGE_STAGING_TABLE_TEMPLATE.formatted(Customer.ID_BLOCK_SIZE, """
+            , outboxed AS (
+                INSERT INTO customer_outbox (type, customer_id, name, email, age, version)
+                SELECT 'CREATED', id, name, email, age, version FROM inserted
+            )""");
+
+    private static final String SELECT_INSERTED_ROWS = "SELECT name, email, age FROM customer_ingest WHERE inserted";
+
+    private static final String SELECT_REJECTED_ROWS = """
+            SELECT s.line_no, s.email,
+                   EXISTS (SELECT 1 FROM customer_ingest o WHERE o.email = s.email AND o.line_no < s.line_no) AS repeated
+            FROM customer_ingest s
+            WHERE NOT s.inserted
+            ORDER BY s.line_no
+            LIMIT ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CustomerOutbox outbox;
+    private final CustomerStatisticsCounters statisticsCounters;
+
+    /**
+     * @param outbox             the outbox to record change events in, or {@code null} if events are not recorded.
+     * @param statisticsCounters the statistics to count inserted customers in, or {@code null} if none are kept.
+     */
+    public CustomerCopyLoader(JdbcTemplate jdbcTemplate, @Nullable CustomerOutbox outbox,
+                              @Nullable CustomerStatisticsCounters statisticsCounters) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.outbox = outbox;
+        this.statisticsCounters = statisticsCounters;
+    }
+
+    /**
+     * Copies the rows into a staging table and merges them into {@code customer} in one transaction.
+     * Rows are pulled from {@code rows} only as fast as the server accepts them, so the source is never
+     * read ahead of the database.
+     *
+     * @param rows           the rows to load, pulled lazily.
+     * @param maxRejections  the maximum number of rejected rows to list in the result.
+     * @return how many rows were staged and inserted, and the first rejected rows in line order.
+     */
+    public LoadResult load(Iterator<StagedRow> rows, int maxRejections) {
+        LoadResult loaded = jdbcTemplate.execute((ConnectionCallback<LoadResult>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            if (!autoCommit) {
+                return load(connection, rows, maxRejections);
+            }
+            connection.setAutoCommit(false);
+            try {
+                LoadResult result = load(connection, rows, maxRejections);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+        if (outbox != null && loaded.inserted() > 0) {
+            outbox.requestRelay();
+        }
+        return loaded;
+    }
+
+    private LoadResult load(Connection connection, Iterator<StagedRow> rows, int maxRejections) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING_TABLE);
+        }
+        long staged = copy(connection, rows);
+
+        long inserted;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX ON customer_ingest (email)");
+            statement.execute("ANALYZE customer_ingest");
+            inserted = statement.executeUpdate(outbox != null ? MERGE_STAGING_TABLE_RECORDING_EVENTS : MERGE_STAGING_TABLE);
+        }
+        if (statisticsCounters != null && inserted > 0) {
+            count(connection);
+        }
+
+        List<CustomerIngestRejection> rejections = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_REJECTED_ROWS)) {
+            statement.setInt(1, maxRejections);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rejections.add(new CustomerIngestRejection(
+                            resultSet.getLong("line_no"),
+                            resultSet.getString("email"),
+                            resultSet.getBoolean("repeated") ? "Email appears more than once in the upload." : "Email already taken."));
+                }
+            }
+        }
+        return new LoadResult(staged, inserted, rejections);
+    }
+
+    //Counted just before the commit; were the commit to fail, the next reconciliation takes them out again
+    private void count(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.setFetchSize(COUNT_FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery(SELECT_INSERTED_ROWS)) {
+                while (resultSet.next()) {
+                    statisticsCounters.add(new Customer(
+                            resultSet.getString("name"), resultSet.getString("email"), resultSet.getInt("age")));
+                }
+            }
+        }
+    }
+
+    private long copy(Connection connection, Iterator<StagedRow> rows) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_INTO_STAGING_TABLE);
+        try {
+            StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+            while (rows.hasNext()) {
+                StagedRow row = rows.next();
+                buffer.append(row.line()).append(',');
+                CustomerCsvWriter.appendField(buffer, row.name());
+                buffer.append(',');
+                CustomerCsvWriter.appendField(buffer, row.email());
+                buffer.append(',').append(row.age()).append('\n');
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    //Blocks while the server is busy, which is what keeps the upload from being read ahead
+                    writeToCopy(copyIn, buffer);
+                }
+            }
+            writeToCopy(copyIn, buffer);
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * A valid row of an upload, ready to be staged.
+     */
+    public record StagedRow(long line, String name, String email, int age) {
+    }
+
+    /**
+     * @param staged     the number of rows copied into the staging table.
+     * @param inserted   the number of customers inserted.
+     * @param rejections the first staged rows that were not inserted, in line order.
+     */
+    public record LoadResult(long staged, long inserted, List<CustomerIngestRejection> rejections) {
+
+        public long rejected() {
+            return staged - inserted;
+        }
+    }
+}
@@ -1,20 +1,104 @@
 package com.example.customerservice.dao;
 
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomerDao {
     List<Customer> selectAllCustomers();
 
+    List<Customer> selectCustomersPage(Integer afterId, int limit);
+
+    void streamAllCustomers(Consumer<Customer> consumer);
+
+    /**
+     * Hands over at most {@code limit} customers with an id above {@code afterId}, in id order, as their column
+     * values. Nothing is held once it returns, so a caller can write each page out between calls.
+     *
+     * @param afterId the last id of the previous page, or {@code null} for the first page.
+     */
+    void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer);
+
+    void streamAllEmails(Consumer<String> consumer);
+
     Optional<Customer> selectCustomerById(Integer id);
 
-    public void addCustomer(Customer customer);
+    /**
+     * Looks up many customers in one round trip.
+     *
+     * @return the customers found, in no particular order; ids without a customer are left out.
+     */
+    List<Customer> selectCustomersByIds(Collection<Integer> ids);
+
+    /**
+     * Finds one page of the customers that match every filter the criteria set, ordered by id.
+     *
+     * @param afterId the last id of the previous page, or {@code null} for the first page.
+     * @param limit   the maximum number of customers to return.
+     */
+    List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit);
+
+    /**
+     * Finds the customers written and deleted after a cursor, ordered by when they last changed and then by id.
+     * Changes whose transaction may still be open are left for a later call.
+     *
+     * @param since   the change time of the last change already seen, or {@code null} to start from the first.
+     * @param afterId the customer id of the last change already seen.
+     * @param limit   the maximum number of changes to return.
+     * @throws UnsupportedOperationException if the implementation keeps no modification times.
+     */
+    List<CustomerChange> selectCustomerChanges(Instant since, Integer afterId, int limit);
+
+    /**
+     * Inserts the customer unless its email is already taken, in one atomic step.
+     *
+     * @return the generated id, or empty if the email was already taken.
+     */
+    Optional<Integer> addCustomer(Customer customer);
+
+    /**
+     * Inserts the customers as one batch.
+     *
+     * @return the generated id of each customer in order, or {@code null} where the email was already taken.
+     */
+    List<Integer> addCustomers(List<Customer> customers);
 
     public boolean personWithEmailExists(String email);
 
-    boolean deleteCustomerById(Integer id);
+    Set<String> selectExistingEmails(Collection<String> emails);
+
+    /**
+     * Deletes the customer.
+     *
+     * @return the customer as it was when deleted, or empty if no customer has the id.
+     */
+    Optional<Customer> deleteCustomerById(Integer id);
+
+    /**
+     * Updates the customer, provided it is still at the version the update was based on, and moves it to
+     * the next version.
+     *
+     * @return the customer as the update found it, and the customer carrying its new version.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if no customer has its id and version,
+     *                                                                   because it was changed or deleted since.
+     */
+    CustomerUpdate updateCustomer(Customer customer);
 
-    Customer updateCustomer(Customer customer);
+    /**
+     * Changes only the fields the patch sets and moves the customer to the next version, without reading it first.
+     *
+     * @param expectedVersion the version the patch is based on, or {@code null} to patch whatever version is current.
+     * @return the customer as the patch found it, and the updated customer, or empty if no customer has the id,
+     * or the expected version.
+     */
+    Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion);
 }
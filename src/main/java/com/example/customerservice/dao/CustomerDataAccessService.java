@@ -1,78 +1,282 @@
 package com.example.customerservice.dao;
 
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
+/**
+ * Thread-safe in-memory customer store.
+ * <p>
+ * Customers are indexed by id and by email in concurrent hash maps, and the ids are also kept in a
+ * skip list for ordered paging. The email index is claimed first with {@code putIfAbsent}, which makes it
+ * the uniqueness constraint. Writers run concurrently with each other under the shared side of a
+ * read-write lock; full listings take the exclusive side, so they see every write either completely or
+ * not at all. Stored customers are private copies, so callers cannot change them without going through
+ * {@link #updateCustomer}.
+ */
 @Repository("list")
 public class CustomerDataAccessService implements CustomerDao {
-    private static final List<Customer> customers;
 
+    private final Map<Integer, Customer> customersById = new ConcurrentHashMap<>();
+    private final Map<String, Integer> idsByEmail = new ConcurrentHashMap<>();
+    private final NavigableSet<Integer> orderedIds = new ConcurrentSkipListSet<>();
+    private final AtomicInteger lastId = new AtomicInteger();
 
-    static {
-        customers = new ArrayList<>();
+    //Writers share the read side, snapshots take the write side
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
 
-        Customer alex = new Customer(
-                1,
-                "Alex",
-                "alex@gmail.com",
-                21
-        );
-        customers.add(alex);
-
-        Customer jamila = new Customer(
-                2,
-                "Jamila",
-                "jamila@gmail.com",
-                19
-        );
-        customers.add(jamila);
+    public CustomerDataAccessService() {
+        addCustomer(new Customer("Alex", "alex@gmail.com", 21));
+        addCustomer(new Customer("Jamila", "jamila@gmail.com", 19));
     }
 
     @Override
     public List<Customer> selectAllCustomers() {
-        return customers;
+        return snapshot();
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(Integer afterId, int limit) {
+        //Keyset pages tolerate concurrent writes, so they walk the live index without blocking writers
+        NavigableSet<Integer> ids = afterId == null ? orderedIds : orderedIds.tailSet(afterId, false);
+        List<Customer> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Integer id : ids) {
+            if (page.size() == limit) {
+                break;
+            }
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                page.add(copyOf(customer));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        snapshot().forEach(consumer);
+    }
+
+    /**
+     * Walks the live index like {@link #selectCustomersPage} and encodes the strings of every customer it finds.
+     */
+    @Override
+    public void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer) {
+        for (Customer customer : selectCustomersPage(afterId, limit)) {
+            consumer.accept(customer.getId(), customer.getName().getBytes(StandardCharsets.UTF_8),
+                    customer.getEmail().getBytes(StandardCharsets.UTF_8), customer.getAge());
+        }
+    }
+
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        idsByEmail.keySet().forEach(consumer);
     }
 
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
-        return customers.stream()
-                .filter(c -> c.getId().equals(id))
-                .findFirst();
+        return Optional.ofNullable(customersById.get(id)).map(CustomerDataAccessService::copyOf);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        List<Customer> customers = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                customers.add(copyOf(customer));
+            }
+        }
+        return customers;
     }
 
+    /**
+     * Not supported: customers held in memory carry no modification times, and deletions leave no tombstones.
+     */
     @Override
-    public void addCustomer(Customer customer) {
-        customers.add(customer);
+    public List<CustomerChange> selectCustomerChanges(Instant since, Integer afterId, int limit) {
+        throw new UnsupportedOperationException("The list implementation does not track changes.");
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        NavigableSet<Integer> ids = afterId == null ? orderedIds : orderedIds.tailSet(afterId, false);
+        List<Customer> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Integer id : ids) {
+            if (page.size() == limit) {
+                break;
+            }
+            Customer customer = customersById.get(id);
+            if (customer != null && criteria.matches(customer)) {
+                page.add(copyOf(customer));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            int id = lastId.incrementAndGet();
+            if (idsByEmail.putIfAbsent(customer.getEmail(), id) != null) {
+                return Optional.empty();
+            }
+            customer.setId(id);
+            customersById.put(id, copyOf(customer));
+            orderedIds.add(id);
+            return Optional.of(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> newCustomers) {
+        List<Integer> ids = new ArrayList<>(newCustomers.size());
+        for (Customer customer : newCustomers) {
+            ids.add(addCustomer(customer).orElse(null));
+        }
+        return ids;
     }
 
     @Override
     public boolean personWithEmailExists(String email) {
-        return customers.stream()
-                .anyMatch(c -> c.getEmail().equals(email));
+        return idsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return emails.stream()
+                .filter(idsByEmail::containsKey)
+                .collect(Collectors.toSet());
     }
 
     @Override
-    public boolean deleteCustomerById(Integer id) {
-        Optional<Customer> customerMaybe = selectCustomerById(id);
-        if (!customerMaybe.isEmpty()) {
-            customers.remove(customerMaybe.get());
-            return true;
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            Customer removed = customersById.remove(id);
+            if (removed == null) {
+                return Optional.empty();
+            }
+            orderedIds.remove(id);
+            idsByEmail.remove(removed.getEmail(), id);
+            return Optional.of(copyOf(removed));
+        } finally {
+            lock.unlock();
         }
-        return false;
     }
 
+    /**
+     * Replaces the stored customer with the same id, provided it is still at the customer's version.
+     *
+     * @return the customer as it was stored, and the customer carrying its new version.
+     * @throws OptimisticLockingFailureException if no customer has its id and version.
+     * @throws DuplicateKeyException if the new email belongs to another customer.
+     */
     @Override
-    public Customer updateCustomer(Customer customer) {
-        Optional<Customer> customerMaybe = selectCustomerById(customer.getId());
-        if(!customerMaybe.isEmpty()) {
-            customers.set(customers.indexOf(customerMaybe.get()), customer);
-            return customer;
-        } else {
-            return null;
+    public CustomerUpdate updateCustomer(Customer customer) {
+        int version = customer.getVersion();
+        CustomerUpdate updated = replace(customer.getId(), version, current -> {
+            Customer next = copyOf(customer);
+            next.setVersion(version + 1);
+            return next;
+        });
+        if (updated == null) {
+            throw new OptimisticLockingFailureException(
+                    "Customer with id [%s] and version [%s] not found".formatted(customer.getId(), version));
         }
+        customer.setVersion(version + 1);
+        return new CustomerUpdate(updated.before(), customer);
+    }
+
+    /**
+     * Applies the patch to the stored customer with the id, provided it is at the expected version.
+     *
+     * @throws DuplicateKeyException if the new email belongs to another customer.
+     */
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        return Optional.ofNullable(replace(id, expectedVersion, current -> CustomerPatches.apply(current, patch)));
+    }
+
+    /**
+     * Replaces the stored customer with the id by {@code change} applied to it, moving its email in the email index.
+     *
+     * @param expectedVersion the version the stored customer must be at, or {@code null} for any version.
+     * @return copies of the replaced customer and its replacement, or {@code null} if no customer has the id, or
+     * the expected version.
+     */
+    private CustomerUpdate replace(Integer id, Integer expectedVersion, UnaryOperator<Customer> change) {
+        Lock lock = snapshotLock.readLock();
+        lock.lock();
+        try {
+            //compute holds the id's bin lock, so updates and deletes of one customer are serialised
+            CustomerUpdate[] replaced = new CustomerUpdate[1];
+            customersById.computeIfPresent(id, (key, current) -> {
+                if (expectedVersion != null && current.getVersion() != expectedVersion) {
+                    return current;
+                }
+                Customer updated = change.apply(current);
+                String email = updated.getEmail();
+                if (!current.getEmail().equals(email)) {
+                    Integer owner = idsByEmail.putIfAbsent(email, id);
+                    if (owner != null && !owner.equals(id)) {
+                        throw new DuplicateKeyException("Email already taken.");
+                    }
+                    idsByEmail.remove(current.getEmail(), id);
+                }
+                replaced[0] = new CustomerUpdate(copyOf(current), copyOf(updated));
+                return updated;
+            });
+            return replaced[0];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Customer> snapshot() {
+        Lock lock = snapshotLock.writeLock();
+        lock.lock();
+        try {
+            List<Customer> customers = new ArrayList<>(orderedIds.size());
+            for (Integer id : orderedIds) {
+                customers.add(copyOf(customersById.get(id)));
+            }
+            return customers;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Customer copyOf(Customer customer) {
+        return new Customer(customer.getId(), customer.getName(), customer.getEmail(), customer.getAge(), customer.getVersion());
     }
 }
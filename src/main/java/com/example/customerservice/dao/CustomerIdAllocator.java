@@ -0,0 +1,65 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out customer ids from blocks of {@link Customer#ID_BLOCK_SIZE} reserved with a single
+ * {@code nextval('customer_id_seq')}. The sequence increments by the block size, and a value {@code v}
+ * reserves the ids {@code v} to {@code v + ID_BLOCK_SIZE - 1}, the same "pooled-lo" scheme Hibernate uses
+ * for {@code Customer}, so the JDBC and JPA paths can share the sequence without handing out an id twice.
+ * <p>
+ * Ids within a block are taken with an atomic increment; only the thread that finds the block exhausted
+ * takes a lock to reserve the next one. Ids of a block that is not used up before shutdown are skipped.
+ */
+@Repository
+public class CustomerIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Lock refillLock = new ReentrantLock();
+    private volatile Block block = new Block(0, 0);
+
+    public CustomerIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int nextId() {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return Math.toIntExact(id);
+            }
+            refill(current);
+        }
+    }
+
+    private void refill(Block exhausted) {
+        refillLock.lock();
+        try {
+            //Another thread may have reserved a new block while this one waited
+            if (block == exhausted) {
+                Long start = jdbcTemplate.queryForObject("SELECT nextval('customer_id_seq')", Long.class);
+                block = new Block(start, start + Customer.ID_BLOCK_SIZE);
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    private static final class Block {
+
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
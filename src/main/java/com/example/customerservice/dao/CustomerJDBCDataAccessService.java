@@ -1,12 +1,34 @@
 package com.example.customerservice.dao;
 
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
 import com.example.customerservice.util.CustomerRowMapper;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 
 /**
@@ -17,13 +39,22 @@ import java.util.Optional;
 @Repository("jdbc")
 public class CustomerJDBCDataAccessService implements CustomerDao {
 
+    /**
+     * Number of rows PostgreSQL sends per round trip while streaming, which bounds the rows held in memory.
+     */
+    static final int STREAM_FETCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
 
     private final CustomerRowMapper customerRowMapper;
 
-    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper) {
+    private final CustomerIdAllocator customerIdAllocator;
+
+    public CustomerJDBCDataAccessService(JdbcTemplate jdbcTemplate, CustomerRowMapper customerRowMapper,
+                                         CustomerIdAllocator customerIdAllocator) {
         this.jdbcTemplate = jdbcTemplate;
         this.customerRowMapper = customerRowMapper;
+        this.customerIdAllocator = customerIdAllocator;
     }
 
     /**
@@ -33,10 +64,99 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
      */
     @Override
     public List<Customer> selectAllCustomers() {
-        String getAllCustomerQuery = "SELECT id, name, email, age FROM customer";
+        String getAllCustomerQuery = "SELECT id, name, email, age, version FROM customer";
         return jdbcTemplate.query(getAllCustomerQuery, customerRowMapper);
     }
 
+    /**
+     * Retrieves one page of customers ordered by id, starting after the given id.
+     * The {@code id > ?} predicate is served by the primary key index, so the cost of a
+     * page does not depend on how deep into the table it is.
+     *
+     * @param afterId the last id of the previous page, or {@code null} for the first page.
+     * @param limit   the maximum number of customers to return.
+     * @return a {@code List} of at most {@code limit} customers with an id greater than {@code afterId}.
+     */
+    @Override
+    public List<Customer> selectCustomersPage(Integer afterId, int limit) {
+        String customersPageQuery = "SELECT id, name, email, age, version FROM customer WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(customersPageQuery, customerRowMapper, afterId == null ? 0 : afterId, limit);
+    }
+
+    /**
+     * Streams every customer, in id order, to the given consumer as the rows are read.
+     * The PostgreSQL driver only honours the fetch size with a server-side cursor, which needs
+     * auto-commit to be off, so the query runs in its own read-only transaction unless the
+     * caller already has one open.
+     *
+     * @param consumer receives each customer as soon as its row has been read.
+     */
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        String streamAllCustomersQuery = "SELECT id, name, email, age, version FROM customer ORDER BY id";
+        stream(streamAllCustomersQuery, customerRowMapper, consumer);
+    }
+
+    /**
+     * Reads one keyset page like {@link #selectCustomersPage}, handing over the name and email as the UTF-8 bytes
+     * the driver received: pgjdbc returns those for a text column from {@code getBytes} without decoding them into
+     * a string. A page is bounded, so it needs no cursor, and its connection goes back to the pool with it.
+     *
+     * @param consumer receives the columns of each row as soon as it has been read.
+     */
+    @Override
+    public void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer) {
+        String customerRowsPageQuery = "SELECT id, name, email, age FROM customer WHERE id > ? ORDER BY id LIMIT ?";
+        RowCallbackHandler rowHandler = resultSet -> consumer.accept(
+                resultSet.getInt(1), resultSet.getBytes(2), resultSet.getBytes(3), resultSet.getInt(4));
+        jdbcTemplate.query(customerRowsPageQuery, rowHandler, afterId == null ? 0 : afterId, limit);
+    }
+
+    /**
+     * Streams the email of every customer, reading only the {@code email} column through a cursor.
+     *
+     * @param consumer receives each email in no particular order.
+     */
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        String streamAllEmailsQuery = "SELECT email FROM customer";
+        stream(streamAllEmailsQuery, (resultSet, rowNum) -> resultSet.getString("email"), consumer);
+    }
+
+    private <T> void stream(String query, RowMapper<T> rowMapper, Consumer<T> consumer) {
+        int[] rowNum = {0};
+        stream(query, resultSet -> consumer.accept(rowMapper.mapRow(resultSet, rowNum[0]++)));
+    }
+
+    private void stream(String query, RowCallbackHandler rowHandler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        rowHandler.processRow(resultSet);
+                    }
+                }
+            } finally {
+                if (autoCommit) {
+                    restoreAutoCommit(connection);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static void restoreAutoCommit(Connection connection) throws SQLException {
+        //Nothing was written, so ending the cursor's transaction with a rollback is always safe
+        connection.rollback();
+        connection.setAutoCommit(true);
+    }
+
     /**
      * Retrieves a customer from the database by their ID.
      *
@@ -45,19 +165,121 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
      */
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
-        String getCustomerByIdQuery = "SELECT id, name, email, age  FROM customer WHERE id = ?";
+        String getCustomerByIdQuery = "SELECT id, name, email, age, version FROM customer WHERE id = ?";
         return jdbcTemplate.query(getCustomerByIdQuery, new Object[]{id}, customerRowMapper).stream().findFirst();
     }
 
     /**
-     * Adds a new customer to the database.
+     * Retrieves many customers with a single query that passes the ids as one array parameter,
+     * so the statement is the same whatever the number of ids.
+     *
+     * @param ids the IDs of the customers to retrieve.
+     * @return the customers found, ordered by id.
+     */
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String customersByIdsQuery = "SELECT id, name, email, age, version FROM customer WHERE id = ANY(?) ORDER BY id";
+        return jdbcTemplate.query(
+                customersByIdsQuery,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("integer", ids.toArray())),
+                customerRowMapper);
+    }
+
+    /**
+     * Searches with a statement holding only the predicates of the filters that are set, each written
+     * against the expression of one of the search indexes, so the planner can drive the query from the
+     * most selective index and walk the primary key for the keyset page.
+     *
+     * @param criteria the filters to apply.
+     * @param afterId  the last id of the previous page, or {@code null} for the first page.
+     * @param limit    the maximum number of customers to return.
+     * @return at most {@code limit} matching customers with an id greater than {@code afterId}, ordered by id.
+     */
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        CustomerSearchQuery searchQuery = CustomerSearchQuery.of(criteria, afterId, limit, n -> "?");
+        return jdbcTemplate.query(searchQuery.sql(), customerRowMapper, searchQuery.args().toArray());
+    }
+
+    /**
+     * Reads the changes after the cursor with two statements: the first fixes the horizon, the second merges
+     * a keyset scan of the updated customers with one of the tombstones.
+     */
+    @Override
+    public List<CustomerChange> selectCustomerChanges(Instant since, Integer afterId, int limit) {
+        Timestamp horizon = jdbcTemplate.queryForObject(CustomerChangesQuery.SELECT_HORIZON, Timestamp.class);
+        CustomerChangesQuery changesQuery = CustomerChangesQuery.of(since, afterId, horizon.toInstant(), limit, n -> "?");
+        return jdbcTemplate.query(changesQuery.sql(), (resultSet, rowNum) -> CustomerChangesQuery.toChange(
+                resultSet.getInt("id"),
+                resultSet.getString("name"),
+                resultSet.getString("email"),
+                resultSet.getInt("age"),
+                resultSet.getInt("version"),
+                resultSet.getTimestamp("changed_at").toInstant(),
+                resultSet.getBoolean("deleted")), changesQuery.args().toArray());
+    }
+
+    /**
+     * Adds a new customer to the database unless the email is already taken. The insert and the
+     * uniqueness check are one statement, so concurrent registrations of the same email cannot both succeed.
      *
      * @param customer the {@code Customer} object containing the details of the customer to add.
+     * @return the generated id, or empty if the email was already taken.
      */
     @Override
-    public void addCustomer(Customer customer) {
-        String addCustomerQuery = "INSERT INTO customer (name, email, age) VALUES (?, ?, ?)";
-        jdbcTemplate.update(addCustomerQuery, customer.getName(), customer.getEmail(), customer.getAge());
+    public Optional<Integer> addCustomer(Customer customer) {
+        String addCustomerQuery = """
+                INSERT INTO customer (id, name, email, age) VALUES (?, ?, ?, ?)
+                ON CONFLICT ON CONSTRAINT unique_email DO NOTHING
+                RETURNING id""";
+        return jdbcTemplate.queryForList(addCustomerQuery, Integer.class,
+                        customerIdAllocator.nextId(), customer.getName(), customer.getEmail(), customer.getAge())
+                .stream()
+                .findFirst();
+    }
+
+    /**
+     * Adds the customers to the database with a single JDBC batch in one transaction.
+     * Rows whose email is already taken are skipped by {@code ON CONFLICT DO NOTHING}
+     * instead of failing the whole batch.
+     *
+     * @param customers the customers to add.
+     * @return the generated id of each customer in order, or {@code null} where the email was already taken.
+     */
+    @Override
+    @Transactional
+    public List<Integer> addCustomers(List<Customer> customers) {
+        String addCustomersQuery = "INSERT INTO customer (id, name, email, age) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT ON CONSTRAINT unique_email DO NOTHING";
+        int[] allocatedIds = new int[customers.size()];
+        for (int i = 0; i < allocatedIds.length; i++) {
+            allocatedIds[i] = customerIdAllocator.nextId();
+        }
+        int[] rowCounts = jdbcTemplate.batchUpdate(addCustomersQuery, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Customer customer = customers.get(i);
+                ps.setInt(1, allocatedIds[i]);
+                ps.setString(2, customer.getName());
+                ps.setString(3, customer.getEmail());
+                ps.setInt(4, customer.getAge());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return customers.size();
+            }
+        });
+
+        //Ids are allocated up front; a row skipped by the conflict clause leaves its id unused
+        List<Integer> ids = new ArrayList<>(customers.size());
+        for (int i = 0; i < rowCounts.length; i++) {
+            ids.add(rowCounts[i] > 0 ? allocatedIds[i] : null);
+        }
+        return ids;
     }
 
     /**
@@ -72,28 +294,95 @@ public class CustomerJDBCDataAccessService implements CustomerDao {
         return Boolean.TRUE.equals(jdbcTemplate.queryForObject(emailExistsQuery, Boolean.class, email));
     }
 
+    /**
+     * Finds which of the given emails already belong to a customer, with a single query.
+     *
+     * @param emails the email addresses to check.
+     * @return the subset of {@code emails} that are already taken.
+     */
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        String existingEmailsQuery = "SELECT email FROM customer WHERE email = ANY(?)";
+        return new HashSet<>(jdbcTemplate.query(
+                existingEmailsQuery,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", emails.toArray())),
+                (resultSet, i) -> resultSet.getString("email")));
+    }
+
     /**
      * Deletes a customer from the database by their ID.
      *
      * @param id the ID of the customer to delete.
-     * @return {@code true} if the customer was successfully deleted, otherwise {@code false}.
+     * @return the deleted customer, as the delete found it, or empty if no customer has the ID.
+     */
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        //Leaves a tombstone in the same statement, so delta syncs learn of the deletion
+        String deleteCustomerQuery = """
+                WITH deleted AS (DELETE FROM customer WHERE id = ? RETURNING id, name, email, age, version),
+                tombstone AS (
+                    INSERT INTO customer_tombstone (customer_id, deleted_at) SELECT id, now() FROM deleted
+                    ON CONFLICT (customer_id) DO UPDATE SET deleted_at = excluded.deleted_at
+                )
+                SELECT id, name, email, age, version FROM deleted""";
+        return jdbcTemplate.query(deleteCustomerQuery, customerRowMapper, id).stream().findFirst();
+    }
+
+    /**
+     * Updates the details of an existing customer in the database with one conditional statement, which
+     * only matches the row while it is still at the customer's version. The row is locked and read by the
+     * statement itself, which returns it as it was before the update.
+     *
+     * @param customer the {@code Customer} object containing the updated details and the version they are based on.
+     * @return the customer as it was, and the {@code Customer} object carrying its new version.
+     * @throws OptimisticLockingFailureException if no customer has its id and version.
      */
     @Override
-    public boolean deleteCustomerById(Integer id) {
-        String deleteCustomerQuery = "DELETE FROM customer WHERE id = ?";
-        return jdbcTemplate.update(deleteCustomerQuery, id) > 0;
+    public CustomerUpdate updateCustomer(Customer customer) {
+        String customerUpdateQuery = """
+                UPDATE customer c SET name = ?, email = ?, age = ?, version = c.version + 1, updated_at = now()
+                FROM (SELECT id, name, email, age, version FROM customer WHERE id = ? AND version = ? FOR UPDATE) old
+                WHERE c.id = old.id
+                RETURNING old.id, old.name, old.email, old.age, old.version""";
+        Customer before = jdbcTemplate.query(customerUpdateQuery, customerRowMapper, customer.getName(), customer.getEmail(),
+                customer.getAge(), customer.getId(), customer.getVersion()).stream().findFirst().orElseThrow(() ->
+                new OptimisticLockingFailureException(
+                        "Customer with id [%s] and version [%s] not found".formatted(customer.getId(), customer.getVersion())));
+        customer.setVersion(customer.getVersion() + 1);
+        return new CustomerUpdate(before, customer);
     }
 
     /**
-     * Updates the details of an existing customer in the database.
+     * Patches a customer with one {@code UPDATE} that sets only the changed columns and returns the
+     * updated row, along with the row as the statement found it, so no preliminary read is needed.
      *
-     * @param customer the {@code Customer} object containing the updated details.
-     * @return the updated {@code Customer} object.
+     * @param expectedVersion the version the patch is based on, or {@code null} to patch whatever version is current.
+     * @return the customer before and after the patch, or empty if no customer has the id, or the expected version.
      */
     @Override
-    public Customer updateCustomer(Customer customer) {
-        String customerUpdateQuery = "UPDATE customer SET name = ?, email = ?, age = ? WHERE id = ?";
-        jdbcTemplate.update(customerUpdateQuery, customer.getName(), customer.getEmail(), customer.getAge(), customer.getId());
-        return customer;
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        Map<String, Object> columns = CustomerPatches.changedColumns(patch);
+        StringBuilder patchQuery = new StringBuilder("UPDATE customer c SET ");
+        List<Object> args = new ArrayList<>(columns.size() + 2);
+        columns.forEach((column, value) -> {
+            patchQuery.append(column).append(" = ?, ");
+            args.add(value);
+        });
+        patchQuery.append("version = c.version + 1, updated_at = now() ")
+                .append("FROM (SELECT id, name, email, age, version FROM customer WHERE id = ?");
+        args.add(id);
+        if (expectedVersion != null) {
+            patchQuery.append(" AND version = ?");
+            args.add(expectedVersion);
+        }
+        patchQuery.append(" FOR UPDATE) old WHERE c.id = old.id RETURNING c.id, c.name, c.email, c.age, c.version, ")
+                .append("old.name AS old_name, old.email AS old_email, old.age AS old_age, old.version AS old_version");
+        return jdbcTemplate.query(patchQuery.toString(), (resultSet, i) -> new CustomerUpdate(
+                new Customer(resultSet.getInt("id"), resultSet.getString("old_name"), resultSet.getString("old_email"),
+                        resultSet.getInt("old_age"), resultSet.getInt("old_version")),
+                customerRowMapper.mapRow(resultSet, i)), args.toArray()).stream().findFirst();
     }
 }
@@ -1,18 +1,34 @@
 package com.example.customerservice.dao;
 
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository("jpa")
 public class CustomerJPADataAccessService implements CustomerDao {
 
+    static final int STREAM_PAGE_SIZE = 1000;
+
     private final CustomerRepository customerRepository;
 
-    public CustomerJPADataAccessService(CustomerRepository customerRepository) {
+    private final CustomerIdAllocator customerIdAllocator;
+
+    public CustomerJPADataAccessService(CustomerRepository customerRepository, CustomerIdAllocator customerIdAllocator) {
         this.customerRepository = customerRepository;
+        this.customerIdAllocator = customerIdAllocator;
     }
 
     @Override
@@ -20,14 +36,74 @@ public class CustomerJPADataAccessService implements CustomerDao {
         return customerRepository.findAll();
     }
 
+    @Override
+    public List<Customer> selectCustomersPage(Integer afterId, int limit) {
+        return customerRepository.findByIdGreaterThanOrderByIdAsc(afterId == null ? 0 : afterId, Limit.of(limit));
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        //Walk the table in keyset pages; each page runs outside a transaction, so its entities
+        //are detached and collectable once consumed instead of piling up in one persistence context
+        Integer afterId = null;
+        List<Customer> page;
+        do {
+            page = selectCustomersPage(afterId, STREAM_PAGE_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == STREAM_PAGE_SIZE);
+    }
+
+    /**
+     * Hands over the entities {@link #selectCustomersPage} loads; Hibernate builds them either way.
+     */
+    @Override
+    public void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer) {
+        for (Customer customer : selectCustomersPage(afterId, limit)) {
+            consumer.accept(customer.getId(), customer.getName().getBytes(StandardCharsets.UTF_8),
+                    customer.getEmail().getBytes(StandardCharsets.UTF_8), customer.getAge());
+        }
+    }
+
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        streamAllCustomers(customer -> consumer.accept(customer.getEmail()));
+    }
+
     @Override
     public Optional<Customer> selectCustomerById(Integer id) {
         return customerRepository.findById(id);
     }
 
     @Override
-    public void addCustomer(Customer customer) {
-        customerRepository.save(customer);
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return ids.isEmpty() ? List.of() : customerRepository.findAllByIdArray(ids.toArray(Integer[]::new));
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        return customerRepository.search(criteria, afterId, limit);
+    }
+
+    @Override
+    public List<CustomerChange> selectCustomerChanges(Instant since, Integer afterId, int limit) {
+        return customerRepository.findChanges(since, afterId, limit);
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        return customerRepository.insertIfEmailAvailable(
+                customerIdAllocator.nextId(), customer.getName(), customer.getEmail(), customer.getAge());
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        //saveAll runs in one transaction and Hibernate groups the inserts into JDBC batches
+        return customerRepository.saveAll(customers).stream()
+                .map(Customer::getId)
+                .toList();
     }
 
     @Override
@@ -36,25 +112,38 @@ public class CustomerJPADataAccessService implements CustomerDao {
     }
 
     @Override
-    public boolean deleteCustomerById(Integer id) {
-        if (customerRepository.existsById(id)) {
-            customerRepository.deleteById(id);
-            return true;
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
         }
-        return false;
+        return customerRepository.findExistingEmails(emails);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return customerRepository.deleteLeavingTombstone(id);
+    }
+
+    /**
+     * Updates the customer with one conditional statement instead of {@code save}, whose merge would first
+     * load the entity to compare versions. The statement returns the customer as it found it.
+     */
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        Customer before = customerRepository.updateIfVersion(customer.getId(), customer.getVersion(),
+                customer.getName(), customer.getEmail(), customer.getAge()).orElseThrow(() ->
+                new OptimisticLockingFailureException(
+                        "Customer with id [%s] and version [%s] not found".formatted(customer.getId(), customer.getVersion())));
+        customer.setVersion(customer.getVersion() + 1);
+        return new CustomerUpdate(before, customer);
     }
 
+    /**
+     * Patches the customer with one native {@code UPDATE ... RETURNING}, instead of loading it and letting
+     * {@code save} merge it.
+     */
     @Override
-    public Customer updateCustomer(Customer customer) {
-//        Optional<Customer> customerFromDb = customerRepository.findById(customer.getId());
-//        if (!customerFromDb.isEmpty()) {
-//            Customer customerToUpdate = customerFromDb.get();
-//            customerToUpdate.setName(customer.getName());
-//            customerToUpdate.setEmail(customer.getEmail());
-//            customerToUpdate.setAge(customer.getAge());
-        return customerRepository.save(customer);
-//        } else {
-//            return null;
-//        }
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        return customerRepository.patch(id, patch, expectedVersion);
     }
 }
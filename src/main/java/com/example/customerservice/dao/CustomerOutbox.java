@@ -0,0 +1,280 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transactional outbox of customer change events.
+ * <p>
+ * Writers {@link #append} events in the transaction of the change, so an event exists exactly when its
+ * change was committed. A relay thread then moves committed events from {@code customer_outbox} to
+ * {@code customer_event}, where they get their sequence number. Only one relay runs at a time across all
+ * instances, guarded by an advisory lock, so sequence numbers follow the order in which events became
+ * visible: a reader that has seen sequence {@code n} never later finds an event below {@code n}, which
+ * identity values handed out by concurrent writers would not guarantee.
+ * <p>
+ * The relay runs shortly after every commit that appended here, and every relay interval to pick up events
+ * appended by other instances or by statements that bypass this class. It also prunes events past the
+ * retention period.
+ */
+public class CustomerOutbox implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerOutbox.class);
+
+    static final int RELAY_BATCH_SIZE = 1000;
+    private static final long RELAY_LOCK_KEY = 0x637573746576L;
+    private static final Duration PRUNE_INTERVAL = Duration.ofMinutes(1);
+
+    private static final String APPEND_EVENT =
+            "INSERT INTO customer_outbox (type, customer_id, name, email, age, version) VALUES (?, ?, ?, ?, ?, ?)";
+
+    //Moves the oldest committed events in one statement; the ORDER BY numbers them in the order they were appended
+    private static final String RELAY_EVENTS = """
+            WITH moved AS (
+                DELETE FROM customer_outbox
+                WHERE id IN (SELECT id FROM customer_outbox ORDER BY id LIMIT ?)
+                RETURNING id, type, customer_id, name, email, age, version, occurred_at
+            )
+            INSERT INTO customer_event (type, customer_id, name, email, age, version, occurred_at)
+            SELECT type, customer_id, name, email, age, version, occurred_at FROM moved ORDER BY id""";
+
+    private static final String SELECT_EVENTS_AFTER = """
+            SELECT sequence, type, customer_id, name, email, age, version, occurred_at
+            FROM customer_event WHERE sequence > ? ORDER BY sequence LIMIT ?""";
+
+    //Falls back to the identity's last value, so numbering carries on past events that were all pruned
+    private static final String SELECT_LATEST_SEQUENCE = """
+            SELECT coalesce((SELECT max(sequence) FROM customer_event),
+                            pg_sequence_last_value(pg_get_serial_sequence('customer_event', 'sequence')), 0)""";
+
+    private static final String SELECT_PRUNED_THROUGH = """
+            SELECT coalesce((SELECT min(sequence) - 1 FROM customer_event),
+                            pg_sequence_last_value(pg_get_serial_sequence('customer_event', 'sequence')), 0)""";
+
+    private static final RowMapper<CustomerEvent> EVENT_MAPPER = (resultSet, rowNum) -> {
+        CustomerEvent.Type type = CustomerEvent.Type.valueOf(resultSet.getString("type"));
+        int customerId = resultSet.getInt("customer_id");
+        Customer customer = null;
+        Integer version = null;
+        if (type != CustomerEvent.Type.DELETED) {
+            version = resultSet.getInt("version");
+            customer = new Customer(customerId, resultSet.getString("name"), resultSet.getString("email"),
+                    resultSet.getInt("age"), version);
+        }
+        return new CustomerEvent(resultSet.getLong("sequence"), type, customerId, customer, version,
+                resultSet.getTimestamp("occurred_at").toInstant());
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+
+    private final Semaphore relayRequests = new Semaphore(0);
+    private volatile long latestSequence;
+    private volatile long prunedThrough;
+    //Completed and replaced whenever latestSequence moves, waking everyone waiting for new events
+    private volatile CompletableFuture<Void> published = new CompletableFuture<>();
+    private Thread relay;
+
+    public CustomerOutbox(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.retention = retention;
+    }
+
+    /**
+     * Appends an event in the current transaction, and has the relay publish it once the transaction commits.
+     *
+     * @param customer the customer after the change, or {@code null} for a deletion.
+     */
+    public void append(CustomerEvent.Type type, int customerId, Customer customer) {
+        jdbcTemplate.update(APPEND_EVENT, type.name(), customerId,
+                customer == null ? null : customer.getName(),
+                customer == null ? null : customer.getEmail(),
+                customer == null ? null : customer.getAge(),
+                customer == null ? null : customer.getVersion());
+        requestRelay();
+    }
+
+    /**
+     * Appends one event per customer with a single batch, in the current transaction.
+     */
+    public void appendAll(CustomerEvent.Type type, List<Customer> customers) {
+        if (customers.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(APPEND_EVENT, customers, customers.size(), (ps, customer) -> {
+            ps.setString(1, type.name());
+            ps.setInt(2, customer.getId());
+            ps.setString(3, customer.getName());
+            ps.setString(4, customer.getEmail());
+            ps.setInt(5, customer.getAge());
+            ps.setInt(6, customer.getVersion());
+        });
+        requestRelay();
+    }
+
+    /**
+     * Has the relay publish events appended without this class, once the current transaction, if any, commits.
+     */
+    public void requestRelay() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    relayRequests.release();
+                }
+            });
+        } else {
+            relayRequests.release();
+        }
+    }
+
+    /**
+     * @return up to {@code limit} published events with a sequence number above {@code after}, in order.
+     */
+    public List<CustomerEvent> selectEventsAfter(long after, int limit) {
+        return jdbcTemplate.query(SELECT_EVENTS_AFTER, EVENT_MAPPER, after, limit);
+    }
+
+    /**
+     * @return the sequence number of the latest published event, as last seen by the relay.
+     */
+    public long latestSequence() {
+        return latestSequence;
+    }
+
+    /**
+     * @return the sequence number up to which events have been pruned; reading from below it would miss events.
+     */
+    public long prunedThrough() {
+        return prunedThrough;
+    }
+
+    /**
+     * Completes with {@code true} as soon as an event after {@code after} is published, or with {@code false}
+     * once the timeout passes without one. No thread is held while waiting.
+     */
+    public CompletableFuture<Boolean> awaitEventsAfter(long after, Duration timeout) {
+        CompletableFuture<Boolean> arrived = new CompletableFuture<>();
+        awaitEventsAfter(after, arrived);
+        return arrived.completeOnTimeout(false, timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void awaitEventsAfter(long after, CompletableFuture<Boolean> arrived) {
+        //Take the future before checking, so a publish between the check and the wait still wakes us
+        CompletableFuture<Void> next = published;
+        if (latestSequence > after) {
+            arrived.complete(true);
+        } else if (!arrived.isDone()) {
+            next.thenRun(() -> awaitEventsAfter(after, arrived));
+        }
+    }
+
+    /**
+     * Moves committed events to {@code customer_event}, unless another instance is relaying, and wakes the
+     * waiters if the latest sequence number moved.
+     *
+     * @return the number of events this call moved.
+     */
+    public int relay() {
+        int moved = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> {
+                Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, RELAY_LOCK_KEY);
+                return Boolean.TRUE.equals(locked) ? jdbcTemplate.update(RELAY_EVENTS, RELAY_BATCH_SIZE) : 0;
+            });
+            moved += batch;
+        } while (batch == RELAY_BATCH_SIZE);
+        refreshLatestSequence();
+        return moved;
+    }
+
+    private void refreshLatestSequence() {
+        Long latest = jdbcTemplate.queryForObject(SELECT_LATEST_SEQUENCE, Long.class);
+        if (latest != null && latest > latestSequence) {
+            latestSequence = latest;
+            CompletableFuture<Void> waiting = published;
+            published = new CompletableFuture<>();
+            waiting.complete(null);
+        }
+    }
+
+    /**
+     * Deletes the events older than the retention period.
+     *
+     * @return the number of events deleted.
+     */
+    public int prune() {
+        int pruned = jdbcTemplate.update("DELETE FROM customer_event WHERE occurred_at < ?",
+                Timestamp.from(Instant.now().minus(retention)));
+        refreshPrunedThrough();
+        return pruned;
+    }
+
+    private void refreshPrunedThrough() {
+        Long through = jdbcTemplate.queryForObject(SELECT_PRUNED_THROUGH, Long.class);
+        prunedThrough = through == null ? 0 : through;
+    }
+
+    /**
+     * Relays right away, then after every commit that appended an event and at least every {@code interval},
+     * on a background thread until closed. The cursors are read before this returns, so readers never see
+     * the stream start over from zero.
+     */
+    public synchronized void startRelay(Duration interval) {
+        if (relay == null) {
+            refreshLatestSequence();
+            refreshPrunedThrough();
+            relay = Thread.ofPlatform().name("customer-event-relay").daemon().start(() -> relayLoop(interval));
+        }
+    }
+
+    private void relayLoop(Duration interval) {
+        long nextPrune = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (System.nanoTime() - nextPrune >= 0) {
+                    prune();
+                    nextPrune = System.nanoTime() + PRUNE_INTERVAL.toNanos();
+                }
+                relay();
+                relayRequests.tryAcquire(interval.toMillis(), TimeUnit.MILLISECONDS);
+                relayRequests.drainPermits();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Could not relay customer events; retrying in {}", interval, e);
+                try {
+                    Thread.sleep(interval);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (relay != null) {
+            relay.interrupt();
+        }
+    }
+}
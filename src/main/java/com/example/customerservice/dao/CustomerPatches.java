@@ -0,0 +1,46 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Turns a {@link CustomerPatchRequest} into the columns an {@code UPDATE} has to set, or applies it to a
+ * customer held in memory.
+ */
+final class CustomerPatches {
+
+    private CustomerPatches() {
+    }
+
+    /**
+     * @return the value of every column the patch changes, keyed by column name, in table order.
+     */
+    static Map<String, Object> changedColumns(CustomerPatchRequest patch) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (patch.name() != null) {
+            columns.put("name", patch.name());
+        }
+        if (patch.email() != null) {
+            columns.put("email", patch.email());
+        }
+        if (patch.age() != null) {
+            columns.put("age", patch.age());
+        }
+        return columns;
+    }
+
+    /**
+     * @return a new customer with the patch applied to {@code current}, at the next version.
+     */
+    static Customer apply(Customer current, CustomerPatchRequest patch) {
+        return new Customer(
+                current.getId(),
+                patch.name() != null ? patch.name() : current.getName(),
+                patch.email() != null ? patch.email() : current.getEmail(),
+                patch.age() != null ? patch.age() : current.getAge(),
+                current.getVersion() + 1);
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerEvent;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import io.r2dbc.spi.Readable;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.lang.Nullable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The {@code CustomerR2dbcDataAccessService} class provides the R2DBC-based implementation
+ * of the {@link ReactiveCustomerDao} interface. It uses {@code DatabaseClient} from Spring Framework
+ * to talk to the database without blocking a thread while a query runs.
+ * <p>
+ * When change events are recorded, every write appends its event to the outbox in the same statement with a
+ * data-modifying CTE, so the event commits exactly when the change does, as it would in a JDBC transaction.
+ */
+@Repository("r2dbc")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CustomerR2dbcDataAccessService implements ReactiveCustomerDao {
+
+    /**
+     * Number of rows fetched per round trip while streaming, which bounds the rows buffered ahead of the subscriber.
+     */
+    static final int STREAM_FETCH_SIZE = 1000;
+
+    private final DatabaseClient databaseClient;
+
+    private final ReactiveCustomerIdAllocator customerIdAllocator;
+
+    private final CustomerOutbox outbox;
+
+    /**
+     * @param outbox the outbox to record change events in, or {@code null} if events are not recorded.
+     */
+    public CustomerR2dbcDataAccessService(DatabaseClient databaseClient, @Nullable CustomerOutbox outbox) {
+        this.databaseClient = databaseClient;
+        this.customerIdAllocator = new ReactiveCustomerIdAllocator(databaseClient);
+        this.outbox = outbox;
+    }
+
+    /**
+     * Streams all customers in id order through a cursor of {@link #STREAM_FETCH_SIZE} rows.
+     *
+     * @return a {@code Flux} of every customer.
+     */
+    @Override
+    public Flux<Customer> selectAllCustomers() {
+        String getAllCustomerQuery = "SELECT id, name, email, age, version FROM customer ORDER BY id";
+        return databaseClient.sql(getAllCustomerQuery)
+                .filter(statement -> statement.fetchSize(STREAM_FETCH_SIZE))
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    /**
+     * Retrieves up to {@code limit} customers with an id greater than {@code afterId}, in id order.
+     *
+     * @param afterId the last id of the previous page, or {@code null} for the first page.
+     * @param limit   the maximum number of customers to return.
+     * @return a {@code Flux} of the customers on the page.
+     */
+    @Override
+    public Flux<Customer> selectCustomersPage(Integer afterId, int limit) {
+        String getCustomersPageQuery = "SELECT id, name, email, age, version FROM customer WHERE id > :afterId ORDER BY id LIMIT :limit";
+        return databaseClient.sql(getCustomersPageQuery)
+                .bind("afterId", afterId == null ? 0 : afterId)
+                .bind("limit", limit)
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    /**
+     * Retrieves a customer from the database by their ID.
+     *
+     * @param id the ID of the customer to retrieve.
+     * @return a {@code Mono} with the customer, or empty if not found.
+     */
+    @Override
+    public Mono<Customer> selectCustomerById(Integer id) {
+        String getCustomerByIdQuery = "SELECT id, name, email, age, version FROM customer WHERE id = :id";
+        return databaseClient.sql(getCustomerByIdQuery)
+                .bind("id", id)
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .one();
+    }
+
+    /**
+     * Retrieves many customers with a single query that passes the ids as one array parameter.
+     */
+    @Override
+    public Flux<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        String customersByIdsQuery = "SELECT id, name, email, age, version FROM customer WHERE id = ANY(:ids) ORDER BY id";
+        return databaseClient.sql(customersByIdsQuery)
+                .bind("ids", ids.toArray(Integer[]::new))
+                .map(CustomerR2dbcDataAccessService::toCustomer)
+                .all();
+    }
+
+    /**
+     * Searches with the same statement as the JDBC DAO, binding its arguments by position.
+     *
+     * @param criteria the filters to apply.
+     * @param afterId  the last id of the previous page, or {@code null} for the first page.
+     * @param limit    the maximum number of customers to return.
+     * @return a {@code Flux} of the matching customers on the page.
+     */
+    @Override
+    public Flux<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        CustomerSearchQuery searchQuery = CustomerSearchQuery.of(criteria, afterId, limit, n -> "$" + n);
+        DatabaseClient.GenericExecuteSpec statement = databaseClient.sql(searchQuery.sql());
+        List<Object> args = searchQuery.args();
+        for (int i = 0; i < args.size(); i++) {
+            statement = statement.bind(i, args.get(i));
+        }
+        return statement.map(CustomerR2dbcDataAccessService::toCustomer).all();
+    }
+
+    /**
+     * Adds a new customer to the database unless the email is already taken, with a single statement.
+     *
+     * @param customer the {@code Customer} object containing the details of the customer to add.
+     * @return a {@code Mono} with the generated id, or empty if the email was already taken.
+     */
+    @Override
+    public Mono<Integer> addCustomer(Customer customer) {
+        String addCustomerQuery = recordingEvent(CustomerEvent.Type.CREATED, """
+                INSERT INTO customer (id, name, email, age) VALUES (:id, :name, :email, :age)
+                ON CONFLICT ON CONSTRAINT unique_email DO NOTHING
+                RETURNING id, name, email, age, version""");
+        return customerIdAllocator.nextId()
+                .flatMap(id -> databaseClient.sql(addCustomerQuery)
+                        .bind("id", id)
+                        .bind("name", customer.getName())
+                        .bind("email", customer.getEmail())
+                        .bind("age", customer.getAge())
+                        .map(row -> row.get("id", Long.class).intValue())
+                        .one())
+                .doOnNext(id -> requestRelay());
+    }
+
+    /**
+     * Checks if a customer with the specified email exists in the database.
+     *
+     * @param email the email address to check.
+     * @return a {@code Mono} emitting {@code true} if a customer with the email exists.
+     */
+    @Override
+    public Mono<Boolean> personWithEmailExists(String email) {
+        String emailExistsQuery = "SELECT EXISTS(SELECT 1 FROM customer WHERE email = :email)";
+        return databaseClient.sql(emailExistsQuery)
+                .bind("email", email)
+                .map(row -> row.get(0, Boolean.class))
+                .one();
+    }
+
+    /**
+     * Deletes a customer from the database by their ID.
+     *
+     * @param id the ID of the customer to delete.
+     * @return a {@code Mono} emitting {@code true} if a customer was deleted.
+     */
+    @Override
+    public Mono<Boolean> deleteCustomerById(Integer id) {
+        //Leaves a tombstone in the same statement, as the JDBC DAO does, so delta syncs learn of the deletion
+        String deleteCustomerByIdQuery = """
+                WITH deleted AS (DELETE FROM customer WHERE id = :id RETURNING id)%s
+                INSERT INTO customer_tombstone (customer_id, deleted_at) SELECT id, now() FROM deleted
+                ON CONFLICT (customer_id) DO UPDATE SET deleted_at = excluded.deleted_at""".formatted(outbox == null ? "" : """
+                , outboxed AS (
+                    INSERT INTO customer_outbox (type, customer_id) SELECT 'DELETED', id FROM deleted
+                )""");
+        return databaseClient.sql(deleteCustomerByIdQuery)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0)
+                .doOnNext(deleted -> {
+                    if (deleted) {
+                        requestRelay();
+                    }
+                });
+    }
+
+    /**
+     * Updates the details of an existing customer in the database with one conditional statement, which
+     * only matches the row while it is still at the customer's version.
+     *
+     * @param customer the {@code Customer} object containing the updated details and the version they are based on.
+     * @return a {@code Mono} with the customer carrying its new version, or empty if no customer has its id and version.
+     */
+    @Override
+    public Mono<Customer> updateCustomer(Customer customer) {
+        String updateCustomerQuery = recordingEvent(CustomerEvent.Type.UPDATED, """
+                UPDATE customer SET name = :name, email = :email, age = :age, version = version + 1, updated_at = now()
+                WHERE id = :id AND version = :version
+                RETURNING id, name, email, age, version""");
+        return databaseClient.sql(updateCustomerQuery)
+                .bind("name", customer.getName())
+                .bind("email", customer.getEmail())
+                .bind("age", customer.getAge())
+                .bind("id", customer.getId())
+                .bind("version", customer.getVersion())
+                .map(row -> row.get("version", Integer.class))
+                .one()
+                .map(version -> {
+                    customer.setVersion(version);
+                    requestRelay();
+                    return customer;
+                });
+    }
+
+    /**
+     * Patches a customer with one {@code UPDATE} that sets only the changed columns and returns the
+     * updated row, so no preliminary read is needed.
+     */
+    @Override
+    public Mono<Customer> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        Map<String, Object> columns = CustomerPatches.changedColumns(patch);
+        StringBuilder patchQuery = new StringBuilder("UPDATE customer SET ");
+        columns.keySet().forEach(column -> patchQuery.append(column).append(" = :").append(column).append(", "));
+        patchQuery.append("version = version + 1, updated_at = now() WHERE id = :id");
+        if (expectedVersion != null) {
+            patchQuery.append(" AND version = :version");
+        }
+        patchQuery.append(" RETURNING id, name, email, age, version");
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(recordingEvent(CustomerEvent.Type.UPDATED, patchQuery.toString()))
+                .bind("id", id);
+        for (Map.Entry<String, Object> column : columns.entrySet()) {
+            spec = spec.bind(column.getKey(), column.getValue());
+        }
+        if (expectedVersion != null) {
+            spec = spec.bind("version", expectedVersion);
+        }
+        return spec.map(CustomerR2dbcDataAccessService::toCustomer).one()
+                .doOnNext(patched -> requestRelay());
+    }
+
+    /**
+     * Wraps a statement returning the changed customers so that, when events are recorded, it appends an
+     * event for each of them too. Postgres runs every data-modifying CTE, so the statement still returns
+     * the same rows.
+     *
+     * @param change a write ending in {@code RETURNING id, name, email, age, version}.
+     */
+    private String recordingEvent(CustomerEvent.Type type, String change) {
+        if (outbox == null) {
+            return change;
+        }
+        return """
+                WITH changed AS (%s), outboxed AS (
+                    INSERT INTO customer_outbox (type, customer_id, name, email, age, version)
+                    SELECT '%s', id, name, email, age, version FROM changed
+                )
+                SELECT id, name, email, age, version FROM changed""".formatted(change, type.name());
+    }
+
+    /**
+     * Has the outbox publish the event a statement appended. The statement has already committed, as each
+     * one runs in a transaction of its own.
+     */
+    private void requestRelay() {
+        if (outbox != null) {
+            outbox.requestRelay();
+        }
+    }
+
+    private static Customer toCustomer(Readable row) {
+        return new Customer(
+                row.get("id", Long.class).intValue(),
+                row.get("name", String.class),
+                row.get("email", String.class),
+                row.get("age", Integer.class),
+                row.get("version", Integer.class));
+    }
+}
@@ -1,10 +1,47 @@
 package com.example.customerservice.dao;
 
 import com.example.customerservice.model.Customer;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
-public interface CustomerRepository extends JpaRepository<Customer, Integer> {
+
+public interface CustomerRepository extends JpaRepository<Customer, Integer>, CustomerWriteRepository,
+        CustomerSearchRepository, CustomerChangesRepository {
 
     boolean existsByEmail(String email);
+
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+
+    /**
+     * Finds many customers with one statement, passing the ids as a single array parameter rather than
+     * one bind parameter per id.
+     */
+    @Query(value = "SELECT * FROM customer WHERE id = ANY(:ids) ORDER BY id", nativeQuery = true)
+    List<Customer> findAllByIdArray(@Param("ids") Integer[] ids);
+
+    @Query("select c.email from Customer c where c.email in :emails")
+    Set<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    /**
+     * Inserts a customer unless the email is already taken, in a single statement.
+     *
+     * @return the generated id, or empty if the email was already taken.
+     */
+    @Transactional
+    @Query(value = """
+            INSERT INTO customer (id, name, email, age) VALUES (:id, :name, :email, :age)
+            ON CONFLICT ON CONSTRAINT unique_email DO NOTHING
+            RETURNING CAST(id AS integer)""", nativeQuery = true)
+    Optional<Integer> insertIfEmailAvailable(@Param("id") Integer id,
+                                             @Param("name") String name,
+                                             @Param("email") String email,
+                                             @Param("age") Integer age);
 }
@@ -0,0 +1,12 @@
+package com.example.customerservice.dao;
+
+/**
+ * Receives a customer as its column values rather than as a {@code Customer}, with the name and email as the
+ * UTF-8 bytes they are stored as, so a row can be written out without building an object or decoding a string.
+ * The arrays belong to the caller only for the duration of the call.
+ */
+@FunctionalInterface
+public interface CustomerRowConsumer {
+
+    void accept(int id, byte[] name, byte[] email, int age);
+}
@@ -0,0 +1,57 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.CustomerSearchCriteria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * SQL of a customer search, shared by the JDBC, JPA and R2DBC DAOs. Each predicate is written against the
+ * exact expression one of the indexes in {@code V5__customer_search_indexes.sql} is built on, so every
+ * combination of filters can be answered from an index.
+ *
+ * @param sql  the statement, with one bind marker per argument.
+ * @param args the arguments, in bind marker order.
+ */
+record CustomerSearchQuery(String sql, List<Object> args) {
+
+    /**
+     * @param marker renders the bind marker for the n-th argument, counting from 1, e.g. {@code n -> "?"} for JDBC.
+     */
+    static CustomerSearchQuery of(CustomerSearchCriteria criteria, Integer afterId, int limit, IntFunction<String> marker) {
+        List<Object> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id, name, email, age, version FROM customer WHERE id > ");
+        sql.append(bind(args, afterId == null ? 0 : afterId, marker));
+        if (criteria.name() != null) {
+            String text = escapeLike(criteria.name().toLowerCase(Locale.ROOT));
+            String pattern = criteria.nameMatch() == CustomerSearchCriteria.NameMatch.PREFIX ? text + "%" : "%" + text + "%";
+            sql.append(" AND lower(name) LIKE ").append(bind(args, pattern, marker));
+        }
+        if (criteria.emailDomain() != null) {
+            sql.append(" AND lower(split_part(email, '@', 2)) = ")
+                    .append(bind(args, criteria.emailDomain().toLowerCase(Locale.ROOT), marker));
+        }
+        if (criteria.minAge() != null) {
+            sql.append(" AND age >= ").append(bind(args, criteria.minAge(), marker));
+        }
+        if (criteria.maxAge() != null) {
+            sql.append(" AND age <= ").append(bind(args, criteria.maxAge(), marker));
+        }
+        sql.append(" ORDER BY id LIMIT ").append(bind(args, limit, marker));
+        return new CustomerSearchQuery(sql.toString(), List.copyOf(args));
+    }
+
+    private static String bind(List<Object> args, Object value, IntFunction<String> marker) {
+        args.add(value);
+        return marker.apply(args.size());
+    }
+
+    /**
+     * Escapes the LIKE wildcards, so they are matched literally; backslash is PostgreSQL's default LIKE escape.
+     */
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerSearchCriteria;
+
+import java.util.List;
+
+/**
+ * Repository fragment for searching customers with a statement built from the filters that are set,
+ * which a derived or {@code @Query} method cannot express.
+ */
+public interface CustomerSearchRepository {
+
+    /**
+     * @param afterId the last id of the previous page, or {@code null} for the first page.
+     * @return at most {@code limit} matching customers with an id greater than {@code afterId}, ordered by id.
+     */
+    List<Customer> search(CustomerSearchCriteria criteria, Integer afterId, int limit);
+}
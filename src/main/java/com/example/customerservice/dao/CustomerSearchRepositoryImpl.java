@@ -0,0 +1,32 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.List;
+
+/**
+ * Searches with a native query, so the predicates use the same {@code lower(...)} and {@code split_part(...)}
+ * expressions the search indexes are built on.
+ */
+class CustomerSearchRepositoryImpl implements CustomerSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Customer> search(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        CustomerSearchQuery searchQuery = CustomerSearchQuery.of(criteria, afterId, limit, n -> "?" + n);
+        Query query = entityManager.createNativeQuery(searchQuery.sql(), Customer.class);
+        List<Object> args = searchQuery.args();
+        for (int i = 0; i < args.size(); i++) {
+            query.setParameter(i + 1, args.get(i));
+        }
+        @SuppressWarnings("unchecked")
+        List<Customer> customers = query.getResultList();
+        return customers;
+    }
+}
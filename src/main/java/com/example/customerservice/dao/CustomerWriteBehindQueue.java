@@ -0,0 +1,198 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.exception.ServiceOverloadedException;
+import com.example.customerservice.exception.ServiceUnavailableException;
+import com.example.customerservice.model.Customer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * Buffers registrations in a bounded queue and adds them in batches from a single writer thread, so a burst of
+ * registrations costs one transaction, and one commit, per batch instead of one per customer.
+ * <p>
+ * The writer takes the oldest registration and keeps collecting until the batch holds {@code maxBatchSize}
+ * registrations or the oldest one has waited {@code maxLatency}, whichever comes first. A quiet period therefore
+ * adds at most {@code maxLatency} to a registration, while a busy one fills batches without waiting at all.
+ * Each registration's future completes once its batch has committed.
+ */
+public class CustomerWriteBehindQueue implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CustomerWriteBehindQueue.class);
+
+    //How long an idle writer waits for a registration before checking whether it was closed
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final CustomerDao customerDao;
+    private final BlockingQueue<Registration> queue;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long maxLatencyNanos;
+    private final IntConsumer batchSizes;
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong customersWritten = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * @param customerDao  the DAO the batches are added through.
+     * @param capacity     number of registrations buffered before further ones are refused.
+     * @param maxBatchSize number of registrations added in one batch at most.
+     * @param maxLatency   how long a registration waits for its batch to fill before the batch is written anyway.
+     * @param batchSizes   told the size of every batch written, e.g. to record it as a metric.
+     */
+    public CustomerWriteBehindQueue(CustomerDao customerDao, int capacity, int maxBatchSize, Duration maxLatency,
+                                    IntConsumer batchSizes) {
+        this.customerDao = customerDao;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = maxLatency.toNanos();
+        this.batchSizes = batchSizes;
+        this.writer = Thread.ofPlatform().name("customer-write-behind").daemon().unstarted(this::writeBatches);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the customer for the next batch.
+     *
+     * @return completes with the generated id once the customer is committed, or empty if the email was already
+     * taken; completes exceptionally if the batch could not be written.
+     * @throws ServiceOverloadedException if the queue is full.
+     */
+    public CompletableFuture<Optional<Integer>> submit(Customer customer) {
+        if (closed) {
+            throw new ServiceUnavailableException("Registrations are no longer accepted.");
+        }
+        Registration registration = new Registration(customer, System.nanoTime(), new CompletableFuture<>());
+        if (!queue.offer(registration)) {
+            throw new ServiceOverloadedException("Too many registrations are waiting to be written.");
+        }
+        //Closed while offering, so the writer and close() may both be done with the queue; whoever removes the
+        //registration completes it
+        if (closed && queue.remove(registration)) {
+            registration.result().completeExceptionally(
+                    new ServiceUnavailableException("Registrations are no longer accepted."));
+        }
+        return registration.result();
+    }
+
+    /**
+     * Number of registrations waiting for a batch.
+     */
+    public int depth() {
+        return queue.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long batchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public long customersWritten() {
+        return customersWritten.get();
+    }
+
+    /**
+     * Stops accepting registrations and waits for the writer to add those already queued.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(Duration.ofSeconds(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Registration registration;
+        while ((registration = queue.poll()) != null) {
+            registration.result().completeExceptionally(
+                    new ServiceUnavailableException("Registrations are no longer accepted."));
+        }
+    }
+
+    private void writeBatches() {
+        List<Registration> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                //Write what was collected, then stop
+                closed = true;
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    //Collects registrations until the batch is full or its oldest registration has waited maxLatency
+    private void collectBatch(List<Registration> batch) throws InterruptedException {
+        Registration oldest = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (oldest == null) {
+            return;
+        }
+        batch.add(oldest);
+        long deadline = oldest.queuedAt() + maxLatencyNanos;
+        while (batch.size() < maxBatchSize) {
+            queue.drainTo(batch, maxBatchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxBatchSize || remaining <= 0 || closed) {
+                return;
+            }
+            Registration next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<Registration> batch) {
+        List<Customer> customers = batch.stream().map(Registration::customer).toList();
+        List<Integer> ids = null;
+        try {
+            ids = customerDao.addCustomers(customers);
+        } catch (RuntimeException e) {
+            log.warn("Adding a batch of {} customers failed, adding them one at a time", batch.size(), e);
+        }
+        batchesWritten.incrementAndGet();
+        customersWritten.addAndGet(batch.size());
+        batchSizes.accept(batch.size());
+
+        if (ids == null) {
+            //An implementation that fails a whole batch on one taken email still adds the others one at a time
+            batch.forEach(this::writeAlone);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).result().complete(Optional.ofNullable(ids.get(i)));
+        }
+    }
+
+    private void writeAlone(Registration registration) {
+        try {
+            registration.result().complete(customerDao.addCustomer(registration.customer()));
+        } catch (RuntimeException e) {
+            registration.result().completeExceptionally(e);
+        }
+    }
+
+    private record Registration(Customer customer, long queuedAt, CompletableFuture<Optional<Integer>> result) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerUpdate;
+
+import java.util.Optional;
+
+/**
+ * Repository fragment for writes that return the customer as they found it, and for patching a customer with
+ * a statement built from the fields the patch sets, neither of which a derived or {@code @Query} method can
+ * express.
+ */
+public interface CustomerWriteRepository {
+
+    /**
+     * Updates a customer in a single statement, provided it is still at {@code version}, and moves it to the next version.
+     *
+     * @return the customer as the update found it, or empty if no customer has the id and version.
+     */
+    Optional<Customer> updateIfVersion(Integer id, int version, String name, String email, Integer age);
+
+    /**
+     * Deletes a customer and leaves a tombstone for delta syncs, in a single statement.
+     *
+     * @return the deleted customer, or empty if no customer has the id.
+     */
+    Optional<Customer> deleteLeavingTombstone(Integer id);
+
+    /**
+     * @param expectedVersion the version the patch is based on, or {@code null} to patch whatever version is current.
+     * @return the customer before and after the patch, or empty if no customer has the id, or the expected version.
+     */
+    Optional<CustomerUpdate> patch(Integer id, CustomerPatchRequest patch, Integer expectedVersion);
+}
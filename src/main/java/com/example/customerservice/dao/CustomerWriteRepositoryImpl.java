@@ -0,0 +1,91 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerUpdate;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Writes with native statements that return rows, since JPQL has no way to return the row an update or delete
+ * found or left. Rows are read as scalars rather than entities, so the customer as it was before a write
+ * never lands in the persistence context; updates are native anyway to stamp {@code updated_at}, which the
+ * entity does not map.
+ */
+class CustomerWriteRepositoryImpl implements CustomerWriteRepository {
+
+    private static final String UPDATE_IF_VERSION = """
+            UPDATE customer c SET name = ?1, email = ?2, age = ?3, version = c.version + 1, updated_at = now()
+            FROM (SELECT id, name, email, age, version FROM customer WHERE id = ?4 AND version = ?5 FOR UPDATE) old
+            WHERE c.id = old.id
+            RETURNING old.id, old.name, old.email, old.age, old.version""";
+
+    private static final String DELETE_LEAVING_TOMBSTONE = """
+            WITH deleted AS (DELETE FROM customer WHERE id = ?1 RETURNING id, name, email, age, version),
+            tombstone AS (
+                INSERT INTO customer_tombstone (customer_id, deleted_at) SELECT id, now() FROM deleted
+                ON CONFLICT (customer_id) DO UPDATE SET deleted_at = excluded.deleted_at
+            )
+            SELECT id, name, email, age, version FROM deleted""";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public Optional<Customer> updateIfVersion(Integer id, int version, String name, String email, Integer age) {
+        return firstRow(UPDATE_IF_VERSION, Arrays.asList(name, email, age, id, version)).map(row -> customerOf(row, 0));
+    }
+
+    @Override
+    @Transactional
+    public Optional<Customer> deleteLeavingTombstone(Integer id) {
+        return firstRow(DELETE_LEAVING_TOMBSTONE, List.of(id)).map(row -> customerOf(row, 0));
+    }
+
+    @Override
+    @Transactional
+    public Optional<CustomerUpdate> patch(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        Map<String, Object> columns = CustomerPatches.changedColumns(patch);
+        StringBuilder patchQuery = new StringBuilder("UPDATE customer c SET ");
+        List<Object> args = new ArrayList<>(columns.size() + 2);
+        columns.forEach((column, value) -> {
+            args.add(value);
+            patchQuery.append(column).append(" = ?").append(args.size()).append(", ");
+        });
+        args.add(id);
+        patchQuery.append("version = c.version + 1, updated_at = now() ")
+                .append("FROM (SELECT id, name, email, age, version FROM customer WHERE id = ?").append(args.size());
+        if (expectedVersion != null) {
+            args.add(expectedVersion);
+            patchQuery.append(" AND version = ?").append(args.size());
+        }
+        patchQuery.append(" FOR UPDATE) old WHERE c.id = old.id RETURNING old.id, old.name, old.email, old.age, ")
+                .append("old.version, c.id, c.name, c.email, c.age, c.version");
+        return firstRow(patchQuery.toString(), args).map(row -> new CustomerUpdate(customerOf(row, 0), customerOf(row, 5)));
+    }
+
+    private Optional<Object[]> firstRow(String sql, List<Object> args) {
+        Query query = entityManager.createNativeQuery(sql);
+        for (int i = 0; i < args.size(); i++) {
+            query.setParameter(i + 1, args.get(i));
+        }
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        return rows.stream().findFirst();
+    }
+
+    //The id column is a bigint, so numbers are narrowed from whatever type the driver returns
+    private static Customer customerOf(Object[] row, int offset) {
+        return new Customer(((Number) row[offset]).intValue(), (String) row[offset + 1], (String) row[offset + 2],
+                ((Number) row[offset + 3]).intValue(), ((Number) row[offset + 4]).intValue());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.customerservice.dao;
+
+/**
+ * Tells {@link ReplicaRoutingDataSource} whether the connections the current thread asks for may come from a
+ * replica. Connections come from the primary unless a {@link #readOnly()} scope is open and no
+ * {@link #requirePrimary()} scope is.
+ * <p>
+ * Scopes are opened in try-with-resources blocks and restore the previous state when closed, so they nest.
+ */
+public final class DataSourceRoute {
+
+    private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private DataSourceRoute() {
+    }
+
+    /**
+     * Lets the connections obtained until the scope is closed come from a replica.
+     */
+    public static Scope readOnly() {
+        return open(READ_ONLY);
+    }
+
+    /**
+     * Keeps every connection obtained until the scope is closed on the primary, even inside a {@link #readOnly()}
+     * scope. Used for callers that must see their own recent writes.
+     */
+    public static Scope requirePrimary() {
+        return open(PRIMARY_REQUIRED);
+    }
+
+    /**
+     * Whether a {@link #requirePrimary()} scope is open, so that the caller must not be answered from anything
+     * that may predate its own writes.
+     */
+    public static boolean primaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+
+    public static boolean replicaAllowed() {
+        return READ_ONLY.get() != null && !primaryRequired();
+    }
+
+    private static Scope open(ThreadLocal<Boolean> flag) {
+        Boolean previous = flag.get();
+        flag.set(Boolean.TRUE);
+        return () -> {
+            if (previous == null) {
+                flag.remove();
+            } else {
+                flag.set(previous);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
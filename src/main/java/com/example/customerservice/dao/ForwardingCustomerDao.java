@@ -0,0 +1,107 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Base class for {@link CustomerDao} decorators. Every call is passed to the wrapped DAO, so a
+ * decorator only overrides the methods it adds behaviour to.
+ */
+public abstract class ForwardingCustomerDao implements CustomerDao {
+
+    protected final CustomerDao delegate;
+
+    protected ForwardingCustomerDao(CustomerDao delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return delegate.selectAllCustomers();
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(Integer afterId, int limit) {
+        return delegate.selectCustomersPage(afterId, limit);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        return delegate.searchCustomers(criteria, afterId, limit);
+    }
+
+    @Override
+    public List<CustomerChange> selectCustomerChanges(Instant since, Integer afterId, int limit) {
+        return delegate.selectCustomerChanges(since, afterId, limit);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        delegate.streamAllCustomers(consumer);
+    }
+
+    @Override
+    public void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer) {
+        delegate.streamCustomerRowsPage(afterId, limit, consumer);
+    }
+
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        delegate.streamAllEmails(consumer);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return delegate.selectCustomerById(id);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return delegate.selectCustomersByIds(ids);
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        return delegate.addCustomer(customer);
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        return delegate.addCustomers(customers);
+    }
+
+    @Override
+    public boolean personWithEmailExists(String email) {
+        return delegate.personWithEmailExists(email);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return delegate.selectExistingEmails(emails);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return delegate.deleteCustomerById(id);
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        return delegate.updateCustomer(customer);
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        return delegate.patchCustomer(id, patch, expectedVersion);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Records how long every call to the wrapped DAO takes and how many rows it reads or writes.
+ * <p>
+ * Calls are timed in {@code customer.dao.calls}, tagged with the implementation, the method and the outcome,
+ * so the timer's count doubles as the call count and {@code outcome=error} as the error count. Rows go to the
+ * {@code customer.dao.rows} summary. Percentile histograms are switched on through
+ * {@code management.metrics.distribution}.
+ */
+public class MeteredCustomerDao extends ForwardingCustomerDao {
+
+    public static final String CALLS = "customer.dao.calls";
+    public static final String ROWS = "customer.dao.rows";
+
+    private final MeterRegistry registry;
+    private final String implementation;
+    private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> rowSummaries = new ConcurrentHashMap<>();
+
+    public MeteredCustomerDao(CustomerDao delegate, MeterRegistry registry, String implementation) {
+        super(delegate);
+        this.registry = registry;
+        this.implementation = implementation;
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return record("selectAllCustomers", delegate::selectAllCustomers, List::size);
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(Integer afterId, int limit) {
+        return record("selectCustomersPage", () -> delegate.selectCustomersPage(afterId, limit), List::size);
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        return record("searchCustomers", () -> delegate.searchCustomers(criteria, afterId, limit), List::size);
+    }
+
+    @Override
+    public List<CustomerChange> selectCustomerChanges(Instant since, Integer afterId, int limit) {
+        return record("selectCustomerChanges", () -> delegate.selectCustomerChanges(since, afterId, limit), List::size);
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        recordStream("streamAllCustomers", consumer, delegate::streamAllCustomers);
+    }
+
+    @Override
+    public void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer) {
+        AtomicLong rows = new AtomicLong();
+        record("streamCustomerRowsPage", () -> {
+            delegate.streamCustomerRowsPage(afterId, limit, (id, name, email, age) -> {
+                rows.incrementAndGet();
+                consumer.accept(id, name, email, age);
+            });
+            return rows;
+        }, AtomicLong::get);
+    }
+
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        recordStream("streamAllEmails", consumer, delegate::streamAllEmails);
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return record("selectCustomerById", () -> delegate.selectCustomerById(id), customer -> customer.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return record("selectCustomersByIds", () -> delegate.selectCustomersByIds(ids), List::size);
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        return record("addCustomer", () -> delegate.addCustomer(customer), id -> id.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        return record("addCustomers", () -> delegate.addCustomers(customers),
+                ids -> ids.stream().filter(id -> id != null).count());
+    }
+
+    @Override
+    public boolean personWithEmailExists(String email) {
+        return record("personWithEmailExists", () -> delegate.personWithEmailExists(email), null);
+    }
+
+    @Override
+    public Set<String> selectExistingEmails(Collection<String> emails) {
+        return record("selectExistingEmails", () -> delegate.selectExistingEmails(emails), Set::size);
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return record("deleteCustomerById", () -> delegate.deleteCustomerById(id), deleted -> deleted.isPresent() ? 1 : 0);
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        return record("updateCustomer", () -> delegate.updateCustomer(customer), null);
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        return record("patchCustomer", () -> delegate.patchCustomer(id, patch, expectedVersion),
+                customer -> customer.isPresent() ? 1 : 0);
+    }
+
+    /**
+     * @param rows number of rows in the result, or {@code null} for calls whose result is not a row count.
+     */
+    private <T> T record(String method, Supplier<T> call, ToLongFunction<T> rows) {
+        Timer.Sample sample = Timer.start(registry);
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            sample.stop(errorTimer(method, e));
+            throw e;
+        }
+        sample.stop(successTimers.computeIfAbsent(method, name -> timer(name, "success", "none")));
+        if (rows != null) {
+            rowSummary(method).record(rows.applyAsLong(result));
+        }
+        return result;
+    }
+
+    private <T> void recordStream(String method, Consumer<T> consumer, Consumer<Consumer<T>> stream) {
+        AtomicLong rows = new AtomicLong();
+        record(method, () -> {
+            stream.accept(row -> {
+                rows.incrementAndGet();
+                consumer.accept(row);
+            });
+            return rows;
+        }, AtomicLong::get);
+    }
+
+    private Timer errorTimer(String method, RuntimeException e) {
+        return timer(method, "error", e.getClass().getSimpleName());
+    }
+
+    private Timer timer(String method, String outcome, String exception) {
+        return Timer.builder(CALLS)
+                .description("Calls to the customer DAO")
+                .tags(tags(method).and("outcome", outcome, "exception", exception))
+                .register(registry);
+    }
+
+    private DistributionSummary rowSummary(String method) {
+        return rowSummaries.computeIfAbsent(method, name -> DistributionSummary.builder(ROWS)
+                .description("Rows read or written by a call to the customer DAO")
+                .baseUnit("rows")
+                .tags(tags(name))
+                .register(registry));
+    }
+
+    private Tags tags(String method) {
+        return Tags.of("dao", implementation, "method", method);
+    }
+}
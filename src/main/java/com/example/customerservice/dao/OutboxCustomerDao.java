@@ -0,0 +1,86 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerEvent;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerUpdate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Appends a {@link CustomerEvent} to the {@link CustomerOutbox} for every change that goes through it, in the
+ * same transaction as the change: a write that rolls back leaves no event, and a committed one always has
+ * its event. Writes that change nothing, such as adding a taken email or a conditional update that lost,
+ * append none.
+ */
+public class OutboxCustomerDao extends ForwardingCustomerDao {
+
+    private final CustomerOutbox outbox;
+    private final TransactionTemplate transactionTemplate;
+
+    public OutboxCustomerDao(CustomerDao delegate, CustomerOutbox outbox, TransactionTemplate transactionTemplate) {
+        super(delegate);
+        this.outbox = outbox;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        return transactionTemplate.execute(status -> {
+            Optional<Integer> id = delegate.addCustomer(customer);
+            id.ifPresent(added -> outbox.append(CustomerEvent.Type.CREATED, added,
+                    new Customer(added, customer.getName(), customer.getEmail(), customer.getAge(), 0)));
+            return id;
+        });
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        return transactionTemplate.execute(status -> {
+            List<Integer> ids = delegate.addCustomers(customers);
+            List<Customer> added = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                if (ids.get(i) != null) {
+                    Customer customer = customers.get(i);
+                    added.add(new Customer(ids.get(i), customer.getName(), customer.getEmail(), customer.getAge(), 0));
+                }
+            }
+            outbox.appendAll(CustomerEvent.Type.CREATED, added);
+            return ids;
+        });
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        return transactionTemplate.execute(status -> {
+            Optional<Customer> deleted = delegate.deleteCustomerById(id);
+            deleted.ifPresent(customer -> outbox.append(CustomerEvent.Type.DELETED, id, null));
+            return deleted;
+        });
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        return transactionTemplate.execute(status -> {
+            CustomerUpdate update = delegate.updateCustomer(customer);
+            outbox.append(CustomerEvent.Type.UPDATED, update.after().getId(), update.after());
+            return update;
+        });
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        return transactionTemplate.execute(status -> {
+            Optional<CustomerUpdate> patched = delegate.patchCustomer(id, patch, expectedVersion);
+            patched.ifPresent(update -> outbox.append(CustomerEvent.Type.UPDATED, id, update.after()));
+            return patched;
+        });
+    }
+
+    public CustomerOutbox outbox() {
+        return outbox;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Non-blocking counterpart of {@link CustomerDao}. Every method returns immediately and does its
+ * database work when the returned publisher is subscribed to.
+ */
+public interface ReactiveCustomerDao {
+
+    /**
+     * Emits every customer in id order, reading further rows only as fast as the subscriber requests them.
+     */
+    Flux<Customer> selectAllCustomers();
+
+    Flux<Customer> selectCustomersPage(Integer afterId, int limit);
+
+    Mono<Customer> selectCustomerById(Integer id);
+
+    /**
+     * @return the customers found, in no particular order; ids without a customer are left out.
+     */
+    Flux<Customer> selectCustomersByIds(Collection<Integer> ids);
+
+    /**
+     * @param afterId the last id of the previous page, or {@code null} for the first page.
+     * @return up to {@code limit} customers matching every filter the criteria set, in id order.
+     */
+    Flux<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit);
+
+    /**
+     * Inserts the customer unless its email is already taken, in one atomic step.
+     *
+     * @return the generated id, or empty if the email was already taken.
+     */
+    Mono<Integer> addCustomer(Customer customer);
+
+    Mono<Boolean> personWithEmailExists(String email);
+
+    Mono<Boolean> deleteCustomerById(Integer id);
+
+    /**
+     * Updates the customer, provided it is still at the version the update was based on, and moves it to
+     * the next version.
+     *
+     * @return the customer carrying its new version, or empty if no customer has its id and version.
+     */
+    Mono<Customer> updateCustomer(Customer customer);
+
+    /**
+     * Changes only the fields the patch sets and moves the customer to the next version, without reading it first.
+     *
+     * @param expectedVersion the version the patch is based on, or {@code null} to patch whatever version is current.
+     * @return the updated customer, or empty if no customer has the id, or the expected version.
+     */
+    Mono<Customer> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion);
+}
@@ -0,0 +1,54 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Non-blocking counterpart of {@link CustomerIdAllocator}: hands out ids from blocks of
+ * {@link Customer#ID_BLOCK_SIZE} reserved with one {@code nextval('customer_id_seq')}, using the same
+ * pooled-lo scheme so that both stacks can share the sequence.
+ * <p>
+ * Nothing waits for a refill. When several callers find the block exhausted at once, each reserves a block
+ * of its own and only one is kept for later callers; the rest of the others' blocks are left unused.
+ */
+public class ReactiveCustomerIdAllocator {
+
+    private final DatabaseClient databaseClient;
+    private final AtomicReference<Block> block = new AtomicReference<>(new Block(0, 0));
+
+    public ReactiveCustomerIdAllocator(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Integer> nextId() {
+        return Mono.defer(() -> {
+            Block current = block.get();
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return Mono.just(Math.toIntExact(id));
+            }
+            return databaseClient.sql("SELECT nextval('customer_id_seq')")
+                    .map(row -> row.get(0, Long.class))
+                    .one()
+                    .map(start -> {
+                        block.compareAndSet(current, new Block(start + 1, start + Customer.ID_BLOCK_SIZE));
+                        return Math.toIntExact(start);
+                    });
+        });
+    }
+
+    private static final class Block {
+
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
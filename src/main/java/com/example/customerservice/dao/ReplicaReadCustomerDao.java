@@ -0,0 +1,146 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Sends the read-only calls to a replica through {@link ReplicaRoutingDataSource}, and everything else to the
+ * primary.
+ * <p>
+ * Replicas lag behind, so a customer written through this DAO is read from the primary for
+ * {@code readYourWritesWindow} afterwards, by id and by email. This also keeps the cache from being refilled
+ * with the state from before the write. {@code selectExistingEmails} stays on the primary because it decides
+ * which rows a bulk registration inserts, and {@code selectCustomerChanges} because the transactions that bound
+ * its changes are only visible on the primary.
+ */
+public class ReplicaReadCustomerDao extends ForwardingCustomerDao {
+
+    private final Cache<Object, Boolean> recentWrites;
+
+    public ReplicaReadCustomerDao(CustomerDao delegate, Duration readYourWritesWindow) {
+        super(delegate);
+        this.recentWrites = Caffeine.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .maximumSize(1_000_000)
+                .build();
+    }
+
+    @Override
+    public List<Customer> selectAllCustomers() {
+        return read(delegate::selectAllCustomers);
+    }
+
+    @Override
+    public List<Customer> selectCustomersPage(Integer afterId, int limit) {
+        return read(() -> delegate.selectCustomersPage(afterId, limit));
+    }
+
+    @Override
+    public List<Customer> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        return read(() -> delegate.searchCustomers(criteria, afterId, limit));
+    }
+
+    @Override
+    public void streamAllCustomers(Consumer<Customer> consumer) {
+        try (DataSourceRoute.Scope scope = DataSourceRoute.readOnly()) {
+            delegate.streamAllCustomers(consumer);
+        }
+    }
+
+    @Override
+    public void streamCustomerRowsPage(Integer afterId, int limit, CustomerRowConsumer consumer) {
+        try (DataSourceRoute.Scope scope = DataSourceRoute.readOnly()) {
+            delegate.streamCustomerRowsPage(afterId, limit, consumer);
+        }
+    }
+
+    @Override
+    public void streamAllEmails(Consumer<String> consumer) {
+        try (DataSourceRoute.Scope scope = DataSourceRoute.readOnly()) {
+            delegate.streamAllEmails(consumer);
+        }
+    }
+
+    @Override
+    public Optional<Customer> selectCustomerById(Integer id) {
+        return recentlyWritten(id) ? delegate.selectCustomerById(id) : read(() -> delegate.selectCustomerById(id));
+    }
+
+    @Override
+    public List<Customer> selectCustomersByIds(Collection<Integer> ids) {
+        return ids.stream().anyMatch(this::recentlyWritten)
+                ? delegate.selectCustomersByIds(ids)
+                : read(() -> delegate.selectCustomersByIds(ids));
+    }
+
+    @Override
+    public boolean personWithEmailExists(String email) {
+        return recentlyWritten(email)
+                ? delegate.personWithEmailExists(email)
+                : read(() -> delegate.personWithEmailExists(email));
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        written(customer.getEmail());
+        Optional<Integer> id = delegate.addCustomer(customer);
+        id.ifPresent(this::written);
+        return id;
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        customers.forEach(customer -> written(customer.getEmail()));
+        List<Integer> ids = delegate.addCustomers(customers);
+        ids.stream().filter(Objects::nonNull).forEach(this::written);
+        return ids;
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        written(id);
+        return delegate.deleteCustomerById(id);
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        written(customer.getId());
+        written(customer.getEmail());
+        return delegate.updateCustomer(customer);
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        written(id);
+        written(patch.email());
+        return delegate.patchCustomer(id, patch, expectedVersion);
+    }
+
+    private void written(Object key) {
+        if (key != null) {
+            recentWrites.put(key, Boolean.TRUE);
+        }
+    }
+
+    private boolean recentlyWritten(Object key) {
+        return key != null && recentWrites.getIfPresent(key) != null;
+    }
+
+    private static <T> T read(Supplier<T> call) {
+        try (DataSourceRoute.Scope scope = DataSourceRoute.readOnly()) {
+            return call.get();
+        }
+    }
+}
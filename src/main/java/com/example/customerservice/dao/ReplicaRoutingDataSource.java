@@ -0,0 +1,248 @@
+package com.example.customerservice.dao;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out connections to the primary, or to one of the replicas when the calling thread is inside a
+ * {@link DataSourceRoute#readOnly()} scope.
+ * <p>
+ * Replicas are picked round-robin or by the fewest connections in use, among those that are healthy.
+ * {@link #checkHealth()} ejects a replica that cannot be reached or lags more than the allowed replication
+ * lag behind its primary, and takes it back once it has caught up. A replica that fails to hand out a
+ * connection is ejected on the spot and the connection comes from the primary instead, so reads only fail
+ * when the primary does.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /**
+     * Seconds the replica has not replayed yet: zero once it has replayed all WAL it received, null on a
+     * server that is not a standby.
+     */
+    static final String REPLICATION_LAG_QUERY = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN NULL
+                       WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+                   END""";
+
+    public enum Selection {
+        ROUND_ROBIN,
+        LEAST_LOADED
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final double maxReplicationLagSeconds;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+    private ScheduledExecutorService healthChecker;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, Selection selection,
+                                    Duration maxReplicationLag) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.selection = selection;
+        this.maxReplicationLagSeconds = maxReplicationLag.toMillis() / 1000.0;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (DataSourceRoute.replicaAllowed()) {
+            Replica replica = selectReplica();
+            if (replica != null) {
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replica.connections.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    eject(replica, e.getMessage());
+                }
+            }
+            primaryReads.increment();
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * @return a healthy replica, or {@code null} when every replica is ejected.
+     */
+    Replica selectReplica() {
+        List<Replica> healthy = replicas.stream().filter(Replica::healthy).toList();
+        if (healthy.isEmpty()) {
+            return null;
+        }
+        return switch (selection) {
+            case ROUND_ROBIN -> healthy.get(Math.floorMod(nextReplica.getAndIncrement(), healthy.size()));
+            case LEAST_LOADED -> healthy.stream().min(Comparator.comparingInt(Replica::activeConnections)).orElseThrow();
+        };
+    }
+
+    /**
+     * Checks every replica, ejecting those that are unreachable or lag too far behind and taking back those
+     * that have recovered.
+     */
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(REPLICATION_LAG_QUERY)) {
+                resultSet.next();
+                double lag = resultSet.getDouble(1);
+                replica.lagSeconds = lag;
+                if (lag > maxReplicationLagSeconds) {
+                    eject(replica, "replication lag of %.1fs".formatted(lag));
+                } else if (!replica.healthy) {
+                    replica.healthy = true;
+                    log.info("Replica {} is healthy again", replica.name);
+                }
+            } catch (SQLException e) {
+                eject(replica, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks the replicas every {@code interval} on a background thread until the data source is closed.
+     */
+    public synchronized void startHealthChecks(Duration interval) {
+        if (healthChecker == null) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("replica-health-check").daemon().factory());
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void eject(Replica replica, String reason) {
+        if (replica.healthy) {
+            replica.healthy = false;
+            log.warn("Ejected replica {}: {}", replica.name, reason);
+        }
+    }
+
+    public List<Replica> replicas() {
+        return replicas;
+    }
+
+    /**
+     * @return reads served by the primary because no replica was available.
+     */
+    public long primaryReads() {
+        return primaryReads.sum();
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> type) throws SQLException {
+        if (type.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(type);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> type) throws SQLException {
+        return type.isInstance(this) || primary.isWrapperFor(type);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    log.warn("Could not close replica {}", replica.name, e);
+                }
+            }
+        }
+        if (primary instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Could not close the primary", e);
+            }
+        }
+    }
+
+    public static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final LongAdder connections = new LongAdder();
+        private volatile boolean healthy = true;
+        private volatile double lagSeconds;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        public boolean healthy() {
+            return healthy;
+        }
+
+        public double lagSeconds() {
+            return lagSeconds;
+        }
+
+        /**
+         * @return connections handed out by this replica since startup.
+         */
+        public long connections() {
+            return connections.sum();
+        }
+
+        /**
+         * @return connections currently in use, known for Hikari pools only.
+         */
+        int activeConnections() {
+            if (dataSource instanceof HikariDataSource hikari) {
+                HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+                return pool == null ? 0 : pool.getActiveConnections();
+            }
+            return 0;
+        }
+    }
+}
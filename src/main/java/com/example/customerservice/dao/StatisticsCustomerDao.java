@@ -0,0 +1,120 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerUpdate;
+import com.example.customerservice.util.CustomerStatisticsCounters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps {@link CustomerStatisticsCounters} in step with every write that goes through it, and recounts them
+ * from the wrapped DAO every reconciliation interval.
+ * <p>
+ * Updates, patches and deletes take the customer's old age and domain out of the counters from the customer
+ * as the write itself found it, so they cost no extra read and cannot race with another writer. Writes by
+ * other processes leave the counters off until the next reconciliation.
+ */
+public class StatisticsCustomerDao extends ForwardingCustomerDao implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(StatisticsCustomerDao.class);
+
+    private final CustomerStatisticsCounters counters;
+    private ScheduledExecutorService reconciler;
+
+    public StatisticsCustomerDao(CustomerDao delegate, CustomerStatisticsCounters counters) {
+        super(delegate);
+        this.counters = counters;
+    }
+
+    /**
+     * Recounts the statistics from every stored customer, streamed from the wrapped DAO.
+     */
+    public void reconcile() {
+        long start = System.nanoTime();
+        boolean loaded = counters.isLoaded();
+        try {
+            long drift = counters.rebuild(delegate::streamAllCustomers);
+            if (loaded) {
+                log.info("Reconciled customer statistics in {} ms, the customer count had drifted by {}",
+                        (System.nanoTime() - start) / 1_000_000, drift);
+            } else {
+                log.info("Counted customer statistics in {} ms", (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not reconcile customer statistics; keeping the running totals", e);
+        }
+    }
+
+    /**
+     * Reconciles right away and then every {@code interval} on a background thread until closed.
+     */
+    public synchronized void startReconciling(Duration interval) {
+        if (reconciler == null) {
+            reconciler = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("customer-statistics-reconciler").daemon().factory());
+            reconciler.scheduleWithFixedDelay(this::reconcile, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Optional<Integer> addCustomer(Customer customer) {
+        Optional<Integer> id = delegate.addCustomer(customer);
+        id.ifPresent(added -> counters.add(customer));
+        return id;
+    }
+
+    @Override
+    public List<Integer> addCustomers(List<Customer> customers) {
+        List<Integer> ids = delegate.addCustomers(customers);
+        for (int i = 0; i < ids.size(); i++) {
+            if (ids.get(i) != null) {
+                counters.add(customers.get(i));
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public Optional<Customer> deleteCustomerById(Integer id) {
+        Optional<Customer> deleted = delegate.deleteCustomerById(id);
+        deleted.ifPresent(counters::remove);
+        return deleted;
+    }
+
+    @Override
+    public CustomerUpdate updateCustomer(Customer customer) {
+        CustomerUpdate update = delegate.updateCustomer(customer);
+        counters.replace(update.before(), update.after());
+        return update;
+    }
+
+    @Override
+    public Optional<CustomerUpdate> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        Optional<CustomerUpdate> patched = delegate.patchCustomer(id, patch, expectedVersion);
+        //Patches changing neither field leave the ranked domains valid
+        if (patch.email() != null || patch.age() != null) {
+            patched.ifPresent(update -> counters.replace(update.before(), update.after()));
+        }
+        return patched;
+    }
+
+    public CustomerStatisticsCounters counters() {
+        return counters;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (reconciler != null) {
+            reconciler.shutdownNow();
+        }
+    }
+}
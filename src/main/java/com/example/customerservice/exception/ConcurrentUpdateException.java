@@ -0,0 +1,14 @@
+package com.example.customerservice.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception thrown when an unconditional update keeps losing to concurrent updates of the same resource.
+ */
+@ResponseStatus(code = HttpStatus.CONFLICT)
+public class ConcurrentUpdateException extends RuntimeException {
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
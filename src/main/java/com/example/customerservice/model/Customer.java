@@ -1,17 +1,25 @@
 package com.example.customerservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
+import java.util.Objects;
+
 @Entity
 @Table(name = "customer",
         uniqueConstraints = {@UniqueConstraint(name = "customer_email_unique", columnNames = "email")})
 public class Customer {
 
+    /**
+     * Number of ids reserved per {@code customer_id_seq} call; the sequence increments by the same amount.
+     */
+    public static final int ID_BLOCK_SIZE = 50;
+
     @Id
     @SequenceGenerator(
             name = "customer_id_seq",
             sequenceName = "customer_id_seq",
-            allocationSize = 1,
+            allocationSize = ID_BLOCK_SIZE,
             initialValue = 1
     )
     @GeneratedValue(
@@ -29,6 +37,15 @@ public class Customer {
     @Column(nullable = false)
     private Integer age;
 
+    /**
+     * Incremented by every update; updates only apply to the version they were based on. Served as the ETag
+     * rather than in the body.
+     */
+    @Version
+    @JsonIgnore
+    @Column(nullable = false)
+    private int version;
+
     public Customer(Integer id, String name, String email, Integer age) {
         this.id = id;
         this.name = name;
@@ -36,6 +53,11 @@ public class Customer {
         this.age = age;
     }
 
+    public Customer(Integer id, String name, String email, Integer age, int version) {
+        this(id, name, email, age);
+        this.version = version;
+    }
+
     public Customer(String name, String email, Integer age) {
         this.name = name;
         this.email = email;
@@ -78,6 +100,14 @@ public class Customer {
         this.age = age;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return "Customer{" +
@@ -85,15 +115,26 @@ public class Customer {
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
                 ", age=" + age +
+                ", version=" + version +
                 '}';
     }
 
     @Override
     public boolean equals(Object obj) {
-        Customer customer = (Customer) obj;
-        return this.id.equals(customer.getId()) &&
-                this.name.equals(customer.getName()) &&
-                this.email.equals(customer.getEmail()) &&
-                this.age.equals(customer.getAge());
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Customer customer)) {
+            return false;
+        }
+        return Objects.equals(id, customer.getId()) &&
+                Objects.equals(name, customer.getName()) &&
+                Objects.equals(email, customer.getEmail()) &&
+                Objects.equals(age, customer.getAge());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, email, age);
     }
 }
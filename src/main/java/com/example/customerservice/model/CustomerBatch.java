@@ -0,0 +1,44 @@
+package com.example.customerservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of looking up many customers by id at once.
+ *
+ * @param customers  the customers found, in the order their ids were requested.
+ * @param missingIds the requested ids without a customer, in request order.
+ */
+public record CustomerBatch(
+        List<Customer> customers,
+        @JsonProperty("missing_ids") List<Integer> missingIds
+) {
+
+    /**
+     * Orders the customers found by the requested ids, and collects the ids that were not found.
+     * Repeated ids are only answered once.
+     */
+    public static CustomerBatch of(Collection<Integer> requestedIds, Collection<Customer> found) {
+        Map<Integer, Customer> customersById = new HashMap<>();
+        for (Customer customer : found) {
+            customersById.put(customer.getId(), customer);
+        }
+        List<Customer> customers = new ArrayList<>(customersById.size());
+        List<Integer> missingIds = new ArrayList<>();
+        for (Integer id : new LinkedHashSet<>(requestedIds)) {
+            Customer customer = customersById.get(id);
+            if (customer != null) {
+                customers.add(customer);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new CustomerBatch(customers, missingIds);
+    }
+}
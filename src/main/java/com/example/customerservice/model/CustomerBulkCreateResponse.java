@@ -0,0 +1,28 @@
+package com.example.customerservice.model;
+
+import java.util.List;
+
+/**
+ * Summary of a bulk create request with one result per registration, in request order.
+ */
+public record CustomerBulkCreateResponse(
+        int created,
+        int duplicates,
+        int invalid,
+        List<CustomerBulkCreateResult> results
+) {
+
+    public static CustomerBulkCreateResponse of(List<CustomerBulkCreateResult> results) {
+        int created = 0;
+        int duplicates = 0;
+        int invalid = 0;
+        for (CustomerBulkCreateResult result : results) {
+            switch (result.status()) {
+                case CREATED -> created++;
+                case DUPLICATE -> duplicates++;
+                case INVALID -> invalid++;
+            }
+        }
+        return new CustomerBulkCreateResponse(created, duplicates, invalid, results);
+    }
+}
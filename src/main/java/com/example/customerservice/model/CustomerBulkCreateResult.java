@@ -0,0 +1,37 @@
+package com.example.customerservice.model;
+
+/**
+ * Outcome of one registration in a bulk create request.
+ *
+ * @param index   position of the registration in the request.
+ * @param email   the email of the registration.
+ * @param status  whether the customer was created, rejected as a duplicate or rejected as invalid.
+ * @param id      the id of the created customer, or {@code null} if it was not created.
+ * @param message why the registration was rejected, or {@code null} if it was created.
+ */
+public record CustomerBulkCreateResult(
+        int index,
+        String email,
+        Status status,
+        Integer id,
+        String message
+) {
+
+    public enum Status {
+        CREATED,
+        DUPLICATE,
+        INVALID
+    }
+
+    public static CustomerBulkCreateResult created(int index, String email, Integer id) {
+        return new CustomerBulkCreateResult(index, email, Status.CREATED, id, null);
+    }
+
+    public static CustomerBulkCreateResult duplicate(int index, String email, String message) {
+        return new CustomerBulkCreateResult(index, email, Status.DUPLICATE, null, message);
+    }
+
+    public static CustomerBulkCreateResult invalid(int index, String email, String message) {
+        return new CustomerBulkCreateResult(index, email, Status.INVALID, null, message);
+    }
+}
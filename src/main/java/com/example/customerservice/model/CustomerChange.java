@@ -0,0 +1,23 @@
+package com.example.customerservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * The current state of a customer that changed since a sync cursor, or its tombstone if it was deleted.
+ *
+ * @param customerId the id of the changed customer.
+ * @param deleted    whether the customer was deleted.
+ * @param customer   the customer as it is now, or {@code null} if it was deleted.
+ * @param version    the version of the customer, or {@code null} if it was deleted.
+ * @param changedAt  when the customer was last written, or deleted.
+ */
+public record CustomerChange(
+        @JsonProperty("customer_id") int customerId,
+        boolean deleted,
+        Customer customer,
+        Integer version,
+        @JsonProperty("changed_at") Instant changedAt
+) {
+}
@@ -0,0 +1,22 @@
+package com.example.customerservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One page of the customers changed since a sync cursor, in the order they were last changed.
+ *
+ * @param changes     the changed customers and tombstones of deleted ones.
+ * @param nextSince   the {@code since} to pass to continue from this page, also once the client is up to date.
+ * @param nextAfterId the {@code after_id} to pass along with {@code nextSince}.
+ * @param hasMore     whether more changes follow right away.
+ */
+public record CustomerChangesPage(
+        List<CustomerChange> changes,
+        @JsonProperty("next_since") Instant nextSince,
+        @JsonProperty("next_after_id") Integer nextAfterId,
+        @JsonProperty("has_more") boolean hasMore
+) {
+}
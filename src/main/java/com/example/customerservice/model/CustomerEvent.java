@@ -0,0 +1,31 @@
+package com.example.customerservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * A change to one customer, as published on the event stream.
+ *
+ * @param sequence   the position of the event in the stream; later events have higher numbers.
+ * @param type       what happened to the customer.
+ * @param customerId the id of the changed customer.
+ * @param customer   the customer after the change, or {@code null} if it was deleted.
+ * @param version    the version of the customer after the change, or {@code null} if it was deleted.
+ * @param occurredAt when the change was made.
+ */
+public record CustomerEvent(
+        long sequence,
+        Type type,
+        @JsonProperty("customer_id") int customerId,
+        Customer customer,
+        Integer version,
+        @JsonProperty("occurred_at") Instant occurredAt
+) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
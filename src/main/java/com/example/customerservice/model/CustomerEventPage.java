@@ -0,0 +1,17 @@
+package com.example.customerservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * A batch of events read from the event stream.
+ *
+ * @param events    the events after the requested cursor, in sequence order; empty if none arrived in time.
+ * @param nextAfter the {@code after} cursor to pass to read the events that follow.
+ */
+public record CustomerEventPage(
+        List<CustomerEvent> events,
+        @JsonProperty("next_after") long nextAfter
+) {
+}
@@ -0,0 +1,56 @@
+package com.example.customerservice.model;
+
+import com.example.customerservice.exception.InvalidRequestException;
+
+/**
+ * File formats customers can be exported in.
+ */
+public enum CustomerFileFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    CSV("text/csv", "csv");
+
+    private final String mediaType;
+    private final String fileExtension;
+
+    CustomerFileFormat(String mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String fileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Resolves a format from the {@code Content-Type} of an upload, ignoring parameters such as the charset.
+     *
+     * @throws InvalidRequestException if the media type is not a supported format.
+     */
+    public static CustomerFileFormat fromContentType(String contentType) {
+        String mediaType = contentType == null ? "" : contentType.split(";", 2)[0].trim();
+        for (CustomerFileFormat format : values()) {
+            if (format.mediaType.equalsIgnoreCase(mediaType)) {
+                return format;
+            }
+        }
+        throw new InvalidRequestException("Unsupported content type [%s]".formatted(contentType));
+    }
+
+    /**
+     * Resolves a format from a request parameter such as {@code ndjson} or {@code csv}, ignoring case.
+     *
+     * @throws InvalidRequestException if the value does not name a supported format.
+     */
+    public static CustomerFileFormat fromParameter(String value) {
+        for (CustomerFileFormat format : values()) {
+            if (format.fileExtension.equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new InvalidRequestException("Unsupported format [%s]".formatted(value));
+    }
+}
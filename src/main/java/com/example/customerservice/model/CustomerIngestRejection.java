@@ -0,0 +1,15 @@
+package com.example.customerservice.model;
+
+/**
+ * A row of an ingest upload that was not stored.
+ *
+ * @param line   the line (NDJSON) or record (CSV, counting the header) the row came from.
+ * @param email  the email of the row, if it could be read.
+ * @param reason why the row was rejected.
+ */
+public record CustomerIngestRejection(
+        long line,
+        String email,
+        String reason
+) {
+}
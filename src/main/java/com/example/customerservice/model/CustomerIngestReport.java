@@ -0,0 +1,14 @@
+package com.example.customerservice.model;
+
+import java.util.List;
+
+/**
+ * Outcome of an ingest upload. Only the first rejections are listed; {@code rejected} counts all of them.
+ */
+public record CustomerIngestReport(
+        long received,
+        long inserted,
+        long rejected,
+        List<CustomerIngestRejection> rejections
+) {
+}
@@ -0,0 +1,17 @@
+package com.example.customerservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated customer listing.
+ *
+ * @param customers   the customers on this page, ordered by id.
+ * @param nextAfterId the {@code after_id} to pass to fetch the next page, or {@code null} on the last page.
+ */
+public record CustomerPage(
+        List<Customer> customers,
+        @JsonProperty("next_after_id") Integer nextAfterId
+) {
+}
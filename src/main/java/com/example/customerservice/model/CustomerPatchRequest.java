@@ -0,0 +1,15 @@
+package com.example.customerservice.model;
+
+/**
+ * Partial update of a customer: only the fields that are set are changed, {@code null} ones are left as they are.
+ */
+public record CustomerPatchRequest(
+        String name,
+        String email,
+        Integer age
+) {
+
+    public boolean isEmpty() {
+        return name == null && email == null && age == null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.customerservice.model;
+
+import com.example.customerservice.exception.InvalidRequestException;
+
+import java.util.Locale;
+
+/**
+ * Filters of a customer search. Every filter is optional, and a customer has to match all that are set.
+ *
+ * @param name        text the name contains, or starts with if {@code nameMatch} is {@link NameMatch#PREFIX}, ignoring case.
+ * @param nameMatch   how {@code name} is matched.
+ * @param emailDomain the part of the email after the {@code @}, ignoring case.
+ * @param minAge      the lowest age, inclusive.
+ * @param maxAge      the highest age, inclusive.
+ */
+public record CustomerSearchCriteria(
+        String name,
+        NameMatch nameMatch,
+        String emailDomain,
+        Integer minAge,
+        Integer maxAge
+) {
+
+    public enum NameMatch {
+        PREFIX,
+        CONTAINS;
+
+        /**
+         * Resolves a match mode from a request parameter such as {@code prefix} or {@code contains}, ignoring case.
+         *
+         * @throws InvalidRequestException if the value does not name a match mode.
+         */
+        public static NameMatch fromParameter(String value) {
+            for (NameMatch match : values()) {
+                if (match.name().equalsIgnoreCase(value)) {
+                    return match;
+                }
+            }
+            throw new InvalidRequestException("Unsupported name match [%s]".formatted(value));
+        }
+    }
+
+    /**
+     * Applies the filters to a customer the way the database does, for stores that search in memory.
+     */
+    public boolean matches(Customer customer) {
+        if (name != null) {
+            String customerName = customer.getName().toLowerCase(Locale.ROOT);
+            String text = name.toLowerCase(Locale.ROOT);
+            if (nameMatch == NameMatch.PREFIX ? !customerName.startsWith(text) : !customerName.contains(text)) {
+                return false;
+            }
+        }
+        if (emailDomain != null) {
+            String email = customer.getEmail();
+            String domain = email.substring(email.indexOf('@') + 1);
+            if (!domain.equalsIgnoreCase(emailDomain)) {
+                return false;
+            }
+        }
+        return (minAge == null || customer.getAge() >= minAge)
+                && (maxAge == null || customer.getAge() <= maxAge);
+    }
+}
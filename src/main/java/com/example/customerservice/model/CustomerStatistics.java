@@ -0,0 +1,32 @@
+package com.example.customerservice.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Aggregates over all customers, as maintained in memory and last checked against the table at {@code reconciledAt}.
+ *
+ * @param total           the number of customers.
+ * @param ageHistogram    the number of customers per age range, youngest first; empty ranges included.
+ * @param topEmailDomains the email domains with the most customers, most common first.
+ * @param reconciledAt    when the aggregates were last rebuilt from the table.
+ */
+public record CustomerStatistics(
+        long total,
+        @JsonProperty("age_histogram") List<AgeBucket> ageHistogram,
+        @JsonProperty("top_email_domains") List<DomainCount> topEmailDomains,
+        @JsonProperty("reconciled_at") Instant reconciledAt
+) {
+
+    /**
+     * @param minAge the lowest age in the range, inclusive.
+     * @param maxAge the highest age in the range, inclusive.
+     */
+    public record AgeBucket(@JsonProperty("min_age") int minAge, @JsonProperty("max_age") int maxAge, long count) {
+    }
+
+    public record DomainCount(String domain, long count) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.customerservice.model;
+
+/**
+ * A customer as it was before an update and as the update left it, both read by the updating statement.
+ *
+ * @param before the customer at the version the update replaced.
+ * @param after  the customer carrying its new version.
+ */
+public record CustomerUpdate(Customer before, Customer after) {
+}
@@ -0,0 +1,162 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.config.CustomerDaoProperties;
+import com.example.customerservice.dao.CustomerOutbox;
+import com.example.customerservice.exception.InvalidRequestException;
+import com.example.customerservice.exception.ResourceGoneException;
+import com.example.customerservice.exception.ResourceNotFound;
+import com.example.customerservice.model.CustomerEvent;
+import com.example.customerservice.model.CustomerEventPage;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Serves the customer change events recorded by the {@link CustomerOutbox}, by long polling or as a
+ * Server-Sent Events stream. Consumers resume from the sequence number of the last event they processed.
+ * <p>
+ * Waiting consumers hold no thread and no connection: they are woken when the relay publishes, and only
+ * then read the new events.
+ */
+@Service
+public class CustomerEventService {
+
+    public static final int MAX_EVENTS_PAGE = 1000;
+    public static final int MAX_WAIT_SECONDS = 60;
+
+    static final int STREAM_BATCH_SIZE = 500;
+    static final Duration STREAM_HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+
+    //Reads run here rather than on the relay thread or timer that completes the wait
+    private static final Executor EVENT_READER = task -> Thread.ofVirtual().name("customer-event-reader").start(task);
+
+    private final ObjectProvider<CustomerOutbox> outbox;
+    private final CustomerDaoProperties properties;
+
+    public CustomerEventService(ObjectProvider<CustomerOutbox> outbox, CustomerDaoProperties properties) {
+        this.outbox = outbox;
+        this.properties = properties;
+    }
+
+    /**
+     * Reads the events after {@code after}, waiting up to {@code waitSeconds} for one to be published if
+     * there are none yet.
+     *
+     * @param after       the sequence number of the last event the consumer processed, or {@code null} to
+     *                    only learn the cursor of the latest event.
+     * @param limit       the maximum number of events to return, at most {@link #MAX_EVENTS_PAGE}.
+     * @param waitSeconds how long to wait for an event, at most {@link #MAX_WAIT_SECONDS}.
+     * @throws ResourceNotFound     if events are switched off.
+     * @throws ResourceGoneException if events after {@code after} have already been pruned.
+     */
+    public CompletableFuture<CustomerEventPage> pollEvents(Long after, int limit, int waitSeconds) {
+        if (limit < 1 || limit > MAX_EVENTS_PAGE) {
+            throw new InvalidRequestException("Between 1 and %d events can be read at once.".formatted(MAX_EVENTS_PAGE));
+        }
+        if (waitSeconds < 0 || waitSeconds > MAX_WAIT_SECONDS) {
+            throw new InvalidRequestException("Between 0 and %d seconds can be waited for events.".formatted(MAX_WAIT_SECONDS));
+        }
+        CustomerOutbox events = requireOutbox();
+        if (after == null) {
+            return CompletableFuture.completedFuture(new CustomerEventPage(List.of(), events.latestSequence()));
+        }
+        requireRetained(events, after);
+        return events.awaitEventsAfter(after, Duration.ofSeconds(waitSeconds))
+                .thenApplyAsync(arrived -> {
+                    if (!arrived) {
+                        return new CustomerEventPage(List.of(), after);
+                    }
+                    List<CustomerEvent> page = events.selectEventsAfter(after, limit);
+                    return new CustomerEventPage(page, page.isEmpty() ? after : page.getLast().sequence());
+                }, EVENT_READER);
+    }
+
+    /**
+     * Streams the events after the given cursor as they are published, each with its sequence number as
+     * event id, so a client that reconnects with {@code Last-Event-ID} resumes where it stopped.
+     *
+     * @param after       the sequence number to stream from, or {@code null} to stream only new events.
+     * @param lastEventId the {@code Last-Event-ID} of a reconnecting client, which takes precedence over
+     *                    {@code after}.
+     * @throws ResourceNotFound     if events are switched off.
+     * @throws ResourceGoneException if events after the cursor have already been pruned.
+     */
+    public SseEmitter streamEvents(Long after, String lastEventId) {
+        CustomerOutbox events = requireOutbox();
+        long cursor;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                cursor = Long.parseLong(lastEventId.strip());
+            } catch (NumberFormatException e) {
+                throw new InvalidRequestException("Last-Event-ID [%s] is not an event sequence number.".formatted(lastEventId));
+            }
+        } else {
+            cursor = after != null ? after : events.latestSequence();
+        }
+        requireRetained(events, cursor);
+
+        SseEmitter emitter = new SseEmitter(properties.events().streamTimeout().toMillis());
+        Thread pump = Thread.ofVirtual().name("customer-event-stream").unstarted(() -> pump(events, emitter, cursor));
+        emitter.onCompletion(pump::interrupt);
+        emitter.onTimeout(pump::interrupt);
+        emitter.onError(e -> pump.interrupt());
+        pump.start();
+        return emitter;
+    }
+
+    private static void pump(CustomerOutbox events, SseEmitter emitter, long cursor) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (cursor < events.prunedThrough()) {
+                    //Ends the stream; reconnecting from the same cursor answers 410
+                    emitter.complete();
+                    return;
+                }
+                List<CustomerEvent> page = events.selectEventsAfter(cursor, STREAM_BATCH_SIZE);
+                for (CustomerEvent event : page) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.sequence()))
+                            .name(event.type().name())
+                            .data(event, MediaType.APPLICATION_JSON));
+                    cursor = event.sequence();
+                }
+                if (page.size() < STREAM_BATCH_SIZE
+                        && !events.awaitEventsAfter(cursor, STREAM_HEARTBEAT_INTERVAL).get()) {
+                    //Keeps proxies from closing a quiet connection, and notices clients that went away
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                }
+            }
+        } catch (InterruptedException e) {
+            //the stream was completed, timed out or failed
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private CustomerOutbox requireOutbox() {
+        CustomerOutbox events = outbox.getIfAvailable();
+        if (events == null) {
+            throw new ResourceNotFound("Customer events are not enabled.");
+        }
+        return events;
+    }
+
+    private static void requireRetained(CustomerOutbox events, long after) {
+        if (after < 0) {
+            throw new InvalidRequestException("Event sequence numbers cannot be negative.");
+        }
+        if (after < events.prunedThrough()) {
+            throw new ResourceGoneException(
+                    "Events up to %d have been pruned; resynchronise the customers and read on from the latest event."
+                            .formatted(events.prunedThrough()));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.dao.CustomerDao;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.example.customerservice.util.CustomerExportWriter;
+import com.example.customerservice.util.CustomerJsonArrayWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Streams every customer to an output stream as the rows are read, so the size of an export
+ * is bounded by the client and the network rather than by the heap.
+ */
+@Service
+public class CustomerExportService {
+
+    //Customers /all reads per query; a page of them is held in memory until written out
+    static final int ALL_CUSTOMERS_PAGE_SIZE = 1000;
+
+    private final CustomerDao customerDao;
+    private final ObjectMapper objectMapper;
+
+    public CustomerExportService(CustomerDao customerDao, ObjectMapper objectMapper) {
+        this.customerDao = customerDao;
+        this.objectMapper = objectMapper;
+    }
+
+    public void exportCustomers(CustomerFileFormat format, OutputStream outputStream) throws IOException {
+        try (CustomerExportWriter writer = CustomerExportWriter.create(format, outputStream, objectMapper)) {
+            customerDao.streamAllCustomers(customer -> {
+                try {
+                    writer.write(customer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes every customer, in id order, as the JSON array Jackson would write for {@code getAllCustomers},
+     * straight from the column values. Customers are read a page at a time into memory, and a page goes out only
+     * once its query has returned the connection, so a slow client holds neither a connection nor a DAO slot.
+     * A failure before the first page leaves the response untouched for an error status; a later one leaves the
+     * array unterminated instead of passing off what was written as complete.
+     */
+    public void writeAllCustomers(OutputStream outputStream) throws IOException {
+        ByteArrayOutputStream page = new ByteArrayOutputStream();
+        CustomerJsonArrayWriter writer = new CustomerJsonArrayWriter(page);
+        int[] rows = new int[1];
+        int[] lastId = new int[1];
+        Integer afterId = null;
+        try {
+            do {
+                rows[0] = 0;
+                customerDao.streamCustomerRowsPage(afterId, ALL_CUSTOMERS_PAGE_SIZE, (id, name, email, age) -> {
+                    try {
+                        writer.write(id, name, email, age);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    lastId[0] = id;
+                    rows[0]++;
+                });
+                writer.flush();
+                page.writeTo(outputStream);
+                page.reset();
+                afterId = lastId[0];
+            } while (rows[0] == ALL_CUSTOMERS_PAGE_SIZE);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.close();
+        page.writeTo(outputStream);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.dao.CustomerCopyLoader;
+import com.example.customerservice.dao.CustomerCopyLoader.LoadResult;
+import com.example.customerservice.dao.CustomerCopyLoader.StagedRow;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.example.customerservice.model.CustomerIngestRejection;
+import com.example.customerservice.model.CustomerIngestReport;
+import com.example.customerservice.model.CustomerRegistrationRequest;
+import com.example.customerservice.util.CustomerRecordReader;
+import com.example.customerservice.util.CustomerRecordReader.Row;
+import com.example.customerservice.util.CustomerRegistrationValidator;
+import com.example.customerservice.util.EmailBloomFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Loads an NDJSON or CSV upload into the {@code customer} table through {@link CustomerCopyLoader}.
+ * The upload is parsed and validated row by row while it is copied, so it is never held in memory.
+ */
+@Service
+public class CustomerIngestService {
+
+    public static final int MAX_REPORTED_REJECTIONS = 1000;
+
+    private final CustomerCopyLoader customerCopyLoader;
+    private final ObjectMapper objectMapper;
+    private final Optional<EmailBloomFilter> emailFilter;
+
+    public CustomerIngestService(CustomerCopyLoader customerCopyLoader, ObjectMapper objectMapper,
+                                 Optional<EmailBloomFilter> emailFilter) {
+        this.customerCopyLoader = customerCopyLoader;
+        this.objectMapper = objectMapper;
+        this.emailFilter = emailFilter;
+    }
+
+    public CustomerIngestReport ingestCustomers(CustomerFileFormat format, InputStream inputStream) throws IOException {
+        try (CustomerRecordReader reader = CustomerRecordReader.create(format, inputStream, objectMapper)) {
+            ValidRows validRows = new ValidRows(reader, emailFilter);
+            LoadResult result;
+            try {
+                result = customerCopyLoader.load(validRows, MAX_REPORTED_REJECTIONS);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            List<CustomerIngestRejection> rejections = new ArrayList<>(validRows.rejections);
+            rejections.addAll(result.rejections());
+            rejections.sort(Comparator.comparingLong(CustomerIngestRejection::line));
+            return new CustomerIngestReport(
+                    validRows.received,
+                    result.inserted(),
+                    validRows.rejected + result.rejected(),
+                    List.copyOf(rejections.subList(0, Math.min(rejections.size(), MAX_REPORTED_REJECTIONS))));
+        }
+    }
+
+    /**
+     * Pulls rows from the reader on demand, passing valid ones on and recording the rest as rejections.
+     */
+    private static class ValidRows implements Iterator<StagedRow> {
+
+        private final CustomerRecordReader reader;
+        private final Optional<EmailBloomFilter> emailFilter;
+        private final List<CustomerIngestRejection> rejections = new ArrayList<>();
+        private long received;
+        private long rejected;
+        private StagedRow next;
+        private boolean exhausted;
+
+        ValidRows(CustomerRecordReader reader, Optional<EmailBloomFilter> emailFilter) {
+            this.reader = reader;
+            this.emailFilter = emailFilter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !exhausted) {
+                Row row = read();
+                if (row == null) {
+                    exhausted = true;
+                } else {
+                    received++;
+                    next = validate(row);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public StagedRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            StagedRow row = next;
+            next = null;
+            return row;
+        }
+
+        private Row read() {
+            try {
+                return reader.next();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private StagedRow validate(Row row) {
+            Optional<String> error = Optional.ofNullable(row.error())
+                    .or(() -> CustomerRegistrationValidator.validate(row.request()));
+            if (error.isPresent()) {
+                rejected++;
+                if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                    rejections.add(new CustomerIngestRejection(row.line(), row.email(), error.get()));
+                }
+                return null;
+            }
+            CustomerRegistrationRequest request = row.request();
+            //The copy bypasses the DAO, so staged emails go into the filter here, before they are committed
+            emailFilter.ifPresent(filter -> filter.put(request.email()));
+            return new StagedRow(row.line(), request.name(), request.email(), request.age());
+        }
+    }
+}
@@ -1,23 +1,58 @@
 package com.example.customerservice.service;
 
 import com.example.customerservice.dao.CustomerDao;
+import com.example.customerservice.dao.CustomerWriteBehindQueue;
+import com.example.customerservice.exception.ConcurrentUpdateException;
 import com.example.customerservice.exception.DuplicateResourceFoundException;
+import com.example.customerservice.exception.InvalidRequestException;
+import com.example.customerservice.exception.PreconditionFailedException;
 import com.example.customerservice.exception.ResourceNotFound;
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerBatch;
+import com.example.customerservice.model.CustomerBulkCreateResponse;
+import com.example.customerservice.model.CustomerBulkCreateResult;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerChangesPage;
+import com.example.customerservice.model.CustomerPage;
+import com.example.customerservice.model.CustomerPatchRequest;
 import com.example.customerservice.model.CustomerRegistrationRequest;
-import org.springframework.beans.factory.annotation.Qualifier;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import com.example.customerservice.util.CustomerRegistrationValidator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class CustomerService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BULK_SIZE = 10_000;
+    public static final int BULK_CHUNK_SIZE = 500;
+    public static final int MAX_UPDATE_ATTEMPTS = 3;
+    public static final int MAX_BATCH_GET_SIZE = 1000;
+    public static final int MIN_CONTAINS_LENGTH = 3;
 
     private final CustomerDao customerDao;
 
-    public CustomerService(@Qualifier("jdbc") CustomerDao customerDao) {
+    private final ObjectProvider<CustomerWriteBehindQueue> writeBehindQueue;
+
+    public CustomerService(CustomerDao customerDao, ObjectProvider<CustomerWriteBehindQueue> writeBehindQueue) {
         this.customerDao = customerDao;
+        this.writeBehindQueue = writeBehindQueue;
     }
 
 
@@ -25,35 +60,322 @@ public class CustomerService {
         return customerDao.selectAllCustomers();
     }
 
+    public CustomerPage getCustomersPage(Integer afterId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        //Fetch one extra row so we know whether there is a next page without counting
+        List<Customer> customers = customerDao.selectCustomersPage(afterId, pageSize + 1);
+        if (customers.size() <= pageSize) {
+            return new CustomerPage(customers, null);
+        }
+        List<Customer> page = customers.subList(0, pageSize);
+        return new CustomerPage(page, page.get(pageSize - 1).getId());
+    }
+
+    /**
+     * Finds one keyset page of the customers matching the criteria, paged like {@link #getCustomersPage}.
+     */
+    public CustomerPage searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        validateSearchCriteria(criteria);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<Customer> customers = customerDao.searchCustomers(criteria, afterId, pageSize + 1);
+        if (customers.size() <= pageSize) {
+            return new CustomerPage(customers, null);
+        }
+        List<Customer> page = customers.subList(0, pageSize);
+        return new CustomerPage(page, page.get(pageSize - 1).getId());
+    }
+
+    /**
+     * Finds one page of the customers written or deleted after the cursor, for clients keeping a copy in sync.
+     * A client starts without a cursor, which pages through every customer once, and from then on passes the
+     * cursor of its last response, so each sync reads only what changed since.
+     *
+     * @param since   the {@code next_since} of the previous response, or {@code null} to start from scratch.
+     * @param afterId the {@code next_after_id} of the previous response.
+     * @throws ResourceNotFound if the DAO implementation keeps no modification times.
+     */
+    public CustomerChangesPage getCustomerChanges(Instant since, Integer afterId, int limit) {
+        if (since == null && afterId != null) {
+            throw new InvalidRequestException("after_id can only be passed along with since.");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<CustomerChange> changes;
+        try {
+            changes = customerDao.selectCustomerChanges(since, afterId, pageSize + 1);
+        } catch (UnsupportedOperationException e) {
+            throw new ResourceNotFound(e.getMessage());
+        }
+        if (changes.isEmpty()) {
+            //Up to date: the client keeps its cursor
+            return new CustomerChangesPage(changes, since, afterId, false);
+        }
+        boolean hasMore = changes.size() > pageSize;
+        List<CustomerChange> page = hasMore ? changes.subList(0, pageSize) : changes;
+        CustomerChange last = page.getLast();
+        return new CustomerChangesPage(page, last.changedAt(), last.customerId(), hasMore);
+    }
+
+    /**
+     * Rejects criteria no index can serve: a contains match needs at least {@link #MIN_CONTAINS_LENGTH}
+     * characters, since the trigram index cannot narrow down anything shorter.
+     */
+    static void validateSearchCriteria(CustomerSearchCriteria criteria) {
+        if (criteria.name() != null) {
+            if (criteria.name().isBlank()) {
+                throw new InvalidRequestException("Name must not be blank.");
+            }
+            if (criteria.nameMatch() != CustomerSearchCriteria.NameMatch.PREFIX
+                    && criteria.name().length() < MIN_CONTAINS_LENGTH) {
+                throw new InvalidRequestException(
+                        "Name must have at least %d characters to match anywhere in the name.".formatted(MIN_CONTAINS_LENGTH));
+            }
+        }
+        if (criteria.emailDomain() != null && criteria.emailDomain().isBlank()) {
+            throw new InvalidRequestException("Email domain must not be blank.");
+        }
+        if ((criteria.minAge() != null && criteria.minAge() < 0) || (criteria.maxAge() != null && criteria.maxAge() < 0)) {
+            throw new InvalidRequestException("Ages must not be negative.");
+        }
+        if (criteria.minAge() != null && criteria.maxAge() != null && criteria.minAge() > criteria.maxAge()) {
+            throw new InvalidRequestException("Minimum age must not be greater than maximum age.");
+        }
+    }
+
     public Customer getCustomerById(Integer id) {
         return customerDao.selectCustomerById(id).orElseThrow(() -> new ResourceNotFound("Customer with id [%s] not found".formatted(id)));
     }
 
-    public void addCustomer(CustomerRegistrationRequest request) {
-        String email = request.email();
+    /**
+     * Looks up many customers with a single DAO call instead of one per id.
+     *
+     * @return the customers found in request order, and the ids that were not found.
+     */
+    public CustomerBatch getCustomersByIds(List<Integer> ids) {
+        validateBatchIds(ids);
+        Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+        return CustomerBatch.of(distinctIds, customerDao.selectCustomersByIds(distinctIds));
+    }
 
-        if (personWithEmailExists(email)) {
-            throw new DuplicateResourceFoundException("Email already taken.");
+    static void validateBatchIds(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new InvalidRequestException("At least one id is required.");
+        }
+        if (ids.size() > MAX_BATCH_GET_SIZE) {
+            throw new InvalidRequestException("At most %d customers can be fetched per request.".formatted(MAX_BATCH_GET_SIZE));
         }
+        if (ids.stream().anyMatch(Objects::isNull)) {
+            throw new InvalidRequestException("Ids must not be null.");
+        }
+    }
 
+    /**
+     * Registers a customer with a single insert that also detects a taken email, so there is no
+     * window between checking and inserting for a concurrent registration to slip through.
+     *
+     * @return the id of the new customer.
+     */
+    public Integer addCustomer(CustomerRegistrationRequest request) {
+        validate(request);
         //Convert the request to customer object
-        Customer customer = new Customer(
+        Customer customer = toCustomer(request);
+        return customerDao.addCustomer(customer)
+                .orElseThrow(() -> new DuplicateResourceFoundException("Email already taken."));
+    }
+
+    /**
+     * Registers a customer through the write-behind queue when it is switched on, adding it in a batch with the
+     * registrations around it; otherwise like {@link #addCustomer}.
+     *
+     * @return completes with the id of the new customer once it is committed.
+     */
+    public CompletableFuture<Integer> registerCustomer(CustomerRegistrationRequest request) {
+        CustomerWriteBehindQueue queue = writeBehindQueue.getIfAvailable();
+        if (queue == null) {
+            return CompletableFuture.completedFuture(addCustomer(request));
+        }
+        validate(request);
+        return queue.submit(toCustomer(request))
+                .thenApply(id -> id.orElseThrow(() -> new DuplicateResourceFoundException("Email already taken.")));
+    }
+
+    /**
+     * Registers many customers at once. Invalid registrations and emails repeated within the request
+     * are rejected up front, already taken emails are found with a single query, and the rest are
+     * inserted in batches of {@link #BULK_CHUNK_SIZE}, each in its own transaction.
+     *
+     * @return one result per registration, in request order.
+     */
+    public CustomerBulkCreateResponse addCustomers(List<CustomerRegistrationRequest> requests) {
+        if (requests.size() > MAX_BULK_SIZE) {
+            throw new InvalidRequestException("At most %d customers can be created per request.".formatted(MAX_BULK_SIZE));
+        }
+        CustomerBulkCreateResult[] results = new CustomerBulkCreateResult[requests.size()];
+
+        //Index of the first valid registration for every email in the request
+        Map<String, Integer> indexByEmail = new HashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CustomerRegistrationRequest request = requests.get(i);
+            String email = request == null ? null : request.email();
+            Optional<String> error = CustomerRegistrationValidator.validate(request);
+            if (error.isPresent()) {
+                results[i] = CustomerBulkCreateResult.invalid(i, email, error.get());
+            } else if (indexByEmail.putIfAbsent(email, i) != null) {
+                results[i] = CustomerBulkCreateResult.duplicate(i, email, "Email appears more than once in the request.");
+            }
+        }
+
+        Set<String> takenEmails = customerDao.selectExistingEmails(indexByEmail.keySet());
+        List<Integer> toInsert = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            if (takenEmails.contains(requests.get(i).email())) {
+                results[i] = CustomerBulkCreateResult.duplicate(i, requests.get(i).email(), "Email already taken.");
+            } else {
+                toInsert.add(i);
+            }
+        }
+
+        for (int from = 0; from < toInsert.size(); from += BULK_CHUNK_SIZE) {
+            List<Integer> chunk = toInsert.subList(from, Math.min(from + BULK_CHUNK_SIZE, toInsert.size()));
+            insertChunk(requests, chunk, results);
+        }
+        return CustomerBulkCreateResponse.of(Arrays.asList(results));
+    }
+
+    private void insertChunk(List<CustomerRegistrationRequest> requests, List<Integer> chunk,
+                             CustomerBulkCreateResult[] results) {
+        List<Customer> customers = chunk.stream()
+                .map(i -> toCustomer(requests.get(i)))
+                .toList();
+        List<Integer> ids;
+        try {
+            ids = customerDao.addCustomers(customers);
+        } catch (DataIntegrityViolationException e) {
+            //An email was taken concurrently and the batch was rolled back; retry the rows one by one
+            //with fresh instances, since the failed batch may already have assigned ids to them
+            ids = new ArrayList<>(chunk.size());
+            for (int i : chunk) {
+                ids.add(addSingleCustomer(toCustomer(requests.get(i))));
+            }
+        }
+        for (int j = 0; j < chunk.size(); j++) {
+            int index = chunk.get(j);
+            String email = requests.get(index).email();
+            Integer id = ids.get(j);
+            results[index] = id != null
+                    ? CustomerBulkCreateResult.created(index, email, id)
+                    : CustomerBulkCreateResult.duplicate(index, email, "Email already taken.");
+        }
+    }
+
+    private Integer addSingleCustomer(Customer customer) {
+        try {
+            return customerDao.addCustomers(List.of(customer)).get(0);
+        } catch (DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    private static Customer toCustomer(CustomerRegistrationRequest request) {
+        return new Customer(
                 request.name(),
-                email,
+                request.email(),
                 request.age()
         );
-        customerDao.addCustomer(customer);
-    }
-
-    private boolean personWithEmailExists(String email) {
-        return customerDao.personWithEmailExists(email);
     }
 
     public boolean deleteCustomerById(Integer id) {
-        return customerDao.deleteCustomerById(id);
+        return customerDao.deleteCustomerById(id).isPresent();
     }
 
     public Customer updateCustomerDetails(Customer customer) {
-        return customerDao.updateCustomer(customer);
+        return customerDao.updateCustomer(customer).after();
+    }
+
+    /**
+     * Updates a customer with a single conditional update, provided it is still at {@code expectedVersion}.
+     * The customer is only looked up when the update fails, to tell a stale version from a missing customer.
+     *
+     * @return the customer, carrying its new version.
+     * @throws PreconditionFailedException if the customer is no longer at {@code expectedVersion}.
+     */
+    public Customer updateCustomerDetails(Integer id, CustomerRegistrationRequest request, int expectedVersion) {
+        validate(request);
+        Customer customer = toCustomer(request);
+        customer.setId(id);
+        customer.setVersion(expectedVersion);
+        try {
+            return customerDao.updateCustomer(customer).after();
+        } catch (OptimisticLockingFailureException e) {
+            getCustomerById(id);
+            throw new PreconditionFailedException(
+                    "Customer with id [%s] is no longer at version [%s]".formatted(id, expectedVersion));
+        }
+    }
+
+    /**
+     * Changes only the fields the patch sets, with a single statement that returns the updated customer.
+     * The customer is only looked up when the patch matches nothing, to tell a stale version from a missing customer.
+     *
+     * @param expectedVersion the version the patch is based on, or {@code null} to patch whatever version is current.
+     * @return the customer, carrying its new version.
+     * @throws PreconditionFailedException if the customer is no longer at {@code expectedVersion}.
+     */
+    public Customer patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        CustomerRegistrationValidator.validate(patch).ifPresent(error -> {
+            throw new InvalidRequestException(error);
+        });
+        if (patch.isEmpty()) {
+            return checkVersion(getCustomerById(id), expectedVersion);
+        }
+        Optional<Customer> patched;
+        try {
+            patched = customerDao.patchCustomer(id, patch, expectedVersion).map(CustomerUpdate::after);
+        } catch (DataIntegrityViolationException e) {
+            //The JPA DAO reports the unique email violation without narrowing it to DuplicateKeyException
+            throw new DuplicateResourceFoundException("Email already taken.");
+        }
+        return patched.orElseThrow(() -> new PreconditionFailedException(
+                "Customer with id [%s] is at version [%s], not [%s]".formatted(id, getCustomerById(id).getVersion(), expectedVersion)));
+    }
+
+    private static void validate(CustomerRegistrationRequest request) {
+        CustomerRegistrationValidator.validate(request).ifPresent(error -> {
+            throw new InvalidRequestException(error);
+        });
+    }
+
+    private static Customer checkVersion(Customer customer, Integer expectedVersion) {
+        if (expectedVersion != null && customer.getVersion() != expectedVersion) {
+            throw new PreconditionFailedException(
+                    "Customer with id [%s] is no longer at version [%s]".formatted(customer.getId(), expectedVersion));
+        }
+        return customer;
+    }
+
+    /**
+     * Updates a customer whatever its version: reads it and updates it on condition that it is unchanged,
+     * reading it again when a concurrent update got in between, up to {@link #MAX_UPDATE_ATTEMPTS} times.
+     *
+     * @return the customer, carrying its new version.
+     * @throws ConcurrentUpdateException if every attempt lost to a concurrent update.
+     */
+    public Customer updateCustomerDetails(Integer id, CustomerRegistrationRequest request) {
+        validate(request);
+        for (int attempt = 0; attempt < MAX_UPDATE_ATTEMPTS; attempt++) {
+            Customer customer = getCustomerById(id);
+            customer.setName(request.name());
+            customer.setEmail(request.email());
+            customer.setAge(request.age());
+            try {
+                return customerDao.updateCustomer(customer).after();
+            } catch (OptimisticLockingFailureException e) {
+                //The failed update invalidated the cached customer, so the next attempt reads the newer version
+            }
+        }
+        throw new ConcurrentUpdateException("Customer with id [%s] is being updated concurrently".formatted(id));
     }
 }
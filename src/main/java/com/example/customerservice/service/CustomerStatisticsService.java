@@ -0,0 +1,43 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.exception.InvalidRequestException;
+import com.example.customerservice.exception.ResourceNotFound;
+import com.example.customerservice.exception.ServiceUnavailableException;
+import com.example.customerservice.model.CustomerStatistics;
+import com.example.customerservice.util.CustomerStatisticsCounters;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+/**
+ * Serves the customer statistics from the counters the DAO keeps up to date, without reading the table.
+ */
+@Service
+public class CustomerStatisticsService {
+
+    public static final int MAX_TOP_DOMAINS = 100;
+
+    private final ObjectProvider<CustomerStatisticsCounters> counters;
+
+    public CustomerStatisticsService(ObjectProvider<CustomerStatisticsCounters> counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * @param topDomains the number of email domains to list, at most {@link #MAX_TOP_DOMAINS}.
+     * @throws ResourceNotFound            if statistics are switched off.
+     * @throws ServiceUnavailableException until the counters have been built from the table once.
+     */
+    public CustomerStatistics getStatistics(int topDomains) {
+        if (topDomains < 1 || topDomains > MAX_TOP_DOMAINS) {
+            throw new InvalidRequestException("Between 1 and %d top domains can be listed.".formatted(MAX_TOP_DOMAINS));
+        }
+        CustomerStatisticsCounters statistics = counters.getIfAvailable();
+        if (statistics == null) {
+            throw new ResourceNotFound("Customer statistics are not enabled.");
+        }
+        if (!statistics.isLoaded()) {
+            throw new ServiceUnavailableException("Customer statistics are still being counted.");
+        }
+        return statistics.snapshot(topDomains);
+    }
+}
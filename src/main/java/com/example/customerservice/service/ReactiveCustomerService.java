@@ -0,0 +1,219 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.dao.ReactiveCustomerDao;
+import com.example.customerservice.exception.ConcurrentUpdateException;
+import com.example.customerservice.exception.DuplicateResourceFoundException;
+import com.example.customerservice.exception.InvalidRequestException;
+import com.example.customerservice.exception.PreconditionFailedException;
+import com.example.customerservice.exception.ResourceNotFound;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerBatch;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.example.customerservice.model.CustomerPage;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerRegistrationRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.util.CustomerCsvWriter;
+import com.example.customerservice.util.CustomerRegistrationValidator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reactive counterpart of {@link CustomerService}, serving the same operations from a {@link ReactiveCustomerDao}.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCustomerService {
+
+    //Rows joined into one chunk of an export, so the response is not written one small buffer per customer
+    static final int EXPORT_CHUNK_SIZE = 256;
+
+    private final ReactiveCustomerDao customerDao;
+    private final ObjectMapper objectMapper;
+
+    public ReactiveCustomerService(ReactiveCustomerDao customerDao, ObjectMapper objectMapper) {
+        this.customerDao = customerDao;
+        this.objectMapper = objectMapper;
+    }
+
+    public Flux<Customer> getAllCustomers() {
+        return customerDao.selectAllCustomers();
+    }
+
+    public Mono<CustomerPage> getCustomersPage(Integer afterId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, CustomerService.MAX_PAGE_SIZE));
+
+        //Fetch one extra row so we know whether there is a next page without counting
+        return customerDao.selectCustomersPage(afterId, pageSize + 1)
+                .collectList()
+                .map(customers -> {
+                    if (customers.size() <= pageSize) {
+                        return new CustomerPage(customers, null);
+                    }
+                    return new CustomerPage(customers.subList(0, pageSize), customers.get(pageSize - 1).getId());
+                });
+    }
+
+    /**
+     * Finds one keyset page of the customers matching the criteria, answering like {@link CustomerService#searchCustomers}.
+     */
+    public Mono<CustomerPage> searchCustomers(CustomerSearchCriteria criteria, Integer afterId, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, CustomerService.MAX_PAGE_SIZE));
+        return Mono.fromRunnable(() -> CustomerService.validateSearchCriteria(criteria))
+                .then(Mono.defer(() -> customerDao.searchCustomers(criteria, afterId, pageSize + 1).collectList()))
+                .map(customers -> {
+                    if (customers.size() <= pageSize) {
+                        return new CustomerPage(customers, null);
+                    }
+                    return new CustomerPage(customers.subList(0, pageSize), customers.get(pageSize - 1).getId());
+                });
+    }
+
+    public Mono<Customer> getCustomerById(Integer id) {
+        return customerDao.selectCustomerById(id)
+                .switchIfEmpty(Mono.error(() -> notFound(id)));
+    }
+
+    /**
+     * Looks up many customers with a single query, answering like {@link CustomerService#getCustomersByIds}.
+     */
+    public Mono<CustomerBatch> getCustomersByIds(List<Integer> ids) {
+        return Mono.fromRunnable(() -> CustomerService.validateBatchIds(ids))
+                .then(Mono.defer(() -> {
+                    Set<Integer> distinctIds = new LinkedHashSet<>(ids);
+                    return customerDao.selectCustomersByIds(distinctIds)
+                            .collectList()
+                            .map(customers -> CustomerBatch.of(distinctIds, customers));
+                }));
+    }
+
+    /**
+     * Registers a customer with a single insert that also detects a taken email.
+     *
+     * @return the id of the new customer.
+     */
+    public Mono<Integer> addCustomer(CustomerRegistrationRequest request) {
+        Optional<String> error = CustomerRegistrationValidator.validate(request);
+        if (error.isPresent()) {
+            return Mono.error(new InvalidRequestException(error.get()));
+        }
+        Customer customer = new Customer(request.name(), request.email(), request.age());
+        return customerDao.addCustomer(customer)
+                .switchIfEmpty(Mono.error(() -> new DuplicateResourceFoundException("Email already taken.")));
+    }
+
+    public Mono<Boolean> deleteCustomerById(Integer id) {
+        return customerDao.deleteCustomerById(id);
+    }
+
+    /**
+     * Updates a customer whatever its version: reads it and updates it on condition that it is unchanged,
+     * reading it again when a concurrent update got in between, up to
+     * {@link CustomerService#MAX_UPDATE_ATTEMPTS} times.
+     */
+    public Mono<Customer> updateCustomerDetails(Integer id, CustomerRegistrationRequest request) {
+        Optional<String> error = CustomerRegistrationValidator.validate(request);
+        if (error.isPresent()) {
+            return Mono.error(new InvalidRequestException(error.get()));
+        }
+        return updateCurrentVersion(id, request, CustomerService.MAX_UPDATE_ATTEMPTS)
+                .onErrorMap(DuplicateKeyException.class, e -> new DuplicateResourceFoundException("Email already taken."));
+    }
+
+    /**
+     * Updates a customer with a single conditional update, provided it is still at {@code expectedVersion}.
+     * The customer is only looked up when the update fails, to tell a stale version from a missing customer.
+     */
+    public Mono<Customer> updateCustomerDetails(Integer id, CustomerRegistrationRequest request, int expectedVersion) {
+        Optional<String> error = CustomerRegistrationValidator.validate(request);
+        if (error.isPresent()) {
+            return Mono.error(new InvalidRequestException(error.get()));
+        }
+        Customer customer = new Customer(id, request.name(), request.email(), request.age(), expectedVersion);
+        return customerDao.updateCustomer(customer)
+                .switchIfEmpty(Mono.defer(() -> getCustomerById(id)
+                        .then(Mono.error(() -> new PreconditionFailedException(
+                                "Customer with id [%s] is no longer at version [%s]".formatted(id, expectedVersion))))))
+                .onErrorMap(DuplicateKeyException.class, e -> new DuplicateResourceFoundException("Email already taken."));
+    }
+
+    /**
+     * Changes only the fields the patch sets, with a single statement that returns the updated customer,
+     * failing the same way as {@link CustomerService#patchCustomer}.
+     */
+    public Mono<Customer> patchCustomer(Integer id, CustomerPatchRequest patch, Integer expectedVersion) {
+        Optional<String> error = CustomerRegistrationValidator.validate(patch);
+        if (error.isPresent()) {
+            return Mono.error(new InvalidRequestException(error.get()));
+        }
+        if (patch.isEmpty()) {
+            return getCustomerById(id)
+                    .filter(customer -> expectedVersion == null || customer.getVersion() == expectedVersion)
+                    .switchIfEmpty(Mono.error(() -> new PreconditionFailedException(
+                            "Customer with id [%s] is no longer at version [%s]".formatted(id, expectedVersion))));
+        }
+        return customerDao.patchCustomer(id, patch, expectedVersion)
+                .switchIfEmpty(Mono.defer(() -> getCustomerById(id)
+                        .flatMap(current -> Mono.error(new PreconditionFailedException(
+                                "Customer with id [%s] is at version [%s], not [%s]".formatted(id, current.getVersion(), expectedVersion))))))
+                .onErrorMap(DuplicateKeyException.class, e -> new DuplicateResourceFoundException("Email already taken."));
+    }
+
+    private Mono<Customer> updateCurrentVersion(Integer id, CustomerRegistrationRequest request, int attempts) {
+        if (attempts == 0) {
+            return Mono.error(() -> new ConcurrentUpdateException(
+                    "Customer with id [%s] is being updated concurrently".formatted(id)));
+        }
+        return getCustomerById(id)
+                .flatMap(customer -> {
+                    customer.setName(request.name());
+                    customer.setEmail(request.email());
+                    customer.setAge(request.age());
+                    return customerDao.updateCustomer(customer);
+                })
+                .switchIfEmpty(Mono.defer(() -> updateCurrentVersion(id, request, attempts - 1)));
+    }
+
+    /**
+     * Streams every customer in the given format, reading rows only as fast as the client takes them.
+     */
+    public Flux<String> exportCustomers(CustomerFileFormat format) {
+        Flux<String> rows = customerDao.selectAllCustomers()
+                .map(customer -> format == CustomerFileFormat.CSV ? toCsvLine(customer) : toJsonLine(customer))
+                .buffer(EXPORT_CHUNK_SIZE)
+                .map(lines -> String.join("", lines));
+        return format == CustomerFileFormat.CSV
+                ? rows.startWith(CustomerCsvWriter.HEADER + "\r\n")
+                : rows;
+    }
+
+    private String toJsonLine(Customer customer) {
+        try {
+            return objectMapper.writeValueAsString(customer) + '\n';
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize customer [%s]".formatted(customer.getId()), e);
+        }
+    }
+
+    private static String toCsvLine(Customer customer) {
+        StringBuilder line = new StringBuilder(64).append(customer.getId()).append(',');
+        CustomerCsvWriter.appendField(line, customer.getName());
+        line.append(',');
+        CustomerCsvWriter.appendField(line, customer.getEmail());
+        return line.append(',').append(customer.getAge()).append("\r\n").toString();
+    }
+
+    private static ResourceNotFound notFound(Integer id) {
+        return new ResourceNotFound("Customer with id [%s] not found".formatted(id));
+    }
+}
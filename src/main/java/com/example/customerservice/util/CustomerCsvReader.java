@@ -0,0 +1,137 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.exception.InvalidRequestException;
+import com.example.customerservice.model.CustomerRegistrationRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 CSV registrations. The first record must be a header naming the
+ * {@code name}, {@code email} and {@code age} columns; other columns, such as the
+ * {@code id} column of an export, are ignored. Quoted fields may span lines.
+ */
+public class CustomerCsvReader implements CustomerRecordReader {
+
+    private static final int END_OF_INPUT = -1;
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final int nameColumn;
+    private final int emailColumn;
+    private final int ageColumn;
+    private final int columnCount;
+    private long recordNumber;
+    private int pending = NONE;
+
+    public CustomerCsvReader(InputStream inputStream) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new InvalidRequestException("CSV upload is empty.");
+        }
+        recordNumber++;
+        List<String> columns = header.stream().map(column -> column.trim().toLowerCase()).toList();
+        this.nameColumn = columns.indexOf("name");
+        this.emailColumn = columns.indexOf("email");
+        this.ageColumn = columns.indexOf("age");
+        this.columnCount = columns.size();
+        if (nameColumn < 0 || emailColumn < 0 || ageColumn < 0) {
+            throw new InvalidRequestException("CSV header must name the name, email and age columns.");
+        }
+    }
+
+    @Override
+    public Row next() throws IOException {
+        List<String> fields;
+        do {
+            fields = readRecord();
+            if (fields == null) {
+                return null;
+            }
+            recordNumber++;
+        } while (fields.size() == 1 && fields.get(0).isEmpty());
+
+        if (fields.size() != columnCount) {
+            return new Row(recordNumber, null, "Expected %d fields but found %d.".formatted(columnCount, fields.size()));
+        }
+        String name = fields.get(nameColumn);
+        String email = fields.get(emailColumn);
+        String age = fields.get(ageColumn).trim();
+        try {
+            return new Row(recordNumber, new CustomerRegistrationRequest(name, email, Integer.valueOf(age)), null);
+        } catch (NumberFormatException e) {
+            return new Row(recordNumber, new CustomerRegistrationRequest(name, email, null), "Age is not a number.");
+        }
+    }
+
+    /**
+     * @return the fields of the next record, or {@code null} at the end of the input.
+     */
+    private List<String> readRecord() throws IOException {
+        int c = read();
+        if (c == END_OF_INPUT) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == END_OF_INPUT) {
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        pending = next;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == END_OF_INPUT) {
+                fields.add(field.toString());
+                return fields;
+            } else if (c == '\r') {
+                int next = read();
+                if (next != '\n') {
+                    pending = next;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (pending != NONE) {
+            int c = pending;
+            pending = NONE;
+            return c;
+        }
+        return reader.read();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
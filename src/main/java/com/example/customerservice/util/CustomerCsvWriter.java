@@ -0,0 +1,74 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.Customer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes customers as RFC 4180 CSV with an {@code id,name,email,age} header row.
+ */
+public class CustomerCsvWriter implements CustomerExportWriter {
+
+    public static final String HEADER = "id,name,email,age";
+    private static final String LINE_SEPARATOR = "\r\n";
+
+    private final Writer writer;
+
+    public CustomerCsvWriter(OutputStream outputStream) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        this.writer.write(HEADER);
+        this.writer.write(LINE_SEPARATOR);
+    }
+
+    @Override
+    public void write(Customer customer) throws IOException {
+        writer.write(String.valueOf(customer.getId()));
+        writer.write(',');
+        writeField(customer.getName());
+        writer.write(',');
+        writeField(customer.getEmail());
+        writer.write(',');
+        writer.write(String.valueOf(customer.getAge()));
+        writer.write(LINE_SEPARATOR);
+    }
+
+    private void writeField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        writer.write(needsQuoting(value) ? quote(value) : value);
+    }
+
+    /**
+     * Appends a field to a CSV line, quoting it when it contains a separator, a quote or a line break.
+     */
+    public static void appendField(StringBuilder line, String value) {
+        if (value != null) {
+            line.append(needsQuoting(value) ? quote(value) : value);
+        }
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.flush();
+    }
+}
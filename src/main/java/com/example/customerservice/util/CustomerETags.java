@@ -0,0 +1,45 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.exception.PreconditionFailedException;
+import com.example.customerservice.model.Customer;
+
+/**
+ * Maps a customer's version to the ETag it is served with, and {@code If-Match} values back to versions.
+ */
+public final class CustomerETags {
+
+    private CustomerETags() {
+    }
+
+    public static String eTagOf(Customer customer) {
+        return "\"" + customer.getVersion() + "\"";
+    }
+
+    /**
+     * @return whether an update with this {@code If-Match} value applies to whatever version is current.
+     */
+    public static boolean isUnconditional(String ifMatch) {
+        return ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*");
+    }
+
+    /**
+     * Reads the version from an {@code If-Match} value such as {@code "3"} or {@code W/"3"}.
+     * A list of ETags is not supported, since a customer only ever has one current version.
+     *
+     * @throws PreconditionFailedException if the value is not an ETag this service issues.
+     */
+    public static int versionOf(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Integer.parseInt(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                //fall through: an ETag this service never issued cannot match
+            }
+        }
+        throw new PreconditionFailedException("If-Match [%s] does not match any version".formatted(ifMatch));
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes customers one at a time to an output stream, so an export never holds more than
+ * the current row in memory. {@link #close()} flushes the writer but leaves the stream open.
+ */
+public interface CustomerExportWriter extends Closeable {
+
+    void write(Customer customer) throws IOException;
+
+    static CustomerExportWriter create(CustomerFileFormat format, OutputStream outputStream, ObjectMapper objectMapper)
+            throws IOException {
+        return switch (format) {
+            case NDJSON -> new CustomerNdjsonWriter(outputStream, objectMapper);
+            case CSV -> new CustomerCsvWriter(outputStream);
+        };
+    }
+}
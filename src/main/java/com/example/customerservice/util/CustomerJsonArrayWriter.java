@@ -0,0 +1,178 @@
+package com.example.customerservice.util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes customers as a JSON array straight from their column values, without a {@code Customer} object or
+ * Jackson's reflective serializer in between. The output is byte for byte what Jackson writes for a
+ * {@code List<Customer>}: the fields in declaration order without whitespace, quotes, backslashes and control
+ * characters escaped the way Jackson escapes them, and other non-ASCII characters as UTF-8, except those
+ * outside the Basic Multilingual Plane, which Jackson writes as an escaped surrogate pair unless
+ * {@code COMBINE_UNICODE_SURROGATES_IN_UTF8} is switched on.
+ * <p>
+ * The field names are encoded once, names and emails are copied from their UTF-8 bytes, and output is
+ * gathered in a buffer of its own, so writing a customer allocates nothing. {@link #flush()} passes on what
+ * was written so far; {@link #close()} ends the array and flushes, but leaves the stream open.
+ */
+public class CustomerJsonArrayWriter implements Closeable, Flushable {
+
+    private static final byte[] ID_FIELD = "{\"id\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NAME_FIELD = ",\"name\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMAIL_FIELD = ",\"email\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] AGE_FIELD = ",\"age\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final OutputStream outputStream;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private boolean first = true;
+
+    public CustomerJsonArrayWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        buffer[position++] = '[';
+    }
+
+    /**
+     * @param name  the name as UTF-8, or {@code null}.
+     * @param email the email as UTF-8, or {@code null}.
+     */
+    public void write(int id, byte[] name, byte[] email, int age) throws IOException {
+        if (!first) {
+            writeByte(',');
+        }
+        first = false;
+        writeBytes(ID_FIELD, 0, ID_FIELD.length);
+        writeInt(id);
+        writeBytes(NAME_FIELD, 0, NAME_FIELD.length);
+        writeString(name);
+        writeBytes(EMAIL_FIELD, 0, EMAIL_FIELD.length);
+        writeString(email);
+        writeBytes(AGE_FIELD, 0, AGE_FIELD.length);
+        writeInt(age);
+        writeByte('}');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeByte(']');
+        flushBuffer();
+        outputStream.flush();
+    }
+
+    //Bytes of two and three byte characters are all >= 0x80 and below 0xF0, so they are copied as they are
+    private void writeString(byte[] utf8) throws IOException {
+        if (utf8 == null) {
+            writeBytes(NULL, 0, NULL.length);
+            return;
+        }
+        writeByte('"');
+        int start = 0;
+        for (int i = 0; i < utf8.length; i++) {
+            int b = utf8[i] & 0xFF;
+            if (b >= 0x20 && b != '"' && b != '\\' && b < 0xF0) {
+                continue;
+            }
+            writeBytes(utf8, start, i - start);
+            if (b >= 0xF0) {
+                int codePoint = (b & 0x07) << 18 | (utf8[i + 1] & 0x3F) << 12 | (utf8[i + 2] & 0x3F) << 6 | utf8[i + 3] & 0x3F;
+                writeUnicodeEscape(Character.highSurrogate(codePoint));
+                writeUnicodeEscape(Character.lowSurrogate(codePoint));
+                i += 3;
+            } else {
+                writeEscape(b);
+            }
+            start = i + 1;
+        }
+        writeBytes(utf8, start, utf8.length - start);
+        writeByte('"');
+    }
+
+    private void writeEscape(int b) throws IOException {
+        char shortEscape = switch (b) {
+            case '"', '\\' -> (char) b;
+            case '\b' -> 'b';
+            case '\t' -> 't';
+            case '\n' -> 'n';
+            case '\f' -> 'f';
+            case '\r' -> 'r';
+            default -> 0;
+        };
+        if (shortEscape == 0) {
+            writeUnicodeEscape(b);
+            return;
+        }
+        ensureCapacity(2);
+        buffer[position++] = '\\';
+        buffer[position++] = (byte) shortEscape;
+    }
+
+    private void writeUnicodeEscape(int c) throws IOException {
+        ensureCapacity(6);
+        buffer[position++] = '\\';
+        buffer[position++] = 'u';
+        buffer[position++] = HEX_DIGITS[c >> 12 & 0xF];
+        buffer[position++] = HEX_DIGITS[c >> 8 & 0xF];
+        buffer[position++] = HEX_DIGITS[c >> 4 & 0xF];
+        buffer[position++] = HEX_DIGITS[c & 0xF];
+    }
+
+    private void writeInt(int value) throws IOException {
+        ensureCapacity(11);
+        long remaining = value;
+        if (remaining < 0) {
+            buffer[position++] = '-';
+            remaining = -remaining;
+        }
+        //Digits come out least significant first, so they are reversed in place afterwards
+        int start = position;
+        do {
+            buffer[position++] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining > 0);
+        for (int i = start, j = position - 1; i < j; i++, j--) {
+            byte digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        ensureCapacity(1);
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+            flushBuffer();
+            if (length > buffer.length) {
+                outputStream.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (length > buffer.length - position) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        outputStream.write(buffer, 0, position);
+        position = 0;
+    }
+}
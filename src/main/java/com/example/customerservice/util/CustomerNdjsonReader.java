@@ -0,0 +1,49 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.CustomerRegistrationRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads newline-delimited JSON registrations, one object per line. Blank lines are skipped.
+ */
+public class CustomerNdjsonReader implements CustomerRecordReader {
+
+    private final BufferedReader reader;
+    private final ObjectReader requestReader;
+    private long lineNumber;
+
+    public CustomerNdjsonReader(InputStream inputStream, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        this.requestReader = objectMapper.readerFor(CustomerRegistrationRequest.class);
+    }
+
+    @Override
+    public Row next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                return new Row(lineNumber, requestReader.readValue(line), null);
+            } catch (JsonProcessingException e) {
+                return new Row(lineNumber, null, "Malformed JSON.");
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
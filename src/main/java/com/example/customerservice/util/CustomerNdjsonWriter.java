@@ -0,0 +1,39 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.Customer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes customers as newline-delimited JSON, one object per line.
+ */
+public class CustomerNdjsonWriter implements CustomerExportWriter {
+
+    private final JsonGenerator generator;
+    private final ObjectWriter customerWriter;
+
+    public CustomerNdjsonWriter(OutputStream outputStream, ObjectMapper objectMapper) throws IOException {
+        this.generator = objectMapper.getFactory().createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // the newline is written explicitly after every row instead of between root values
+        this.generator.setRootValueSeparator(null);
+        this.customerWriter = objectMapper.writerFor(Customer.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Override
+    public void write(Customer customer) throws IOException {
+        customerWriter.writeValue(generator, customer);
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
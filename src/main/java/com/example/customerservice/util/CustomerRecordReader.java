@@ -0,0 +1,42 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.CustomerFileFormat;
+import com.example.customerservice.model.CustomerRegistrationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads customer registrations one at a time from an upload, so only the current row is held in memory.
+ */
+public interface CustomerRecordReader extends Closeable {
+
+    /**
+     * @return the next row, or {@code null} once the input is exhausted.
+     */
+    Row next() throws IOException;
+
+    static CustomerRecordReader create(CustomerFileFormat format, InputStream inputStream, ObjectMapper objectMapper)
+            throws IOException {
+        return switch (format) {
+            case NDJSON -> new CustomerNdjsonReader(inputStream, objectMapper);
+            case CSV -> new CustomerCsvReader(inputStream);
+        };
+    }
+
+    /**
+     * A row of the upload.
+     *
+     * @param line    the line (NDJSON) or record (CSV, counting the header) the row came from.
+     * @param request the registration read from the row, possibly partial if the row is malformed.
+     * @param error   why the row could not be read, or {@code null} if it was read.
+     */
+    record Row(long line, CustomerRegistrationRequest request, String error) {
+
+        public String email() {
+            return request == null ? null : request.email();
+        }
+    }
+}
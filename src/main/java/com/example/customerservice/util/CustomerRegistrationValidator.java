@@ -0,0 +1,57 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerRegistrationRequest;
+
+import java.util.Optional;
+
+/**
+ * Checks that a registration carries the fields the {@code customer} table requires.
+ */
+public final class CustomerRegistrationValidator {
+
+    public static final int MAX_AGE = 150;
+
+    private CustomerRegistrationValidator() {
+    }
+
+    /**
+     * @return the reason the registration is invalid, or empty if it can be stored.
+     */
+    public static Optional<String> validate(CustomerRegistrationRequest request) {
+        if (request == null) {
+            return Optional.of("Registration is empty.");
+        }
+        if (request.name() == null || request.name().isBlank()) {
+            return Optional.of("Name is required.");
+        }
+        if (request.email() == null || request.email().isBlank() || request.email().indexOf('@') < 1) {
+            return Optional.of("A valid email is required.");
+        }
+        if (request.age() == null || request.age() < 0 || request.age() > MAX_AGE) {
+            return Optional.of("Age must be between 0 and %d.".formatted(MAX_AGE));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Checks only the fields the patch sets, against the same rules as a registration.
+     *
+     * @return the reason the patch is invalid, or empty if it can be applied.
+     */
+    public static Optional<String> validate(CustomerPatchRequest patch) {
+        if (patch == null) {
+            return Optional.of("Patch is empty.");
+        }
+        if (patch.name() != null && patch.name().isBlank()) {
+            return Optional.of("Name must not be blank.");
+        }
+        if (patch.email() != null && (patch.email().isBlank() || patch.email().indexOf('@') < 1)) {
+            return Optional.of("A valid email is required.");
+        }
+        if (patch.age() != null && (patch.age() < 0 || patch.age() > MAX_AGE)) {
+            return Optional.of("Age must be between 0 and %d.".formatted(MAX_AGE));
+        }
+        return Optional.empty();
+    }
+}
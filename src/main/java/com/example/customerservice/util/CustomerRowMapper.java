@@ -17,6 +17,7 @@ public class CustomerRowMapper implements RowMapper<Customer> {
         String name = resultSet.getString("name");
         String email = resultSet.getString("email");
         Integer age = resultSet.getInt("age");
-        return new Customer(id, name, email, age);
+        int version = resultSet.getInt("version");
+        return new Customer(id, name, email, age, version);
     }
 }
\ No newline at end of file
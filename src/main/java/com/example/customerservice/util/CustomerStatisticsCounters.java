@@ -0,0 +1,224 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerStatistics;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Thread-safe running totals over the stored customers: their number, a histogram of their ages in
+ * {@link #AGE_BUCKET_WIDTH}-year ranges and the number of customers per email domain. Every write adjusts
+ * them in constant time, so reading them does not depend on the number of customers; only ranking the
+ * domains depends on the number of distinct domains, and its result is reused until a domain count changes.
+ * <p>
+ * Counts only follow the writes they are told about, so {@link #rebuild} recounts them from a full scan
+ * now and then to correct any drift. Writes told about once the scan has handed over its first customer are
+ * journaled and replayed onto the recount: by then the scan's snapshot exists, so those writes are not in
+ * it. Writes told about earlier may or may not be in the snapshot and are not replayed, so at worst they go
+ * missing until the next rebuild rather than being counted twice.
+ */
+public class CustomerStatisticsCounters {
+
+    public static final int AGE_BUCKET_WIDTH = 10;
+    private static final int AGE_BUCKETS = CustomerRegistrationValidator.MAX_AGE / AGE_BUCKET_WIDTH + 1;
+
+    private final Clock clock;
+    private volatile Counts counts = new Counts();
+    //Changes made since the running rebuild's scan returned its first customer, or null when none is journaling
+    private volatile Counts journal;
+
+    //Writers share the read side, so that a rebuild swapping in its recount with the write side loses none
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile RankedDomains rankedDomains;
+    private volatile Instant rebuiltAt;
+
+    public CustomerStatisticsCounters() {
+        this(Clock.systemUTC());
+    }
+
+    public CustomerStatisticsCounters(Clock clock) {
+        this.clock = clock;
+    }
+
+    public void add(Customer customer) {
+        change(customer, 1);
+    }
+
+    public void remove(Customer customer) {
+        change(customer, -1);
+    }
+
+    /**
+     * Moves a customer from its old age range and domain to its new ones.
+     */
+    public void replace(Customer before, Customer after) {
+        Lock lock = swapLock.readLock();
+        lock.lock();
+        try {
+            apply(before, -1);
+            apply(after, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void change(Customer customer, int delta) {
+        Lock lock = swapLock.readLock();
+        lock.lock();
+        try {
+            apply(customer, delta);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void apply(Customer customer, int delta) {
+        counts.add(customer, delta);
+        Counts changes = journal;
+        if (changes != null) {
+            changes.add(customer, delta);
+        }
+    }
+
+    /**
+     * Recounts everything from a scan of all customers, replays the writes told about since the scan returned
+     * its first customer, and replaces the running totals with the result. Not to be called concurrently.
+     *
+     * @param scan feeds every stored customer to the consumer it is given.
+     * @return how far the customer count had drifted, positive if it was too high.
+     */
+    public long rebuild(Consumer<Consumer<Customer>> scan) {
+        Counts changes = new Counts();
+        Counts recounted = new Counts();
+        try {
+            scan.accept(customer -> {
+                if (journal == null) {
+                    journal = changes;
+                }
+                recounted.add(customer, 1);
+            });
+        } catch (RuntimeException e) {
+            journal = null;
+            throw e;
+        }
+        Lock lock = swapLock.writeLock();
+        lock.lock();
+        try {
+            recounted.addAll(changes);
+            long drift = counts.total.sum() - recounted.total.sum();
+            counts = recounted;
+            journal = null;
+            rebuiltAt = clock.instant();
+            return drift;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether the counts have been built from a full scan at least once.
+     */
+    public boolean isLoaded() {
+        return rebuiltAt != null;
+    }
+
+    /**
+     * @param topDomains the number of email domains to list.
+     */
+    public CustomerStatistics snapshot(int topDomains) {
+        Counts current = counts;
+        List<CustomerStatistics.AgeBucket> ageHistogram = new ArrayList<>(AGE_BUCKETS);
+        for (int bucket = 0; bucket < AGE_BUCKETS; bucket++) {
+            int minAge = bucket * AGE_BUCKET_WIDTH;
+            ageHistogram.add(new CustomerStatistics.AgeBucket(
+                    minAge, minAge + AGE_BUCKET_WIDTH - 1, current.ages.get(bucket)));
+        }
+        return new CustomerStatistics(current.total.sum(), ageHistogram, topDomains(current, topDomains), rebuiltAt);
+    }
+
+    private List<CustomerStatistics.DomainCount> topDomains(Counts current, int limit) {
+        long changes = current.domainChanges.get();
+        RankedDomains ranked = rankedDomains;
+        if (ranked == null || ranked.counts != current || ranked.changes != changes || ranked.limit < limit) {
+            ranked = new RankedDomains(current, changes, limit, rank(current.domains, limit));
+            rankedDomains = ranked;
+        }
+        return ranked.domains.size() > limit ? ranked.domains.subList(0, limit) : ranked.domains;
+    }
+
+    /**
+     * Keeps the {@code limit} largest domains in a min-heap, so ranking takes one pass over the domains.
+     */
+    private static List<CustomerStatistics.DomainCount> rank(Map<String, Long> domains, int limit) {
+        Comparator<CustomerStatistics.DomainCount> byCount = Comparator
+                .comparingLong(CustomerStatistics.DomainCount::count)
+                .thenComparing(CustomerStatistics.DomainCount::domain, Comparator.reverseOrder());
+        PriorityQueue<CustomerStatistics.DomainCount> top = new PriorityQueue<>(limit + 1, byCount);
+        domains.forEach((domain, count) -> {
+            top.add(new CustomerStatistics.DomainCount(domain, count));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        });
+        List<CustomerStatistics.DomainCount> ranked = new ArrayList<>(top);
+        ranked.sort(byCount.reversed());
+        return List.copyOf(ranked);
+    }
+
+    private static final class Counts {
+        private final LongAdder total = new LongAdder();
+        private final AtomicLongArray ages = new AtomicLongArray(AGE_BUCKETS);
+        private final Map<String, Long> domains = new ConcurrentHashMap<>();
+        private final AtomicLong domainChanges = new AtomicLong();
+
+        private void add(Customer customer, int delta) {
+            total.add(delta);
+            ages.addAndGet(ageBucket(customer.getAge()), delta);
+            domains.merge(domainOf(customer.getEmail()), (long) delta, CustomerStatisticsCounters::sumOrDrop);
+            domainChanges.incrementAndGet();
+        }
+
+        private void addAll(Counts changes) {
+            total.add(changes.total.sum());
+            for (int bucket = 0; bucket < AGE_BUCKETS; bucket++) {
+                ages.addAndGet(bucket, changes.ages.get(bucket));
+            }
+            changes.domains.forEach((domain, delta) -> domains.merge(domain, delta, CustomerStatisticsCounters::sumOrDrop));
+            domainChanges.incrementAndGet();
+        }
+    }
+
+    private record RankedDomains(Counts counts, long changes, int limit, List<CustomerStatistics.DomainCount> domains) {
+    }
+
+    /**
+     * Merging to null drops a domain once its last customer is gone, atomically with concurrent adds.
+     */
+    private static Long sumOrDrop(Long count, Long change) {
+        long sum = count + change;
+        return sum == 0 ? null : sum;
+    }
+
+    private static int ageBucket(int age) {
+        return Math.max(0, Math.min(age / AGE_BUCKET_WIDTH, AGE_BUCKETS - 1));
+    }
+
+    private static String domainOf(String email) {
+        return email.substring(email.indexOf('@') + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,3 @@
+-- Customer ids are reserved in blocks of 50 (Customer.ID_BLOCK_SIZE) with one nextval per block.
+-- Inserts must supply the id; relying on the column default would now skip 49 ids per row.
+ALTER SEQUENCE customer_id_seq INCREMENT BY 50;
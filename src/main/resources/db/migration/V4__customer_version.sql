@@ -0,0 +1,2 @@
+-- Optimistic locking: every update increments the version and only applies to the version it was based on
+ALTER TABLE customer ADD COLUMN version integer NOT NULL DEFAULT 0;
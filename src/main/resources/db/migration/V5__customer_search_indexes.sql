@@ -0,0 +1,11 @@
+-- Indexes behind the customer search; their expressions must match the predicates CustomerSearchQuery writes
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Age ranges, with id so a single age can be walked in keyset order
+CREATE INDEX customer_age_id_idx ON customer (age, id);
+
+-- Case-insensitive name prefix and contains matches: lower(name) LIKE 'abc%' or '%abc%'
+CREATE INDEX customer_name_trgm_idx ON customer USING gin (lower(name) gin_trgm_ops);
+
+-- Exact email domain matches, with id for keyset order within a domain
+CREATE INDEX customer_email_domain_id_idx ON customer (lower(split_part(email, '@', 2)), id);
@@ -0,0 +1,29 @@
+-- Change events. Writers append to customer_outbox in the transaction of the change; one relay at a time
+-- moves committed rows to customer_event, so event sequence numbers follow the order events became visible.
+-- name, email, age and version hold the customer after the change and are null for deletions.
+CREATE TABLE customer_outbox
+(
+    id          bigint GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    type        text        NOT NULL,
+    customer_id integer     NOT NULL,
+    name        text,
+    email       text,
+    age         integer,
+    version     integer,
+    occurred_at timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE TABLE customer_event
+(
+    sequence    bigint GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    type        text        NOT NULL,
+    customer_id integer     NOT NULL,
+    name        text,
+    email       text,
+    age         integer,
+    version     integer,
+    occurred_at timestamptz NOT NULL
+);
+
+-- Events are appended in time order, so a BRIN index finds the expired ones for pruning at almost no cost
+CREATE INDEX customer_event_occurred_at_idx ON customer_event USING brin (occurred_at);
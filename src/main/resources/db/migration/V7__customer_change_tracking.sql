@@ -0,0 +1,17 @@
+-- Delta sync: writes stamp the customer with now(), deletes leave a tombstone, so a client asks only for
+-- what changed since its cursor. Existing customers count as created and updated by this migration.
+ALTER TABLE customer
+    ADD COLUMN created_at timestamptz NOT NULL DEFAULT now(),
+    ADD COLUMN updated_at timestamptz NOT NULL DEFAULT now();
+
+-- Updates move a row to the end of updated_at order wherever it sits in the heap, so BRIN would match
+-- nearly every block range; the btree also returns rows in cursor order for the keyset scan
+CREATE INDEX customer_updated_at_id_idx ON customer (updated_at, id);
+
+CREATE TABLE customer_tombstone
+(
+    customer_id integer PRIMARY KEY,
+    deleted_at  timestamptz NOT NULL
+);
+
+CREATE INDEX customer_tombstone_deleted_at_idx ON customer_tombstone (deleted_at, customer_id);
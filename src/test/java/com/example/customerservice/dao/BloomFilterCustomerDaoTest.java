@@ -0,0 +1,126 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.util.EmailBloomFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+/**
+ * Unit test class for BloomFilterCustomerDao.
+ * This class verifies that emails unknown to the filter skip the wrapped DAO and all others reach it.
+ */
+class BloomFilterCustomerDaoTest {
+
+    private BloomFilterCustomerDao underTest;
+
+    // Used to automatically close resources initialized by openMocks() after each test.
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private CustomerDao delegate;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = openMocks(this);
+        underTest = new BloomFilterCustomerDao(delegate, new EmailBloomFilter(1000, 0.001));
+        doAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            consumer.accept("alex@gmail.com");
+            return null;
+        }).when(delegate).streamAllEmails(any());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    /**
+     * Tests that before the filter is populated every check goes to the wrapped DAO.
+     */
+    @Test
+    void checksGoToDatabaseUntilPopulated() {
+        // When
+        underTest.personWithEmailExists("new@gmail.com");
+
+        // Then
+        verify(delegate).personWithEmailExists("new@gmail.com");
+        assertThat(underTest.isPopulated()).isFalse();
+    }
+
+    /**
+     * Tests that an unknown email is answered by the filter and a known one is confirmed by the wrapped DAO.
+     */
+    @Test
+    void personWithEmailExists() {
+        // Given
+        underTest.populate();
+        when(delegate.personWithEmailExists("alex@gmail.com")).thenReturn(true);
+
+        // When
+        boolean unknown = underTest.personWithEmailExists("new@gmail.com");
+        boolean known = underTest.personWithEmailExists("alex@gmail.com");
+
+        // Then
+        assertThat(unknown).isFalse();
+        assertThat(known).isTrue();
+        verify(delegate, never()).personWithEmailExists("new@gmail.com");
+        assertThat(underTest.negativeChecks()).isEqualTo(1);
+        assertThat(underTest.positiveChecks()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that only emails the filter might contain are looked up in bulk.
+     */
+    @Test
+    void selectExistingEmails() {
+        // Given
+        underTest.populate();
+        when(delegate.selectExistingEmails(List.of("alex@gmail.com"))).thenReturn(Set.of("alex@gmail.com"));
+
+        // When
+        Set<String> existing = underTest.selectExistingEmails(List.of("alex@gmail.com", "new@gmail.com"));
+        Set<String> none = underTest.selectExistingEmails(List.of("new@gmail.com"));
+
+        // Then
+        assertThat(existing).containsExactly("alex@gmail.com");
+        assertThat(none).isEmpty();
+        verify(delegate).selectExistingEmails(any());
+    }
+
+    /**
+     * Tests that added and updated emails are put in the filter, so later checks reach the wrapped DAO.
+     */
+    @Test
+    void writesAreAddedToFilter() {
+        // Given
+        underTest.populate();
+
+        // When
+        underTest.addCustomer(new Customer("Jamila", "jamila@gmail.com", 19));
+        underTest.addCustomers(List.of(new Customer("Ahmed", "ahmed@gmail.com", 30)));
+        underTest.updateCustomer(new Customer(1, "Alex", "alex@yahoo.com", 21));
+        underTest.personWithEmailExists("jamila@gmail.com");
+        underTest.personWithEmailExists("ahmed@gmail.com");
+        underTest.personWithEmailExists("alex@yahoo.com");
+
+        // Then
+        verify(delegate).personWithEmailExists("jamila@gmail.com");
+        verify(delegate).personWithEmailExists("ahmed@gmail.com");
+        verify(delegate).personWithEmailExists("alex@yahoo.com");
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+/**
+ * Unit test class for CachingCustomerDao.
+ * This class verifies that lookups by id are served from the cache and that writes invalidate it.
+ */
+class CachingCustomerDaoTest {
+
+    private CachingCustomerDao underTest;
+
+    // Used to automatically close resources initialized by openMocks() after each test.
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private CustomerDao delegate;
+
+    private final Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21);
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = openMocks(this);
+        underTest = new CachingCustomerDao(delegate, 100, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    /**
+     * Tests that a second lookup of the same id is a cache hit and returns an independent copy.
+     */
+    @Test
+    void selectCustomerByIdIsCached() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+
+        // When
+        Customer first = underTest.selectCustomerById(1).orElseThrow();
+        first.setName("Changed");
+        Customer second = underTest.selectCustomerById(1).orElseThrow();
+
+        // Then
+        verify(delegate, times(1)).selectCustomerById(1);
+        assertThat(second).isEqualTo(alex);
+        assertThat(underTest.stats().hitCount()).isEqualTo(1);
+        assertThat(underTest.stats().missCount()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that a multi-get serves cached ids from the cache, loads the rest with one call and caches them.
+     */
+    @Test
+    void selectCustomersByIdsLoadsOnlyMisses() {
+        // Given
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex));
+        when(delegate.selectCustomersByIds(List.of(2, 3))).thenReturn(List.of(jamila));
+        underTest.selectCustomerById(1);
+
+        // When
+        List<Customer> customers = underTest.selectCustomersByIds(List.of(1, 2, 3));
+        Optional<Customer> cached = underTest.selectCustomerById(2);
+
+        // Then
+        assertThat(customers).containsExactlyInAnyOrder(alex, jamila);
+        assertThat(cached).contains(jamila);
+        verify(delegate, times(1)).selectCustomersByIds(List.of(2, 3));
+        verify(delegate, never()).selectCustomerById(2);
+    }
+
+    /**
+     * Tests that an unknown id is not cached, so a customer added afterwards is found.
+     */
+    @Test
+    void missingCustomerIsNotCached() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.empty(), Optional.of(alex));
+
+        // When
+        Optional<Customer> before = underTest.selectCustomerById(1);
+        Optional<Customer> after = underTest.selectCustomerById(1);
+
+        // Then
+        assertThat(before).isEmpty();
+        assertThat(after).contains(alex);
+    }
+
+    /**
+     * Tests that updating a customer invalidates its cache entry.
+     */
+    @Test
+    void updateCustomerInvalidates() {
+        // Given
+        Customer updated = new Customer(1, "Alexander", "alex@gmail.com", 22);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.of(updated));
+        underTest.selectCustomerById(1);
+
+        // When
+        underTest.updateCustomer(updated);
+
+        // Then
+        assertThat(underTest.selectCustomerById(1)).contains(updated);
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    /**
+     * Tests that deleting a customer invalidates its cache entry.
+     */
+    @Test
+    void deleteCustomerByIdInvalidates() {
+        // Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.empty());
+        when(delegate.deleteCustomerById(1)).thenReturn(Optional.of(alex));
+        underTest.selectCustomerById(1);
+
+        // When
+        Optional<Customer> deleted = underTest.deleteCustomerById(1);
+
+        // Then
+        assertThat(deleted).contains(alex);
+        assertThat(underTest.selectCustomerById(1)).isEmpty();
+    }
+
+    /**
+     * Tests a lookup by a client that must see its own writes, of a customer changed on another instance
+     * after it was cached here.
+     * Verifies that it is read from the wrapped DAO rather than the cache.
+     */
+    @Test
+    void lookupRequiringPrimarySkipsCache() {
+        // Given
+        Customer updated = new Customer(1, "Alexander", "alex@gmail.com", 22);
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(alex), Optional.of(updated));
+        underTest.selectCustomerById(1);
+
+        // When
+        Optional<Customer> customer;
+        try (DataSourceRoute.Scope scope = DataSourceRoute.requirePrimary()) {
+            customer = underTest.selectCustomerById(1);
+        }
+
+        // Then
+        assertThat(customer).contains(updated);
+        assertThat(underTest.stats().requestCount()).isEqualTo(1);
+    }
+}
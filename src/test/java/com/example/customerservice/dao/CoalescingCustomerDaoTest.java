@@ -0,0 +1,186 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+/**
+ * Unit test class for CoalescingCustomerDao.
+ * The wrapped DAO holds every call until released, so the calls that follow find the first one in flight.
+ */
+class CoalescingCustomerDaoTest {
+
+    private CoalescingCustomerDao underTest;
+
+    // Used to automatically close resources initialized by openMocks() after each test.
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private CustomerDao delegate;
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = openMocks(this);
+        underTest = new CoalescingCustomerDao(delegate);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        autoCloseable.close();
+    }
+
+    /**
+     * Tests three concurrent lookups of the same id.
+     * Verifies that they share one call to the wrapped DAO and each get their own copy of the customer.
+     */
+    @Test
+    void concurrentLookupsShareOneCall() throws Exception {
+        when(delegate.selectCustomerById(1)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return Optional.of(new Customer(1, "Alex", "alex@gmail.com", 21, 0));
+        });
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Given: one lookup in flight
+            Future<Optional<Customer>> first = executor.submit(() -> underTest.selectCustomerById(1));
+            entered.await();
+
+            // When: two more arrive before it returns
+            Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(1));
+            Future<Optional<Customer>> third = executor.submit(() -> underTest.selectCustomerById(1));
+            while (underTest.coalescedLookups() < 2) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            // Then
+            assertThat(first.get()).contains(new Customer(1, "Alex", "alex@gmail.com", 21, 0));
+            assertThat(second.get()).isEqualTo(first.get());
+            assertThat(third.get().orElseThrow()).isNotSameAs(second.get().orElseThrow());
+        }
+        verify(delegate, times(1)).selectCustomerById(1);
+        assertThat(underTest.coalescedLookups()).isEqualTo(2);
+    }
+
+    /**
+     * Tests a lookup that fails while another caller waits on it.
+     * Verifies that both get the failure and the next lookup makes a call of its own.
+     */
+    @Test
+    void failedCallIsSharedAndNotKept() throws Exception {
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21, 0);
+        when(delegate.selectCustomerById(1))
+                .thenAnswer(invocation -> {
+                    entered.countDown();
+                    release.await();
+                    throw new QueryTimeoutException("canceling statement due to statement timeout");
+                })
+                .thenReturn(Optional.of(alex));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Given
+            Future<Optional<Customer>> first = executor.submit(() -> underTest.selectCustomerById(1));
+            entered.await();
+
+            // When
+            Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(1));
+            while (underTest.coalescedLookups() < 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            // Then
+            assertThatThrownBy(first::get).hasCauseInstanceOf(QueryTimeoutException.class);
+            assertThatThrownBy(second::get).hasCauseInstanceOf(QueryTimeoutException.class);
+        }
+        assertThat(underTest.selectCustomerById(1)).contains(alex);
+        verify(delegate, times(2)).selectCustomerById(1);
+    }
+
+    /**
+     * Tests a lookup made after an update while an older lookup of the customer is still in flight.
+     * Verifies that it does not join the older lookup, which may miss the update.
+     */
+    @Test
+    void lookupAfterWriteDoesNotJoinOlderCall() throws Exception {
+        Customer updated = new Customer(1, "Alex", "alex@gmail.com", 22, 1);
+        when(delegate.selectCustomerById(1))
+                .thenAnswer(invocation -> {
+                    entered.countDown();
+                    release.await();
+                    return Optional.of(new Customer(1, "Alex", "alex@gmail.com", 21, 0));
+                })
+                .thenReturn(Optional.of(updated));
+        when(delegate.updateCustomer(updated)).thenReturn(
+                new CustomerUpdate(new Customer(1, "Alex", "alex@gmail.com", 21, 0), updated));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Given
+            Future<Optional<Customer>> older = executor.submit(() -> underTest.selectCustomerById(1));
+            entered.await();
+
+            // When
+            underTest.updateCustomer(updated);
+
+            // Then
+            assertThat(underTest.selectCustomerById(1)).contains(updated);
+            release.countDown();
+            assertThat(older.get().orElseThrow().getAge()).isEqualTo(21);
+        }
+        assertThat(underTest.coalescedLookups()).isZero();
+    }
+
+    /**
+     * Tests a lookup that must read the primary while another lookup of the customer, possibly from a replica,
+     * is in flight.
+     * Verifies that it makes a call of its own instead of joining the other one.
+     */
+    @Test
+    void lookupRequiringPrimaryDoesNotJoinCallInFlight() throws Exception {
+        Customer onPrimary = new Customer(1, "Alex", "alex@gmail.com", 22, 1);
+        when(delegate.selectCustomerById(1))
+                .thenAnswer(invocation -> {
+                    entered.countDown();
+                    release.await();
+                    return Optional.of(new Customer(1, "Alex", "alex@gmail.com", 21, 0));
+                })
+                .thenReturn(Optional.of(onPrimary));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Given
+            Future<Optional<Customer>> inFlight = executor.submit(() -> underTest.selectCustomerById(1));
+            entered.await();
+
+            // When
+            Optional<Customer> customer;
+            try (DataSourceRoute.Scope scope = DataSourceRoute.requirePrimary()) {
+                customer = underTest.selectCustomerById(1);
+            }
+
+            // Then
+            assertThat(customer).contains(onPrimary);
+            release.countDown();
+            assertThat(inFlight.get().orElseThrow().getAge()).isEqualTo(21);
+        }
+        verify(delegate, times(2)).selectCustomerById(1);
+        assertThat(underTest.coalescedLookups()).isZero();
+    }
+}
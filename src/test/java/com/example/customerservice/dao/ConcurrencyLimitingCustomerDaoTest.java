@@ -0,0 +1,79 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.exception.ServiceOverloadedException;
+import com.example.customerservice.model.Customer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+/**
+ * Unit test class for ConcurrencyLimitingCustomerDao.
+ * This class verifies that no more calls than permitted reach the wrapped DAO at once.
+ */
+class ConcurrencyLimitingCustomerDaoTest {
+
+    private ConcurrencyLimitingCustomerDao underTest;
+
+    // Used to automatically close resources initialized by openMocks() after each test.
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private CustomerDao delegate;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch entered = new CountDownLatch(2);
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = openMocks(this);
+        underTest = new ConcurrencyLimitingCustomerDao(delegate, 2, Duration.ofMillis(200));
+        when(delegate.selectCustomerById(1)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return Optional.of(new Customer(1, "Alex", "alex@gmail.com", 21));
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    /**
+     * Tests that a third concurrent call is refused once two calls hold the permits,
+     * and that the permits are returned when the calls finish.
+     */
+    @Test
+    void callsBeyondLimitAreRefused() throws Exception {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Given: two calls inside the DAO
+            Future<Optional<Customer>> first = executor.submit(() -> underTest.selectCustomerById(1));
+            Future<Optional<Customer>> second = executor.submit(() -> underTest.selectCustomerById(1));
+            entered.await();
+
+            // When / Then: the third one times out waiting for a permit
+            assertThat(underTest.inUse()).isEqualTo(2);
+            assertThatThrownBy(() -> underTest.personWithEmailExists("alex@gmail.com"))
+                    .isInstanceOf(ServiceOverloadedException.class);
+
+            release.countDown();
+            assertThat(first.get()).isPresent();
+            assertThat(second.get()).isPresent();
+        }
+        assertThat(underTest.availablePermits()).isEqualTo(2);
+        assertThat(underTest.personWithEmailExists("alex@gmail.com")).isFalse();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.AbstractTestContainer;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test suite for the delta sync queries of CustomerRepository.
+ * Runs without a test transaction: changes are only listed once their transaction has ended, so every write
+ * here commits on its own.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CustomerChangesRepositoryTest extends AbstractTestContainer {
+
+    @Autowired
+    private CustomerRepository underTest;
+
+    /**
+     * Tests updating one customer and deleting another.
+     * Verifies that both are listed after the cursor, the deleted one as a tombstone, in the order of their last change.
+     */
+    @Test
+    void findChanges() {
+        //Given
+        Instant since = Instant.now().minusSeconds(1);
+        String domain = UUID.randomUUID() + ".test";
+        Customer updated = underTest.save(new Customer("Updated", "updated@" + domain, 20));
+        Customer deleted = underTest.save(new Customer("Deleted", "deleted@" + domain, 30));
+        underTest.deleteLeavingTombstone(deleted.getId());
+        underTest.updateIfVersion(updated.getId(), 0, "Updated", "updated@" + domain, 21);
+        List<Integer> ids = List.of(updated.getId(), deleted.getId());
+
+        //When
+        List<CustomerChange> changes = underTest.findChanges(since, null, 100_000).stream()
+                .filter(change -> ids.contains(change.customerId()))
+                .toList();
+
+        //Then
+        assertThat(changes).extracting(CustomerChange::customerId).containsExactly(deleted.getId(), updated.getId());
+        assertThat(changes.get(0).deleted()).isTrue();
+        assertThat(changes.get(1).customer()).isEqualTo(new Customer(updated.getId(), "Updated", "updated@" + domain, 21));
+        assertThat(changes.get(1).version()).isEqualTo(1);
+        assertThat(underTest.deleteLeavingTombstone(deleted.getId())).isEmpty();
+    }
+}
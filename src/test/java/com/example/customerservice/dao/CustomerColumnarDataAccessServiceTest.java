@@ -0,0 +1,242 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit test class for CustomerColumnarDataAccessService.
+ * This class verifies that customers read back from the columns match what was written,
+ * across deletes, updates and compaction.
+ */
+class CustomerColumnarDataAccessServiceTest {
+
+    private CustomerColumnarDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerColumnarDataAccessService();
+    }
+
+    /**
+     * Tests that an added customer is read back intact, including non-ASCII text, and that its email is unique.
+     */
+    @Test
+    void addCustomer() {
+        //When
+        Optional<Integer> id = underTest.addCustomer(new Customer("Zoë Ångström", "zoe@gmail.com", 33));
+        Optional<Integer> conflict = underTest.addCustomer(new Customer("Other", "zoe@gmail.com", 40));
+
+        //Then
+        assertThat(id).contains(1);
+        assertThat(conflict).isEmpty();
+        assertThat(underTest.selectCustomerById(1)).contains(new Customer(1, "Zoë Ångström", "zoe@gmail.com", 33));
+        assertThat(underTest.personWithEmailExists("zoe@gmail.com")).isTrue();
+        assertThat(underTest.personWithEmailExists("zoe@yahoo.com")).isFalse();
+    }
+
+    /**
+     * Tests a customer stored with the lowest possible age, which a deleted slot was once marked with.
+     * Verifies that it stays visible to reads until it is deleted, after which its email is free again.
+     */
+    @Test
+    void anyAgeIsLiveUntilDeleted() {
+        //Given
+        underTest.addCustomer(new Customer("Alex", "alex@gmail.com", Integer.MIN_VALUE));
+
+        //When / Then
+        assertThat(underTest.selectCustomerById(1)).contains(new Customer(1, "Alex", "alex@gmail.com", Integer.MIN_VALUE));
+        assertThat(underTest.selectAllCustomers()).hasSize(1);
+        assertThat(underTest.size()).isEqualTo(1);
+        assertThat(underTest.deleteCustomerById(1)).isPresent();
+        assertThat(underTest.selectCustomerById(1)).isEmpty();
+        assertThat(underTest.size()).isZero();
+        assertThat(underTest.addCustomer(new Customer("Alex", "alex@gmail.com", 21))).contains(2);
+    }
+
+    /**
+     * Tests that updates move the email in the email index and the version on, and refuse stale versions,
+     * missing customers and another customer's email.
+     */
+    @Test
+    void updateCustomer() {
+        //Given
+        underTest.addCustomer(new Customer("Alex", "alex@gmail.com", 21));
+        underTest.addCustomer(new Customer("Jamila", "jamila@gmail.com", 19));
+
+        //When
+        CustomerUpdate update = underTest.updateCustomer(new Customer(1, "Alexander", "alex@yahoo.com", 22));
+
+        //Then
+        assertThat(update.before()).isEqualTo(new Customer(1, "Alex", "alex@gmail.com", 21));
+        assertThat(update.after().getVersion()).isEqualTo(1);
+        assertThat(underTest.selectCustomerById(1)).contains(new Customer(1, "Alexander", "alex@yahoo.com", 22));
+        assertThat(underTest.selectCustomerById(1).orElseThrow().getVersion()).isEqualTo(1);
+        assertThat(underTest.personWithEmailExists("alex@gmail.com")).isFalse();
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(1, "Alex", "alex@gmail.com", 22, 0)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(9, "Nobody", "nobody@gmail.com", 1)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(1, "Alex", "jamila@gmail.com", 22, 1)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    /**
+     * Tests reading column values in pages that span several batches, with deleted slots in between.
+     * Verifies that the pages together match selectAllCustomers, in the same order.
+     */
+    @Test
+    void streamCustomerRowsPage() {
+        //Given
+        IntStream.rangeClosed(1, 2500).forEach(i -> underTest.addCustomer(new Customer("Ünal " + i, "c" + i + "@gmail.com", i % 100)));
+        IntStream.rangeClosed(1, 2500).filter(i -> i % 7 == 0).forEach(underTest::deleteCustomerById);
+
+        //When
+        List<Customer> streamed = new ArrayList<>();
+        Integer afterId = null;
+        int pages = 0;
+        int pageSize;
+        do {
+            int before = streamed.size();
+            underTest.streamCustomerRowsPage(afterId, 1500, (id, name, email, age) -> streamed.add(
+                    new Customer(id, new String(name, StandardCharsets.UTF_8), new String(email, StandardCharsets.UTF_8), age)));
+            pageSize = streamed.size() - before;
+            afterId = streamed.get(streamed.size() - 1).getId();
+            pages++;
+        } while (pageSize == 1500);
+
+        //Then
+        assertThat(pages).isEqualTo(2);
+        assertThat(streamed).hasSize(2500 - 357).isEqualTo(underTest.selectAllCustomers());
+    }
+
+    /**
+     * Tests that a multi-get finds live customers by binary search and skips unknown and deleted ids.
+     */
+    @Test
+    void selectCustomersByIds() {
+        //Given
+        underTest.addCustomer(new Customer("Alex", "alex@gmail.com", 21));
+        underTest.addCustomer(new Customer("Jamila", "jamila@gmail.com", 19));
+        underTest.addCustomer(new Customer("Manoj", "manoj@gmail.com", 42));
+        underTest.deleteCustomerById(2);
+
+        //When
+        List<Customer> customers = underTest.selectCustomersByIds(List.of(3, 2, 9, 1));
+
+        //Then
+        assertThat(customers).extracting(Customer::getName).containsExactly("Manoj", "Alex");
+    }
+
+    /**
+     * Tests that a search skips deleted slots and customers outside the age range, and matches the name
+     * ignoring case.
+     */
+    @Test
+    void searchCustomers() {
+        //Given
+        underTest.addCustomer(new Customer("Alex", "alex@gmail.com", 21));
+        underTest.addCustomer(new Customer("Jamila", "jamila@gmail.com", 19));
+        underTest.addCustomer(new Customer("Manoj", "manoj@gmail.com", 42));
+        underTest.addCustomer(new Customer("Anouk", "anouk@gmail.com", 17));
+        underTest.deleteCustomerById(2);
+
+        //When
+        List<Customer> adults = underTest.searchCustomers(
+                new CustomerSearchCriteria(null, null, "gmail.com", 18, null), null, 10);
+        List<Customer> byName = underTest.searchCustomers(
+                new CustomerSearchCriteria("NO", CustomerSearchCriteria.NameMatch.CONTAINS, null, null, null), null, 10);
+
+        //Then
+        assertThat(adults).extracting(Customer::getName).containsExactly("Alex", "Manoj");
+        assertThat(byName).extracting(Customer::getName).containsExactly("Manoj", "Anouk");
+    }
+
+    /**
+     * Tests that a patch changes only the fields it sets and the version, and matches nothing for a
+     * stale version or a missing customer.
+     */
+    @Test
+    void patchCustomer() {
+        //Given
+        underTest.addCustomer(new Customer("Alex", "alex@gmail.com", 21));
+        underTest.addCustomer(new Customer("Jamila", "jamila@gmail.com", 19));
+
+        //When
+        Optional<CustomerUpdate> patched = underTest.patchCustomer(1, new CustomerPatchRequest("Alexander", null, null), 0);
+
+        //Then
+        assertThat(patched.map(CustomerUpdate::before)).contains(new Customer(1, "Alex", "alex@gmail.com", 21));
+        assertThat(patched.map(CustomerUpdate::after)).contains(new Customer(1, "Alexander", "alex@gmail.com", 21));
+        assertThat(underTest.selectCustomerById(1)).hasValueSatisfying(c -> assertThat(c.getVersion()).isEqualTo(1));
+        assertThat(underTest.patchCustomer(1, new CustomerPatchRequest("Stale", null, null), 0)).isEmpty();
+        assertThat(underTest.patchCustomer(9, new CustomerPatchRequest("Nobody", null, null), null)).isEmpty();
+        assertThatThrownBy(() -> underTest.patchCustomer(1, new CustomerPatchRequest(null, "jamila@gmail.com", null), null))
+                .isInstanceOf(DuplicateKeyException.class);
+        assertThat(underTest.personWithEmailExists("alex@gmail.com")).isTrue();
+    }
+
+    /**
+     * Tests that paging, streaming and email lookups stay correct after many deletes and updates,
+     * which compact the slots and the off-heap records.
+     */
+    @Test
+    void deletesAndUpdatesSurviveCompaction() {
+        //Given
+        int count = 20_000;
+        IntStream.rangeClosed(1, count).forEach(i -> underTest.addCustomer(new Customer("C" + i, "c" + i + "@gmail.com", i % 100)));
+
+        //When: delete every id not divisible by 3 and rename the rest
+        for (int i = 1; i <= count; i++) {
+            if (i % 3 != 0) {
+                assertThat(underTest.deleteCustomerById(i)).isPresent();
+            } else {
+                underTest.updateCustomer(new Customer(i, "Renamed " + i, "r" + i + "@gmail.com", i % 100));
+            }
+        }
+
+        //Then
+        List<Customer> streamed = new ArrayList<>();
+        underTest.streamAllCustomers(streamed::add);
+        assertThat(streamed).hasSize(count / 3);
+        assertThat(streamed).allSatisfy(c -> {
+            assertThat(c.getId() % 3).isZero();
+            assertThat(c.getName()).isEqualTo("Renamed " + c.getId());
+            assertThat(c.getEmail()).isEqualTo("r" + c.getId() + "@gmail.com");
+            assertThat(c.getVersion()).isEqualTo(1);
+        });
+        assertThat(underTest.selectCustomersPage(3, 2)).extracting(Customer::getId).containsExactly(6, 9);
+        assertThat(underTest.personWithEmailExists("r300@gmail.com")).isTrue();
+        assertThat(underTest.personWithEmailExists("c300@gmail.com")).isFalse();
+        assertThat(underTest.personWithEmailExists("c301@gmail.com")).isFalse();
+        assertThat(underTest.selectCustomerById(301)).isEmpty();
+        assertThat(underTest.addCustomer(new Customer("Reuse", "c301@gmail.com", 1))).isPresent();
+    }
+
+    /**
+     * Tests that the store reports a bytes-per-customer figure made of its columns and record bytes.
+     */
+    @Test
+    void bytesPerCustomer() {
+        //Given
+        IntStream.range(0, 10_000).forEach(i -> underTest.addCustomer(new Customer("Customer Name " + i, "customer" + i + "@gmail.com", 30)));
+
+        //Then: 16 bytes of columns, 4-8 bytes of email table and ~50 bytes of name and email
+        assertThat(underTest.bytesPerCustomer()).isBetween(60.0, 90.0);
+        assertThat(underTest.memoryBytes()).isGreaterThanOrEqualTo(CustomerColumnarDataAccessService.CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.AbstractTestContainer;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerIngestRejection;
+import com.example.customerservice.model.CustomerStatistics;
+import com.example.customerservice.util.CustomerRowMapper;
+import com.example.customerservice.util.CustomerStatisticsCounters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+
+/**
+ * Test suite for CustomerCopyLoader.
+ * Verifies that rows are copied and merged into the customer table, and that taken or repeated emails are reported.
+ */
+class CustomerCopyLoaderTest extends AbstractTestContainer {
+
+    private CustomerCopyLoader underTest;
+    private CustomerJDBCDataAccessService customerDao;
+    private JdbcTemplate jdbcTemplate = getJdbcTemplate();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerCopyLoader(jdbcTemplate, null, null);
+        customerDao = new CustomerJDBCDataAccessService(jdbcTemplate, new CustomerRowMapper(), new CustomerIdAllocator(jdbcTemplate));
+    }
+
+    /**
+     * Tests loading new, repeated and already taken emails in one go.
+     * Verifies that only the first row of each new email is inserted and the others are rejected with a reason.
+     */
+    @Test
+    void load() {
+
+        //Given
+        String takenEmail = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        customerDao.addCustomer(new Customer(getFaker().name().fullName(), takenEmail, 20));
+        String newEmail = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        String quotedName = "Joshi, \"Manoj\"";
+        List<CustomerCopyLoader.StagedRow> rows = List.of(
+                new CustomerCopyLoader.StagedRow(1, quotedName, newEmail, 42),
+                new CustomerCopyLoader.StagedRow(2, "Repeated", newEmail, 43),
+                new CustomerCopyLoader.StagedRow(3, "Taken", takenEmail, 44)
+        );
+
+        //When
+        CustomerCopyLoader.LoadResult result = underTest.load(rows.iterator(), 10);
+
+        //Then
+        assertThat(result.staged()).isEqualTo(3);
+        assertThat(result.inserted()).isEqualTo(1);
+        assertThat(result.rejected()).isEqualTo(2);
+        assertThat(result.rejections()).containsExactly(
+                new CustomerIngestRejection(2, newEmail, "Email appears more than once in the upload."),
+                new CustomerIngestRejection(3, takenEmail, "Email already taken.")
+        );
+        assertThat(customerDao.selectAllCustomers())
+                .filteredOn(c -> c.getEmail().equals(newEmail))
+                .singleElement()
+                .satisfies(c -> {
+                    assertThat(c.getName()).isEqualTo(quotedName);
+                    assertThat(c.getAge()).isEqualTo(42);
+                });
+    }
+
+    /**
+     * Tests loading more rows than fit in one copy buffer.
+     * Verifies that all of them are inserted.
+     */
+    @Test
+    void loadSpanningSeveralBuffers() {
+
+        //Given
+        String prefix = UUID.randomUUID().toString();
+        int count = 5_000;
+        List<CustomerCopyLoader.StagedRow> rows = IntStream.range(0, count)
+                .mapToObj(i -> new CustomerCopyLoader.StagedRow(i + 1, "Customer " + i, prefix + "-" + i + "@gmail.com", 30))
+                .toList();
+
+        //When
+        CustomerCopyLoader.LoadResult result = underTest.load(rows.iterator(), 10);
+
+        //Then
+        assertThat(result.inserted()).isEqualTo(count);
+        assertThat(result.rejections()).isEmpty();
+    }
+
+    /**
+     * Tests loading with change events recorded.
+     * Verifies that a CREATED event is appended for every inserted customer and none for rejected rows.
+     */
+    @Test
+    void loadRecordingEvents() {
+
+        //Given
+        String prefix = UUID.randomUUID().toString();
+        CustomerOutbox outbox = new CustomerOutbox(jdbcTemplate, null, Duration.ofDays(7));
+        underTest = new CustomerCopyLoader(jdbcTemplate, outbox, null);
+        List<CustomerCopyLoader.StagedRow> rows = List.of(
+                new CustomerCopyLoader.StagedRow(1, "Ana", prefix + "-ana@aol.com", 30),
+                new CustomerCopyLoader.StagedRow(2, "Bo", prefix + "-bo@aol.com", 40),
+                new CustomerCopyLoader.StagedRow(3, "Bo again", prefix + "-bo@aol.com", 41)
+        );
+
+        //When
+        underTest.load(rows.iterator(), 10);
+
+        //Then
+        //A relay running in another application context may already have moved the events on
+        List<String> events = jdbcTemplate.queryForList("""
+                SELECT type || ' ' || name FROM customer_outbox WHERE email LIKE ?
+                UNION ALL
+                SELECT type || ' ' || name FROM customer_event WHERE email LIKE ?""", String.class, prefix + "%", prefix + "%");
+        assertThat(events).containsExactlyInAnyOrder("CREATED Ana", "CREATED Bo");
+    }
+
+    /**
+     * Tests loading with statistics kept.
+     * Verifies that every inserted customer is counted and rejected rows are not.
+     */
+    @Test
+    void loadCountingStatistics() {
+
+        //Given
+        String prefix = UUID.randomUUID().toString();
+        CustomerStatisticsCounters counters = new CustomerStatisticsCounters();
+        underTest = new CustomerCopyLoader(jdbcTemplate, null, counters);
+        List<CustomerCopyLoader.StagedRow> rows = List.of(
+                new CustomerCopyLoader.StagedRow(1, "Ana", prefix + "-ana@aol.com", 30),
+                new CustomerCopyLoader.StagedRow(2, "Bo", prefix + "-bo@aol.com", 40),
+                new CustomerCopyLoader.StagedRow(3, "Bo again", prefix + "-bo@aol.com", 41)
+        );
+
+        //When
+        underTest.load(rows.iterator(), 10);
+
+        //Then
+        CustomerStatistics statistics = counters.snapshot(1);
+        assertThat(statistics.total()).isEqualTo(2);
+        assertThat(statistics.ageHistogram().get(3).count()).isEqualTo(1);
+        assertThat(statistics.ageHistogram().get(4).count()).isEqualTo(1);
+        assertThat(statistics.topEmailDomains()).containsExactly(new CustomerStatistics.DomainCount("aol.com", 2));
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit test class for the in-memory CustomerDataAccessService.
+ * This class verifies the id and email indexes and that concurrent writers keep them consistent.
+ */
+class CustomerDataAccessServiceTest {
+
+    private CustomerDataAccessService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerDataAccessService();
+    }
+
+    /**
+     * Tests that a customer is added with a generated id and found by id and email,
+     * and that a second customer with the same email is refused.
+     */
+    @Test
+    void addCustomer() {
+        //When
+        Optional<Integer> id = underTest.addCustomer(new Customer("Manoj", "manojoshi1982@gmail.com", 42));
+        Optional<Integer> conflict = underTest.addCustomer(new Customer("Other", "manojoshi1982@gmail.com", 30));
+
+        //Then
+        assertThat(id).contains(3);
+        assertThat(conflict).isEmpty();
+        assertThat(underTest.selectCustomerById(3)).contains(new Customer(3, "Manoj", "manojoshi1982@gmail.com", 42));
+        assertThat(underTest.personWithEmailExists("manojoshi1982@gmail.com")).isTrue();
+    }
+
+    /**
+     * Tests that returned customers are copies, so changing one does not change the store.
+     */
+    @Test
+    void selectCustomerByIdReturnsCopy() {
+        //Given
+        Customer alex = underTest.selectCustomerById(1).orElseThrow();
+
+        //When
+        alex.setName("Changed");
+
+        //Then
+        assertThat(underTest.selectCustomerById(1).orElseThrow().getName()).isEqualTo("Alex");
+    }
+
+    /**
+     * Tests that updating a customer moves its email in the email index and its version on, and that
+     * stale versions, missing customers and another customer's email are refused.
+     */
+    @Test
+    void updateCustomer() {
+        //When
+        CustomerUpdate update = underTest.updateCustomer(new Customer(1, "Alex", "alex@yahoo.com", 22));
+
+        //Then
+        assertThat(update.before()).isEqualTo(new Customer(1, "Alex", "alex@gmail.com", 21));
+        assertThat(update.before().getVersion()).isZero();
+        assertThat(update.after().getVersion()).isEqualTo(1);
+        assertThat(underTest.selectCustomerById(1).orElseThrow().getVersion()).isEqualTo(1);
+        assertThat(underTest.personWithEmailExists("alex@yahoo.com")).isTrue();
+        assertThat(underTest.personWithEmailExists("alex@gmail.com")).isFalse();
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(1, "Alex", "alex@gmail.com", 22, 0)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(99, "Nobody", "nobody@gmail.com", 1)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(1, "Alex", "jamila@gmail.com", 22, 1)))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    /**
+     * Tests that a patch changes only the fields it sets, moves the email in the email index and the
+     * version on, and matches nothing for a stale version or a missing customer.
+     */
+    @Test
+    void patchCustomer() {
+        //When
+        Optional<Customer> patched = underTest.patchCustomer(1, new CustomerPatchRequest(null, "alex@yahoo.com", null), 0)
+                .map(CustomerUpdate::after);
+
+        //Then
+        assertThat(patched).contains(new Customer(1, "Alex", "alex@yahoo.com", 21));
+        assertThat(patched.orElseThrow().getVersion()).isEqualTo(1);
+        assertThat(underTest.personWithEmailExists("alex@gmail.com")).isFalse();
+        assertThat(underTest.patchCustomer(1, new CustomerPatchRequest("Stale", null, null), 0)).isEmpty();
+        assertThat(underTest.patchCustomer(99, new CustomerPatchRequest("Nobody", null, null), null)).isEmpty();
+        assertThat(underTest.patchCustomer(1, new CustomerPatchRequest(null, null, 30), null))
+                .hasValueSatisfying(update -> assertThat(update.before().getVersion()).isEqualTo(1))
+                .hasValueSatisfying(update -> assertThat(update.after().getVersion()).isEqualTo(2));
+        assertThatThrownBy(() -> underTest.patchCustomer(1, new CustomerPatchRequest(null, "jamila@gmail.com", null), null))
+                .isInstanceOf(DuplicateKeyException.class);
+    }
+
+    /**
+     * Tests reading column values in pages after an update and a delete.
+     * Verifies that the pages together match selectAllCustomers, in the same order.
+     */
+    @Test
+    void streamCustomerRowsPage() {
+        //Given
+        underTest.addCustomer(new Customer("Manoj", "manojoshi1982@gmail.com", 42));
+        underTest.updateCustomer(new Customer(1, "Alex", "alex@yahoo.com", 22));
+        underTest.deleteCustomerById(2);
+
+        //When
+        List<Customer> streamed = new ArrayList<>();
+        underTest.streamCustomerRowsPage(null, 1, (id, name, email, age) -> streamed.add(
+                new Customer(id, new String(name, StandardCharsets.UTF_8), new String(email, StandardCharsets.UTF_8), age)));
+        underTest.streamCustomerRowsPage(streamed.get(0).getId(), 10, (id, name, email, age) -> streamed.add(
+                new Customer(id, new String(name, StandardCharsets.UTF_8), new String(email, StandardCharsets.UTF_8), age)));
+
+        //Then
+        assertThat(streamed).hasSize(2).isEqualTo(underTest.selectAllCustomers());
+    }
+
+    /**
+     * Tests that a multi-get returns copies of the customers found and skips unknown ids.
+     */
+    @Test
+    void selectCustomersByIds() {
+        //When
+        List<Customer> customers = underTest.selectCustomersByIds(List.of(2, 99, 1));
+
+        //Then
+        assertThat(customers).extracting(Customer::getId).containsExactly(2, 1);
+        customers.get(0).setName("Changed");
+        assertThat(underTest.selectCustomerById(2).orElseThrow().getName()).isEqualTo("Jamila");
+    }
+
+    /**
+     * Tests that a search walks the ids in order and keeps only the customers matching every filter.
+     */
+    @Test
+    void searchCustomers() {
+        //Given
+        underTest.addCustomer(new Customer("Alexandra", "alexandra@Yahoo.com", 30));
+
+        //When
+        List<Customer> byPrefix = underTest.searchCustomers(
+                new CustomerSearchCriteria("al", CustomerSearchCriteria.NameMatch.PREFIX, null, null, null), null, 10);
+        List<Customer> byDomainAndAge = underTest.searchCustomers(
+                new CustomerSearchCriteria(null, null, "GMAIL.com", null, 20), null, 10);
+        List<Customer> byContainsAfterId = underTest.searchCustomers(
+                new CustomerSearchCriteria("a", CustomerSearchCriteria.NameMatch.CONTAINS, "yahoo.com", 25, 35), 1, 10);
+
+        //Then
+        assertThat(byPrefix).extracting(Customer::getId).containsExactly(1, 3);
+        assertThat(byDomainAndAge).extracting(Customer::getName).containsExactly("Jamila");
+        assertThat(byContainsAfterId).extracting(Customer::getName).containsExactly("Alexandra");
+    }
+
+    /**
+     * Tests that deleting a customer removes it from both indexes.
+     */
+    @Test
+    void deleteCustomerById() {
+        //When
+        Optional<Customer> deleted = underTest.deleteCustomerById(1);
+
+        //Then
+        assertThat(deleted).contains(new Customer(1, "Alex", "alex@gmail.com", 21));
+        assertThat(underTest.deleteCustomerById(1)).isEmpty();
+        assertThat(underTest.selectCustomerById(1)).isEmpty();
+        assertThat(underTest.personWithEmailExists("alex@gmail.com")).isFalse();
+        assertThat(underTest.selectAllCustomers()).extracting(Customer::getId).containsExactly(2);
+    }
+
+    /**
+     * Tests keyset paging over the ordered id index.
+     */
+    @Test
+    void selectCustomersPage() {
+        //Given
+        IntStream.range(0, 5).forEach(i -> underTest.addCustomer(new Customer("C" + i, "c" + i + "@gmail.com", 20)));
+
+        //When
+        List<Customer> page = underTest.selectCustomersPage(2, 3);
+
+        //Then
+        assertThat(page).extracting(Customer::getId).containsExactly(3, 4, 5);
+    }
+
+    /**
+     * Tests that concurrent registrations get unique ids, that each email is stored once,
+     * and that snapshots taken meanwhile never see a half-written customer.
+     */
+    @Test
+    void concurrentWrites() throws Exception {
+        //Given
+        int threads = 8;
+        int perThread = 2_000;
+        List<Future<?>> futures = new ArrayList<>();
+
+        //When
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads + 1)) {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        //Every thread registers the same emails, so each one must be taken exactly once
+                        underTest.addCustomer(new Customer("C" + i, "c" + i + "@gmail.com", 20));
+                    }
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    assertThat(underTest.selectAllCustomers()).doesNotContainNull();
+                }
+            }));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        //Then
+        List<Customer> customers = underTest.selectAllCustomers();
+        assertThat(customers).hasSize(perThread + 2);
+        assertThat(customers).extracting(Customer::getId).doesNotHaveDuplicates().isSorted();
+        assertThat(customers).extracting(Customer::getEmail).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.AbstractTestContainer;
+import com.example.customerservice.model.Customer;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test suite for CustomerIdAllocator.
+ * Verifies that ids are handed out in blocks from customer_id_seq and never twice, across threads and nodes.
+ */
+class CustomerIdAllocatorTest extends AbstractTestContainer {
+
+    private final JdbcTemplate jdbcTemplate = getJdbcTemplate();
+
+    /**
+     * Tests that consecutive ids come from one block, with a single sequence call per block.
+     */
+    @Test
+    void nextIdReservesBlocks() {
+
+        //Given
+        CustomerIdAllocator underTest = new CustomerIdAllocator(jdbcTemplate);
+
+        //When
+        int first = underTest.nextId();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i < Customer.ID_BLOCK_SIZE; i++) {
+            ids.add(underTest.nextId());
+        }
+        Long sequenceAfterBlock = jdbcTemplate.queryForObject("SELECT last_value FROM customer_id_seq", Long.class);
+        int next = underTest.nextId();
+
+        //Then
+        assertThat(ids).first().isEqualTo(first + 1);
+        assertThat(ids).last().isEqualTo(first + Customer.ID_BLOCK_SIZE - 1);
+        assertThat(sequenceAfterBlock).isEqualTo(first);
+        assertThat(next).isGreaterThanOrEqualTo(first + Customer.ID_BLOCK_SIZE);
+    }
+
+    /**
+     * Tests that two allocators, standing in for two nodes, used from many threads never hand out the same id.
+     */
+    @Test
+    void concurrentAllocatorsNeverRepeatIds() throws Exception {
+
+        //Given
+        List<CustomerIdAllocator> allocators = List.of(new CustomerIdAllocator(jdbcTemplate), new CustomerIdAllocator(jdbcTemplate));
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 1_000;
+        List<Future<?>> futures = new ArrayList<>();
+
+        //When
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                CustomerIdAllocator allocator = allocators.get(t % allocators.size());
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(allocator.nextId());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        //Then
+        assertThat(ids).hasSize(threads * perThread);
+    }
+}
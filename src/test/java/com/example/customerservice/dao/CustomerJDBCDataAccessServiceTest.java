@@ -2,15 +2,30 @@ package com.example.customerservice.dao;
 
 import com.example.customerservice.AbstractTestContainer;
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
+import com.example.customerservice.util.CustomerJsonArrayWriter;
 import com.example.customerservice.util.CustomerRowMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 
 
@@ -31,7 +46,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
      */
     @BeforeEach
     void setUp() {
-        underTest = new CustomerJDBCDataAccessService(jdbcTemplate, customerRowMapper);
+        underTest = new CustomerJDBCDataAccessService(jdbcTemplate, customerRowMapper, new CustomerIdAllocator(jdbcTemplate));
     }
 
     /**
@@ -56,6 +71,74 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
         assertThat(customers).isNotEmpty();
     }
 
+    /**
+     * Tests that adding a customer returns the generated id, and that a second customer with the
+     * same email is not inserted and yields no id.
+     */
+    @Test
+    void addCustomerReturnsIdAndDetectsConflict() {
+
+        //Given
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(getFaker().name().fullName(), email, 20);
+
+        //When
+        Optional<Integer> id = underTest.addCustomer(customer);
+        Optional<Integer> conflict = underTest.addCustomer(new Customer("Someone Else", email, 30));
+
+        //Then
+        assertThat(id).isPresent();
+        assertThat(underTest.selectCustomerById(id.get())).map(Customer::getEmail).contains(email);
+        assertThat(conflict).isEmpty();
+    }
+
+    /**
+     * Tests adding several customers with one batch.
+     * Verifies that every new customer gets its generated id and a taken email is skipped.
+     */
+    @Test
+    void addCustomers() {
+
+        //Given
+        String takenEmail = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.addCustomer(new Customer(getFaker().name().fullName(), takenEmail, 20));
+        List<Customer> customers = List.of(
+                new Customer(getFaker().name().fullName(), getFaker().internet().emailAddress() + "-" + UUID.randomUUID(), 30),
+                new Customer(getFaker().name().fullName(), takenEmail, 40),
+                new Customer(getFaker().name().fullName(), getFaker().internet().emailAddress() + "-" + UUID.randomUUID(), 50)
+        );
+
+        //When
+        List<Integer> ids = underTest.addCustomers(customers);
+
+        //Then
+        assertThat(ids).hasSize(3);
+        assertThat(ids.get(1)).isNull();
+        assertThat(underTest.selectCustomerById(ids.get(0))).hasValueSatisfying(
+                c -> assertThat(c.getEmail()).isEqualTo(customers.get(0).getEmail()));
+        assertThat(underTest.selectCustomerById(ids.get(2))).hasValueSatisfying(
+                c -> assertThat(c.getEmail()).isEqualTo(customers.get(2).getEmail()));
+    }
+
+    /**
+     * Tests finding which emails are already taken.
+     * Verifies that only the stored emails are returned.
+     */
+    @Test
+    void selectExistingEmails() {
+
+        //Given
+        String takenEmail = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        String freeEmail = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.addCustomer(new Customer(getFaker().name().fullName(), takenEmail, 20));
+
+        //When
+        Set<String> existing = underTest.selectExistingEmails(List.of(takenEmail, freeEmail));
+
+        //Then
+        assertThat(existing).containsExactly(takenEmail);
+    }
+
     /**
      * Tests retrieving all customers from the database.
      * Verifies that the method retrieves a non-empty list after adding a customer.
@@ -78,6 +161,107 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
         assertThat(customers).isNotEmpty();
     }
 
+    /**
+     * Tests retrieving customers page by page.
+     * Verifies that a page only contains customers after the given id, in id order, up to the limit.
+     */
+    @Test
+    void selectCustomersPage() {
+
+        //Given
+        for (int i = 0; i < 3; i++) {
+            underTest.addCustomer(new Customer(
+                    getFaker().name().fullName(),
+                    getFaker().internet().emailAddress() + "-" + UUID.randomUUID(),
+                    20
+            ));
+        }
+        List<Customer> firstPage = underTest.selectCustomersPage(null, 2);
+        int afterId = firstPage.get(firstPage.size() - 1).getId();
+
+        //When
+        List<Customer> nextPage = underTest.selectCustomersPage(afterId, 2);
+
+        //Then
+        assertThat(firstPage).hasSize(2);
+        assertThat(nextPage).isNotEmpty().hasSizeLessThanOrEqualTo(2);
+        assertThat(nextPage).allSatisfy(c -> assertThat(c.getId()).isGreaterThan(afterId));
+        assertThat(nextPage).isSortedAccordingTo((a, b) -> a.getId().compareTo(b.getId()));
+    }
+
+    /**
+     * Tests streaming all customers from the database.
+     * Verifies that every customer is passed to the consumer in id order.
+     */
+    @Test
+    void streamAllCustomers() {
+
+        //Given
+        Customer customer = new Customer(
+                getFaker().name().fullName(),
+                getFaker().internet().emailAddress() + "-" + UUID.randomUUID(),
+                20
+        );
+        underTest.addCustomer(customer);
+
+        //When
+        List<Customer> streamed = new ArrayList<>();
+        underTest.streamAllCustomers(streamed::add);
+
+        //Then
+        assertThat(streamed).hasSameSizeAs(underTest.selectAllCustomers());
+        assertThat(streamed).anyMatch(c -> c.getEmail().equals(customer.getEmail()));
+        assertThat(streamed).isSortedAccordingTo((a, b) -> a.getId().compareTo(b.getId()));
+    }
+
+    /**
+     * Tests reading every customer as column values into the JSON array writer.
+     * Verifies that the bytes are those Jackson writes for the same customers read as a page, including a name that
+     * needs escaping and non-ASCII text passed through as the driver's UTF-8 bytes.
+     */
+    @Test
+    void streamCustomerRowsPage() throws IOException {
+
+        //Given
+        underTest.addCustomer(new Customer("Zoë \"Tab\"\tÅngström\\", UUID.randomUUID() + "@rows.example", 33));
+
+        //When
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (CustomerJsonArrayWriter writer = new CustomerJsonArrayWriter(outputStream)) {
+            underTest.streamCustomerRowsPage(null, Integer.MAX_VALUE, (id, name, email, age) -> {
+                try {
+                    writer.write(id, name, email, age);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        //Then
+        assertThat(outputStream.toByteArray()).isEqualTo(
+                new ObjectMapper().writeValueAsBytes(underTest.selectCustomersPage(null, Integer.MAX_VALUE)));
+    }
+
+    /**
+     * Tests streaming the email column.
+     * Verifies that every stored email is passed to the consumer.
+     */
+    @Test
+    void streamAllEmails() {
+
+        //Given
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        underTest.addCustomer(new Customer(getFaker().name().fullName(), email, 20));
+
+        //When
+        List<String> streamed = new ArrayList<>();
+        underTest.streamAllEmails(streamed::add);
+
+        //Then
+        assertThat(streamed).hasSameSizeAs(underTest.selectAllCustomers());
+        assertThat(streamed).contains(email);
+    }
+
     /**
      * Tests retrieving a specific customer by their ID.
      * Ensures that a customer can be correctly fetched by their ID, and all their details match the expected values.
@@ -152,7 +336,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
     /**
      * Tests deleting a customer by ID.
-     * Ensures that the customer is successfully deleted and cannot be retrieved afterward.
+     * Ensures that the customer is successfully deleted, returned as it was, and cannot be retrieved afterward.
      */
     @Test
     void deleteCustomerById() {
@@ -173,16 +357,17 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
                 .map(Customer::getId)
                 .findFirst()
                 .orElseThrow();
-        underTest.deleteCustomerById(id);
+        Optional<Customer> deleted = underTest.deleteCustomerById(id);
 
         //Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
         assertThat(actual).isEmpty();
+        assertThat(deleted).contains(new Customer(id, customer.getName(), email, 20));
     }
 
     /**
      * Tests the scenario where a deletion is attempted for a non-existing customer ID.
-     * Verifies that the method correctly returns false.
+     * Verifies that the method correctly returns nothing.
      */
     @Test
     void deleteCustomerByIdDoesNotExist() {
@@ -190,10 +375,10 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
         int id = -1;
 
         // When
-        boolean result = underTest.deleteCustomerById(id);
+        Optional<Customer> result = underTest.deleteCustomerById(id);
 
         // Then
-        assertThat(result).isFalse();
+        assertThat(result).isEmpty();
     }
 
     /**
@@ -214,7 +399,7 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
 
     /**
      * Tests updating a customer's details in the database.
-     * Ensures that the updated details are correctly saved and retrieved.
+     * Ensures that the updated details are correctly saved and retrieved, and the details they replaced returned.
      */
     @Test
     void updateCustomer() {
@@ -242,17 +427,159 @@ class CustomerJDBCDataAccessServiceTest extends AbstractTestContainer {
                 email,
                 50
         );
-        underTest.updateCustomer(updatedCustomer);
+        CustomerUpdate update = underTest.updateCustomer(updatedCustomer);
 
         //Then
         Optional<Customer> actual = underTest.selectCustomerById(id);
+        assertThat(updatedCustomer.getVersion()).isEqualTo(1);
+        assertThat(update.after()).isSameAs(updatedCustomer);
+        assertThat(update.before()).isEqualTo(new Customer(id, customer.getName(), email, 20));
+        assertThat(update.before().getVersion()).isZero();
         assertThat(actual).isPresent().hasValueSatisfying(
                 c -> {
                     assertThat(c.getId()).isEqualTo(id);
                     assertThat(c.getEmail()).isEqualTo(email);
                     assertThat(c.getAge()).isEqualTo(50);
                     assertThat(c.getName()).isEqualTo("Manoj Joshi");
+                    assertThat(c.getVersion()).isEqualTo(1);
                 }
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that an update based on an outdated version changes nothing and fails with
+     * OptimisticLockingFailureException, as does an update of a customer that does not exist.
+     */
+    @Test
+    void updateCustomerWithStaleVersion() {
+        //Given
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        int id = underTest.addCustomer(new Customer("Alex", email, 20)).orElseThrow();
+        underTest.updateCustomer(new Customer(id, "First", email, 21, 0));
+
+        //When / Then
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(id, "Second", email, 22, 0)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(-1, "Nobody", "nobody-" + email, 22, 0)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(underTest.selectCustomerById(id)).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("First");
+            assertThat(c.getVersion()).isEqualTo(1);
+        });
+    }
+
+    /**
+     * Tests that a patch changes only the columns it sets and returns the updated row with its new version,
+     * and that it returns nothing for a stale version or a missing customer.
+     */
+    @Test
+    void patchCustomer() {
+        //Given
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        int id = underTest.addCustomer(new Customer("Alex", email, 20)).orElseThrow();
+
+        //When
+        Optional<CustomerUpdate> update = underTest.patchCustomer(id, new CustomerPatchRequest(null, null, 21), 0);
+        Optional<Customer> patched = update.map(CustomerUpdate::after);
+
+        //Then
+        assertThat(update.map(CustomerUpdate::before)).contains(new Customer(id, "Alex", email, 20));
+        assertThat(patched).hasValueSatisfying(c -> {
+            assertThat(c.getName()).isEqualTo("Alex");
+            assertThat(c.getEmail()).isEqualTo(email);
+            assertThat(c.getAge()).isEqualTo(21);
+            assertThat(c.getVersion()).isEqualTo(1);
+        });
+        assertThat(underTest.patchCustomer(id, new CustomerPatchRequest("Stale", null, null), 0)).isEmpty();
+        assertThat(underTest.patchCustomer(-1, new CustomerPatchRequest("Nobody", null, null), null)).isEmpty();
+        assertThat(underTest.patchCustomer(id, new CustomerPatchRequest("Alexander", "new-" + email, null), null)
+                .map(CustomerUpdate::after))
+                .hasValueSatisfying(c -> {
+                    assertThat(c.getName()).isEqualTo("Alexander");
+                    assertThat(c.getEmail()).isEqualTo("new-" + email);
+                    assertThat(c.getAge()).isEqualTo(21);
+                    assertThat(c.getVersion()).isEqualTo(2);
+                });
+    }
+
+    /**
+     * Tests that a multi-get finds all the requested customers with one query and leaves out unknown ids.
+     */
+    @Test
+    void selectCustomersByIds() {
+        //Given
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        int first = underTest.addCustomer(new Customer("First", "first-" + email, 20)).orElseThrow();
+        int second = underTest.addCustomer(new Customer("Second", "second-" + email, 30)).orElseThrow();
+
+        //When
+        List<Customer> customers = underTest.selectCustomersByIds(List.of(second, -1, first));
+
+        //Then
+        assertThat(customers).extracting(Customer::getName).containsExactlyInAnyOrder("First", "Second");
+        assertThat(underTest.selectCustomersByIds(List.of())).isEmpty();
+    }
+
+    /**
+     * Tests that a search applies every filter it sets, matches names case-insensitively with LIKE
+     * wildcards taken literally, and pages in id order after the given id.
+     */
+    @Test
+    void searchCustomers() {
+        //Given
+        String domain = UUID.randomUUID() + ".test";
+        int alice = underTest.addCustomer(new Customer("Alice Smith", "alice@" + domain, 30)).orElseThrow();
+        int alicia = underTest.addCustomer(new Customer("Alicia 100%", "alicia@" + domain.toUpperCase(), 40)).orElseThrow();
+        underTest.addCustomer(new Customer("Bob Alison", "bob@" + domain, 35)).orElseThrow();
+        underTest.addCustomer(new Customer("Alina", "alina@other-" + domain, 30)).orElseThrow();
+
+        //When
+        List<Customer> prefix = underTest.searchCustomers(
+                new CustomerSearchCriteria("ALI", CustomerSearchCriteria.NameMatch.PREFIX, domain, null, null), null, 10);
+        List<Customer> contains = underTest.searchCustomers(
+                new CustomerSearchCriteria("li", CustomerSearchCriteria.NameMatch.CONTAINS, domain, 31, 40), null, 10);
+        List<Customer> wildcard = underTest.searchCustomers(
+                new CustomerSearchCriteria("0%", CustomerSearchCriteria.NameMatch.CONTAINS, domain, null, null), null, 10);
+        List<Customer> nextPage = underTest.searchCustomers(
+                new CustomerSearchCriteria(null, null, domain, 30, null), alice, 1);
+
+        //Then
+        assertThat(prefix).extracting(Customer::getId).containsExactly(alice, alicia);
+        assertThat(contains).extracting(Customer::getName).containsExactly("Alicia 100%", "Bob Alison");
+        assertThat(wildcard).extracting(Customer::getId).containsExactly(alicia);
+        assertThat(nextPage).extracting(Customer::getId).containsExactly(alicia);
+    }
+
+    /**
+     * Tests that changes after a cursor list updated customers at their new state and deleted ones as
+     * tombstones, in the order of their last change, and that the cursor of a change skips it and everything before.
+     */
+    @Test
+    void selectCustomerChanges() {
+        //Given
+        Instant since = jdbcTemplate.queryForObject("SELECT now()", Timestamp.class).toInstant();
+        String domain = UUID.randomUUID() + ".test";
+        int updated = underTest.addCustomer(new Customer("Updated", "updated@" + domain, 20)).orElseThrow();
+        int deleted = underTest.addCustomer(new Customer("Deleted", "deleted@" + domain, 30)).orElseThrow();
+        int added = underTest.addCustomer(new Customer("Added", "added@" + domain, 40)).orElseThrow();
+        underTest.deleteCustomerById(deleted);
+        underTest.patchCustomer(updated, new CustomerPatchRequest(null, null, 21), null);
+        List<Integer> ids = List.of(updated, deleted, added);
+
+        //When
+        List<CustomerChange> changes = underTest.selectCustomerChanges(since, null, 1000).stream()
+                .filter(change -> ids.contains(change.customerId()))
+                .toList();
+        CustomerChange first = changes.getFirst();
+        List<CustomerChange> afterFirst = underTest.selectCustomerChanges(first.changedAt(), first.customerId(), 1000);
+
+        //Then
+        assertThat(changes).extracting(CustomerChange::customerId).containsExactly(added, deleted, updated);
+        assertThat(changes.get(1).deleted()).isTrue();
+        assertThat(changes.get(1).customer()).isNull();
+        assertThat(changes.get(2).customer()).isEqualTo(new Customer(updated, "Updated", "updated@" + domain, 21));
+        assertThat(changes.get(2).version()).isEqualTo(1);
+        assertThat(changes).extracting(CustomerChange::changedAt).isSorted();
+        assertThat(afterFirst).extracting(CustomerChange::customerId).doesNotContain(added).contains(deleted, updated);
+    }
+}
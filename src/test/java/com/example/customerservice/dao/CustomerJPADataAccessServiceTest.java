@@ -1,15 +1,25 @@
 package com.example.customerservice.dao;
 
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerUpdate;
 import com.github.javafaker.Faker;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.openMocks;
 
@@ -29,11 +39,14 @@ class CustomerJPADataAccessServiceTest {
     @Mock
     private CustomerRepository repository;
 
+    @Mock
+    private CustomerIdAllocator customerIdAllocator;
+
 
     @BeforeEach
     void setUp() {
         autoCloseable = openMocks(this);
-        underTest = new CustomerJPADataAccessService(repository);
+        underTest = new CustomerJPADataAccessService(repository, customerIdAllocator);
     }
 
     @AfterEach
@@ -57,6 +70,40 @@ class CustomerJPADataAccessServiceTest {
         Mockito.verify(repository).findAll();
     }
 
+    /**
+     * Verifies that selectCustomersPage() runs a keyset query after the given id with the given limit.
+     */
+    @Test
+    void selectCustomersPage() {
+        //when
+        underTest.selectCustomersPage(10, 25);
+        //Then
+        Mockito.verify(repository).findByIdGreaterThanOrderByIdAsc(10, Limit.of(25));
+    }
+
+    /**
+     * Verifies that streamAllCustomers() walks the table page by page until a short page is returned.
+     */
+    @Test
+    void streamAllCustomers() {
+        //Given
+        int pageSize = CustomerJPADataAccessService.STREAM_PAGE_SIZE;
+        List<Customer> fullPage = IntStream.rangeClosed(1, pageSize)
+                .mapToObj(id -> new Customer(id, "Alex", "alex" + id + "@gmail.com", 21))
+                .toList();
+        List<Customer> lastPage = List.of(new Customer(pageSize + 1, "Jamila", "jamila@gmail.com", 19));
+        when(repository.findByIdGreaterThanOrderByIdAsc(0, Limit.of(pageSize))).thenReturn(fullPage);
+        when(repository.findByIdGreaterThanOrderByIdAsc(pageSize, Limit.of(pageSize))).thenReturn(lastPage);
+
+        //when
+        List<Customer> streamed = new ArrayList<>();
+        underTest.streamAllCustomers(streamed::add);
+
+        //Then
+        assertThat(streamed).hasSize(pageSize + 1);
+        assertThat(streamed.get(pageSize)).isEqualTo(lastPage.get(0));
+    }
+
     /**
      * Verifies that selectCustomerById() method calls findById() with the correct ID.
      */
@@ -69,20 +116,45 @@ class CustomerJPADataAccessServiceTest {
     }
 
     /**
-     * Ensures that the addCustomer() method triggers save() on the repository with the provided Customer object.
+     * Ensures that the addCustomer() method inserts with the single conflict-aware statement
+     * and returns the generated id.
      */
     @Test
     void addCustomer() {
-        //        Faker faker = new Faker();
-        //        Customer customer = new Customer(
-        //                faker.name().fullName(),
-        //                faker.internet().emailAddress() + "-" + UUID.randomUUID(),
-        //                20
-        //        );
+        //Given
+        Customer customer = new Customer("Alex", "alex@gmail.com", 21);
+        when(customerIdAllocator.nextId()).thenReturn(5);
+        when(repository.insertIfEmailAvailable(5, "Alex", "alex@gmail.com", 21)).thenReturn(Optional.of(5));
+        //when
+        Optional<Integer> id = underTest.addCustomer(customer);
+        //Then
+        assertThat(id).contains(5);
+    }
+
+    /**
+     * Ensures that addCustomers() saves the whole batch with a single saveAll() call.
+     */
+    @Test
+    void addCustomers() {
+        //Given
+        List<Customer> customers = List.of(new Customer("Alex", "alex@gmail.com", 21));
+        when(repository.saveAll(customers)).thenReturn(customers);
+        //when
+        underTest.addCustomers(customers);
+        //Then
+        Mockito.verify(repository).saveAll(customers);
+    }
+
+    /**
+     * Validates that selectExistingEmails() looks all emails up with one repository query.
+     */
+    @Test
+    void selectExistingEmails() {
         //when
-        underTest.addCustomer(null);
+        List<String> emails = List.of("alex@gmail.com", "jamila@gmail.com");
+        underTest.selectExistingEmails(emails);
         //Then
-        Mockito.verify(repository).save(null);
+        Mockito.verify(repository).findExistingEmails(emails);
     }
 
     /**
@@ -98,35 +170,100 @@ class CustomerJPADataAccessServiceTest {
     }
 
     /**
-     * Confirms that deleteCustomerById() performs deleteById() after verifying the existence of the ID.
+     * Confirms that deleteCustomerById() deletes the customer and leaves its tombstone with one statement.
      */
     @Test
     void deleteCustomerById() {
 
-        when(repository.existsById(1)).thenReturn(true);
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20, 3);
+        when(repository.deleteLeavingTombstone(1)).thenReturn(Optional.of(customer));
 
         //when
-        underTest.deleteCustomerById(1);
+        Optional<Customer> deleted = underTest.deleteCustomerById(1);
 
         //Then
-        Mockito.verify(repository).deleteById(1);
+        assertThat(deleted).containsSame(customer);
+        Mockito.verify(repository).deleteLeavingTombstone(1);
     }
 
     /**
-     * Verifies that updateCustomer() updates the customer record by calling save() on the repository.
+     * Verifies that updateCustomer() issues a single conditional update on the repository, moves
+     * the customer to the next version and returns the customer the update replaced.
      */
     @Test
     void updateCustomer() {
         //Given
         Faker faker = new Faker();
         Customer customer = new Customer(
+                1,
                 faker.name().fullName(),
                 faker.internet().emailAddress() + "-" + UUID.randomUUID(),
-                20
+                20,
+                3
         );
+        Customer before = new Customer(1, "Alex", "alex@gmail.com", 19, 3);
+        when(repository.updateIfVersion(1, 3, customer.getName(), customer.getEmail(), 20)).thenReturn(Optional.of(before));
+
         //when
-        underTest.updateCustomer(customer);
+        CustomerUpdate update = underTest.updateCustomer(customer);
+
+        //Then
+        assertThat(update.before()).isSameAs(before);
+        assertThat(update.after().getVersion()).isEqualTo(4);
+        Mockito.verify(repository, Mockito.never()).save(customer);
+    }
+
+    /**
+     * Verifies that updateCustomer() fails with OptimisticLockingFailureException when no row has the
+     * customer's id and version.
+     */
+    @Test
+    void updateCustomerWithStaleVersion() {
+        //Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 20, 3);
+        when(repository.updateIfVersion(1, 3, "Alex", "alex@gmail.com", 20)).thenReturn(Optional.empty());
+
+        //When / Then
+        assertThatThrownBy(() -> underTest.updateCustomer(customer))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(customer.getVersion()).isEqualTo(3);
+    }
+
+    /**
+     * Verifies that patchCustomer() is a single call to the repository's patch, with no read before it.
+     */
+    @Test
+    void patchCustomer() {
+        //Given
+        CustomerPatchRequest patch = new CustomerPatchRequest("Alex", null, null);
+        CustomerUpdate patched = new CustomerUpdate(new Customer(1, "Al", "alex@gmail.com", 20, 3),
+                new Customer(1, "Alex", "alex@gmail.com", 20, 4));
+        when(repository.patch(1, patch, 3)).thenReturn(Optional.of(patched));
+
+        //When
+        Optional<CustomerUpdate> actual = underTest.patchCustomer(1, patch, 3);
+
+        //Then
+        assertThat(actual).containsSame(patched);
+        Mockito.verify(repository, Mockito.never()).findById(1);
+    }
+
+    /**
+     * Verifies that selectCustomersByIds() passes the ids to the repository as one array, and skips the
+     * repository for no ids.
+     */
+    @Test
+    void selectCustomersByIds() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 20);
+        when(repository.findAllByIdArray(new Integer[]{1, 2})).thenReturn(List.of(alex));
+
+        //When
+        List<Customer> customers = underTest.selectCustomersByIds(List.of(1, 2));
+
         //Then
-        Mockito.verify(repository).save(customer);
+        assertThat(customers).containsExactly(alex);
+        assertThat(underTest.selectCustomersByIds(List.of())).isEmpty();
+        Mockito.verify(repository).findAllByIdArray(new Integer[]{1, 2});
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,285 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.AbstractTestContainer;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Test suite for CustomerR2dbcDataAccessService, run against the same database as the JDBC tests
+ * through an R2DBC connection factory.
+ */
+class CustomerR2dbcDataAccessServiceTest extends AbstractTestContainer {
+
+    private DatabaseClient databaseClient;
+    private CustomerR2dbcDataAccessService underTest;
+
+    /**
+     * Builds the R2DBC connection factory from the container's JDBC URL and credentials.
+     */
+    @BeforeEach
+    void setUp() {
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse(
+                        postgreSQLContainer.getJdbcUrl().replaceFirst("^jdbc:", "r2dbc:"))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, postgreSQLContainer.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgreSQLContainer.getPassword())
+                .build();
+        databaseClient = DatabaseClient.create(ConnectionFactories.get(options));
+        underTest = new CustomerR2dbcDataAccessService(databaseClient, null);
+    }
+
+    /**
+     * Tests that adding a customer emits the generated id, that the customer can be read back by it,
+     * and that a second customer with the same email is not inserted and emits nothing.
+     */
+    @Test
+    void addCustomerReturnsIdAndDetectsConflict() {
+
+        //Given
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        Customer customer = new Customer(getFaker().name().fullName(), email, 20);
+
+        //When
+        Integer id = underTest.addCustomer(customer).block();
+
+        //Then
+        assertThat(id).isNotNull();
+        StepVerifier.create(underTest.selectCustomerById(id))
+                .assertNext(found -> assertThat(found.getEmail()).isEqualTo(email))
+                .verifyComplete();
+        StepVerifier.create(underTest.addCustomer(new Customer("Someone Else", email, 30)))
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that ids handed out one after the other come from the same block of the sequence.
+     */
+    @Test
+    void addCustomersUseConsecutiveIdsFromOneBlock() {
+
+        //Given
+        Flux<Integer> ids = Flux.range(0, 3)
+                .concatMap(i -> underTest.addCustomer(new Customer(
+                        "Block " + i, "block-" + i + "-" + UUID.randomUUID() + "@example.com", 30)));
+
+        //When
+        List<Integer> allocated = ids.collectList().block();
+
+        //Then
+        assertThat(allocated).hasSize(3);
+        assertThat(allocated.get(1)).isEqualTo(allocated.get(0) + 1);
+        assertThat(allocated.get(2)).isEqualTo(allocated.get(1) + 1);
+    }
+
+    /**
+     * Tests that streaming all customers emits them in id order and includes a newly added customer.
+     */
+    @Test
+    void selectAllCustomers() {
+
+        //Given
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        Integer id = underTest.addCustomer(new Customer(getFaker().name().fullName(), email, 20)).block();
+
+        //When
+        List<Customer> customers = underTest.selectAllCustomers().collectList().block();
+
+        //Then
+        assertThat(customers).extracting(Customer::getId).isSorted().contains(id);
+    }
+
+    /**
+     * Tests that a page holds at most the requested number of customers, all after the given id.
+     */
+    @Test
+    void selectCustomersPage() {
+
+        //Given
+        Integer first = underTest.addCustomer(new Customer("Page A", "page-a-" + UUID.randomUUID(), 20)).block();
+        underTest.addCustomer(new Customer("Page B", "page-b-" + UUID.randomUUID(), 20)).block();
+
+        //When
+        List<Customer> page = underTest.selectCustomersPage(first - 1, 1).collectList().block();
+
+        //Then
+        assertThat(page).extracting(Customer::getId).containsExactly(first);
+    }
+
+    /**
+     * Tests that a missing customer emits nothing instead of an error.
+     */
+    @Test
+    void selectCustomerByIdWhenMissing() {
+        StepVerifier.create(underTest.selectCustomerById(-1))
+                .verifyComplete();
+    }
+
+    /**
+     * Tests updating a customer moves it to the next version, and that an update of a missing customer
+     * or of an outdated version emits nothing.
+     */
+    @Test
+    void updateCustomer() {
+
+        //Given
+        Integer id = underTest.addCustomer(new Customer("Before", "before-" + UUID.randomUUID(), 20)).block();
+        String email = "after-" + UUID.randomUUID();
+
+        //When
+        underTest.updateCustomer(new Customer(id, "After", email, 21)).block();
+
+        //Then
+        StepVerifier.create(underTest.selectCustomerById(id))
+                .assertNext(customer -> {
+                    assertThat(customer.getName()).isEqualTo("After");
+                    assertThat(customer.getEmail()).isEqualTo(email);
+                    assertThat(customer.getAge()).isEqualTo(21);
+                    assertThat(customer.getVersion()).isEqualTo(1);
+                })
+                .verifyComplete();
+        StepVerifier.create(underTest.updateCustomer(new Customer(-1, "Nobody", "nobody-" + UUID.randomUUID(), 20)))
+                .verifyComplete();
+        StepVerifier.create(underTest.updateCustomer(new Customer(id, "Stale", email, 22, 0)))
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that a multi-get emits the customers found, ordered by id, and nothing for unknown ids.
+     */
+    @Test
+    void selectCustomersByIds() {
+
+        //Given
+        Integer first = underTest.addCustomer(new Customer("First", "first-" + UUID.randomUUID(), 20)).block();
+        Integer second = underTest.addCustomer(new Customer("Second", "second-" + UUID.randomUUID(), 30)).block();
+
+        //When / Then
+        StepVerifier.create(underTest.selectCustomersByIds(List.of(second, -1, first)).map(Customer::getName))
+                .expectNext("First", "Second")
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that a search binds its arguments by position and emits the matching customers in id order.
+     */
+    @Test
+    void searchCustomers() {
+
+        //Given
+        String domain = UUID.randomUUID() + ".test";
+        Integer first = underTest.addCustomer(new Customer("Search First", "first@" + domain, 20)).block();
+        Integer second = underTest.addCustomer(new Customer("Search Second", "second@" + domain, 30)).block();
+        underTest.addCustomer(new Customer("Other", "other@" + domain, 30)).block();
+
+        //When / Then
+        StepVerifier.create(underTest.searchCustomers(
+                        new CustomerSearchCriteria("search", CustomerSearchCriteria.NameMatch.PREFIX, domain, 18, null), null, 10)
+                        .map(Customer::getId))
+                .expectNext(first, second)
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that a patch changes only the columns it sets and emits the updated row, and emits nothing
+     * for a stale version.
+     */
+    @Test
+    void patchCustomer() {
+
+        //Given
+        String email = "patch-" + UUID.randomUUID();
+        Integer id = underTest.addCustomer(new Customer("Before", email, 20)).block();
+
+        //When / Then
+        StepVerifier.create(underTest.patchCustomer(id, new CustomerPatchRequest("After", null, null), 0))
+                .assertNext(customer -> {
+                    assertThat(customer.getName()).isEqualTo("After");
+                    assertThat(customer.getEmail()).isEqualTo(email);
+                    assertThat(customer.getAge()).isEqualTo(20);
+                    assertThat(customer.getVersion()).isEqualTo(1);
+                })
+                .verifyComplete();
+        StepVerifier.create(underTest.patchCustomer(id, new CustomerPatchRequest("Stale", null, null), 0))
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that taking another customer's email on update fails with a duplicate key error.
+     */
+    @Test
+    void updateCustomerWithTakenEmail() {
+
+        //Given
+        String taken = "taken-" + UUID.randomUUID();
+        underTest.addCustomer(new Customer("Owner", taken, 20)).block();
+        Integer id = underTest.addCustomer(new Customer("Other", "other-" + UUID.randomUUID(), 20)).block();
+
+        //When / Then
+        StepVerifier.create(underTest.updateCustomer(new Customer(id, "Other", taken, 20)))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+    }
+
+    /**
+     * Tests deleting a customer, and that deleting it again reports that nothing was deleted.
+     */
+    @Test
+    void deleteCustomerById() {
+
+        //Given
+        Integer id = underTest.addCustomer(new Customer("Gone", "gone-" + UUID.randomUUID(), 20)).block();
+
+        //When / Then
+        StepVerifier.create(underTest.deleteCustomerById(id)).expectNext(true).verifyComplete();
+        StepVerifier.create(underTest.deleteCustomerById(id)).expectNext(false).verifyComplete();
+        StepVerifier.create(underTest.personWithEmailExists("gone-missing")).expectNext(false).verifyComplete();
+    }
+
+    /**
+     * Tests adding, updating, patching and deleting a customer with change events recorded.
+     * Verifies that every write appends its event, and that a write that changes nothing appends none.
+     */
+    @Test
+    void writesRecordingEvents() {
+
+        //Given
+        JdbcTemplate jdbcTemplate = getJdbcTemplate();
+        underTest = new CustomerR2dbcDataAccessService(databaseClient, new CustomerOutbox(jdbcTemplate, null, Duration.ofDays(7)));
+        String email = "events-" + UUID.randomUUID();
+
+        //When
+        Integer id = underTest.addCustomer(new Customer("Ana", email, 30)).block();
+        underTest.addCustomer(new Customer("Taken", email, 31)).block();
+        Customer updated = underTest.updateCustomer(new Customer(id, "Ana B", email, 31, 0)).block();
+        underTest.updateCustomer(new Customer(id, "Stale", email, 32, 0)).block();
+        underTest.patchCustomer(id, new CustomerPatchRequest("Ana C", null, null), null).block();
+        underTest.deleteCustomerById(id).block();
+        underTest.deleteCustomerById(id).block();
+
+        //Then
+        assertThat(updated.getVersion()).isEqualTo(1);
+        //A relay running in another application context may already have moved the events on
+        List<String> events = jdbcTemplate.queryForList("""
+                SELECT concat_ws(' ', type, name, version) FROM customer_outbox WHERE customer_id = ?
+                UNION ALL
+                SELECT concat_ws(' ', type, name, version) FROM customer_event WHERE customer_id = ?""", String.class, id, id);
+        assertThat(events).containsExactlyInAnyOrder("CREATED Ana 0", "UPDATED Ana B 1", "UPDATED Ana C 2", "DELETED");
+    }
+}
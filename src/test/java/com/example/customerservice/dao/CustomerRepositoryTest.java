@@ -2,6 +2,9 @@ package com.example.customerservice.dao;
 
 import com.example.customerservice.AbstractTestContainer;
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +12,8 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.context.ApplicationContext;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
@@ -84,4 +89,100 @@ class CustomerRepositoryTest extends AbstractTestContainer {
         assertThat(actual).isFalse();
     }
 
-}
\ No newline at end of file
+    @Test
+    void testInsertIfEmailAvailable() {
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+
+        CustomerIdAllocator allocator = new CustomerIdAllocator(getJdbcTemplate());
+        int newId = allocator.nextId();
+
+        //When
+        Optional<Integer> id = underTest.insertIfEmailAvailable(newId, getFaker().name().fullName(), email, 20);
+        Optional<Integer> conflict = underTest.insertIfEmailAvailable(allocator.nextId(), getFaker().name().fullName(), email, 30);
+
+        //Then
+        assertThat(id).contains(newId);
+        assertThat(underTest.findById(id.get()).map(Customer::getEmail)).contains(email);
+        assertThat(conflict).isEmpty();
+    }
+
+    @Test
+    void testUpdateIfVersion() {
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        CustomerIdAllocator allocator = new CustomerIdAllocator(getJdbcTemplate());
+        int id = underTest.insertIfEmailAvailable(allocator.nextId(), getFaker().name().fullName(), email, 20).orElseThrow();
+
+        //When
+        Optional<Customer> updated = underTest.updateIfVersion(id, 0, "Alex", email, 21);
+        Optional<Customer> stale = underTest.updateIfVersion(id, 0, "Stale", email, 22);
+
+        //Then
+        assertThat(updated.map(Customer::getAge)).contains(20);
+        assertThat(updated.map(Customer::getVersion)).contains(0);
+        assertThat(stale).isEmpty();
+        assertThat(underTest.findById(id).map(Customer::getVersion)).contains(1);
+        assertThat(underTest.findById(id).map(Customer::getName)).contains("Alex");
+    }
+
+    @Test
+    void testPatch() {
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        CustomerIdAllocator allocator = new CustomerIdAllocator(getJdbcTemplate());
+        int id = underTest.insertIfEmailAvailable(allocator.nextId(), "Alex", email, 20).orElseThrow();
+
+        //When
+        Optional<CustomerUpdate> update = underTest.patch(id, new CustomerPatchRequest(null, null, 21), 0);
+        Optional<CustomerUpdate> stale = underTest.patch(id, new CustomerPatchRequest("Stale", null, null), 0);
+        Optional<Customer> patched = update.map(CustomerUpdate::after);
+
+        //Then
+        assertThat(update.map(CustomerUpdate::before)).contains(new Customer(id, "Alex", email, 20));
+        assertThat(update.map(CustomerUpdate::before).map(Customer::getVersion)).contains(0);
+        assertThat(patched.map(Customer::getAge)).contains(21);
+        assertThat(patched.map(Customer::getName)).contains("Alex");
+        assertThat(patched.map(Customer::getVersion)).contains(1);
+        assertThat(stale).isEmpty();
+    }
+
+    @Test
+    void testFindAllByIdArray() {
+        CustomerIdAllocator allocator = new CustomerIdAllocator(getJdbcTemplate());
+        String email = getFaker().internet().emailAddress() + "-" + UUID.randomUUID();
+        int first = underTest.insertIfEmailAvailable(allocator.nextId(), "First", "first-" + email, 20).orElseThrow();
+        int second = underTest.insertIfEmailAvailable(allocator.nextId(), "Second", "second-" + email, 30).orElseThrow();
+
+        //When
+        List<Customer> customers = underTest.findAllByIdArray(new Integer[]{second, -1, first});
+
+        //Then
+        assertThat(customers.stream().map(Customer::getId).toList()).isEqualTo(List.of(first, second));
+    }
+
+    @Test
+    void testSearch() {
+        CustomerIdAllocator allocator = new CustomerIdAllocator(getJdbcTemplate());
+        String domain = UUID.randomUUID() + ".test";
+        int first = underTest.insertIfEmailAvailable(allocator.nextId(), "Alex First", "first@" + domain, 20).orElseThrow();
+        underTest.insertIfEmailAvailable(allocator.nextId(), "Alex Second", "second@" + domain, 30).orElseThrow();
+
+        //When
+        List<Customer> customers = underTest.search(
+                new CustomerSearchCriteria("alex", CustomerSearchCriteria.NameMatch.PREFIX, domain, null, 25), null, 10);
+
+        //Then
+        assertThat(customers.stream().map(Customer::getId).toList()).isEqualTo(List.of(first));
+    }
+
+    @Test
+    void testSaveSharesIdBlocksWithAllocator() {
+        CustomerIdAllocator allocator = new CustomerIdAllocator(getJdbcTemplate());
+
+        //When: Hibernate and the allocator each reserve blocks from customer_id_seq
+        Customer saved = underTest.save(new Customer(getFaker().name().fullName(),
+                getFaker().internet().emailAddress() + "-" + UUID.randomUUID(), 20));
+        int allocated = allocator.nextId();
+
+        //Then: the ids fall in different blocks
+        assertThat(saved.getId() / Customer.ID_BLOCK_SIZE).isNotEqualTo(allocated / Customer.ID_BLOCK_SIZE);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.exception.ServiceOverloadedException;
+import com.example.customerservice.model.Customer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+/**
+ * Unit test class for CustomerWriteBehindQueue with a mocked CustomerDao.
+ * The mock hands out each customer's age as its id, so every future can be matched to its registration.
+ */
+class CustomerWriteBehindQueueTest {
+
+    private CustomerWriteBehindQueue underTest;
+
+    // Used to automatically close resources initialized by openMocks() after each test.
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private CustomerDao delegate;
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = openMocks(this);
+        //The first batch is held in the DAO until released, so the following registrations pile up in the queue
+        when(delegate.addCustomers(any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            List<Customer> customers = invocation.getArgument(0);
+            return customers.stream().map(Customer::getAge).toList();
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        release.countDown();
+        underTest.close();
+        autoCloseable.close();
+    }
+
+    /**
+     * Tests registrations arriving while a batch is being written.
+     * Verifies that they are written in full batches, the last one once it has waited the maximum latency,
+     * and that every future completes with its own id.
+     */
+    @Test
+    void registrationsAreWrittenInBatches() throws Exception {
+        //Given
+        underTest = new CustomerWriteBehindQueue(delegate, 10, 3, Duration.ofMillis(200), batchSizes::add);
+        List<CompletableFuture<Optional<Integer>>> first = IntStream.rangeClosed(1, 3).mapToObj(this::submit).toList();
+        entered.await();
+
+        //When
+        List<CompletableFuture<Optional<Integer>>> waiting = IntStream.rangeClosed(4, 7).mapToObj(this::submit).toList();
+        assertThat(underTest.depth()).isEqualTo(4);
+        release.countDown();
+
+        //Then
+        assertThat(waiting.getLast().get()).contains(7);
+        assertThat(first).extracting(CompletableFuture::join).containsExactly(Optional.of(1), Optional.of(2), Optional.of(3));
+        assertThat(waiting).extracting(CompletableFuture::join)
+                .containsExactly(Optional.of(4), Optional.of(5), Optional.of(6), Optional.of(7));
+        assertThat(batchSizes).containsExactly(3, 3, 1);
+        assertThat(underTest.batchesWritten()).isEqualTo(3);
+        assertThat(underTest.customersWritten()).isEqualTo(7);
+        assertThat(underTest.depth()).isZero();
+    }
+
+    /**
+     * Tests registering while the queue is full.
+     * Verifies that the registration is refused right away instead of waiting for room.
+     */
+    @Test
+    void fullQueueRefusesRegistrations() throws Exception {
+        //Given
+        underTest = new CustomerWriteBehindQueue(delegate, 2, 1, Duration.ofMillis(200), batchSizes::add);
+        CompletableFuture<Optional<Integer>> writing = submit(1);
+        entered.await();
+        submit(2);
+        submit(3);
+
+        //When / Then
+        assertThatThrownBy(() -> submit(4)).isInstanceOf(ServiceOverloadedException.class);
+        release.countDown();
+        assertThat(writing.get()).contains(1);
+    }
+
+    /**
+     * Tests a batch the DAO rejects as a whole, as JPA does when one of its emails is taken.
+     * Verifies that its registrations are added one at a time instead, so only the taken email is refused.
+     */
+    @Test
+    void failedBatchIsAddedOneAtATime() throws Exception {
+        //Given
+        doThrow(new DataIntegrityViolationException("unique_email")).when(delegate).addCustomers(any());
+        when(delegate.addCustomer(any())).thenReturn(Optional.of(1), Optional.empty());
+        underTest = new CustomerWriteBehindQueue(delegate, 10, 2, Duration.ofSeconds(1), batchSizes::add);
+
+        //When
+        CompletableFuture<Optional<Integer>> added = submit(1);
+        CompletableFuture<Optional<Integer>> taken = submit(2);
+
+        //Then
+        assertThat(added.get()).contains(1);
+        assertThat(taken.get()).isEmpty();
+        assertThat(batchSizes).containsExactly(2);
+    }
+
+    private CompletableFuture<Optional<Integer>> submit(int age) {
+        return underTest.submit(new Customer("Customer " + age, "customer" + age + "@gmail.com", age));
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+/**
+ * Unit test class for MeteredCustomerDao.
+ * This class verifies that calls, errors and rows are recorded per method and tagged with the implementation.
+ */
+class MeteredCustomerDaoTest {
+
+    private MeteredCustomerDao underTest;
+    private SimpleMeterRegistry registry;
+
+    // Used to automatically close resources initialized by openMocks() after each test.
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private CustomerDao delegate;
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = openMocks(this);
+        registry = new SimpleMeterRegistry();
+        underTest = new MeteredCustomerDao(delegate, registry, "jdbc");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    /**
+     * Tests that every successful call is timed and its rows are recorded under the method's tags.
+     */
+    @Test
+    void recordsCallsAndRows() {
+        //Given
+        when(delegate.selectAllCustomers()).thenReturn(List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 21),
+                new Customer(2, "Jamila", "jamila@gmail.com", 19)));
+
+        //When
+        underTest.selectAllCustomers();
+        underTest.selectAllCustomers();
+
+        //Then
+        Timer timer = registry.get(MeteredCustomerDao.CALLS)
+                .tags("dao", "jdbc", "method", "selectAllCustomers", "outcome", "success")
+                .timer();
+        assertThat(timer.count()).isEqualTo(2);
+        DistributionSummary rows = registry.get(MeteredCustomerDao.ROWS)
+                .tags("dao", "jdbc", "method", "selectAllCustomers")
+                .summary();
+        assertThat(rows.totalAmount()).isEqualTo(4);
+    }
+
+    /**
+     * Tests that a failing call is timed as an error tagged with the exception and is rethrown unchanged.
+     */
+    @Test
+    void recordsErrors() {
+        //Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 21);
+        DuplicateKeyException failure = new DuplicateKeyException("unique_email");
+        when(delegate.updateCustomer(customer)).thenThrow(failure);
+
+        //When / Then
+        assertThatThrownBy(() -> underTest.updateCustomer(customer)).isSameAs(failure);
+        Timer timer = registry.get(MeteredCustomerDao.CALLS)
+                .tags("method", "updateCustomer", "outcome", "error", "exception", "DuplicateKeyException")
+                .timer();
+        assertThat(timer.count()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that streamed rows are counted as they pass through to the consumer.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void countsStreamedRows() {
+        //Given
+        doAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            consumer.accept("alex@gmail.com");
+            consumer.accept("jamila@gmail.com");
+            consumer.accept("sam@gmail.com");
+            return null;
+        }).when(delegate).streamAllEmails(any());
+        List<String> emails = new ArrayList<>();
+
+        //When
+        underTest.streamAllEmails(emails::add);
+
+        //Then
+        assertThat(emails).hasSize(3);
+        assertThat(registry.get(MeteredCustomerDao.ROWS).tags("method", "streamAllEmails").summary().totalAmount())
+                .isEqualTo(3);
+    }
+
+    /**
+     * Tests that a lookup records one row for a hit and none for a miss.
+     */
+    @Test
+    void recordsLookupRows() {
+        //Given
+        when(delegate.selectCustomerById(1)).thenReturn(Optional.of(new Customer(1, "Alex", "alex@gmail.com", 21)));
+        when(delegate.selectCustomerById(2)).thenReturn(Optional.empty());
+
+        //When
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(2);
+
+        //Then
+        DistributionSummary rows = registry.get(MeteredCustomerDao.ROWS).tags("method", "selectCustomerById").summary();
+        assertThat(rows.count()).isEqualTo(2);
+        assertThat(rows.totalAmount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.AbstractTestContainer;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerEvent;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.util.CustomerRowMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test suite for OutboxCustomerDao and CustomerOutbox, wrapping the JDBC DAO.
+ * Verifies that every committed change, and only those, is published as an event in order.
+ * Another application context may be relaying the same tables, so events are looked up by customer id.
+ */
+class OutboxCustomerDaoTest extends AbstractTestContainer {
+
+    private OutboxCustomerDao underTest;
+    private CustomerOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        DataSource dataSource = getDataSource();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        outbox = new CustomerOutbox(jdbcTemplate, transactionTemplate, Duration.ofDays(7));
+        CustomerJDBCDataAccessService customerDao = new CustomerJDBCDataAccessService(
+                jdbcTemplate, new CustomerRowMapper(), new CustomerIdAllocator(jdbcTemplate));
+        underTest = new OutboxCustomerDao(customerDao, outbox, transactionTemplate);
+        outbox.relay();
+    }
+
+    /**
+     * Tests adding, updating, patching and deleting a customer.
+     * Verifies that the events follow the changes in order, each with the customer as it was left.
+     */
+    @Test
+    void writesArePublishedInOrder() {
+
+        //Given
+        String email = UUID.randomUUID() + "@outbox.example";
+        long before = outbox.latestSequence();
+
+        //When
+        int id = underTest.addCustomer(new Customer("Ana", email, 30)).orElseThrow();
+        Customer updated = underTest.updateCustomer(new Customer(id, "Ana Maria", email, 31, 0)).after();
+        underTest.patchCustomer(id, new CustomerPatchRequest(null, null, 32), updated.getVersion());
+        underTest.deleteCustomerById(id);
+
+        //Then
+        List<CustomerEvent> events = relayedEventsOf(id, before, 4);
+        assertThat(events).extracting(CustomerEvent::type).containsExactly(
+                CustomerEvent.Type.CREATED, CustomerEvent.Type.UPDATED, CustomerEvent.Type.UPDATED, CustomerEvent.Type.DELETED);
+        assertThat(events).extracting(CustomerEvent::version).containsExactly(0, 1, 2, null);
+        assertThat(events.get(0).customer()).isEqualTo(new Customer(id, "Ana", email, 30, 0));
+        assertThat(events.get(2).customer().getAge()).isEqualTo(32);
+        assertThat(events.get(3).customer()).isNull();
+        assertThat(events).extracting(CustomerEvent::sequence).isSorted().doesNotHaveDuplicates();
+        assertThat(outbox.latestSequence()).isGreaterThanOrEqualTo(events.getLast().sequence());
+    }
+
+    /**
+     * Tests an update based on a stale version and an add with a taken email.
+     * Verifies that neither leaves an event, as neither changed anything.
+     */
+    @Test
+    void writesThatChangeNothingPublishNothing() {
+
+        //Given
+        String email = UUID.randomUUID() + "@outbox.example";
+        long before = outbox.latestSequence();
+        int id = underTest.addCustomer(new Customer("Bo", email, 40)).orElseThrow();
+
+        //When
+        assertThatThrownBy(() -> underTest.updateCustomer(new Customer(id, "Bo", email, 41, 7)))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(underTest.addCustomer(new Customer("Bo again", email, 50))).isEmpty();
+        underTest.deleteCustomerById(id);
+
+        //Then
+        assertThat(relayedEventsOf(id, before, 2)).extracting(CustomerEvent::type)
+                .containsExactly(CustomerEvent.Type.CREATED, CustomerEvent.Type.DELETED);
+    }
+
+    /**
+     * Tests waiting for events past the latest one.
+     * Verifies that the wait times out while nothing is published and ends as soon as the relay publishes.
+     */
+    @Test
+    void awaitEventsAfterEndsWhenRelayPublishes() {
+
+        //Given
+        long latest = outbox.latestSequence();
+        assertThat(outbox.awaitEventsAfter(latest, Duration.ofMillis(50)).join()).isFalse();
+        CompletableFuture<Boolean> waiting = outbox.awaitEventsAfter(latest, Duration.ofSeconds(30));
+
+        //When
+        underTest.addCustomer(new Customer("Cy", UUID.randomUUID() + "@outbox.example", 25));
+        while (!waiting.isDone()) {
+            outbox.relay();
+        }
+
+        //Then
+        assertThat(waiting.join()).isTrue();
+        assertThat(outbox.latestSequence()).isGreaterThan(latest);
+    }
+
+    //Relays until the expected events of the customer are published, by this outbox or a concurrent relay
+    private List<CustomerEvent> relayedEventsOf(int customerId, long after, int expected) {
+        List<CustomerEvent> events = List.of();
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (events.size() < expected && System.nanoTime() - deadline < 0) {
+            outbox.relay();
+            events = outbox.selectEventsAfter(after, 100_000).stream()
+                    .filter(event -> event.customerId() == customerId)
+                    .toList();
+        }
+        return events;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+/**
+ * Unit test class for ReplicaReadCustomerDao.
+ * This class verifies which calls may be served by a replica while they run.
+ */
+class ReplicaReadCustomerDaoTest {
+
+    private ReplicaReadCustomerDao underTest;
+
+    // Used to automatically close resources initialized by openMocks() after each test.
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private CustomerDao delegate;
+
+    // Whether a replica was allowed during each call that reached the delegate
+    private final List<Boolean> replicaAllowed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        autoCloseable = openMocks(this);
+        underTest = new ReplicaReadCustomerDao(delegate, Duration.ofMinutes(1));
+        when(delegate.selectCustomerById(any())).thenAnswer(invocation -> {
+            replicaAllowed.add(DataSourceRoute.replicaAllowed());
+            return Optional.empty();
+        });
+        when(delegate.personWithEmailExists(any())).thenAnswer(invocation -> {
+            replicaAllowed.add(DataSourceRoute.replicaAllowed());
+            return false;
+        });
+        when(delegate.selectAllCustomers()).thenAnswer(invocation -> {
+            replicaAllowed.add(DataSourceRoute.replicaAllowed());
+            return List.of();
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    /**
+     * Tests that reads may be served by a replica and that the scope is closed afterwards.
+     */
+    @Test
+    void readsMayUseReplica() {
+        //When
+        underTest.selectAllCustomers();
+        underTest.selectCustomerById(1);
+        underTest.personWithEmailExists("alex@gmail.com");
+
+        //Then
+        assertThat(replicaAllowed).containsExactly(true, true, true);
+        assertThat(DataSourceRoute.replicaAllowed()).isFalse();
+    }
+
+    /**
+     * Tests that a customer written through the DAO is then read from the primary, by id and by email.
+     */
+    @Test
+    void recentWritesAreReadFromThePrimary() {
+        //Given
+        Customer customer = new Customer(1, "Alex", "alex@gmail.com", 21);
+        underTest.updateCustomer(customer);
+        when(delegate.addCustomer(any())).thenReturn(Optional.of(7));
+        underTest.addCustomer(new Customer("Jamila", "jamila@gmail.com", 19));
+
+        //When
+        underTest.selectCustomerById(1);
+        underTest.selectCustomerById(7);
+        underTest.personWithEmailExists("jamila@gmail.com");
+        underTest.selectCustomerById(2);
+
+        //Then
+        assertThat(replicaAllowed).containsExactly(false, false, false, true);
+    }
+
+    /**
+     * Tests that reads of a client that requires the primary stay on it.
+     */
+    @Test
+    void requiredPrimaryWins() {
+        //When
+        try (DataSourceRoute.Scope scope = DataSourceRoute.requirePrimary()) {
+            underTest.selectAllCustomers();
+        }
+
+        //Then
+        assertThat(replicaAllowed).containsExactly(false);
+    }
+}
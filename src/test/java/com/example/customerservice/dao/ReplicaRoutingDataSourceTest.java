@@ -0,0 +1,152 @@
+package com.example.customerservice.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.openMocks;
+
+/**
+ * Unit test class for ReplicaRoutingDataSource.
+ * This class verifies which data source a connection comes from, and that unhealthy replicas are skipped.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private ReplicaRoutingDataSource underTest;
+
+    // Used to automatically close resources initialized by openMocks() after each test.
+    private AutoCloseable autoCloseable;
+
+    @Mock
+    private DataSource primary;
+    @Mock
+    private DataSource first;
+    @Mock
+    private DataSource second;
+
+    private final Connection primaryConnection = mock(Connection.class);
+    private final Connection firstConnection = mock(Connection.class);
+    private final Connection secondConnection = mock(Connection.class);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        autoCloseable = openMocks(this);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(first.getConnection()).thenReturn(firstConnection);
+        when(second.getConnection()).thenReturn(secondConnection);
+        underTest = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("replica-1", first),
+                        new ReplicaRoutingDataSource.Replica("replica-2", second)),
+                ReplicaRoutingDataSource.Selection.ROUND_ROBIN, Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        autoCloseable.close();
+    }
+
+    /**
+     * Tests that connections outside a read-only scope come from the primary.
+     */
+    @Test
+    void writesUseThePrimary() throws SQLException {
+        assertThat(underTest.getConnection()).isSameAs(primaryConnection);
+    }
+
+    /**
+     * Tests that reads alternate between the replicas, unless the primary is required.
+     */
+    @Test
+    void readsAlternateBetweenReplicas() throws SQLException {
+        try (DataSourceRoute.Scope scope = DataSourceRoute.readOnly()) {
+            assertThat(underTest.getConnection()).isSameAs(firstConnection);
+            assertThat(underTest.getConnection()).isSameAs(secondConnection);
+            assertThat(underTest.getConnection()).isSameAs(firstConnection);
+            try (DataSourceRoute.Scope primaryScope = DataSourceRoute.requirePrimary()) {
+                assertThat(underTest.getConnection()).isSameAs(primaryConnection);
+            }
+        }
+        assertThat(DataSourceRoute.replicaAllowed()).isFalse();
+    }
+
+    /**
+     * Tests that a replica that fails to connect is ejected, its read is served by the primary, and later
+     * reads only go to the remaining replica.
+     */
+    @Test
+    void unreachableReplicaIsEjected() throws SQLException {
+        //Given
+        when(first.getConnection()).thenThrow(new SQLException("connection refused"));
+
+        //When / Then
+        try (DataSourceRoute.Scope scope = DataSourceRoute.readOnly()) {
+            assertThat(underTest.getConnection()).isSameAs(primaryConnection);
+            assertThat(underTest.getConnection()).isSameAs(secondConnection);
+            assertThat(underTest.getConnection()).isSameAs(secondConnection);
+        }
+        assertThat(underTest.replicas().get(0).healthy()).isFalse();
+        assertThat(underTest.primaryReads()).isEqualTo(1);
+    }
+
+    /**
+     * Tests that the health check ejects a lagging replica and takes it back once it has caught up.
+     */
+    @Test
+    void healthCheckEjectsLaggingReplica() throws SQLException {
+        //Given
+        ResultSet lag = lagOf(first, 30.0);
+        lagOf(second, 0.0);
+
+        //When
+        underTest.checkHealth();
+
+        //Then
+        assertThat(underTest.replicas()).extracting(ReplicaRoutingDataSource.Replica::healthy).containsExactly(false, true);
+
+        //When
+        when(lag.getDouble(1)).thenReturn(1.0);
+        underTest.checkHealth();
+
+        //Then
+        assertThat(underTest.replicas()).extracting(ReplicaRoutingDataSource.Replica::healthy).containsExactly(true, true);
+    }
+
+    /**
+     * Tests that reads go to the primary once every replica is ejected.
+     */
+    @Test
+    void readsFallBackToThePrimary() throws SQLException {
+        //Given
+        when(first.getConnection()).thenThrow(new SQLException("down"));
+        when(second.getConnection()).thenThrow(new SQLException("down"));
+        underTest.checkHealth();
+
+        //When / Then
+        try (DataSourceRoute.Scope scope = DataSourceRoute.readOnly()) {
+            assertThat(underTest.getConnection()).isSameAs(primaryConnection);
+        }
+    }
+
+    private static ResultSet lagOf(DataSource replica, double seconds) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(replica.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(ReplicaRoutingDataSource.REPLICATION_LAG_QUERY)).thenReturn(resultSet);
+        when(resultSet.getDouble(1)).thenReturn(seconds);
+        return resultSet;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.customerservice.dao;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerPatchRequest;
+import com.example.customerservice.model.CustomerStatistics;
+import com.example.customerservice.util.CustomerStatisticsCounters;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit test class for StatisticsCustomerDao, wrapping the in-memory CustomerDataAccessService,
+ * which starts out with Alex (21, gmail.com) and Jamila (19, gmail.com).
+ * This class verifies that every write keeps the counters equal to a recount of the stored customers.
+ */
+class StatisticsCustomerDaoTest {
+
+    private StatisticsCustomerDao underTest;
+    private CustomerDataAccessService delegate;
+    private CustomerStatisticsCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        delegate = spy(new CustomerDataAccessService());
+        counters = new CustomerStatisticsCounters();
+        underTest = new StatisticsCustomerDao(delegate, counters);
+        underTest.reconcile();
+    }
+
+    /**
+     * Tests that adds, updates, patches and deletes leave the same counts as a recount from the table would.
+     */
+    @Test
+    void writesKeepCountsInStepWithStoredCustomers() {
+        // When
+        underTest.addCustomer(new Customer("Manoj", "manoj@yahoo.com", 42));
+        underTest.addCustomer(new Customer("Alex again", "alex@gmail.com", 50));
+        List<Integer> ids = underTest.addCustomers(
+                List.of(new Customer("Ana", "ana@aol.com", 33), new Customer("Bo", "bo@aol.com", 64)));
+        Customer alex = delegate.selectCustomerById(1).orElseThrow();
+        alex.setAge(31);
+        underTest.updateCustomer(alex);
+        underTest.patchCustomer(2, new CustomerPatchRequest(null, "jamila@yahoo.com", null), null);
+        underTest.deleteCustomerById(ids.get(0));
+        underTest.deleteCustomerById(99);
+        CustomerStatistics maintained = counters.snapshot(10);
+
+        // Then
+        CustomerStatisticsCounters recounted = new CustomerStatisticsCounters();
+        recounted.rebuild(delegate::streamAllCustomers);
+        CustomerStatistics expected = recounted.snapshot(10);
+        assertThat(maintained.total()).isEqualTo(4);
+        assertThat(maintained.ageHistogram()).isEqualTo(expected.ageHistogram());
+        assertThat(maintained.topEmailDomains()).isEqualTo(expected.topEmailDomains());
+        assertThat(maintained.topEmailDomains()).containsExactly(
+                new CustomerStatistics.DomainCount("yahoo.com", 2),
+                new CustomerStatistics.DomainCount("aol.com", 1),
+                new CustomerStatistics.DomainCount("gmail.com", 1));
+    }
+
+    /**
+     * Tests that updates, patches and deletes take the old age and domain from the write itself rather than
+     * reading the customer first.
+     */
+    @Test
+    void writesDoNotReadCustomerFirst() {
+        // When
+        underTest.updateCustomer(new Customer(1, "Alex", "alex@yahoo.com", 35));
+        underTest.patchCustomer(1, new CustomerPatchRequest("Alexander", null, 36), 1);
+        underTest.deleteCustomerById(2);
+
+        // Then
+        verify(delegate, never()).selectCustomerById(anyInt());
+        CustomerStatistics statistics = counters.snapshot(10);
+        assertThat(statistics.total()).isEqualTo(1);
+        assertThat(statistics.topEmailDomains()).containsExactly(new CustomerStatistics.DomainCount("yahoo.com", 1));
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.customerservice.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop load generator for comparing the platform-thread and virtual-thread execution modes.
+ * It is run by hand against a running service, not as part of the build.
+ * <p>
+ * Each of {@code clients} virtual threads repeatedly fetches a random customer by id and waits for the
+ * answer before sending the next request. At the end it prints throughput, latency percentiles and the
+ * number of non-200 answers. Start the service once with {@code --spring.threads.virtual.enabled=false} and
+ * once with {@code true}, both with {@code --customer.dao.cache.enabled=false} so that every request reaches
+ * the database, and compare the two reports.
+ * <pre>
+ * java CustomerLoadComparison.java http://localhost:8080 1000 30 100
+ * </pre>
+ * The arguments are the base URL, the number of concurrent clients, the duration in seconds and the
+ * highest customer id to request.
+ */
+public class CustomerLoadComparison {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+        int maxId = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        List<Future<Result>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> runClient(httpClient, baseUrl, maxId, deadline)));
+            }
+        }
+
+        Result total = new Result();
+        for (Future<Result> future : futures) {
+            total.add(future.get());
+        }
+        long[] latencies = total.latencies();
+        Arrays.sort(latencies);
+        System.out.printf("clients=%d duration=%ds requests=%d errors=%d%n",
+                clients, duration.toSeconds(), latencies.length, total.errors);
+        System.out.printf("throughput=%.0f req/s p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                latencies.length / (double) duration.toSeconds(),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    private static Result runClient(HttpClient httpClient, String baseUrl, int maxId, long deadline) {
+        Result result = new Result();
+        while (System.nanoTime() < deadline) {
+            int id = ThreadLocalRandom.current().nextInt(1, maxId + 1);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/customers/" + id))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() != 200 && response.statusCode() != 404) {
+                    result.errors++;
+                }
+            } catch (Exception e) {
+                result.errors++;
+            }
+            result.record(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private static double percentile(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class Result {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        void add(Result other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i]);
+            }
+            errors += other.errors;
+        }
+
+        long[] latencies() {
+            return Arrays.copyOf(latencies, count);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.dao.CustomerOutbox;
+import com.example.customerservice.exception.InvalidRequestException;
+import com.example.customerservice.exception.ResourceGoneException;
+import com.example.customerservice.exception.ResourceNotFound;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerEvent;
+import com.example.customerservice.model.CustomerEventPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for CustomerEventService with a mocked CustomerOutbox.
+ * Verifies the cursors handed out by long polls and the requests that are refused.
+ */
+@ExtendWith(MockitoExtension.class)
+class CustomerEventServiceTest {
+
+    @Mock
+    private CustomerOutbox outbox;
+    @Mock
+    private ObjectProvider<CustomerOutbox> outboxProvider;
+    private CustomerEventService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerEventService(outboxProvider, null);
+    }
+
+    /**
+     * Tests polling without a cursor.
+     * Verifies that no events are read and the cursor points at the latest event.
+     */
+    @Test
+    void pollWithoutCursorReturnsLatestCursor() {
+        // Given
+        when(outboxProvider.getIfAvailable()).thenReturn(outbox);
+        when(outbox.latestSequence()).thenReturn(42L);
+
+        // When
+        CustomerEventPage page = underTest.pollEvents(null, 100, 30).join();
+
+        // Then
+        assertThat(page).isEqualTo(new CustomerEventPage(List.of(), 42));
+        verify(outbox).latestSequence();
+        verifyNoMoreInteractions(outbox);
+    }
+
+    /**
+     * Tests polling once events have arrived.
+     * Verifies that they are returned with the sequence number of the last one as the next cursor.
+     */
+    @Test
+    void pollReturnsEventsAndNextCursor() {
+        // Given
+        when(outboxProvider.getIfAvailable()).thenReturn(outbox);
+        List<CustomerEvent> events = List.of(
+                new CustomerEvent(11, CustomerEvent.Type.CREATED, 5, new Customer(5, "Ana", "ana@aol.com", 30, 0), 0, Instant.now()),
+                new CustomerEvent(12, CustomerEvent.Type.DELETED, 5, null, null, Instant.now()));
+        when(outbox.awaitEventsAfter(10, Duration.ofSeconds(30))).thenReturn(CompletableFuture.completedFuture(true));
+        when(outbox.selectEventsAfter(10, 100)).thenReturn(events);
+
+        // When
+        CustomerEventPage page = underTest.pollEvents(10L, 100, 30).join();
+
+        // Then
+        assertThat(page).isEqualTo(new CustomerEventPage(events, 12));
+    }
+
+    /**
+     * Tests a poll during which no event arrives.
+     * Verifies that the same cursor is handed back without reading events.
+     */
+    @Test
+    void pollTimingOutKeepsCursor() {
+        // Given
+        when(outboxProvider.getIfAvailable()).thenReturn(outbox);
+        when(outbox.awaitEventsAfter(10, Duration.ofSeconds(1))).thenReturn(CompletableFuture.completedFuture(false));
+
+        // When
+        CustomerEventPage page = underTest.pollEvents(10L, 100, 1).join();
+
+        // Then
+        assertThat(page).isEqualTo(new CustomerEventPage(List.of(), 10));
+        verify(outbox).awaitEventsAfter(any(Long.class), any(Duration.class));
+    }
+
+    /**
+     * Tests polling from a cursor whose following events have been pruned.
+     * Verifies that the poll is refused as gone instead of silently skipping events.
+     */
+    @Test
+    void pollBehindRetentionIsGone() {
+        // Given
+        when(outboxProvider.getIfAvailable()).thenReturn(outbox);
+        when(outbox.prunedThrough()).thenReturn(100L);
+
+        // When / Then
+        assertThatThrownBy(() -> underTest.pollEvents(50L, 100, 30))
+                .isInstanceOf(ResourceGoneException.class);
+    }
+
+    /**
+     * Tests polls with invalid parameters, and polls while events are switched off.
+     */
+    @Test
+    void pollRejectsInvalidRequests() {
+        assertThatThrownBy(() -> underTest.pollEvents(1L, 0, 30)).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.pollEvents(1L, CustomerEventService.MAX_EVENTS_PAGE + 1, 30))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.pollEvents(1L, 100, CustomerEventService.MAX_WAIT_SECONDS + 1))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.pollEvents(1L, 100, 30)).isInstanceOf(ResourceNotFound.class);
+
+        when(outboxProvider.getIfAvailable()).thenReturn(outbox);
+        assertThatThrownBy(() -> underTest.pollEvents(-1L, 100, 30)).isInstanceOf(InvalidRequestException.class);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.dao.CustomerDao;
+import com.example.customerservice.dao.CustomerRowConsumer;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test class for CustomerExportService to ensure streamed customers are written in the requested format.
+ */
+@ExtendWith(MockitoExtension.class)
+class CustomerExportServiceTest {
+
+    @Mock
+    private CustomerDao customerDao; // Mocked dependency that streams the customers below.
+    private CustomerExportService underTest;
+
+    private final List<Customer> customers = List.of(
+            new Customer(1, "Alex", "alex@gmail.com", 21),
+            new Customer(2, "Joshi, \"Manoj\"", "manojoshi1982@gmail.com", 42)
+    );
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerExportService(customerDao, new ObjectMapper());
+    }
+
+    /**
+     * Test to verify that an NDJSON export writes one JSON object per line.
+     */
+    @Test
+    void exportCustomersAsNdjson() throws Exception {
+        // Act: Export into an in-memory stream.
+        streamCustomers();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        underTest.exportCustomers(CustomerFileFormat.NDJSON, outputStream);
+
+        // Assert: Every customer is a line that reads back as the same customer.
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertThat(objectMapper.readValue(lines[0], Customer.class)).isEqualTo(customers.get(0));
+        assertThat(objectMapper.readValue(lines[1], Customer.class)).isEqualTo(customers.get(1));
+    }
+
+    /**
+     * Test to verify that a CSV export writes a header and quotes fields containing separators or quotes.
+     */
+    @Test
+    void exportCustomersAsCsv() throws Exception {
+        // Act: Export into an in-memory stream.
+        streamCustomers();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        underTest.exportCustomers(CustomerFileFormat.CSV, outputStream);
+
+        // Assert: The header comes first and special characters are escaped.
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "id,name,email,age\r\n" +
+                "1,Alex,alex@gmail.com,21\r\n" +
+                "2,\"Joshi, \"\"Manoj\"\"\",manojoshi1982@gmail.com,42\r\n");
+    }
+
+    /**
+     * Test to verify that /all reads the customers a page at a time and writes the bytes Jackson writes for them.
+     */
+    @Test
+    void writeAllCustomersInPages() throws Exception {
+        // Arrange: One customer more than fits in a page.
+        List<Customer> many = IntStream.rangeClosed(1, CustomerExportService.ALL_CUSTOMERS_PAGE_SIZE + 1)
+                .mapToObj(i -> new Customer(i, "Customer " + i, "c" + i + "@gmail.com", i % 100))
+                .toList();
+        pageCustomers(many, Integer.MAX_VALUE);
+
+        // Act
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        underTest.writeAllCustomers(outputStream);
+
+        // Assert: Two pages were read, and the body is what Jackson writes for the list.
+        assertThat(outputStream.toByteArray()).isEqualTo(new ObjectMapper().writeValueAsBytes(many));
+        verify(customerDao, times(2)).streamCustomerRowsPage(any(), eq(CustomerExportService.ALL_CUSTOMERS_PAGE_SIZE), any());
+    }
+
+    /**
+     * Test to verify that a read failing on the first page writes nothing, so the error can still become a 500.
+     */
+    @Test
+    void writeAllCustomersWritesNothingWhenFirstPageFails() {
+        // Arrange
+        doThrow(new QueryTimeoutException("canceling statement due to statement timeout"))
+                .when(customerDao).streamCustomerRowsPage(any(), anyInt(), any());
+
+        // Act
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertThatThrownBy(() -> underTest.writeAllCustomers(outputStream)).isInstanceOf(QueryTimeoutException.class);
+
+        // Assert
+        assertThat(outputStream.size()).isZero();
+    }
+
+    /**
+     * Test to verify that a read failing after the first page leaves the array unterminated rather than complete.
+     */
+    @Test
+    void writeAllCustomersLeavesArrayOpenWhenLaterPageFails() {
+        // Arrange: The second page fails.
+        List<Customer> many = IntStream.rangeClosed(1, CustomerExportService.ALL_CUSTOMERS_PAGE_SIZE + 1)
+                .mapToObj(i -> new Customer(i, "Customer " + i, "c" + i + "@gmail.com", i % 100))
+                .toList();
+        pageCustomers(many, CustomerExportService.ALL_CUSTOMERS_PAGE_SIZE);
+
+        // Act
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertThatThrownBy(() -> underTest.writeAllCustomers(outputStream)).isInstanceOf(QueryTimeoutException.class);
+
+        // Assert: The first page went out, but the array was not closed.
+        String body = outputStream.toString(StandardCharsets.UTF_8);
+        assertThat(body).startsWith("[{\"id\":1,").endsWith("}");
+    }
+
+    private void streamCustomers() {
+        doAnswer(invocation -> {
+            Consumer<Customer> consumer = invocation.getArgument(0);
+            customers.forEach(consumer);
+            return null;
+        }).when(customerDao).streamAllCustomers(any());
+    }
+
+    //Hands out keyset pages of the customers, failing once a page would start past failAfterId
+    private void pageCustomers(List<Customer> stored, int failAfterId) {
+        doAnswer(invocation -> {
+            Integer afterId = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            CustomerRowConsumer consumer = invocation.getArgument(2);
+            int from = afterId == null ? 0 : afterId;
+            if (from >= failAfterId) {
+                throw new QueryTimeoutException("canceling statement due to statement timeout");
+            }
+            stored.stream().filter(customer -> customer.getId() > from).limit(limit).forEach(customer -> consumer.accept(
+                    customer.getId(), customer.getName().getBytes(StandardCharsets.UTF_8),
+                    customer.getEmail().getBytes(StandardCharsets.UTF_8), customer.getAge()));
+            return null;
+        }).when(customerDao).streamCustomerRowsPage(any(), anyInt(), any());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.dao.CustomerCopyLoader;
+import com.example.customerservice.dao.CustomerCopyLoader.LoadResult;
+import com.example.customerservice.dao.CustomerCopyLoader.StagedRow;
+import com.example.customerservice.exception.InvalidRequestException;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.example.customerservice.model.CustomerIngestRejection;
+import com.example.customerservice.model.CustomerIngestReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for CustomerIngestService to ensure uploads are parsed, validated and handed to the loader row by row.
+ */
+@ExtendWith(MockitoExtension.class)
+class CustomerIngestServiceTest {
+
+    @Mock
+    private CustomerCopyLoader customerCopyLoader; // Mocked loader that records the rows it is given.
+    private CustomerIngestService underTest;
+    private final List<StagedRow> loadedRows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        underTest = new CustomerIngestService(customerCopyLoader, new ObjectMapper(), Optional.empty());
+    }
+
+    private void loaderAcceptsEveryRow() {
+        when(customerCopyLoader.load(any(), anyInt())).thenAnswer(invocation -> {
+            Iterator<StagedRow> rows = invocation.getArgument(0);
+            rows.forEachRemaining(loadedRows::add);
+            return new LoadResult(loadedRows.size(), loadedRows.size(), List.of());
+        });
+    }
+
+    /**
+     * Test to verify that valid NDJSON lines are loaded and malformed or invalid ones are reported by line.
+     */
+    @Test
+    void ingestNdjson() throws Exception {
+        // Arrange: a valid line, a blank line, malformed JSON and a registration without a name.
+        String upload = """
+                {"name":"Alex","email":"alex@gmail.com","age":21}
+
+                {"name":
+                {"name":"","email":"jamila@gmail.com","age":19}
+                """;
+
+        // Act: Ingest the upload.
+        loaderAcceptsEveryRow();
+        CustomerIngestReport report = underTest.ingestCustomers(CustomerFileFormat.NDJSON, stream(upload));
+
+        // Assert: Only the valid row reaches the loader and the others are rejected with their line numbers.
+        assertThat(loadedRows).containsExactly(new StagedRow(1, "Alex", "alex@gmail.com", 21));
+        assertThat(report.received()).isEqualTo(3);
+        assertThat(report.inserted()).isEqualTo(1);
+        assertThat(report.rejected()).isEqualTo(2);
+        assertThat(report.rejections()).containsExactly(
+                new CustomerIngestRejection(3, null, "Malformed JSON."),
+                new CustomerIngestRejection(4, "jamila@gmail.com", "Name is required.")
+        );
+    }
+
+    /**
+     * Test to verify that CSV columns are found by header name, quoted fields are unescaped
+     * and rows with a bad age are rejected.
+     */
+    @Test
+    void ingestCsv() throws Exception {
+        // Arrange: an export-style header with an id column and CRLF line endings.
+        String upload = "id,name,email,age\r\n" +
+                "1,\"Joshi, \"\"Manoj\"\"\",manojoshi1982@gmail.com,42\r\n" +
+                "2,Alex,alex@gmail.com,old\r\n";
+
+        // Act: Ingest the upload.
+        loaderAcceptsEveryRow();
+        CustomerIngestReport report = underTest.ingestCustomers(CustomerFileFormat.CSV, stream(upload));
+
+        // Assert: The quoted name is read back and the non-numeric age is rejected.
+        assertThat(loadedRows).containsExactly(new StagedRow(2, "Joshi, \"Manoj\"", "manojoshi1982@gmail.com", 42));
+        assertThat(report.rejections()).containsExactly(
+                new CustomerIngestRejection(3, "alex@gmail.com", "Age is not a number."));
+    }
+
+    /**
+     * Test to verify that a CSV upload without the required header columns is refused.
+     */
+    @Test
+    void ingestCsvWithoutHeaderIsRejected() {
+        assertThatThrownBy(() -> underTest.ingestCustomers(CustomerFileFormat.CSV, stream("Alex,alex@gmail.com,21\n")))
+                .isInstanceOf(InvalidRequestException.class);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
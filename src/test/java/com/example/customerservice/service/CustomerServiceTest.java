@@ -1,10 +1,23 @@
 package com.example.customerservice.service;
 
 import com.example.customerservice.dao.CustomerDao;
+import com.example.customerservice.dao.CustomerWriteBehindQueue;
+import com.example.customerservice.exception.ConcurrentUpdateException;
 import com.example.customerservice.exception.DuplicateResourceFoundException;
+import com.example.customerservice.exception.InvalidRequestException;
+import com.example.customerservice.exception.PreconditionFailedException;
 import com.example.customerservice.exception.ResourceNotFound;
 import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerBatch;
+import com.example.customerservice.model.CustomerBulkCreateResponse;
+import com.example.customerservice.model.CustomerBulkCreateResult;
+import com.example.customerservice.model.CustomerChange;
+import com.example.customerservice.model.CustomerChangesPage;
+import com.example.customerservice.model.CustomerPage;
+import com.example.customerservice.model.CustomerPatchRequest;
 import com.example.customerservice.model.CustomerRegistrationRequest;
+import com.example.customerservice.model.CustomerSearchCriteria;
+import com.example.customerservice.model.CustomerUpdate;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,9 +26,19 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -32,6 +55,10 @@ public class CustomerServiceTest {
 
     @Mock
     private CustomerDao customerDao; // Mocked dependency to simulate DAO layer interactions.
+    @Mock
+    private ObjectProvider<CustomerWriteBehindQueue> writeBehindQueueProvider; // Empty unless a test switches write-behind on.
+    @Mock
+    private CustomerWriteBehindQueue writeBehindQueue;
     private CustomerService underTest; // The class under test, instantiated before each test.
 
     /**
@@ -40,7 +67,7 @@ public class CustomerServiceTest {
      */
     @BeforeEach
     void setUp() {
-        underTest = new CustomerService(customerDao);
+        underTest = new CustomerService(customerDao, writeBehindQueueProvider);
     }
 
 
@@ -57,6 +84,101 @@ public class CustomerServiceTest {
         verify(customerDao).selectAllCustomers();
     }
 
+    /**
+     * Test to verify that a full page asks the DAO for one extra row and returns
+     * the id of the last customer on the page as the next cursor.
+     */
+    @Test
+    void getCustomersPageReturnsNextCursorWhenMoreRowsExist() {
+        // Arrange: the DAO returns limit + 1 rows, so another page exists.
+        List<Customer> rows = List.of(
+                new Customer(11, "Alex", "alex@gmail.com", 21),
+                new Customer(12, "Jamila", "jamila@gmail.com", 19),
+                new Customer(13, "Manoj", "manojoshi1982@gmail.com", 42)
+        );
+        when(customerDao.selectCustomersPage(10, 3)).thenReturn(rows);
+
+        // Act: Request a page of two customers after id 10.
+        CustomerPage page = underTest.getCustomersPage(10, 2);
+
+        // Assert: Only the requested number of rows is returned and the cursor points at the last one.
+        assertThat(page.customers()).containsExactly(rows.get(0), rows.get(1));
+        assertThat(page.nextAfterId()).isEqualTo(12);
+    }
+
+    /**
+     * Test to verify that the last page has no next cursor and that the page size is capped.
+     */
+    @Test
+    void getCustomersPageReturnsNoCursorOnLastPage() {
+        // Arrange: fewer rows than requested are left.
+        List<Customer> rows = List.of(new Customer(11, "Alex", "alex@gmail.com", 21));
+        when(customerDao.selectCustomersPage(null, CustomerService.MAX_PAGE_SIZE + 1)).thenReturn(rows);
+
+        // Act: Request a page larger than the maximum.
+        CustomerPage page = underTest.getCustomersPage(null, 100_000);
+
+        // Assert: All rows are returned and there is no next page.
+        assertThat(page.customers()).containsExactly(rows.get(0));
+        assertThat(page.nextAfterId()).isNull();
+    }
+
+    /**
+     * Test to verify that a page of changes hands out the last change as the next cursor and flags more changes.
+     */
+    @Test
+    void getCustomerChangesReturnsCursorOfLastChange() {
+        // Arrange: the DAO returns limit + 1 changes, so more follow.
+        Instant since = Instant.parse("2024-05-01T10:15:30.123456Z");
+        List<CustomerChange> rows = List.of(
+                new CustomerChange(11, false, new Customer(11, "Alex", "alex@gmail.com", 21), 2, since.plusSeconds(1)),
+                new CustomerChange(12, true, null, null, since.plusSeconds(2)),
+                new CustomerChange(13, false, new Customer(13, "Manoj", "manojoshi1982@gmail.com", 42), 0, since.plusSeconds(3))
+        );
+        when(customerDao.selectCustomerChanges(since, 10, 3)).thenReturn(rows);
+
+        // Act: Request two changes after the cursor.
+        CustomerChangesPage page = underTest.getCustomerChanges(since, 10, 2);
+
+        // Assert: The cursor points at the second change and more are flagged.
+        assertThat(page.changes()).containsExactly(rows.get(0), rows.get(1));
+        assertThat(page.nextSince()).isEqualTo(since.plusSeconds(2));
+        assertThat(page.nextAfterId()).isEqualTo(12);
+        assertThat(page.hasMore()).isTrue();
+    }
+
+    /**
+     * Test to verify that a client already up to date keeps its cursor, and that an id without a time is refused.
+     */
+    @Test
+    void getCustomerChangesKeepsCursorWhenNothingChanged() {
+        // Arrange: nothing changed after the cursor.
+        Instant since = Instant.parse("2024-05-01T10:15:30Z");
+        when(customerDao.selectCustomerChanges(since, 7, CustomerService.MAX_PAGE_SIZE + 1)).thenReturn(List.of());
+
+        // Act
+        CustomerChangesPage page = underTest.getCustomerChanges(since, 7, 100_000);
+
+        // Assert
+        assertThat(page).isEqualTo(new CustomerChangesPage(List.of(), since, 7, false));
+        assertThatThrownBy(() -> underTest.getCustomerChanges(null, 7, 10)).isInstanceOf(InvalidRequestException.class);
+    }
+
+    /**
+     * Test to verify that changes are reported as not found by DAO implementations that do not track them.
+     */
+    @Test
+    void getCustomerChangesNotFoundWithoutChangeTracking() {
+        // Arrange
+        when(customerDao.selectCustomerChanges(null, null, 11))
+                .thenThrow(new UnsupportedOperationException("The list implementation does not track changes."));
+
+        // Act / Assert
+        assertThatThrownBy(() -> underTest.getCustomerChanges(null, null, 10))
+                .isInstanceOf(ResourceNotFound.class)
+                .hasMessage("The list implementation does not track changes.");
+    }
+
     /**
      * Test to verify that getting a customer by their ID returns the correct Customer object.
      * Simulates a successful database query where a customer exists with the given ID.
@@ -94,7 +216,7 @@ public class CustomerServiceTest {
     }
 
     /**
-     * Test to verify that adding a valid customer works correctly
+     * Test to verify that adding a valid customer works correctly, returns the generated id
      * and ensures the data passed to the DAO matches the user input.
      */
     @Test
@@ -102,11 +224,12 @@ public class CustomerServiceTest {
     
         // Arrange: Configure mock and create a sample registration request.
         String email = "manojoshi1982@gmail.com"; // New customer email.
-        when(customerDao.personWithEmailExists(email)).thenReturn(false);
+        when(customerDao.addCustomer(any())).thenReturn(Optional.of(7));
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("Manoj", email, 42);
     
         // Act: Add a new customer using the service method.
-        underTest.addCustomer(request);
+        Integer id = underTest.addCustomer(request);
+        assertThat(id).isEqualTo(7);
     
         // Capture the customer passed to the DAO for additional assertions.
         ArgumentCaptor<Customer> customerArgumentCaptor = ArgumentCaptor.forClass(Customer.class);
@@ -123,7 +246,8 @@ public class CustomerServiceTest {
 
     /**
      * Test to ensure that attempting to add a customer with a duplicate email address
-     * throws a DuplicateResourceFoundException, with the DAO add method not being called.
+     * throws a DuplicateResourceFoundException when the DAO reports the conflict,
+     * without a separate existence check.
      */
     @Test
     void addCustomerWithDuplicateEmailError() {
@@ -131,17 +255,157 @@ public class CustomerServiceTest {
         //Given
         String email = "manojoshi1982@gmail.com";
 
-        when(customerDao.personWithEmailExists(email)).thenReturn(true);
+        when(customerDao.addCustomer(any())).thenReturn(Optional.empty());
 
         //When
         CustomerRegistrationRequest request = new CustomerRegistrationRequest("Manoj", email, 42);
 
         assertThatThrownBy(() -> underTest.addCustomer(request)).isInstanceOf(DuplicateResourceFoundException.class).hasMessageContaining("Email already taken.");
 
+        verify(customerDao, never()).personWithEmailExists(any());
+
+    }
+
+
+    /**
+     * Test to verify that a single registration and a full update are validated like bulk registrations,
+     * so an invalid customer never reaches the DAO or the write-behind queue.
+     */
+    @Test
+    void addAndUpdateRejectInvalidCustomer() {
+        //Given
+        CustomerRegistrationRequest noAge = new CustomerRegistrationRequest("Manoj", "manoj@gmail.com", null);
+        CustomerRegistrationRequest negativeAge = new CustomerRegistrationRequest("Manoj", "manoj@gmail.com", Integer.MIN_VALUE);
+        CustomerRegistrationRequest noEmail = new CustomerRegistrationRequest("Manoj", "manoj", 42);
+
+        //When / Then
+        assertThatThrownBy(() -> underTest.addCustomer(noAge)).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.addCustomer(negativeAge)).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.updateCustomerDetails(10, noEmail, 4)).isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.updateCustomerDetails(10, negativeAge)).isInstanceOf(InvalidRequestException.class);
+        verify(customerDao, never()).addCustomer(any());
+        verify(customerDao, never()).updateCustomer(any());
+        verify(customerDao, never()).selectCustomerById(any());
+    }
+
+
+    /**
+     * Test to verify that with write-behind switched off a registration is added right away
+     * and handed back as a completed future.
+     */
+    @Test
+    void registerCustomerWithoutWriteBehindAddsRightAway() {
+        // Arrange: No queue is configured.
+        when(customerDao.addCustomer(any())).thenReturn(Optional.of(9));
+
+        // Act: Register a customer.
+        CompletableFuture<Integer> id = underTest.registerCustomer(new CustomerRegistrationRequest("Ana", "ana@gmail.com", 30));
+
+        // Assert: The id is already there.
+        assertThat(id).isCompletedWithValue(9);
+    }
+
+
+    /**
+     * Test to verify that with write-behind switched on a registration is queued instead of added,
+     * and that a taken email fails the future with a DuplicateResourceFoundException.
+     */
+    @Test
+    void registerCustomerWithWriteBehindQueues() {
+        // Arrange: The queue reports one new customer and one taken email.
+        when(writeBehindQueueProvider.getIfAvailable()).thenReturn(writeBehindQueue);
+        when(writeBehindQueue.submit(any()))
+                .thenReturn(CompletableFuture.completedFuture(Optional.of(11)))
+                .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        // Act: Register two customers.
+        CompletableFuture<Integer> added = underTest.registerCustomer(new CustomerRegistrationRequest("Ana", "ana@gmail.com", 30));
+        CompletableFuture<Integer> taken = underTest.registerCustomer(new CustomerRegistrationRequest("Bo", "ana@gmail.com", 40));
+
+        // Assert: Only the queue was used and the taken email is reported as a duplicate.
+        assertThat(added).isCompletedWithValue(11);
+        assertThatThrownBy(taken::join).isInstanceOf(CompletionException.class)
+                .hasCauseInstanceOf(DuplicateResourceFoundException.class);
         verify(customerDao, never()).addCustomer(any());
+    }
+
 
+    /**
+     * Test to verify that a bulk create validates registrations, rejects emails repeated in the request
+     * or already taken, and inserts the rest with one batch.
+     */
+    @Test
+    void addCustomersReportsCreatedDuplicateAndInvalid() {
+        // Arrange: one new, one repeated, one invalid and one already taken registration.
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21),
+                new CustomerRegistrationRequest("Alex Again", "alex@gmail.com", 22),
+                new CustomerRegistrationRequest("", "nobody@gmail.com", 30),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 19)
+        );
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of("jamila@gmail.com"));
+        when(customerDao.addCustomers(any())).thenReturn(List.of(101));
+
+        // Act: Create them in bulk.
+        CustomerBulkCreateResponse response = underTest.addCustomers(requests);
+
+        // Assert: Each registration gets the expected status and only the new one is inserted.
+        assertThat(response.results()).extracting(CustomerBulkCreateResult::status).containsExactly(
+                CustomerBulkCreateResult.Status.CREATED,
+                CustomerBulkCreateResult.Status.DUPLICATE,
+                CustomerBulkCreateResult.Status.INVALID,
+                CustomerBulkCreateResult.Status.DUPLICATE
+        );
+        assertThat(response.results().get(0).id()).isEqualTo(101);
+        assertThat(response.created()).isEqualTo(1);
+        assertThat(response.duplicates()).isEqualTo(2);
+        assertThat(response.invalid()).isEqualTo(1);
+
+        ArgumentCaptor<List<Customer>> batchCaptor = ArgumentCaptor.forClass(List.class);
+        verify(customerDao).addCustomers(batchCaptor.capture());
+        assertThat(batchCaptor.getValue()).extracting(Customer::getEmail).containsExactly("alex@gmail.com");
     }
 
+    /**
+     * Test to verify that a batch that fails on a concurrently taken email is retried row by row,
+     * so only the conflicting row is reported as a duplicate.
+     */
+    @Test
+    void addCustomersRetriesRowByRowAfterConflict() {
+        // Arrange: the batch fails, then the single-row inserts succeed for one and conflict for the other.
+        List<CustomerRegistrationRequest> requests = List.of(
+                new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21),
+                new CustomerRegistrationRequest("Jamila", "jamila@gmail.com", 19)
+        );
+        when(customerDao.selectExistingEmails(any())).thenReturn(Set.of());
+        when(customerDao.addCustomers(any()))
+                .thenThrow(new DuplicateKeyException("unique_email"))
+                .thenReturn(List.of(7))
+                .thenThrow(new DuplicateKeyException("unique_email"));
+
+        // Act: Create them in bulk.
+        CustomerBulkCreateResponse response = underTest.addCustomers(requests);
+
+        // Assert: The first is created, the second is a duplicate.
+        assertThat(response.results()).extracting(CustomerBulkCreateResult::status).containsExactly(
+                CustomerBulkCreateResult.Status.CREATED,
+                CustomerBulkCreateResult.Status.DUPLICATE
+        );
+        verify(customerDao, times(3)).addCustomers(any());
+    }
+
+    /**
+     * Test to verify that requests above the bulk limit are rejected before touching the DAO.
+     */
+    @Test
+    void addCustomersRejectsOversizedRequest() {
+        List<CustomerRegistrationRequest> requests = Collections.nCopies(
+                CustomerService.MAX_BULK_SIZE + 1, new CustomerRegistrationRequest("Alex", "alex@gmail.com", 21));
+
+        assertThatThrownBy(() -> underTest.addCustomers(requests)).isInstanceOf(InvalidRequestException.class);
+
+        verifyNoInteractions(customerDao);
+    }
 
     /**
      * Test to verify that deleting a customer by their ID results in the DAO deleteCustomerById
@@ -164,7 +428,7 @@ public class CustomerServiceTest {
         //when
         Customer customer = new Customer(10, "Manoj", "manojoshi1982@gmail.com", 42);
 
-        when(customerDao.updateCustomer(any())).thenReturn(customer);
+        when(customerDao.updateCustomer(any())).thenReturn(new CustomerUpdate(customer, customer));
 
         Customer customer1 = underTest.updateCustomerDetails(customer);
 
@@ -176,4 +440,189 @@ public class CustomerServiceTest {
 
         assertThat(actual).isEqualTo(customer);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test to verify that an update with an expected version goes straight to the DAO as one
+     * conditional update, without reading the customer first.
+     */
+    @Test
+    void updateCustomerDetailsWithVersion() {
+        //Given
+        when(customerDao.updateCustomer(any())).thenAnswer(invocation -> updateTo(invocation.getArgument(0)));
+
+        //When
+        Customer updated = underTest.updateCustomerDetails(10, new CustomerRegistrationRequest("Manoj", "manoj@gmail.com", 42), 4);
+
+        //Then
+        assertThat(updated).isEqualTo(new Customer(10, "Manoj", "manoj@gmail.com", 42));
+        assertThat(updated.getVersion()).isEqualTo(4);
+        verify(customerDao, never()).selectCustomerById(any());
+    }
+
+    /**
+     * Test to verify that a failed conditional update is reported as a failed precondition when the
+     * customer exists, and as not found when it does not.
+     */
+    @Test
+    void updateCustomerDetailsWithStaleVersion() {
+        //Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Manoj", "manoj@gmail.com", 42);
+        when(customerDao.updateCustomer(any())).thenThrow(new OptimisticLockingFailureException("stale"));
+        when(customerDao.selectCustomerById(10)).thenReturn(Optional.of(new Customer(10, "Manoj", "manoj@gmail.com", 41, 5)));
+        when(customerDao.selectCustomerById(11)).thenReturn(Optional.empty());
+
+        //When / Then
+        assertThatThrownBy(() -> underTest.updateCustomerDetails(10, request, 4))
+                .isInstanceOf(PreconditionFailedException.class);
+        assertThatThrownBy(() -> underTest.updateCustomerDetails(11, request, 4))
+                .isInstanceOf(ResourceNotFound.class);
+    }
+
+    /**
+     * Test to verify that an update without a version reads the customer again and retries when a
+     * concurrent update got in between, and gives up after MAX_UPDATE_ATTEMPTS.
+     */
+    @Test
+    void updateCustomerDetailsRetriesConcurrentUpdates() {
+        //Given
+        CustomerRegistrationRequest request = new CustomerRegistrationRequest("Manoj", "manoj@gmail.com", 42);
+        when(customerDao.selectCustomerById(10)).thenAnswer(invocation -> Optional.of(new Customer(10, "Old", "old@gmail.com", 41, 5)));
+        when(customerDao.updateCustomer(any()))
+                .thenThrow(new OptimisticLockingFailureException("stale"))
+                .thenAnswer(invocation -> updateTo(invocation.getArgument(0)))
+                .thenThrow(new OptimisticLockingFailureException("stale"));
+
+        //When
+        Customer updated = underTest.updateCustomerDetails(10, request);
+
+        //Then
+        assertThat(updated).isEqualTo(new Customer(10, "Manoj", "manoj@gmail.com", 42));
+        verify(customerDao, times(2)).updateCustomer(any());
+        assertThatThrownBy(() -> underTest.updateCustomerDetails(10, request))
+                .isInstanceOf(ConcurrentUpdateException.class);
+        verify(customerDao, times(2 + CustomerService.MAX_UPDATE_ATTEMPTS)).updateCustomer(any());
+    }
+
+    /**
+     * Test to verify that a patch goes straight to the DAO, and that a patch matching nothing is reported
+     * as a failed precondition when the customer exists at another version.
+     */
+    @Test
+    void patchCustomer() {
+        //Given
+        CustomerPatchRequest patch = new CustomerPatchRequest(null, null, 43);
+        Customer patched = new Customer(10, "Manoj", "manoj@gmail.com", 43, 5);
+        when(customerDao.patchCustomer(10, patch, 4)).thenReturn(Optional.of(updateTo(patched)));
+        when(customerDao.patchCustomer(10, patch, 3)).thenReturn(Optional.empty());
+        when(customerDao.selectCustomerById(10)).thenReturn(Optional.of(patched));
+
+        //When / Then
+        assertThat(underTest.patchCustomer(10, patch, 4)).isSameAs(patched);
+        assertThatThrownBy(() -> underTest.patchCustomer(10, patch, 3))
+                .isInstanceOf(PreconditionFailedException.class);
+    }
+
+    /**
+     * Test to verify that invalid patch fields are refused before reaching the DAO, and that a patch
+     * taking another customer's email is reported as a duplicate.
+     */
+    @Test
+    void patchCustomerRejectsInvalidFieldsAndTakenEmail() {
+        //Given
+        CustomerPatchRequest taken = new CustomerPatchRequest(null, "jamila@gmail.com", null);
+        when(customerDao.patchCustomer(10, taken, null)).thenThrow(new DuplicateKeyException("unique_email"));
+
+        //When / Then
+        assertThatThrownBy(() -> underTest.patchCustomer(10, new CustomerPatchRequest(" ", null, null), null))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.patchCustomer(10, new CustomerPatchRequest(null, null, -1), null))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.patchCustomer(10, taken, null))
+                .isInstanceOf(DuplicateResourceFoundException.class);
+    }
+
+    /**
+     * Test to verify that a multi-get asks the DAO once for the distinct ids, and answers in request order
+     * with the ids that were not found.
+     */
+    @Test
+    void getCustomersByIds() {
+        //Given
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(2, "Jamila", "jamila@gmail.com", 19);
+        when(customerDao.selectCustomersByIds(Set.of(1, 2, 3))).thenReturn(List.of(alex, jamila));
+
+        //When
+        CustomerBatch batch = underTest.getCustomersByIds(List.of(2, 3, 1, 2));
+
+        //Then
+        assertThat(batch.customers()).containsExactly(jamila, alex);
+        assertThat(batch.missingIds()).containsExactly(3);
+        verify(customerDao, times(1)).selectCustomersByIds(any());
+    }
+
+    /**
+     * Test to verify that a search fetches one row more than the page to find out whether another page exists.
+     */
+    @Test
+    void searchCustomersReturnsNextCursorWhenMoreRowsExist() {
+        //Given
+        CustomerSearchCriteria criteria = new CustomerSearchCriteria(
+                "al", CustomerSearchCriteria.NameMatch.PREFIX, "gmail.com", 18, 65);
+        List<Customer> rows = List.of(
+                new Customer(11, "Alex", "alex@gmail.com", 21),
+                new Customer(14, "Alina", "alina@gmail.com", 30)
+        );
+        when(customerDao.searchCustomers(criteria, 10, 2)).thenReturn(rows);
+
+        //When
+        CustomerPage page = underTest.searchCustomers(criteria, 10, 1);
+
+        //Then
+        assertThat(page.customers()).containsExactly(rows.get(0));
+        assertThat(page.nextAfterId()).isEqualTo(11);
+    }
+
+    /**
+     * Test to verify that criteria no index can serve, or that can never match, are refused without a query.
+     */
+    @Test
+    void searchCustomersRejectsInvalidCriteria() {
+        //When / Then
+        assertThatThrownBy(() -> underTest.searchCustomers(
+                new CustomerSearchCriteria("al", CustomerSearchCriteria.NameMatch.CONTAINS, null, null, null), null, 10))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.searchCustomers(
+                new CustomerSearchCriteria(" ", CustomerSearchCriteria.NameMatch.PREFIX, null, null, null), null, 10))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.searchCustomers(
+                new CustomerSearchCriteria(null, null, "", null, null), null, 10))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.searchCustomers(
+                new CustomerSearchCriteria(null, null, null, 40, 30), null, 10))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.searchCustomers(
+                new CustomerSearchCriteria(null, null, null, -1, null), null, 10))
+                .isInstanceOf(InvalidRequestException.class);
+        verifyNoInteractions(customerDao);
+    }
+
+    /**
+     * Test to verify that empty, oversized and null-containing id lists are refused without a query.
+     */
+    @Test
+    void getCustomersByIdsRejectsInvalidIdLists() {
+        //When / Then
+        assertThatThrownBy(() -> underTest.getCustomersByIds(List.of()))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.getCustomersByIds(Collections.nCopies(CustomerService.MAX_BATCH_GET_SIZE + 1, 1)))
+                .isInstanceOf(InvalidRequestException.class);
+        assertThatThrownBy(() -> underTest.getCustomersByIds(Arrays.asList(1, null)))
+                .isInstanceOf(InvalidRequestException.class);
+        verifyNoInteractions(customerDao);
+    }
+
+    private static CustomerUpdate updateTo(Customer customer) {
+        return new CustomerUpdate(new Customer(customer.getId(), "Old", "old@gmail.com", 41, customer.getVersion()), customer);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.dao.ReactiveCustomerDao;
+import com.example.customerservice.exception.ConcurrentUpdateException;
+import com.example.customerservice.exception.DuplicateResourceFoundException;
+import com.example.customerservice.exception.PreconditionFailedException;
+import com.example.customerservice.exception.ResourceNotFound;
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerFileFormat;
+import com.example.customerservice.model.CustomerPage;
+import com.example.customerservice.model.CustomerRegistrationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Test class for ReactiveCustomerService, checking that empty and failed DAO results are turned into the
+ * same errors CustomerService raises.
+ */
+@ExtendWith(MockitoExtension.class)
+class ReactiveCustomerServiceTest {
+
+    @Mock
+    private ReactiveCustomerDao customerDao;
+    private ReactiveCustomerService underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ReactiveCustomerService(customerDao, new ObjectMapper());
+    }
+
+    /**
+     * Tests that a page fetches one extra row and only returns a next cursor when that row exists.
+     */
+    @Test
+    void getCustomersPage() {
+        //Given
+        when(customerDao.selectCustomersPage(null, 3)).thenReturn(Flux.just(
+                new Customer(1, "A", "a@example.com", 20),
+                new Customer(2, "B", "b@example.com", 20),
+                new Customer(3, "C", "c@example.com", 20)));
+
+        //When / Then
+        StepVerifier.create(underTest.getCustomersPage(null, 2))
+                .assertNext(page -> {
+                    assertThat(page.customers()).extracting(Customer::getId).containsExactly(1, 2);
+                    assertThat(page.nextAfterId()).isEqualTo(2);
+                })
+                .verifyComplete();
+    }
+
+    /**
+     * Tests that a missing customer fails with ResourceNotFound.
+     */
+    @Test
+    void getCustomerByIdWhenMissing() {
+        //Given
+        when(customerDao.selectCustomerById(7)).thenReturn(Mono.empty());
+
+        //When / Then
+        StepVerifier.create(underTest.getCustomerById(7))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(ResourceNotFound.class)
+                        .hasMessage("Customer with id [7] not found"))
+                .verify();
+    }
+
+    /**
+     * Tests that a registration the DAO did not insert fails with DuplicateResourceFoundException.
+     */
+    @Test
+    void addCustomerWithTakenEmail() {
+        //Given
+        when(customerDao.addCustomer(any())).thenReturn(Mono.empty());
+
+        //When / Then
+        StepVerifier.create(underTest.addCustomer(new CustomerRegistrationRequest("A", "a@example.com", 20)))
+                .expectError(DuplicateResourceFoundException.class)
+                .verify();
+    }
+
+    /**
+     * Tests that an update taking another customer's email fails with DuplicateResourceFoundException.
+     */
+    @Test
+    void updateCustomerDetailsWithTakenEmail() {
+        //Given
+        when(customerDao.selectCustomerById(1)).thenReturn(Mono.just(new Customer(1, "A", "a@example.com", 20)));
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.error(new DuplicateKeyException("unique_email")));
+
+        //When / Then
+        StepVerifier.create(underTest.updateCustomerDetails(1, new CustomerRegistrationRequest("A", "b@example.com", 20)))
+                .expectError(DuplicateResourceFoundException.class)
+                .verify();
+    }
+
+    /**
+     * Tests that updating a missing customer fails with ResourceNotFound without attempting the update.
+     */
+    @Test
+    void updateCustomerDetailsWhenMissing() {
+        //Given
+        when(customerDao.selectCustomerById(1)).thenReturn(Mono.empty());
+
+        //When / Then
+        StepVerifier.create(underTest.updateCustomerDetails(1, new CustomerRegistrationRequest("A", "b@example.com", 20)))
+                .expectError(ResourceNotFound.class)
+                .verify();
+        verify(customerDao, never()).updateCustomer(any());
+    }
+
+    /**
+     * Tests that a conditional update matching no row fails with PreconditionFailedException when the
+     * customer exists, i.e. when only its version has moved on.
+     */
+    @Test
+    void updateCustomerDetailsWithStaleVersion() {
+        //Given
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.empty());
+        when(customerDao.selectCustomerById(1)).thenReturn(Mono.just(new Customer(1, "A", "a@example.com", 20, 5)));
+
+        //When / Then
+        StepVerifier.create(underTest.updateCustomerDetails(1, new CustomerRegistrationRequest("A", "b@example.com", 20), 4))
+                .expectError(PreconditionFailedException.class)
+                .verify();
+    }
+
+    /**
+     * Tests that an update without a version gives up with ConcurrentUpdateException when every attempt
+     * loses to a concurrent update.
+     */
+    @Test
+    void updateCustomerDetailsLosingToConcurrentUpdates() {
+        //Given
+        when(customerDao.selectCustomerById(1)).thenAnswer(invocation -> Mono.just(new Customer(1, "A", "a@example.com", 20, 5)));
+        when(customerDao.updateCustomer(any())).thenReturn(Mono.empty());
+
+        //When / Then
+        StepVerifier.create(underTest.updateCustomerDetails(1, new CustomerRegistrationRequest("A", "b@example.com", 20)))
+                .expectError(ConcurrentUpdateException.class)
+                .verify();
+        verify(customerDao, times(CustomerService.MAX_UPDATE_ATTEMPTS)).updateCustomer(any());
+    }
+
+    /**
+     * Tests that a CSV export starts with the header and quotes fields that need it.
+     */
+    @Test
+    void exportCustomersAsCsv() {
+        //Given
+        when(customerDao.selectAllCustomers()).thenReturn(Flux.just(
+                new Customer(1, "Doe, Jane", "jane@example.com", 30)));
+
+        //When
+        String csv = String.join("", underTest.exportCustomers(CustomerFileFormat.CSV).collectList().block());
+
+        //Then
+        assertThat(csv).isEqualTo("id,name,email,age\r\n1,\"Doe, Jane\",jane@example.com,30\r\n");
+    }
+}
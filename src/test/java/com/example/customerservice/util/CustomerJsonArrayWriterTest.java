@@ -0,0 +1,66 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.Customer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for CustomerJsonArrayWriter.
+ * Verifies that its output is byte for byte what Jackson writes for the same list of customers.
+ */
+class CustomerJsonArrayWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * Tests customers whose names hold every ASCII character, escaped or not, and non-ASCII text including
+     * characters outside the Basic Multilingual Plane, with extreme ids and ages.
+     */
+    @Test
+    void writesSameBytesAsJackson() throws IOException {
+        StringBuilder ascii = new StringBuilder();
+        for (char c = 0; c < 0x80; c++) {
+            ascii.append(c);
+        }
+        List<Customer> customers = List.of(
+                new Customer(1, "Alex", "alex@gmail.com", 21),
+                new Customer(Integer.MAX_VALUE, ascii.toString(), "\"quoted\"\\@example.com", 0),
+                new Customer(Integer.MIN_VALUE, "Zoë Ångström   😀 日本", "zoë@example.com", -7),
+                new Customer(-1, "", "", 100)
+        );
+
+        assertThat(write(customers)).isEqualTo(objectMapper.writeValueAsBytes(customers));
+    }
+
+    /**
+     * Tests a customer long enough to spill over the writer's buffer, and an empty list.
+     */
+    @Test
+    void writesLongValuesAndEmptyList() throws IOException {
+        List<Customer> customers = List.of(
+                new Customer(1, "n\t".repeat(20_000), "e".repeat(40_000) + "@example.com", 30),
+                new Customer(2, "Jamila", "jamila@gmail.com", 19)
+        );
+
+        assertThat(write(customers)).isEqualTo(objectMapper.writeValueAsBytes(customers));
+        assertThat(write(List.of())).isEqualTo(objectMapper.writeValueAsBytes(List.of()));
+    }
+
+    private static byte[] write(List<Customer> customers) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (CustomerJsonArrayWriter writer = new CustomerJsonArrayWriter(outputStream)) {
+            for (Customer customer : customers) {
+                writer.write(customer.getId(), customer.getName().getBytes(StandardCharsets.UTF_8),
+                        customer.getEmail().getBytes(StandardCharsets.UTF_8), customer.getAge());
+            }
+        }
+        return outputStream.toByteArray();
+    }
+}
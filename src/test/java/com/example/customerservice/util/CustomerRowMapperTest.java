@@ -45,6 +45,7 @@ class CustomerRowMapperTest {
         when(resultSet.getString("name")).thenReturn(customers.get(0).getName());
         when(resultSet.getString("email")).thenReturn(customers.get(0).getEmail());
         when(resultSet.getInt("age")).thenReturn(customers.get(0).getAge());
+        when(resultSet.getInt("version")).thenReturn(3);
 
         //create a customerRowMapper object
         //call the mapRow method
@@ -54,5 +55,6 @@ class CustomerRowMapperTest {
         assertEquals(customers.get(0).getName(), customer.getName());
         assertEquals(customers.get(0).getAge(), customer.getAge());
         assertEquals(customers.get(0).getId(), customer.getId());
+        assertEquals(3, customer.getVersion());
     }
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package com.example.customerservice.util;
+
+import com.example.customerservice.model.Customer;
+import com.example.customerservice.model.CustomerStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit test class for CustomerStatisticsCounters.
+ */
+class CustomerStatisticsCountersTest {
+
+    private final Clock clock = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    /**
+     * Tests that adds, replacements and removals move the count, age buckets and domain counts, and that
+     * domains are ranked by count and then by name.
+     */
+    @Test
+    void snapshot() {
+        // Given
+        CustomerStatisticsCounters underTest = new CustomerStatisticsCounters(clock);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(2, "Jamila", "jamila@Yahoo.com", 19);
+        Customer manoj = new Customer(3, "Manoj", "manoj@gmail.com", 42);
+
+        // When
+        underTest.add(alex);
+        underTest.add(jamila);
+        underTest.add(manoj);
+        underTest.add(new Customer(4, "Ana", "ana@aol.com", 150));
+        underTest.replace(manoj, new Customer(3, "Manoj", "manoj@yahoo.com", 43));
+        underTest.remove(alex);
+        CustomerStatistics statistics = underTest.snapshot(2);
+
+        // Then
+        assertThat(statistics.total()).isEqualTo(3);
+        assertThat(statistics.ageHistogram()).hasSize(16);
+        assertThat(statistics.ageHistogram().get(1)).isEqualTo(new CustomerStatistics.AgeBucket(10, 19, 1));
+        assertThat(statistics.ageHistogram().get(2).count()).isZero();
+        assertThat(statistics.ageHistogram().get(4).count()).isEqualTo(1);
+        assertThat(statistics.ageHistogram().get(15)).isEqualTo(new CustomerStatistics.AgeBucket(150, 159, 1));
+        assertThat(statistics.topEmailDomains()).containsExactly(
+                new CustomerStatistics.DomainCount("yahoo.com", 2),
+                new CustomerStatistics.DomainCount("aol.com", 1));
+        assertThat(statistics.reconciledAt()).isNull();
+    }
+
+    /**
+     * Tests that a rebuild replaces drifted totals with the scanned ones and reports the drift.
+     */
+    @Test
+    void rebuild() {
+        // Given
+        CustomerStatisticsCounters underTest = new CustomerStatisticsCounters(clock);
+        underTest.add(new Customer(1, "Alex", "alex@gmail.com", 21));
+        underTest.add(new Customer(2, "Ghost", "ghost@gmail.com", 30));
+        List<Customer> stored = List.of(new Customer(1, "Alex", "alex@gmail.com", 21));
+
+        // When
+        long drift = underTest.rebuild(stored::forEach);
+
+        // Then
+        assertThat(drift).isEqualTo(1);
+        assertThat(underTest.isLoaded()).isTrue();
+        CustomerStatistics statistics = underTest.snapshot(10);
+        assertThat(statistics.total()).isEqualTo(1);
+        assertThat(statistics.topEmailDomains()).containsExactly(new CustomerStatistics.DomainCount("gmail.com", 1));
+        assertThat(statistics.reconciledAt()).isEqualTo(clock.instant());
+    }
+
+    /**
+     * Tests that a write made while the scan runs, which a snapshot scan does not see, survives the rebuild.
+     */
+    @Test
+    void rebuildKeepsWritesMadeDuringScan() {
+        // Given
+        CustomerStatisticsCounters underTest = new CustomerStatisticsCounters(clock);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(2, "Jamila", "jamila@yahoo.com", 19);
+        underTest.add(alex);
+
+        // When
+        underTest.rebuild(consumer -> {
+            consumer.accept(alex);
+            underTest.add(jamila);
+        });
+
+        // Then
+        CustomerStatistics statistics = underTest.snapshot(10);
+        assertThat(statistics.total()).isEqualTo(2);
+        assertThat(statistics.topEmailDomains()).containsExactly(
+                new CustomerStatistics.DomainCount("gmail.com", 1),
+                new CustomerStatistics.DomainCount("yahoo.com", 1));
+    }
+
+    /**
+     * Tests a write told about before the scan returned its first customer, which the scan's snapshot already holds.
+     * Verifies that it is not replayed onto the recount, which would count it twice.
+     */
+    @Test
+    void rebuildDoesNotReplayWritesMadeBeforeFirstCustomer() {
+        // Given
+        CustomerStatisticsCounters underTest = new CustomerStatisticsCounters(clock);
+        Customer alex = new Customer(1, "Alex", "alex@gmail.com", 21);
+        Customer jamila = new Customer(2, "Jamila", "jamila@yahoo.com", 19);
+        underTest.add(alex);
+
+        // When
+        underTest.rebuild(consumer -> {
+            underTest.add(jamila);
+            consumer.accept(alex);
+            consumer.accept(jamila);
+        });
+
+        // Then
+        CustomerStatistics statistics = underTest.snapshot(10);
+        assertThat(statistics.total()).isEqualTo(2);
+        assertThat(statistics.topEmailDomains()).containsExactly(
+                new CustomerStatistics.DomainCount("gmail.com", 1),
+                new CustomerStatistics.DomainCount("yahoo.com", 1));
+    }
+}
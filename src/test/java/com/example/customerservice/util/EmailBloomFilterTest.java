@@ -0,0 +1,60 @@
+package com.example.customerservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit test class for EmailBloomFilter.
+ */
+class EmailBloomFilterTest {
+
+    /**
+     * Tests that every added email is found and unknown emails are rejected at about the configured rate.
+     */
+    @Test
+    void mightContain() {
+        // Given
+        int insertions = 100_000;
+        EmailBloomFilter underTest = new EmailBloomFilter(insertions, 0.01);
+
+        // When
+        IntStream.range(0, insertions).forEach(i -> underTest.put("customer" + i + "@gmail.com"));
+
+        // Then
+        assertThat(IntStream.range(0, insertions))
+                .allMatch(i -> underTest.mightContain("customer" + i + "@gmail.com"));
+        long falsePositives = IntStream.range(0, insertions)
+                .filter(i -> underTest.mightContain("other" + i + "@yahoo.com"))
+                .count();
+        assertThat((double) falsePositives / insertions).isLessThan(0.015);
+        assertThat(underTest.falsePositiveRate()).isBetween(0.005, 0.015);
+        assertThat(underTest.approximateElementCount()).isBetween(97_000L, 103_000L);
+    }
+
+    /**
+     * Tests that the filter is sized from the expected insertions and false-positive probability.
+     */
+    @Test
+    void sizing() {
+        // When
+        EmailBloomFilter underTest = new EmailBloomFilter(50_000_000, 0.01);
+
+        // Then: ~9.6 bits and 7 hash functions per email
+        assertThat(underTest.memoryBytes()).isBetween(59_000_000L, 61_000_000L);
+        assertThat(underTest.hashFunctions()).isEqualTo(7);
+        assertThat(underTest.falsePositiveRate()).isZero();
+    }
+
+    /**
+     * Tests that nonsensical sizes are refused.
+     */
+    @Test
+    void invalidSizing() {
+        assertThatThrownBy(() -> new EmailBloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new EmailBloomFilter(1000, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}